@@ -0,0 +1,312 @@
+package benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Embedded HTTP Maven repository serving the files of a directory with the standard Maven repository layout.
+ * <p>
+ * The directory may contain a synthetic corpus (see {@link SyntheticCorpus}) or a recorded one, e.g. a copy of
+ * a local Maven repository populated by a previous {@code install}.
+ * <p>
+ * Network conditions can be simulated:
+ * <ul>
+ *     <li>latency: delay before the response headers of each request are sent.</li>
+ *     <li>bandwidth: maximum rate at which the body of each response is sent.</li>
+ *     <li>error rate: fraction of paths whose first request fails with a broken connection. Which paths fail
+ *     is determined by the seed, so runs with the same settings are reproducible. Subsequent requests for
+ *     a failed path succeed, so clients that retry transient failures still succeed.</li>
+ * </ul>
+ * The server records metrics (see {@link MockMavenRepository#getMetrics()}) which can be used to detect
+ * regressions in fetch concurrency (e.g. maximum number of concurrent requests) and caching
+ * (e.g. paths requested more than once).
+ * <p>
+ * Only HTTP/1.1 is served, as that is the only protocol supported by the JDK's embedded HTTP server.
+ */
+public final class MockMavenRepository implements AutoCloseable {
+
+    /**
+     * Network conditions simulated by a repository.
+     */
+    public static final class Settings {
+        public static final Settings NO_DELAYS = new Settings(Duration.ZERO, 0L, 0.0, 0L);
+
+        public final Duration latency;
+        public final long bytesPerSecond;
+        public final double errorRate;
+        public final long seed;
+
+        /**
+         * Create the settings of a repository.
+         *
+         * @param latency        delay before each response is sent
+         * @param bytesPerSecond maximum bandwidth of each response, or 0 for no limit
+         * @param errorRate      fraction (from 0.0 to 1.0) of paths whose first request fails
+         * @param seed           seed used to select the failing paths
+         */
+        public Settings(Duration latency, long bytesPerSecond, double errorRate, long seed) {
+            if (errorRate < 0.0 || errorRate > 1.0) {
+                throw new IllegalArgumentException("errorRate must be between 0.0 and 1.0, not " + errorRate);
+            }
+            this.latency = latency;
+            this.bytesPerSecond = bytesPerSecond;
+            this.errorRate = errorRate;
+            this.seed = seed;
+        }
+
+        @Override
+        public String toString() {
+            return "Settings{" +
+                    "latency=" + latency.toMillis() + "ms" +
+                    ", bytesPerSecond=" + bytesPerSecond +
+                    ", errorRate=" + errorRate +
+                    ", seed=" + seed +
+                    '}';
+        }
+    }
+
+    /**
+     * Metrics of a repository.
+     */
+    public static final class Metrics {
+        public final long requests;
+        public final long notFound;
+        public final long injectedErrors;
+        public final long bytesSent;
+        public final int maxConcurrentRequests;
+        public final Set<String> repeatedPaths;
+
+        Metrics(long requests, long notFound, long injectedErrors, long bytesSent,
+                int maxConcurrentRequests, Set<String> repeatedPaths) {
+            this.requests = requests;
+            this.notFound = notFound;
+            this.injectedErrors = injectedErrors;
+            this.bytesSent = bytesSent;
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            this.repeatedPaths = repeatedPaths;
+        }
+
+        @Override
+        public String toString() {
+            return "Metrics{" +
+                    "requests=" + requests +
+                    ", notFound=" + notFound +
+                    ", injectedErrors=" + injectedErrors +
+                    ", bytesSent=" + bytesSent +
+                    ", maxConcurrentRequests=" + maxConcurrentRequests +
+                    ", repeatedPaths=" + repeatedPaths.size() +
+                    '}';
+        }
+    }
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    static {
+        // without this, the server adds latency (Nagle's algorithm interacts badly with delayed ACKs as the
+        // headers and the body of responses are written separately), which would dominate the results.
+        // It must be set before the JDK's HTTP server is first used.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final Path root;
+    private final Settings settings;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final Map<String, AtomicInteger> requestsByPath = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong notFound = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicInteger concurrentRequests = new AtomicInteger();
+    private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+
+    private MockMavenRepository(Path root, Settings settings, HttpServer server, ExecutorService executor) {
+        this.root = root;
+        this.settings = settings;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Start a repository on an ephemeral port of the loopback interface.
+     *
+     * @param root     directory containing the repository's files
+     * @param settings network conditions to simulate
+     * @return the running repository, which must be closed by the caller
+     * @throws IOException if the server cannot be started
+     */
+    public static MockMavenRepository start(Path root, Settings settings) throws IOException {
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("Not a directory: " + root);
+        }
+        var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // requests are delayed by sleeping, so each one needs its own thread
+        var executor = Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "mock-maven-repository");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var repository = new MockMavenRepository(root, settings, server, executor);
+        server.createContext("/", repository::handle);
+        server.setExecutor(executor);
+        server.start();
+        return repository;
+    }
+
+    /**
+     * @return the URL of the repository, ending with {@code /}
+     */
+    public URI getUrl() {
+        var address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort() + "/");
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public Metrics getMetrics() {
+        var repeatedPaths = requestsByPath.entrySet().stream()
+                .filter(entry -> entry.getValue().get() > 1)
+                .map(Map.Entry::getKey)
+                .collect(toSet());
+        return new Metrics(requests.get(), notFound.get(), injectedErrors.get(), bytesSent.get(),
+                maxConcurrentRequests.get(), repeatedPaths);
+    }
+
+    /**
+     * Reset all metrics, e.g. between benchmark iterations.
+     */
+    public void resetMetrics() {
+        requestsByPath.clear();
+        requests.set(0);
+        notFound.set(0);
+        injectedErrors.set(0);
+        bytesSent.set(0);
+        maxConcurrentRequests.set(0);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        var concurrent = concurrentRequests.incrementAndGet();
+        maxConcurrentRequests.accumulateAndGet(concurrent, Math::max);
+        try {
+            var path = exchange.getRequestURI().getPath().substring(1);
+            var attempt = requestsByPath.computeIfAbsent(path, ignore -> new AtomicInteger()).incrementAndGet();
+            sleep(settings.latency.toMillis());
+            var file = resolve(path);
+            if (file == null || !Files.isRegularFile(file)) {
+                notFound.incrementAndGet();
+                sendNotFound(exchange, path);
+            } else if (attempt == 1 && shouldFail(path)) {
+                injectedErrors.incrementAndGet();
+                sendBrokenResponse(exchange, file);
+            } else {
+                sendFile(exchange, file);
+            }
+        } finally {
+            concurrentRequests.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private Path resolve(String path) {
+        var file = root.resolve(path).normalize();
+        return file.startsWith(root) ? file : null;
+    }
+
+    private boolean shouldFail(String path) {
+        if (settings.errorRate <= 0.0) return false;
+        // a cheap, well distributed hash of the path and seed
+        var hash = (path.hashCode() * 0x9E3779B97F4A7C15L) ^ settings.seed;
+        hash ^= (hash >>> 31);
+        hash *= 0xBF58476D1CE4E5B9L;
+        hash ^= (hash >>> 29);
+        return (hash >>> 11) * 0x1.0p-53 < settings.errorRate;
+    }
+
+    private void sendNotFound(HttpExchange exchange, String path) throws IOException {
+        var body = ("Not found: " + path).getBytes(UTF_8);
+        exchange.sendResponseHeaders(404, body.length);
+        try (var out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void sendFile(HttpExchange exchange, Path file) throws IOException {
+        var size = Files.size(file);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", Long.toString(size));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(200, size);
+        try (var in = Files.newInputStream(file); var out = exchange.getResponseBody()) {
+            copyThrottled(in, out, size);
+        }
+    }
+
+    private void sendBrokenResponse(HttpExchange exchange, Path file) throws IOException {
+        var size = Files.size(file);
+        exchange.sendResponseHeaders(200, size + 1);
+        try (var in = Files.newInputStream(file)) {
+            copyThrottled(in, exchange.getResponseBody(), size / 2);
+            exchange.getResponseBody().flush();
+        }
+        // closing the exchange before the whole body is sent breaks the connection
+    }
+
+    private void copyThrottled(InputStream in, OutputStream out, long maxBytes) throws IOException {
+        var buffer = new byte[CHUNK_SIZE];
+        var startTime = System.nanoTime();
+        long sent = 0;
+        while (sent < maxBytes) {
+            var count = in.read(buffer, 0, (int) Math.min(buffer.length, maxBytes - sent));
+            if (count < 0) break;
+            out.write(buffer, 0, count);
+            sent += count;
+            bytesSent.addAndGet(count);
+            if (settings.bytesPerSecond > 0) {
+                var expectedMillis = sent * 1000L / settings.bytesPerSecond;
+                sleep(expectedMillis - (System.nanoTime() - startTime) / 1_000_000L);
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package benchmark;
+
+import jbuild.artifact.Artifact;
+import jbuild.artifact.file.ArtifactFileWriter;
+import jbuild.artifact.http.HttpArtifactRetriever;
+import jbuild.commands.DepsCommandExecutor;
+import jbuild.commands.FetchCommandExecutor;
+import jbuild.commands.InstallCommandExecutor;
+import jbuild.errors.HttpError;
+import jbuild.log.JBuildLog;
+import jbuild.maven.DependencyExclusions;
+import jbuild.maven.DependencyTree;
+import jbuild.maven.Scope;
+import jbuild.util.ChecksumAlgorithm;
+import jbuild.util.NonEmptyCollection;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static jbuild.util.TextUtils.LINE_END;
+
+/**
+ * Benchmark of the resolution commands against a {@link MockMavenRepository}.
+ * <p>
+ * Each run uses new executors and a new HTTP client, so that nothing is cached between runs, like when
+ * jbuild is invoked from the command line. Persistent caches (e.g. the effective POM cache) are not used.
+ * <p>
+ * Run the {@link ResolutionBenchmark#main(String[])} method for usage.
+ */
+public final class ResolutionBenchmark {
+
+    private static final String USAGE = "Usage: ResolutionBenchmark <options> [artifact...]" + LINE_END +
+            LINE_END +
+            "Runs the fetch, deps and install commands against a mock Maven repository." + LINE_END +
+            "By default, a synthetic repository is generated. Use --repository to serve a recorded one instead," +
+            LINE_END + "in which case the artifacts to resolve must be given." + LINE_END +
+            LINE_END +
+            "Options:" + LINE_END +
+            "  --repository <dir>   recorded repository to serve" + LINE_END +
+            "  --libraries <n>      number of libraries of the synthetic repository (default 200)" + LINE_END +
+            "  --extra-deps <n>     maximum random dependencies of each synthetic library (default 2)" + LINE_END +
+            "  --parent-depth <n>   length of the parent POM chain of synthetic libraries (default 3)" + LINE_END +
+            "  --jar-size <n>       size of the synthetic jars in KB (default 64)" + LINE_END +
+            "  --latency <ms>       latency of each request (default 20)" + LINE_END +
+            "  --bandwidth <kb/s>   bandwidth of each response, 0 for unlimited (default 0)" + LINE_END +
+            "  --error-rate <r>     fraction of paths whose first request fails (default 0)" + LINE_END +
+            "  --seed <n>           seed of the synthetic repository and injected errors (default 42)" + LINE_END +
+            "  --http <version>     HTTP version requested by the client: 1.1 or 2 (default 2)" + LINE_END +
+            "  --scenarios <list>   comma-separated scenarios: fetch, deps, install (default all)" + LINE_END +
+            "  --iterations <n>     measured runs of each scenario (default 5)" + LINE_END +
+            "  --warmup <n>         unmeasured runs of each scenario (default 1)" + LINE_END +
+            "  --checksum           verify checksums when installing" + LINE_END +
+            "  --verbose            log what the commands are doing";
+
+    public enum Scenario {FETCH, DEPS, INSTALL}
+
+    /**
+     * Result of a single benchmark run.
+     */
+    public static final class Result {
+        public final Scenario scenario;
+        public final Duration duration;
+        public final int artifacts;
+        public final boolean success;
+        public final MockMavenRepository.Metrics metrics;
+
+        Result(Scenario scenario, Duration duration, int artifacts, boolean success,
+               MockMavenRepository.Metrics metrics) {
+            this.scenario = scenario;
+            this.duration = duration;
+            this.artifacts = artifacts;
+            this.success = success;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "scenario=" + scenario +
+                    ", duration=" + duration.toMillis() + "ms" +
+                    ", artifacts=" + artifacts +
+                    ", success=" + success +
+                    ", metrics=" + metrics +
+                    '}';
+        }
+    }
+
+    private static final EnumSet<Scope> SCOPES = EnumSet.of(Scope.RUNTIME);
+
+    private final JBuildLog log;
+    private final MockMavenRepository repository;
+    private final HttpClient.Version httpVersion;
+    private final ChecksumAlgorithm checksumAlgorithm;
+    private final Path workDir;
+
+    /**
+     * Create a benchmark.
+     *
+     * @param log               logger
+     * @param repository        repository to run the benchmark against
+     * @param httpVersion       preferred HTTP version of the client
+     * @param checksumAlgorithm algorithm to verify checksums with when installing, or null to not verify them
+     * @param workDir           directory where to write fetched and installed artifacts
+     */
+    public ResolutionBenchmark(JBuildLog log,
+                               MockMavenRepository repository,
+                               HttpClient.Version httpVersion,
+                               ChecksumAlgorithm checksumAlgorithm,
+                               Path workDir) {
+        this.log = log;
+        this.repository = repository;
+        this.httpVersion = httpVersion;
+        this.checksumAlgorithm = checksumAlgorithm;
+        this.workDir = workDir;
+    }
+
+    /**
+     * Run a scenario once.
+     * <p>
+     * The {@link Scenario#FETCH} scenario fetches exactly the given artifacts, while the other scenarios
+     * resolve the transitive dependencies of the given artifacts.
+     *
+     * @param scenario  scenario to run
+     * @param artifacts artifacts to fetch or resolve
+     * @return the result of the run
+     * @throws Exception if the run cannot be completed
+     */
+    public Result run(Scenario scenario, Set<? extends Artifact> artifacts) throws Exception {
+        var outputDir = Files.createTempDirectory(workDir, scenario.name().toLowerCase(Locale.ROOT));
+        try {
+            repository.resetMetrics();
+            var startTime = System.nanoTime();
+            int count;
+            switch (scenario) {
+                case FETCH:
+                    count = fetch(artifacts, outputDir);
+                    break;
+                case DEPS:
+                    count = deps(artifacts);
+                    break;
+                case INSTALL:
+                    count = install(artifacts, outputDir);
+                    break;
+                default:
+                    throw new IllegalStateException("unknown scenario: " + scenario);
+            }
+            var duration = Duration.ofNanos(System.nanoTime() - startTime);
+            return new Result(scenario, duration, Math.max(count, 0), count >= 0, repository.getMetrics());
+        } finally {
+            deleteRecursively(outputDir);
+        }
+    }
+
+    private FetchCommandExecutor<HttpError> createFetchCommandExecutor() {
+        var httpClient = HttpClient.newBuilder()
+                .version(httpVersion)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        return new FetchCommandExecutor<>(log, NonEmptyCollection.of(
+                new HttpArtifactRetriever(log, repository.getUrl(), httpClient, checksumAlgorithm == null
+                        ? EnumSet.noneOf(ChecksumAlgorithm.class)
+                        : EnumSet.of(checksumAlgorithm))));
+    }
+
+    private int fetch(Set<? extends Artifact> artifacts, Path outputDir) {
+        var writer = new ArtifactFileWriter(outputDir.toFile(), ArtifactFileWriter.WriteMode.FLAT_DIR);
+        var results = createFetchCommandExecutor().fetchArtifacts(artifacts, writer, true);
+        var fetched = 0;
+        for (var result : results.values()) {
+            if (result.toCompletableFuture().join().isEmpty()) return -1;
+            fetched++;
+        }
+        return fetched;
+    }
+
+    private int deps(Set<? extends Artifact> artifacts) {
+        var trees = DepsCommandExecutor.create(log, createFetchCommandExecutor())
+                .fetchDependencyTree(artifacts, SCOPES, true, false);
+        var resolved = new LinkedHashSet<Artifact>();
+        for (var tree : trees.values()) {
+            Optional<DependencyTree> result = tree.toCompletableFuture().join();
+            if (result.isEmpty()) return -1;
+            resolved.add(result.get().root.artifact);
+            result.get().toSet().forEach(dependency -> resolved.add(dependency.artifact));
+        }
+        return resolved.size();
+    }
+
+    private int install(Set<? extends Artifact> artifacts, Path outputDir) {
+        var writer = new ArtifactFileWriter(outputDir.toFile(), ArtifactFileWriter.WriteMode.FLAT_DIR);
+        var result = new InstallCommandExecutor(log, createFetchCommandExecutor(), writer)
+                .installDependencyTree(artifacts, SCOPES, false, true, DependencyExclusions.EMPTY,
+                        checksumAlgorithm)
+                .toCompletableFuture().join();
+        return result.map(Long::intValue, errors -> {
+            errors.forEach(error -> log.println(() -> "ERROR: " + error));
+            return -1;
+        });
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path recordedRepository = null;
+        int libraries = 200, extraDependencies = 2, parentDepth = 3, jarSizeKb = 64;
+        long latencyMillis = 20, bandwidthKb = 0, seed = 42;
+        double errorRate = 0.0;
+        var httpVersion = HttpClient.Version.HTTP_2;
+        var scenarios = EnumSet.allOf(Scenario.class);
+        int iterations = 5, warmup = 1;
+        var checksum = false;
+        var verbose = false;
+        var artifacts = new LinkedHashSet<Artifact>();
+
+        for (int i = 0; i < args.length; i++) {
+            var arg = args[i];
+            switch (arg) {
+                case "-h":
+                case "--help":
+                    System.out.println(USAGE);
+                    return;
+                case "--repository":
+                    recordedRepository = Paths.get(value(args, ++i, arg));
+                    break;
+                case "--libraries":
+                    libraries = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--extra-deps":
+                    extraDependencies = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--parent-depth":
+                    parentDepth = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--jar-size":
+                    jarSizeKb = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--latency":
+                    latencyMillis = Long.parseLong(value(args, ++i, arg));
+                    break;
+                case "--bandwidth":
+                    bandwidthKb = Long.parseLong(value(args, ++i, arg));
+                    break;
+                case "--error-rate":
+                    errorRate = Double.parseDouble(value(args, ++i, arg));
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value(args, ++i, arg));
+                    break;
+                case "--http":
+                    httpVersion = parseHttpVersion(value(args, ++i, arg));
+                    break;
+                case "--scenarios":
+                    scenarios = EnumSet.noneOf(Scenario.class);
+                    for (var scenario : value(args, ++i, arg).split(",")) {
+                        scenarios.add(Scenario.valueOf(scenario.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--checksum":
+                    checksum = true;
+                    break;
+                case "--verbose":
+                    verbose = true;
+                    break;
+                default:
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("unknown option: " + arg + LINE_END + USAGE);
+                    }
+                    artifacts.add(Artifact.parseCoordinates(arg));
+            }
+        }
+
+        var workDir = Files.createTempDirectory(ResolutionBenchmark.class.getSimpleName());
+        try {
+            Path repositoryDir;
+            Set<Artifact> fetchArtifacts;
+            if (recordedRepository == null) {
+                var corpus = new SyntheticCorpus(libraries, extraDependencies, parentDepth, jarSizeKb * 1024, seed);
+                repositoryDir = workDir.resolve("repository");
+                corpus.writeTo(repositoryDir);
+                fetchArtifacts = corpus.libraryJars();
+                if (artifacts.isEmpty()) artifacts.add(corpus.rootArtifact());
+            } else {
+                if (artifacts.isEmpty()) {
+                    throw new IllegalArgumentException("artifacts must be given when using a recorded repository");
+                }
+                repositoryDir = recordedRepository;
+                fetchArtifacts = artifacts;
+            }
+
+            var settings = new MockMavenRepository.Settings(
+                    Duration.ofMillis(latencyMillis), bandwidthKb * 1024, errorRate, seed);
+            System.out.println("Repository: " + repositoryDir + " " + settings + ", HTTP client: " + httpVersion);
+
+            var anyFailure = false;
+            try (var repository = MockMavenRepository.start(repositoryDir, settings)) {
+                var benchmark = new ResolutionBenchmark(new JBuildLog(System.out, verbose), repository,
+                        httpVersion, checksum ? ChecksumAlgorithm.SHA1 : null, workDir);
+                for (var scenario : scenarios) {
+                    var scenarioArtifacts = scenario == Scenario.FETCH ? fetchArtifacts : artifacts;
+                    for (int i = 0; i < warmup; i++) {
+                        benchmark.run(scenario, scenarioArtifacts);
+                    }
+                    var results = new ArrayList<Result>(iterations);
+                    for (int i = 0; i < iterations; i++) {
+                        results.add(benchmark.run(scenario, scenarioArtifacts));
+                    }
+                    anyFailure |= results.stream().anyMatch(result -> !result.success);
+                    System.out.println(summary(scenario, results));
+                }
+            }
+            if (anyFailure) {
+                System.err.println("Some runs failed!");
+                System.exit(1);
+            }
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    private static String summary(Scenario scenario, List<Result> results) {
+        var millis = results.stream()
+                .mapToLong(result -> result.duration.toMillis())
+                .sorted()
+                .toArray();
+        var last = results.get(results.size() - 1);
+        return String.format(Locale.ROOT,
+                "%-8s min=%dms median=%dms max=%dms artifacts=%d requests=%d max-concurrency=%d " +
+                        "repeated-paths=%d injected-errors=%d bytes=%d failures=%d",
+                scenario, millis[0], millis[millis.length / 2], millis[millis.length - 1], last.artifacts,
+                last.metrics.requests, last.metrics.maxConcurrentRequests, last.metrics.repeatedPaths.size(),
+                last.metrics.injectedErrors, last.metrics.bytesSent,
+                results.stream().filter(result -> !result.success).count());
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("missing value for option " + option);
+        }
+        return args[index];
+    }
+
+    private static HttpClient.Version parseHttpVersion(String version) {
+        switch (version) {
+            case "1.1":
+                return HttpClient.Version.HTTP_1_1;
+            case "2":
+                return HttpClient.Version.HTTP_2;
+            default:
+                throw new IllegalArgumentException("invalid HTTP version (expected 1.1 or 2): " + version);
+        }
+    }
+}
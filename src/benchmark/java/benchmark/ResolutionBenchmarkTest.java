@@ -0,0 +1,149 @@
+package benchmark;
+
+import jbuild.log.JBuildLog;
+import jbuild.util.ChecksumAlgorithm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static benchmark.ResolutionBenchmark.Scenario.DEPS;
+import static benchmark.ResolutionBenchmark.Scenario.FETCH;
+import static benchmark.ResolutionBenchmark.Scenario.INSTALL;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that can run in CI to catch regressions in fetch concurrency and caching.
+ * <p>
+ * Instead of asserting absolute durations, which depend on the machine running the tests, these tests assert
+ * that resolution is much faster than it would be if requests were made one at a time, and that no file
+ * is requested more than once.
+ */
+public class ResolutionBenchmarkTest {
+
+    private static final Duration LATENCY = Duration.ofMillis(100);
+    private static final int LIBRARIES = 31;
+
+    private final SyntheticCorpus corpus = new SyntheticCorpus(LIBRARIES, 2, 3, 16 * 1024, 42L);
+    private final JBuildLog log = new JBuildLog(System.out, false);
+
+    private Path tempDir;
+    private Path repositoryDir;
+
+    @BeforeAll
+    static void warmup() throws Exception {
+        // the first run in a new JVM is much slower than the next ones, which would make timings meaningless
+        var dir = Files.createTempDirectory(ResolutionBenchmarkTest.class.getName() + "-warmup");
+        try {
+            var warmupCorpus = new SyntheticCorpus(7, 1, 1, 1024, 1L);
+            warmupCorpus.writeTo(dir.resolve("repository"));
+            try (var repository = MockMavenRepository.start(dir.resolve("repository"),
+                    MockMavenRepository.Settings.NO_DELAYS)) {
+                var benchmark = new ResolutionBenchmark(new JBuildLog(System.out, false), repository,
+                        HttpClient.Version.HTTP_1_1, ChecksumAlgorithm.SHA1, dir);
+                for (var scenario : ResolutionBenchmark.Scenario.values()) {
+                    benchmark.run(scenario, scenario == FETCH
+                            ? warmupCorpus.libraryJars()
+                            : Set.of(warmupCorpus.rootArtifact()));
+                }
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDir = Files.createTempDirectory(ResolutionBenchmarkTest.class.getName());
+        repositoryDir = tempDir.resolve("repository");
+        corpus.writeTo(repositoryDir);
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        deleteAll(tempDir);
+    }
+
+    @Test
+    void fetchesArtifactsConcurrently() throws Exception {
+        try (var repository = start(0.0)) {
+            var result = benchmark(repository, null).run(FETCH, corpus.libraryJars());
+
+            assertThat(result.success).isTrue();
+            assertThat(result.artifacts).isEqualTo(LIBRARIES);
+            assertThat(result.metrics.repeatedPaths).isEmpty();
+            assertThat(result.metrics.maxConcurrentRequests).isGreaterThan(1);
+            assertFasterThanSerial(result);
+        }
+    }
+
+    @Test
+    void resolvesDependencyTreeConcurrentlyWithoutRepeatedRequests() throws Exception {
+        try (var repository = start(0.0)) {
+            var result = benchmark(repository, null).run(DEPS, Set.of(corpus.rootArtifact()));
+
+            assertThat(result.success).isTrue();
+            assertThat(result.artifacts).isEqualTo(LIBRARIES);
+            assertThat(result.metrics.notFound).isZero();
+            assertThat(result.metrics.repeatedPaths).isEmpty();
+            assertThat(result.metrics.maxConcurrentRequests).isGreaterThan(1);
+            assertFasterThanSerial(result);
+        }
+    }
+
+    @Test
+    void installsDependencyTreeConcurrentlyWithoutRepeatedRequests() throws Exception {
+        try (var repository = start(0.0)) {
+            var result = benchmark(repository, ChecksumAlgorithm.SHA1).run(INSTALL, Set.of(corpus.rootArtifact()));
+
+            assertThat(result.success).isTrue();
+            assertThat(result.artifacts).isEqualTo(LIBRARIES);
+            assertThat(result.metrics.notFound).isZero();
+            assertThat(result.metrics.repeatedPaths).isEmpty();
+            assertThat(result.metrics.maxConcurrentRequests).isGreaterThan(1);
+            assertFasterThanSerial(result);
+        }
+    }
+
+    @Test
+    void installSucceedsDespiteTransientErrors() throws Exception {
+        try (var repository = start(0.1)) {
+            var result = benchmark(repository, ChecksumAlgorithm.SHA1).run(INSTALL, Set.of(corpus.rootArtifact()));
+
+            assertThat(result.success).isTrue();
+            assertThat(result.artifacts).isEqualTo(LIBRARIES);
+            assertThat(result.metrics.injectedErrors).isPositive();
+            assertThat(result.metrics.repeatedPaths).hasSize((int) result.metrics.injectedErrors);
+        }
+    }
+
+    private MockMavenRepository start(double errorRate) throws IOException {
+        return MockMavenRepository.start(repositoryDir,
+                new MockMavenRepository.Settings(LATENCY, 0L, errorRate, 42L));
+    }
+
+    private ResolutionBenchmark benchmark(MockMavenRepository repository, ChecksumAlgorithm checksumAlgorithm) {
+        return new ResolutionBenchmark(log, repository, HttpClient.Version.HTTP_1_1, checksumAlgorithm, tempDir);
+    }
+
+    private static void deleteAll(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static void assertFasterThanSerial(ResolutionBenchmark.Result result) {
+        var serialDuration = LATENCY.multipliedBy(result.metrics.requests);
+        assertThat(result.duration).isLessThan(serialDuration.dividedBy(2));
+    }
+}
@@ -0,0 +1,217 @@
+package benchmark;
+
+import jbuild.artifact.Artifact;
+import jbuild.util.ChecksumAlgorithm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static jbuild.maven.MavenUtils.standardArtifactPath;
+
+/**
+ * Generator of a synthetic Maven repository, shaped like the dependency graphs of real projects.
+ * <p>
+ * The corpus consists of:
+ * <ul>
+ *     <li>a chain of parent POMs, the top-most of which imports a BOM.</li>
+ *     <li>a BOM managing the versions of all libraries.</li>
+ *     <li>libraries whose parent is the bottom-most parent POM. Library {@code i} depends on libraries
+ *     {@code 2i + 1} and {@code 2i + 2}, so that all libraries are reachable from the first one and form
+ *     a balanced binary tree, plus on a number of randomly chosen libraries from deeper levels of the tree
+ *     (so the longest dependency chain is always as long as the tree is deep). Dependencies do not declare
+ *     versions, which must be obtained from the BOM.</li>
+ * </ul>
+ * Every file is accompanied by its SHA-1 checksum, and every artifact by its {@code maven-metadata.xml}.
+ * <p>
+ * The same parameters always generate exactly the same corpus.
+ */
+public final class SyntheticCorpus {
+
+    public static final String GROUP_ID = "bench";
+    public static final String VERSION = "1.0";
+
+    private final int libraries;
+    private final int extraDependencies;
+    private final int parentDepth;
+    private final int jarSize;
+    private final long seed;
+
+    /**
+     * Create a corpus.
+     *
+     * @param libraries         number of libraries
+     * @param extraDependencies maximum number of random dependencies of each library
+     * @param parentDepth       number of parent POMs in the chain of each library
+     * @param jarSize           size of each library jar in bytes
+     * @param seed              seed for the random dependencies and jar contents
+     */
+    public SyntheticCorpus(int libraries, int extraDependencies, int parentDepth, int jarSize, long seed) {
+        if (libraries < 1) {
+            throw new IllegalArgumentException("libraries must be at least 1, not " + libraries);
+        }
+        this.libraries = libraries;
+        this.extraDependencies = extraDependencies;
+        this.parentDepth = parentDepth;
+        this.jarSize = jarSize;
+        this.seed = seed;
+    }
+
+    /**
+     * @return the library whose dependency tree includes all other libraries
+     */
+    public Artifact rootArtifact() {
+        return library(0);
+    }
+
+    /**
+     * @return the jars of all libraries
+     */
+    public Set<Artifact> libraryJars() {
+        var result = new LinkedHashSet<Artifact>(libraries);
+        for (int i = 0; i < libraries; i++) {
+            result.add(library(i));
+        }
+        return result;
+    }
+
+    /**
+     * Write the corpus to a directory, using the standard Maven repository layout.
+     *
+     * @param root directory to write the repository into
+     * @throws IOException if the files cannot be written
+     */
+    public void writeTo(Path root) throws IOException {
+        var random = new Random(seed);
+        for (int i = 0; i < parentDepth; i++) {
+            write(root, parent(i).pom(), parentPom(i).getBytes(UTF_8));
+        }
+        write(root, bom().pom(), bomPom().getBytes(UTF_8));
+        for (int i = 0; i < libraries; i++) {
+            write(root, library(i).pom(), libraryPom(i, random).getBytes(UTF_8));
+            var jar = new byte[jarSize];
+            random.nextBytes(jar);
+            write(root, library(i), jar);
+        }
+    }
+
+    private static Artifact parent(int index) {
+        return new Artifact(GROUP_ID, "parent-" + index, VERSION);
+    }
+
+    private static Artifact bom() {
+        return new Artifact(GROUP_ID, "bom", VERSION);
+    }
+
+    private static Artifact library(int index) {
+        return new Artifact(GROUP_ID, "lib-" + index, VERSION, "jar");
+    }
+
+    private String parentPom(int index) {
+        var pom = new StringBuilder(512);
+        startProject(pom, index == 0 ? null : parent(index - 1), parent(index), "pom");
+        if (index == 0) {
+            pom.append("  <dependencyManagement><dependencies>\n");
+            appendDependency(pom, bom(), true);
+            pom.append("  </dependencies></dependencyManagement>\n");
+        }
+        return pom.append("</project>\n").toString();
+    }
+
+    private String bomPom() {
+        var pom = new StringBuilder(256 + libraries * 128);
+        startProject(pom, null, bom(), "pom");
+        pom.append("  <dependencyManagement><dependencies>\n");
+        for (int i = 0; i < libraries; i++) {
+            appendDependency(pom, library(i), false);
+        }
+        pom.append("  </dependencies></dependencyManagement>\n");
+        return pom.append("</project>\n").toString();
+    }
+
+    private String libraryPom(int index, Random random) {
+        var pom = new StringBuilder(512);
+        startProject(pom, parentDepth == 0 ? null : parent(parentDepth - 1), library(index), "jar");
+        var dependencies = new LinkedHashSet<Integer>();
+        for (var child : List.of(2 * index + 1, 2 * index + 2)) {
+            if (child < libraries) dependencies.add(child);
+        }
+        var nextLevelStart = (1 << (levelOf(index) + 1)) - 1;
+        var candidates = libraries - nextLevelStart;
+        for (int i = 0; i < extraDependencies && candidates > 0; i++) {
+            dependencies.add(nextLevelStart + random.nextInt(candidates));
+        }
+        if (!dependencies.isEmpty()) {
+            pom.append("  <dependencies>\n");
+            for (var dependency : dependencies) {
+                pom.append("    <dependency><groupId>").append(GROUP_ID)
+                        .append("</groupId><artifactId>").append(library(dependency).artifactId)
+                        .append("</artifactId></dependency>\n");
+            }
+            pom.append("  </dependencies>\n");
+        }
+        return pom.append("</project>\n").toString();
+    }
+
+    // the level of a library in the binary tree formed by the libraries, starting from 0
+    private static int levelOf(int index) {
+        return 31 - Integer.numberOfLeadingZeros(index + 1);
+    }
+
+    private static void startProject(StringBuilder pom, Artifact parent, Artifact artifact, String packaging) {
+        pom.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+                .append("  <modelVersion>4.0.0</modelVersion>\n");
+        if (parent != null) {
+            pom.append("  <parent><groupId>").append(parent.groupId)
+                    .append("</groupId><artifactId>").append(parent.artifactId)
+                    .append("</artifactId><version>").append(parent.version)
+                    .append("</version></parent>\n");
+        }
+        pom.append("  <groupId>").append(artifact.groupId).append("</groupId>\n")
+                .append("  <artifactId>").append(artifact.artifactId).append("</artifactId>\n")
+                .append("  <version>").append(artifact.version).append("</version>\n")
+                .append("  <packaging>").append(packaging).append("</packaging>\n");
+    }
+
+    private static void appendDependency(StringBuilder pom, Artifact artifact, boolean isImport) {
+        pom.append("    <dependency><groupId>").append(artifact.groupId)
+                .append("</groupId><artifactId>").append(artifact.artifactId)
+                .append("</artifactId><version>").append(artifact.version).append("</version>");
+        if (isImport) {
+            pom.append("<type>pom</type><scope>import</scope>");
+        }
+        pom.append("</dependency>\n");
+    }
+
+    private static void write(Path root, Artifact artifact, byte[] contents) throws IOException {
+        var file = root.resolve(standardArtifactPath(artifact, true));
+        Files.createDirectories(file.getParent());
+        Files.write(file, contents);
+        var sha1 = ChecksumAlgorithm.SHA1.toHexString(ChecksumAlgorithm.SHA1.digest(contents));
+        Files.writeString(file.resolveSibling(file.getFileName() + ".sha1"), sha1, UTF_8);
+        writeMetadata(file.getParent().getParent(), artifact);
+    }
+
+    private static void writeMetadata(Path artifactDir, Artifact artifact) throws IOException {
+        var file = artifactDir.resolve("maven-metadata.xml");
+        if (Files.exists(file)) return;
+        var metadata = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<metadata>\n" +
+                "  <groupId>" + artifact.groupId + "</groupId>\n" +
+                "  <artifactId>" + artifact.artifactId + "</artifactId>\n" +
+                "  <versioning>\n" +
+                "    <latest>" + artifact.version + "</latest>\n" +
+                "    <release>" + artifact.version + "</release>\n" +
+                "    <versions><version>" + artifact.version + "</version></versions>\n" +
+                "    <lastUpdated>20240101000000</lastUpdated>\n" +
+                "  </versioning>\n" +
+                "</metadata>\n";
+        Files.writeString(file, metadata, UTF_8);
+    }
+}
@@ -2,10 +2,14 @@ package jbuild.artifact;
 
 import jbuild.api.JBuildException;
 import jbuild.maven.DependencyType;
+import jbuild.util.ChecksumAlgorithm;
 import jbuild.util.WritableXml;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import java.util.Objects;
+import java.util.Optional;
+
 import static jbuild.api.JBuildException.ErrorCause.USER_INPUT;
 import static jbuild.util.TextUtils.firstNonBlank;
 import static jbuild.util.TextUtils.requireNonBlank;
@@ -19,15 +23,39 @@ public class Artifact implements WritableXml {
     public final String extension;
     public final String classifier;
 
-    private final String coordinates;
+    private final int hashCode;
+
+    // whether the components of this artifact (and of artifacts derived from it) are in the CoordinatePool
+    private final boolean interned;
+
+    // artifacts are immutable, so racing to initialize these fields is harmless
+    private String coordinates;
+    private Artifact pomArtifact;
 
     public Artifact(String groupId, String artifactId, String version, String extension, String classifier) {
-        this.groupId = groupId;
-        this.artifactId = artifactId;
-        this.version = version;
-        this.extension = selectExtension(trimStart(extension, '.'), classifier);
-        this.classifier = classifier;
-        this.coordinates = groupId + ':' + artifactId + ':' + version;
+        this(groupId, artifactId, version, extension, classifier, true);
+    }
+
+    private Artifact(String groupId, String artifactId, String version, String extension, String classifier,
+                     boolean interned) {
+        this.interned = interned;
+        this.groupId = pooled(groupId);
+        this.artifactId = pooled(artifactId);
+        this.version = pooled(version);
+        this.extension = pooled(selectExtension(trimStart(extension, '.'), classifier));
+        this.classifier = pooled(classifier);
+        this.hashCode = computeHashCode();
+    }
+
+    // copies the components that did not change from the base artifact, which are already pooled if needed
+    private Artifact(Artifact base, String version, String extension, String classifier) {
+        this.interned = base.interned;
+        this.groupId = base.groupId;
+        this.artifactId = base.artifactId;
+        this.version = version.equals(base.version) ? base.version : pooled(version);
+        this.extension = extension.equals(base.extension) ? base.extension : pooled(extension);
+        this.classifier = classifier.equals(base.classifier) ? base.classifier : pooled(classifier);
+        this.hashCode = computeHashCode();
     }
 
     public Artifact(String groupId, String artifactId, String version) {
@@ -42,16 +70,35 @@ public class Artifact implements WritableXml {
         this(groupId, artifactId, "", "", "");
     }
 
+    /**
+     * Create an artifact whose coordinates are not added to the {@link CoordinatePool}, nor are those of
+     * artifacts derived from it.
+     * <p>
+     * This should be used for artifacts created from untrusted input (e.g. paths requested from a server),
+     * as the pool would otherwise keep every distinct value ever requested.
+     *
+     * @return the artifact
+     */
+    public static Artifact uninterned(String groupId, String artifactId, String version,
+                                      String extension, String classifier) {
+        return new Artifact(groupId, artifactId, version, extension, classifier, false);
+    }
+
     public Artifact mergeWith(Artifact other) {
         return new Artifact(firstNonBlank(groupId, other.groupId),
                 firstNonBlank(artifactId, other.artifactId),
                 firstNonBlank(version, other.version),
                 firstNonBlank(extension, other.extension),
-                firstNonBlank(classifier, other.classifier));
+                firstNonBlank(classifier, other.classifier),
+                interned && other.interned);
     }
 
     public Artifact pom() {
-        return withExtension("pom");
+        var result = pomArtifact;
+        if (result == null) {
+            pomArtifact = result = withExtension("pom");
+        }
+        return result;
     }
 
     public Artifact jar() {
@@ -59,19 +106,12 @@ public class Artifact implements WritableXml {
     }
 
     public Artifact sha1() {
-        if (extension.isBlank() || "sha1".equals(extension)) {
-            return withExtension("sha1");
-        } else if (!extension.endsWith(".sha1")) {
-            return withExtension(extension + ".sha1");
-        }
-        return this;
+        return checksum(ChecksumAlgorithm.SHA1);
     }
 
     public Artifact noSha1() {
         if (isSha1()) {
-            assert extension.equals("sha1") || extension.endsWith(".sha1");
-            var ext = "sha1".equals(extension) ? "" : extension.substring(0, extension.length() - ".sha1".length());
-            return withExtension(ext);
+            return noChecksum();
         }
         return this;
     }
@@ -80,6 +120,47 @@ public class Artifact implements WritableXml {
         return extension.endsWith("sha1");
     }
 
+    /**
+     * @param algorithm checksum algorithm
+     * @return the checksum artifact for this artifact (e.g. {@code jar.sha256} for a jar).
+     * If this artifact is already a checksum artifact with the same algorithm, {@code this} is returned.
+     */
+    public Artifact checksum(ChecksumAlgorithm algorithm) {
+        var checksumExtension = algorithm.extension;
+        if (extension.isBlank() || checksumExtension.equals(extension)) {
+            return withExtension(checksumExtension);
+        } else if (!extension.endsWith("." + checksumExtension)) {
+            return withExtension(extension + "." + checksumExtension);
+        }
+        return this;
+    }
+
+    /**
+     * @return this artifact without the checksum extension if this is a checksum artifact,
+     * or {@code this} otherwise.
+     */
+    public Artifact noChecksum() {
+        return getChecksumAlgorithm().map(algorithm -> {
+            var checksumExtension = algorithm.extension;
+            var ext = checksumExtension.equals(extension)
+                    ? ""
+                    : extension.substring(0, extension.length() - checksumExtension.length() - 1);
+            return withExtension(ext);
+        }).orElse(this);
+    }
+
+    /**
+     * @return the checksum algorithm of this artifact if this is a checksum artifact, empty otherwise.
+     */
+    public Optional<ChecksumAlgorithm> getChecksumAlgorithm() {
+        var dotIndex = extension.lastIndexOf('.');
+        return ChecksumAlgorithm.fromExtension(dotIndex < 0 ? extension : extension.substring(dotIndex + 1));
+    }
+
+    public boolean isChecksum() {
+        return getChecksumAlgorithm().isPresent();
+    }
+
     public boolean isPom() {
         return extension.endsWith("pom");
     }
@@ -89,14 +170,14 @@ public class Artifact implements WritableXml {
      * For the Maven metadata, only the groupId and artifactId matter.
      */
     public Artifact forMetadata() {
-        return new Artifact(groupId, artifactId);
+        return new Artifact(groupId, artifactId, "", "", "", interned);
     }
 
     public Artifact withExtension(String ext) {
         if (ext.equals(extension)) {
             return this;
         }
-        return new Artifact(groupId, artifactId, version, ext, classifier);
+        return new Artifact(this, version, selectExtension(trimStart(ext, '.'), classifier), classifier);
     }
 
     public Artifact withVersion(Version ver) {
@@ -104,14 +185,14 @@ public class Artifact implements WritableXml {
         if (verString.equals(version)) {
             return this;
         }
-        return new Artifact(groupId, artifactId, verString, extension, classifier);
+        return new Artifact(this, verString, extension, classifier);
     }
 
     public Artifact withClassifier(String newClassifier) {
         if (classifier.equals(newClassifier)) {
             return this;
         }
-        return new Artifact(groupId, artifactId, version, extension, newClassifier);
+        return new Artifact(this, version, extension, newClassifier);
     }
 
     public static Artifact parseCoordinates(String artifact) {
@@ -152,7 +233,11 @@ public class Artifact implements WritableXml {
     }
 
     public String getCoordinates() {
-        return coordinates;
+        var result = coordinates;
+        if (result == null) {
+            coordinates = result = groupId + ':' + artifactId + ':' + version;
+        }
+        return result;
     }
 
     @Override
@@ -162,6 +247,7 @@ public class Artifact implements WritableXml {
 
         Artifact artifact = (Artifact) o;
 
+        if (hashCode != artifact.hashCode) return false;
         if (!groupId.equals(artifact.groupId)) return false;
         if (!artifactId.equals(artifact.artifactId)) return false;
         if (!version.equals(artifact.version)) return false;
@@ -171,11 +257,15 @@ public class Artifact implements WritableXml {
 
     @Override
     public int hashCode() {
-        int result = groupId.hashCode();
-        result = 31 * result + artifactId.hashCode();
-        result = 31 * result + version.hashCode();
-        result = 31 * result + classifier.hashCode();
-        result = 31 * result + extension.hashCode();
+        return hashCode;
+    }
+
+    private int computeHashCode() {
+        int result = Objects.hashCode(groupId);
+        result = 31 * result + Objects.hashCode(artifactId);
+        result = 31 * result + Objects.hashCode(version);
+        result = 31 * result + Objects.hashCode(classifier);
+        result = 31 * result + Objects.hashCode(extension);
         return result;
     }
 
@@ -194,6 +284,10 @@ public class Artifact implements WritableXml {
         }
     }
 
+    private String pooled(String value) {
+        return interned ? CoordinatePool.intern(value) : value;
+    }
+
     private static String selectExtension(String selectedExtension, String classifier) {
         if (selectedExtension.isBlank()) {
             return DependencyType.fromClassifier(classifier).getExtension();
@@ -0,0 +1,50 @@
+package jbuild.artifact;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonicalizing pool for the components of artifact coordinates.
+ * <p>
+ * A large resolution creates many artifacts that share the same groupId, artifactId, version and so on.
+ * Interning those Strings means that equal components are normally the same instance, so that comparing
+ * them is an identity check and their hash codes, which are cached by {@link String}, are only computed once.
+ * <p>
+ * The pool is never cleared, so it is bounded: once it is full, new values are returned as they are, which only
+ * means that they are not shared. Artifacts created from untrusted input should not be interned at all
+ * (see {@link Artifact#uninterned(String, String, String, String, String)}).
+ */
+public final class CoordinatePool {
+
+    /**
+     * Maximum number of Strings in the pool, far more than the distinct coordinate components of
+     * even the largest dependency graphs.
+     */
+    public static final int MAX_SIZE = 1 << 16;
+
+    private static final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>(1024);
+
+    private CoordinatePool() {
+    }
+
+    /**
+     * @param value to intern (may be null)
+     * @return the canonical instance of the given value, or the value itself if it is not in the pool and the
+     * pool is full
+     */
+    public static String intern(String value) {
+        if (value == null) return null;
+        if (pool.size() >= MAX_SIZE) {
+            var existing = pool.get(value);
+            return existing == null ? value : existing;
+        }
+        var existing = pool.putIfAbsent(value, value);
+        return existing == null ? value : existing;
+    }
+
+    /**
+     * @return the number of Strings in the pool
+     */
+    public static int size() {
+        return pool.size();
+    }
+}
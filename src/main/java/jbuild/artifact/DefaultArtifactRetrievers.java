@@ -3,13 +3,71 @@ package jbuild.artifact;
 import jbuild.artifact.file.FileArtifactRetriever;
 import jbuild.artifact.http.HttpArtifactRetriever;
 import jbuild.log.JBuildLog;
+import jbuild.maven.MavenUtils;
+import jbuild.util.ChecksumAlgorithm;
+import jbuild.util.Env;
 import jbuild.util.NonEmptyCollection;
 
+import java.util.Set;
+
 public final class DefaultArtifactRetrievers {
 
+    /**
+     * Get the default retrievers, which use the network unless the {@code OFFLINE} environment variable
+     * is set to {@code true}.
+     *
+     * @param log logger
+     * @return the default retrievers
+     */
     public static NonEmptyCollection<? extends ArtifactRetriever<?>> get(JBuildLog log) {
+        return get(log, Env.OFFLINE);
+    }
+
+    /**
+     * Get the default retrievers.
+     *
+     * @param log     logger
+     * @param offline whether to only use the local Maven repository
+     * @return the default retrievers
+     */
+    public static NonEmptyCollection<? extends ArtifactRetriever<?>> get(JBuildLog log, boolean offline) {
+        return get(log, offline, Set.of());
+    }
+
+    /**
+     * Get the default retrievers.
+     *
+     * @param log                logger
+     * @param offline            whether to only use the local Maven repository
+     * @param checksumAlgorithms algorithms of the checksums to compute while artifacts are downloaded
+     *                           (see {@link HttpArtifactRetriever})
+     * @return the default retrievers
+     */
+    public static NonEmptyCollection<? extends ArtifactRetriever<?>> get(JBuildLog log,
+                                                                         boolean offline,
+                                                                         Set<ChecksumAlgorithm> checksumAlgorithms) {
+        return get(log, offline, checksumAlgorithms, true);
+    }
+
+    /**
+     * Get the default retrievers.
+     *
+     * @param log                logger
+     * @param offline            whether to only use the local Maven repository
+     * @param checksumAlgorithms algorithms of the checksums to compute while artifacts are downloaded
+     *                           (see {@link HttpArtifactRetriever})
+     * @param cacheResults       whether HTTP retrievers should cache resolved artifacts and metadata
+     * @return the default retrievers
+     */
+    public static NonEmptyCollection<? extends ArtifactRetriever<?>> get(JBuildLog log,
+                                                                         boolean offline,
+                                                                         Set<ChecksumAlgorithm> checksumAlgorithms,
+                                                                         boolean cacheResults) {
+        if (offline) {
+            return NonEmptyCollection.of(new FileArtifactRetriever());
+        }
         return NonEmptyCollection.of(
                 NonEmptyCollection.of(new FileArtifactRetriever()),
-                new HttpArtifactRetriever(log));
+                new HttpArtifactRetriever(log, MavenUtils.MAVEN_CENTRAL_URL, checksumAlgorithms, cacheResults));
     }
 }
@@ -0,0 +1,123 @@
+package jbuild.artifact;
+
+import jbuild.errors.ArtifactRetrievalError;
+import jbuild.util.Either;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Retriever used in offline mode, which wraps a local retriever and records the artifacts it cannot find.
+ * <p>
+ * Only retrievers for which {@link ArtifactRetriever#isLocalFileRetriever()} returns true can be wrapped,
+ * which guarantees that no network access is made to resolve artifacts.
+ * <p>
+ * All offline retrievers used together should share the same {@link MissingArtifacts}, so that it can
+ * report which artifacts could not be found in any of them.
+ *
+ * @param <Err> type of error in case an artifact cannot be retrieved
+ */
+public final class OfflineArtifactRetriever<Err extends ArtifactRetrievalError> implements ArtifactRetriever<Err> {
+
+    private final ArtifactRetriever<Err> delegate;
+    private final MissingArtifacts missingArtifacts;
+
+    public OfflineArtifactRetriever(ArtifactRetriever<Err> delegate, MissingArtifacts missingArtifacts) {
+        if (!delegate.isLocalFileRetriever()) {
+            throw new IllegalArgumentException("Not a local retriever: " + delegate.getDescription());
+        }
+        this.delegate = delegate;
+        this.missingArtifacts = missingArtifacts;
+        missingArtifacts.addRepository(delegate.getDescription());
+    }
+
+    @Override
+    public String getDescription() {
+        return delegate.getDescription();
+    }
+
+    @Override
+    public CompletionStage<ArtifactResolution<Err>> retrieve(Artifact artifact) {
+        return delegate.retrieve(artifact).thenApply(resolution -> {
+            resolution.value.use(ok -> {
+            }, err -> missingArtifacts.record(describe(artifact), delegate.getDescription()));
+            return resolution;
+        });
+    }
+
+    @Override
+    public CompletionStage<Either<? extends ArtifactMetadata, Err>> retrieveMetadata(Artifact artifact) {
+        return delegate.retrieveMetadata(artifact).thenApply(result -> {
+            result.use(ok -> {
+            }, err -> missingArtifacts.record(artifact.groupId + ":" + artifact.artifactId + " (metadata)",
+                    delegate.getDescription()));
+            return result;
+        });
+    }
+
+    @Override
+    public boolean isLocalFileRetriever() {
+        return true;
+    }
+
+    @Override
+    public File computeFileLocation(ResolvedArtifact resolvedArtifact) {
+        return delegate.computeFileLocation(resolvedArtifact);
+    }
+
+    private static String describe(Artifact artifact) {
+        return artifact.getCoordinates() +
+                (artifact.classifier.isBlank() ? "" : ":" + artifact.classifier) +
+                " (" + artifact.extension + ")";
+    }
+
+    /**
+     * Record of the artifacts that offline retrievers could not find.
+     * <p>
+     * This class is thread-safe.
+     */
+    public static final class MissingArtifacts {
+
+        private final Set<String> repositories = ConcurrentHashMap.newKeySet();
+        private final Map<String, Set<String>> repositoriesByArtifact = new ConcurrentHashMap<>();
+
+        void addRepository(String repository) {
+            repositories.add(repository);
+        }
+
+        void record(String artifact, String repository) {
+            repositoriesByArtifact.computeIfAbsent(artifact, ignore -> ConcurrentHashMap.newKeySet()).add(repository);
+        }
+
+        /**
+         * @return the repositories searched by the offline retrievers
+         */
+        public Set<String> getRepositories() {
+            return Set.copyOf(repositories);
+        }
+
+        /**
+         * Get the artifacts which were not found in any repository.
+         * <p>
+         * Artifacts found in at least one repository are not included, even if other repositories
+         * did not have them.
+         *
+         * @return descriptions of the missing artifacts, sorted alphabetically
+         */
+        public List<String> getMissing() {
+            var result = new ArrayList<String>();
+            var allRepositories = new HashSet<>(repositories);
+            repositoriesByArtifact.forEach((artifact, repos) -> {
+                if (repos.containsAll(allRepositories)) result.add(artifact);
+            });
+            result.sort(null);
+            return result;
+        }
+    }
+}
@@ -1,10 +1,22 @@
 package jbuild.artifact;
 
+import jbuild.api.JBuildException;
+import jbuild.util.ChecksumAlgorithm;
+import jbuild.util.ChecksumComputer;
+import jbuild.util.Checksums;
+
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Optional;
+
+import static jbuild.api.JBuildException.ErrorCause.IO_READ;
 
 /**
  * Resolved artifact.
@@ -18,24 +30,93 @@ import java.time.Instant;
  * <p>
  * To read the contents more than once, the {@link ResolvedArtifact#getContents()} getter may be used,
  * but that's only advisable in case it is known that another artifact handler will later consume it.
+ * <p>
+ * Artifacts resolved from the local file system may be backed by a file instead of in-memory contents.
+ * In that case, the contents are only loaded into memory if {@link ResolvedArtifact#getContents()} is called,
+ * and {@link ResolvedArtifact#writeTo(Path, boolean)} copies the file without ever reading it into the heap.
+ * <p>
+ * Retrievers normally compute the checksums of an artifact's contents while the contents are being read,
+ * so that verifying an artifact's checksum does not require its contents to be kept around after they are
+ * consumed. See {@link ResolvedArtifact#getChecksum(ChecksumAlgorithm)}.
  */
 public final class ResolvedArtifact {
 
     private byte[] contents;
+    private boolean consumed;
+    private final Path file;
+    private final boolean temporaryFile;
     public final long contentLength;
     public final Artifact artifact;
     public final ArtifactRetriever<?> retriever;
     public final long requestTime;
+    private Checksums checksums;
 
     public ResolvedArtifact(byte[] contents,
                             Artifact artifact,
                             ArtifactRetriever<?> retriever,
-                            long requestTime) {
+                            long requestTime,
+                            Checksums checksums) {
         this.contents = contents;
+        this.file = null;
+        this.temporaryFile = false;
         this.contentLength = contents.length;
         this.artifact = artifact;
         this.retriever = retriever;
         this.requestTime = requestTime;
+        this.checksums = checksums;
+    }
+
+    public ResolvedArtifact(byte[] contents,
+                            Artifact artifact,
+                            ArtifactRetriever<?> retriever,
+                            long requestTime) {
+        this(contents, artifact, retriever, requestTime, Checksums.NONE);
+    }
+
+    /**
+     * Create a resolved artifact backed by a file.
+     *
+     * @param file          the file containing the artifact's contents
+     * @param contentLength length of the file
+     * @param artifact      the artifact
+     * @param retriever     the retriever that resolved the artifact
+     * @param requestTime   time the artifact was requested
+     */
+    public ResolvedArtifact(Path file,
+                            long contentLength,
+                            Artifact artifact,
+                            ArtifactRetriever<?> retriever,
+                            long requestTime) {
+        this(file, contentLength, artifact, retriever, requestTime, Checksums.NONE, false);
+    }
+
+    /**
+     * Create a resolved artifact backed by a file.
+     *
+     * @param file          the file containing the artifact's contents
+     * @param contentLength length of the file
+     * @param artifact      the artifact
+     * @param retriever     the retriever that resolved the artifact
+     * @param requestTime   time the artifact was requested
+     * @param checksums     checksums of the file computed by the retriever
+     * @param temporaryFile whether the file is owned by this artifact, in which case it is deleted
+     *                      when the contents of this artifact are consumed
+     */
+    public ResolvedArtifact(Path file,
+                            long contentLength,
+                            Artifact artifact,
+                            ArtifactRetriever<?> retriever,
+                            long requestTime,
+                            Checksums checksums,
+                            boolean temporaryFile) {
+        this.contents = null;
+        this.file = file;
+        this.temporaryFile = temporaryFile;
+        this.contentLength = contentLength;
+        this.artifact = artifact;
+        this.retriever = retriever;
+        this.requestTime = requestTime;
+        this.checksums = checksums;
     }
 
     @Override
@@ -45,20 +126,92 @@ public final class ResolvedArtifact {
                 ", artifact=" + artifact +
                 ", retriever=" + retriever.getDescription() +
                 ", requestedAt=" + Instant.ofEpochMilli(requestTime) +
+                (file == null ? "" : ", file=" + file) +
                 '}';
     }
 
+    /**
+     * @return the file backing this artifact, if any.
+     */
+    public Optional<Path> getFile() {
+        return Optional.ofNullable(file);
+    }
+
+    /**
+     * Get the checksum of this artifact's contents.
+     * <p>
+     * If the retriever did not compute the checksum while reading the contents, the checksum is computed
+     * from the contents, which requires that they have not been consumed yet unless this artifact is
+     * backed by a file, in which case the file is streamed through the digest.
+     *
+     * @param algorithm checksum algorithm
+     * @return the checksum of the contents of this artifact
+     * @throws IllegalStateException if the checksum is not available and the contents have been consumed
+     */
+    public synchronized byte[] getChecksum(ChecksumAlgorithm algorithm) {
+        var checksum = checksums.get(algorithm);
+        if (checksum.isPresent()) {
+            return checksum.get();
+        }
+        byte[] digest;
+        var c = contents;
+        if (c == null && file != null && !(consumed && temporaryFile)) {
+            try {
+                digest = ChecksumComputer.compute(file, EnumSet.of(algorithm)).get(algorithm).orElseThrow();
+            } catch (IOException e) {
+                throw new JBuildException("Unable to compute checksum of " + file + " due to " + e, IO_READ);
+            }
+        } else {
+            digest = algorithm.digest(getContents());
+        }
+        checksums = checksums.with(algorithm, digest);
+        return digest;
+    }
+
     /**
      * @return the resolved contents of this artifact.
      */
     public byte[] getContents() {
+        if (consumed) {
+            throw new IllegalStateException("artifact contents already consumed: " + artifact);
+        }
         var c = contents;
         if (c == null) {
-            throw new IllegalStateException("artifact contents already consumed: " + artifact);
+            try {
+                c = Files.readAllBytes(file);
+            } catch (IOException e) {
+                throw new JBuildException("Unable to read " + file + " due to " + e, IO_READ);
+            }
+            contents = c;
         }
         return c;
     }
 
+    /**
+     * Write the contents of this artifact to the given file, optionally consuming the contents.
+     * <p>
+     * If this artifact is backed by a file whose contents have not been loaded, the file is copied
+     * directly, without loading its contents into memory.
+     *
+     * @param target  the file to write to (replaced if it already exists)
+     * @param consume whether to consume the contents of this artifact
+     * @throws IOException if an error occurs while writing the artifact.
+     */
+    public void writeTo(Path target, boolean consume) throws IOException {
+        if (consumed) {
+            throw new IllegalStateException("artifact contents already consumed: " + artifact);
+        }
+        var c = contents;
+        if (c == null) {
+            Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.write(target, c);
+        }
+        if (consume) {
+            discardContents();
+        }
+    }
+
     /**
      * Consume the contents of this artifact.
      * <p>
@@ -69,9 +222,12 @@ public final class ResolvedArtifact {
      * @throws IOException if an error occurs while writing the artifact.
      */
     public void consumeContents(OutputStream writer) throws IOException {
-        var c = getContents();
-        writer.write(c);
-        contents = null;
+        if (contents == null && file != null && !consumed) {
+            Files.copy(file, writer);
+        } else {
+            writer.write(getContents());
+        }
+        discardContents();
     }
 
     /**
@@ -96,7 +252,25 @@ public final class ResolvedArtifact {
      */
     public byte[] consumeContentsToArray() {
         var c = getContents();
-        contents = null;
+        discardContents();
         return c;
     }
+
+    /**
+     * Consume the contents of this artifact without reading them.
+     * <p>
+     * After this method is called, the contents of this artifact will be "forgotten" and attempting
+     * to read its contents again will result in an {@link IllegalStateException} being thrown.
+     */
+    public void discardContents() {
+        contents = null;
+        consumed = true;
+        if (temporaryFile) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // the file is in a temporary location anyway
+            }
+        }
+    }
 }
@@ -0,0 +1,273 @@
+package jbuild.artifact.file;
+
+import jbuild.artifact.ResolvedArtifact;
+import jbuild.util.ChecksumAlgorithm;
+import jbuild.util.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Size-bounded cache of artifact files, addressed by their path in a Maven repository.
+ * <p>
+ * The contents of the files are kept in a {@link ContentAddressableStore}, so identical files stored under
+ * different paths use disk space only once. For each path, a small record containing the checksum of its
+ * contents is stored in a separate directory mirroring the repository layout, which allows the cache to be
+ * restored after a restart (see {@link ArtifactCache#load()}).
+ * <p>
+ * When the total size of the stored contents exceeds the maximum size, the least recently used paths are evicted,
+ * and contents no longer referenced by any path are deleted from the store.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class ArtifactCache {
+
+    private static final ChecksumAlgorithm ALGORITHM = ChecksumAlgorithm.SHA256;
+
+    /**
+     * Statistics of a cache.
+     */
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final int entries;
+        public final long sizeInBytes;
+        public final long maxSizeInBytes;
+
+        public Stats(long hits, long misses, long evictions, int entries, long sizeInBytes, long maxSizeInBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.sizeInBytes = sizeInBytes;
+            this.maxSizeInBytes = maxSizeInBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "hits=" + hits +
+                    ", misses=" + misses +
+                    ", evictions=" + evictions +
+                    ", entries=" + entries +
+                    ", sizeInBytes=" + sizeInBytes +
+                    ", maxSizeInBytes=" + maxSizeInBytes +
+                    '}';
+        }
+    }
+
+    private static final class Blob {
+        final long size;
+        int references;
+
+        Blob(long size) {
+            this.size = size;
+        }
+    }
+
+    private final ContentAddressableStore store;
+    private final Path recordsDir;
+    private final long maxSizeInBytes;
+
+    // all fields below are guarded by this
+    private final LinkedHashMap<String, String> checksumByPath = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, Blob> blobs = new HashMap<>();
+    private long sizeInBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a cache.
+     *
+     * @param directory      directory where to store the cache
+     * @param maxSizeInBytes maximum total size of the cached files
+     */
+    public ArtifactCache(Path directory, long maxSizeInBytes) {
+        this.store = new ContentAddressableStore(directory.resolve("store"), false);
+        this.recordsDir = directory.resolve("paths");
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    /**
+     * Restore the cache entries stored in the cache directory, in the order they were last used.
+     *
+     * @throws IOException if the cache directory cannot be read
+     */
+    public void load() throws IOException {
+        if (!Files.isDirectory(recordsDir)) return;
+        ArrayList<Path> records;
+        try (Stream<Path> files = Files.walk(recordsDir)) {
+            records = files.filter(Files::isRegularFile)
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+        var lastUsed = new HashMap<Path, FileTime>(records.size());
+        for (var record : records) {
+            lastUsed.put(record, Files.getLastModifiedTime(record));
+        }
+        records.sort(Comparator.comparing(lastUsed::get));
+        synchronized (this) {
+            for (var record : records) {
+                var checksum = Files.readString(record, UTF_8).trim();
+                Path entry;
+                try {
+                    entry = entryOf(checksum);
+                } catch (IllegalArgumentException e) {
+                    entry = null;
+                }
+                if (entry == null || !Files.isRegularFile(entry)) {
+                    Files.deleteIfExists(record);
+                    continue;
+                }
+                var path = recordsDir.relativize(record).toString().replace('\\', '/');
+                addEntry(path, checksum, Files.size(entry));
+            }
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * Get the cached file for the given repository path.
+     *
+     * @param path of the file in a Maven repository
+     * @return the cached file, if any
+     */
+    public Optional<Path> get(String path) {
+        String checksum;
+        synchronized (this) {
+            checksum = checksumByPath.get(path);
+            if (checksum == null) {
+                misses++;
+                return Optional.empty();
+            }
+            hits++;
+        }
+        var entry = entryOf(checksum);
+        touch(recordOf(path));
+        return Optional.of(entry);
+    }
+
+    /**
+     * Get the cached file for the given repository path without counting a cache hit or miss.
+     *
+     * @param path of the file in a Maven repository
+     * @return the cached file, if any
+     */
+    public Optional<Path> peek(String path) {
+        String checksum;
+        synchronized (this) {
+            checksum = checksumByPath.get(path);
+        }
+        return checksum == null ? Optional.empty() : Optional.of(entryOf(checksum));
+    }
+
+    /**
+     * Cache the contents of the given artifact under the given repository path.
+     *
+     * @param path             of the file in a Maven repository
+     * @param resolvedArtifact whose contents should be cached (the contents are not consumed)
+     * @return the cached file
+     * @throws IOException if the file cannot be stored
+     */
+    public Path put(String path, ResolvedArtifact resolvedArtifact) throws IOException {
+        var entry = store.store(resolvedArtifact);
+        var checksum = ALGORITHM.toHexString(resolvedArtifact.getChecksum(ALGORITHM));
+        var record = recordOf(path);
+        Files.createDirectories(record.getParent());
+        FileUtils.writeAtomically(record, false, tempFile -> Files.writeString(tempFile, checksum, UTF_8));
+        synchronized (this) {
+            // the contents may have been evicted since they were stored
+            if (!Files.isRegularFile(entry)) {
+                store.store(resolvedArtifact);
+            }
+            var previous = checksumByPath.remove(path);
+            addEntry(path, checksum, Files.size(entry));
+            if (previous != null) {
+                release(previous);
+            }
+            evictIfNeeded();
+        }
+        return entry;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, checksumByPath.size(), sizeInBytes, maxSizeInBytes);
+    }
+
+    private void addEntry(String path, String checksum, long size) {
+        checksumByPath.put(path, checksum);
+        var blob = blobs.computeIfAbsent(checksum, ignore -> {
+            sizeInBytes += size;
+            return new Blob(size);
+        });
+        blob.references++;
+    }
+
+    private void evictIfNeeded() {
+        var iterator = checksumByPath.entrySet().iterator();
+        // always keep the most recently used entry, even if it alone exceeds the maximum size
+        while (sizeInBytes > maxSizeInBytes && checksumByPath.size() > 1 && iterator.hasNext()) {
+            var eldest = iterator.next();
+            iterator.remove();
+            evictions++;
+            deleteQuietly(recordOf(eldest.getKey()));
+            release(eldest.getValue());
+        }
+    }
+
+    private void release(String checksum) {
+        var blob = blobs.get(checksum);
+        if (blob == null || --blob.references > 0) return;
+        blobs.remove(checksum);
+        sizeInBytes -= blob.size;
+        deleteQuietly(entryOf(checksum));
+    }
+
+    private Path entryOf(String checksum) {
+        return store.pathOf(ALGORITHM.parseChecksumFile(checksum.getBytes(UTF_8)));
+    }
+
+    private Path recordOf(String path) {
+        return recordsDir.resolve(path);
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // only affects the order entries are restored in
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (NoSuchFileException e) {
+            // already deleted
+        } catch (IOException e) {
+            // the file will be overwritten or cleaned up later
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ArtifactCache{" +
+                "store=" + store.getRoot() +
+                ", maxSizeInBytes=" + maxSizeInBytes +
+                '}';
+    }
+}
@@ -6,26 +6,46 @@ import jbuild.artifact.ResolvedArtifact;
 import jbuild.artifact.ResolvedArtifactChecksum;
 import jbuild.commands.MavenPomRetriever;
 import jbuild.commands.MavenPomRetriever.DefaultPomCreator;
+import jbuild.log.RunStatistics;
 import jbuild.maven.MavenPom;
 import jbuild.util.AsyncUtils;
 import jbuild.util.Describable;
 import jbuild.util.Either;
+import jbuild.util.Env;
+import jbuild.util.FileUtils;
 
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import static java.util.concurrent.CompletableFuture.completedStage;
+import static jbuild.log.RunStatistics.WRITE_BYTES;
+import static jbuild.log.RunStatistics.WRITE_DUPLICATES;
+import static jbuild.log.RunStatistics.WRITE_ERRORS;
+import static jbuild.log.RunStatistics.WRITE_FILES;
+import static jbuild.log.RunStatistics.WRITE_MICROS;
 import static jbuild.maven.MavenUtils.standardArtifactPath;
 
+/**
+ * Writer of artifacts into a directory.
+ * <p>
+ * Artifacts are written in parallel by a pool of writer threads. Each file is always written by the same
+ * thread (writes are striped by destination path), and every file is first written to a temporary file
+ * which is then atomically renamed to its final location, so a crash never leaves partially written
+ * files behind.
+ * <p>
+ * The number of writer threads and whether files should be flushed to the storage device before
+ * being renamed can be configured via the {@code ARTIFACT_WRITER_THREADS} and {@code ARTIFACT_WRITER_FSYNC}
+ * environment variables.
+ */
 public class ArtifactFileWriter implements AutoCloseable, Closeable, MavenPomRetriever.PomCreator {
 
     public enum WriteMode {
@@ -35,25 +55,70 @@ public class ArtifactFileWriter implements AutoCloseable, Closeable, MavenPomRet
 
     private final File directory;
     public final WriteMode mode;
-    private final ExecutorService writerExecutor;
+    private final ExecutorService[] writerStripes;
+    private final ContentAddressableStore store;
+    private final boolean fsync;
 
     // keep track of written files to prevent writing files again and again
-    private final Set<String> writtenAbsolutePaths = new HashSet<>();
+    private final ConcurrentMap<String, CompletionStage<Either<List<File>, Describable>>> writesByAbsolutePath;
 
     protected ArtifactFileWriter(ArtifactFileWriter copy) {
         this.directory = copy.directory;
         this.mode = copy.mode;
-        this.writerExecutor = copy.writerExecutor;
+        this.writerStripes = copy.writerStripes;
+        this.store = copy.store;
+        this.fsync = copy.fsync;
+        this.writesByAbsolutePath = copy.writesByAbsolutePath;
     }
 
     public ArtifactFileWriter(File directory, WriteMode mode) {
+        this(directory, mode, null);
+    }
+
+    /**
+     * Create a writer of artifacts.
+     *
+     * @param directory where to write artifacts to
+     * @param mode      write mode
+     * @param store     if not null, artifacts are written into this store first, then linked from the
+     *                  store into the destination directory
+     */
+    public ArtifactFileWriter(File directory, WriteMode mode, ContentAddressableStore store) {
+        this(directory, mode, store, Env.ARTIFACT_WRITER_THREADS, Env.ARTIFACT_WRITER_FSYNC);
+    }
+
+    /**
+     * Create a writer of artifacts.
+     *
+     * @param directory where to write artifacts to
+     * @param mode      write mode
+     * @param store     if not null, artifacts are written into this store first, then linked from the
+     *                  store into the destination directory
+     * @param threads   number of writer threads
+     * @param fsync     whether to flush files to the storage device before making them visible
+     */
+    public ArtifactFileWriter(File directory,
+                              WriteMode mode,
+                              ContentAddressableStore store,
+                              int threads,
+                              boolean fsync) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1, not " + threads);
+        }
         this.directory = directory;
         this.mode = mode;
-        this.writerExecutor = Executors.newSingleThreadExecutor((runnable) -> {
-            var thread = new Thread(runnable, directory + "-output-writer");
-            thread.setDaemon(true);
-            return thread;
-        });
+        this.store = store;
+        this.fsync = fsync;
+        this.writesByAbsolutePath = new ConcurrentHashMap<>();
+        this.writerStripes = new ExecutorService[threads];
+        for (int i = 0; i < threads; i++) {
+            var threadName = directory + "-output-writer-" + i;
+            writerStripes[i] = Executors.newSingleThreadExecutor((runnable) -> {
+                var thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
     }
 
     public String getDestination() {
@@ -92,30 +157,80 @@ public class ArtifactFileWriter implements AutoCloseable, Closeable, MavenPomRet
                     Either.right(Describable.of("unable to create directory at " + file.getParent())));
         }
 
-        return AsyncUtils.getAsync(() -> {
-            if (!writtenAbsolutePaths.add(file.getAbsolutePath())) {
+        var path = file.getAbsolutePath();
+        var result = new CompletableFuture<Either<List<File>, Describable>>();
+        var previousWrite = writesByAbsolutePath.putIfAbsent(path, result);
+        if (previousWrite != null) {
+            RunStatistics.get().increment(WRITE_DUPLICATES);
+            return previousWrite.thenApply(previousResult -> {
                 if (consume) {
-                    resolvedArtifact.consumeContents();
+                    resolvedArtifact.discardContents();
                 }
-                return Either.left(List.of(file));
+                return previousResult;
+            });
+        }
+
+        var statistics = RunStatistics.get();
+        var contentLength = resolvedArtifact.contentLength;
+
+        AsyncUtils.getAsync(() -> {
+            var startTime = System.nanoTime();
+            var writeResult = store != null
+                    ? writeViaStore(resolvedArtifact, file, consume)
+                    : writeDirectly(resolvedArtifact, file, consume);
+            statistics.recordMicrosSince(WRITE_MICROS, startTime);
+            return writeResult;
+        }, stripeFor(path)).whenComplete((writeResult, error) -> {
+            if (error != null || writeResult.map(ok -> false, err -> true)) {
+                statistics.increment(WRITE_ERRORS);
+                // allow a later attempt to write the file again
+                writesByAbsolutePath.remove(path, result);
+            } else {
+                statistics.increment(WRITE_FILES);
+                statistics.add(WRITE_BYTES, contentLength);
             }
-            try (var out = new FileOutputStream(file)) {
-                try {
-                    if (consume) {
-                        resolvedArtifact.consumeContents(out);
-                    } else {
-                        out.write(resolvedArtifact.getContents());
-                    }
-                    return Either.left(List.of(file));
-                } catch (IOException e) {
-                    return Either.right(Describable.of(
-                            "unable to write to file " + file + " due to " + e));
-                }
-            } catch (IOException e) {
-                return Either.right(Describable.of(
-                        "unable to open file " + file + " for writing due to " + e));
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(writeResult);
+            }
+        });
+
+        return result;
+    }
+
+    private ExecutorService stripeFor(String path) {
+        return writerStripes[Math.floorMod(path.hashCode(), writerStripes.length)];
+    }
+
+    private Either<List<File>, Describable> writeDirectly(ResolvedArtifact resolvedArtifact,
+                                                          File file,
+                                                          boolean consume) {
+        try {
+            // file-backed artifacts are copied directly, without going through the heap
+            FileUtils.writeAtomically(file.toPath(), fsync,
+                    tempFile -> resolvedArtifact.writeTo(tempFile, consume));
+            return Either.left(List.of(file));
+        } catch (IOException e) {
+            return Either.right(Describable.of("unable to write to file " + file + " due to " + e));
+        }
+    }
+
+    private Either<List<File>, Describable> writeViaStore(ResolvedArtifact resolvedArtifact,
+                                                          File file,
+                                                          boolean consume) {
+        try {
+            var entry = store.store(resolvedArtifact);
+            store.materialize(entry, file.toPath());
+            return Either.left(List.of(file));
+        } catch (IOException e) {
+            return Either.right(Describable.of(
+                    "unable to write to file " + file + " via store at " + store.getRoot() + " due to " + e));
+        } finally {
+            if (consume) {
+                resolvedArtifact.discardContents();
             }
-        }, writerExecutor);
+        }
     }
 
     /**
@@ -126,6 +241,7 @@ public class ArtifactFileWriter implements AutoCloseable, Closeable, MavenPomRet
      */
     public boolean delete(Artifact artifact) {
         var file = computeFileLocation(artifact);
+        writesByAbsolutePath.remove(file.getAbsolutePath());
         return file.delete();
     }
 
@@ -154,9 +270,32 @@ public class ArtifactFileWriter implements AutoCloseable, Closeable, MavenPomRet
         return createPom(resolvedArtifact.artifact, consume);
     }
 
+    @Override
+    public CompletionStage<MavenPom> useCachedPom(ResolvedArtifactChecksum resolvedArtifact,
+                                                  MavenPom effectivePom) {
+        if (mode == WriteMode.FLAT_DIR) {
+            return MavenPomRetriever.PomCreator.super.useCachedPom(resolvedArtifact, effectivePom);
+        }
+        // the POM must still be written to the Maven repository even though it does not need to be parsed
+        var checksum = resolvedArtifact.checksum;
+        CompletionStage<Either<List<File>, Describable>> writeChecksum = checksum == null
+                ? completedStage(Either.left(List.of()))
+                : write(checksum, true);
+        return writeChecksum
+                .thenCompose(ignore -> write(resolvedArtifact.artifact, true))
+                .thenApply(ignore -> effectivePom);
+    }
+
+    @Override
+    public boolean requiresPomFiles() {
+        return mode == WriteMode.MAVEN_REPOSITORY;
+    }
+
     @Override
     public void close() {
-        writerExecutor.shutdownNow();
+        for (var stripe : writerStripes) {
+            stripe.shutdownNow();
+        }
     }
 
     private File computeFileLocation(Artifact artifact) {
@@ -177,6 +316,7 @@ public class ArtifactFileWriter implements AutoCloseable, Closeable, MavenPomRet
         return "ArtifactFileWriter{" +
                 "directory=" + directory +
                 ", mode=" + mode +
+                (store == null ? "" : ", store=" + store.getRoot()) +
                 '}';
     }
 }
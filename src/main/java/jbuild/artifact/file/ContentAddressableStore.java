@@ -0,0 +1,191 @@
+package jbuild.artifact.file;
+
+import jbuild.artifact.ResolvedArtifact;
+import jbuild.util.ChecksumAlgorithm;
+import jbuild.util.Env;
+import jbuild.util.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local store of artifact files, addressed by the SHA-256 checksum of their contents.
+ * <p>
+ * Each distinct artifact is written to the store only once. Destination directories are then populated
+ * by creating hard links to the stored file, so that installing the same artifacts into many directories
+ * uses disk space only once. If the file system does not support hard links between the store and
+ * a destination (e.g. they are in different volumes), the stored file is copied instead.
+ * <p>
+ * Files materialized from the store may be shared by several directories, hence they should never be
+ * modified in place.
+ * <p>
+ * As an existing entry is reused without reading it, entries are always flushed to the storage device before
+ * being made visible, and an existing entry whose size does not match the expected contents (e.g. left behind
+ * by a crash on a system that does not order writes and renames) is written again.
+ */
+public final class ContentAddressableStore {
+
+    public static final ChecksumAlgorithm CHECKSUM_ALGORITHM = ChecksumAlgorithm.SHA256;
+
+    private final Path root;
+    private final boolean fsync;
+
+    // remember file stores where links cannot be created to avoid trying again and again
+    private final Map<FileStore, Boolean> linkSupportByFileStore = new ConcurrentHashMap<>();
+
+    public ContentAddressableStore(Path root) {
+        this(root, Env.ARTIFACT_WRITER_FSYNC);
+    }
+
+    /**
+     * Create a store.
+     *
+     * @param root  root directory of the store
+     * @param fsync whether to flush copies of entries to the storage device before making them visible
+     *              (entries themselves are always flushed)
+     */
+    public ContentAddressableStore(Path root, boolean fsync) {
+        this.root = root;
+        this.fsync = fsync;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Compute the location of an entry in the store.
+     *
+     * @param sha256 SHA-256 checksum of the contents of the entry
+     * @return the path of the entry (which may not exist)
+     */
+    public Path pathOf(byte[] sha256) {
+        var hex = CHECKSUM_ALGORITHM.toHexString(sha256);
+        return root.resolve(CHECKSUM_ALGORITHM.extension)
+                .resolve(hex.substring(0, 2))
+                .resolve(hex.substring(2));
+    }
+
+    /**
+     * Ensure the contents of the given artifact are stored.
+     * <p>
+     * If a valid entry with the same checksum already exists, nothing is written.
+     *
+     * @param resolvedArtifact artifact whose contents must be stored (the contents are not consumed)
+     * @return the path of the stored entry
+     * @throws IOException if the contents cannot be written
+     */
+    public Path store(ResolvedArtifact resolvedArtifact) throws IOException {
+        var entry = pathOf(resolvedArtifact.getChecksum(CHECKSUM_ALGORITHM));
+        if (isValidEntry(entry, resolvedArtifact.contentLength)) {
+            return entry;
+        }
+        return storeEntry(entry, tempFile -> resolvedArtifact.writeTo(tempFile, false));
+    }
+
+    /**
+     * Ensure the contents of the given file are stored.
+     *
+     * @param sha256 the SHA-256 checksum of the file
+     * @param file   the file to store
+     * @return the path of the stored entry
+     * @throws IOException if the contents cannot be written
+     */
+    public Path store(byte[] sha256, Path file) throws IOException {
+        var entry = pathOf(sha256);
+        if (isValidEntry(entry, Files.size(file))) {
+            return entry;
+        }
+        return storeEntry(entry, tempFile -> Files.copy(file, tempFile, StandardCopyOption.REPLACE_EXISTING));
+    }
+
+    /**
+     * Make the stored entry available at the given destination.
+     * <p>
+     * A hard link is used if possible, otherwise the entry is copied to the destination.
+     * Either way, the destination is replaced atomically.
+     *
+     * @param entry       the stored entry
+     * @param destination where the entry should be made available
+     * @return true if a link was created, false if the entry was copied or the destination was already
+     * the same file as the entry
+     * @throws IOException if neither a link nor a copy can be created
+     */
+    public boolean materialize(Path entry, Path destination) throws IOException {
+        if (Files.exists(destination) && Files.isSameFile(entry, destination)) {
+            return false;
+        }
+        var fileStore = Files.getFileStore(destination.getParent());
+        if (linkSupportByFileStore.getOrDefault(fileStore, true)) {
+            try {
+                FileUtils.writeAtomically(destination, false, tempFile -> Files.createLink(tempFile, entry));
+                return true;
+            } catch (UnsupportedOperationException e) {
+                linkSupportByFileStore.put(fileStore, false);
+            } catch (IOException e) {
+                // other errors (e.g. the entry already has too many links) only cause this file to be copied
+                if (isLinkUnsupported(e, fileStore, entry)) {
+                    linkSupportByFileStore.put(fileStore, false);
+                }
+            }
+        }
+        FileUtils.writeAtomically(destination, fsync, tempFile -> Files.copy(entry, tempFile));
+        return false;
+    }
+
+    /**
+     * Check whether an error creating a link means that no links to the store can be created in a file store.
+     * <p>
+     * That is the case if the file store is a different volume than the entry's (EXDEV) or if it does not
+     * permit hard links (EPERM). Those errors are reported as a plain {@link FileSystemException}, while more
+     * specific errors are reported as subclasses of it (e.g. {@link java.nio.file.NoSuchFileException}).
+     */
+    private static boolean isLinkUnsupported(IOException error, FileStore fileStore, Path entry) {
+        if (error.getClass() != FileSystemException.class) {
+            return false;
+        }
+        try {
+            if (!fileStore.equals(Files.getFileStore(entry))) {
+                return true;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        var reason = ((FileSystemException) error).getReason();
+        return reason != null && reason.contains("not permitted");
+    }
+
+    private static boolean isValidEntry(Path entry, long expectedSize) throws IOException {
+        try {
+            return Files.isRegularFile(entry) && Files.size(entry) == expectedSize;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private Path storeEntry(Path entry, FileUtils.TempFileWriter writer) throws IOException {
+        Files.createDirectories(entry.getParent());
+        try {
+            // entries are reused forever once visible, so they must not be renamed before their contents are durable
+            FileUtils.writeAtomically(entry, true, writer);
+        } catch (FileAlreadyExistsException e) {
+            // another process stored the same entry concurrently, which is fine
+        }
+        return entry;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentAddressableStore{" +
+                "root=" + root +
+                '}';
+    }
+}
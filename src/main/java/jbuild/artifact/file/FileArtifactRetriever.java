@@ -9,8 +9,10 @@ import jbuild.artifact.ResolvedArtifact;
 import jbuild.artifact.Version;
 import jbuild.artifact.VersionRange;
 import jbuild.errors.FileRetrievalError;
+import jbuild.log.RunStatistics;
 import jbuild.maven.MavenUtils;
 import jbuild.util.Either;
+import jbuild.util.Env;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -26,16 +28,36 @@ import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.concurrent.CompletableFuture.completedStage;
 import static java.util.stream.Collectors.toList;
 import static jbuild.api.JBuildException.ErrorCause.ACTION_ERROR;
+import static jbuild.log.RunStatistics.FILE_BYTES;
+import static jbuild.log.RunStatistics.FILE_NOT_FOUND;
+import static jbuild.log.RunStatistics.FILE_REQUESTS;
 import static jbuild.maven.MavenUtils.standardArtifactPath;
 import static jbuild.maven.MavenUtils.standardBasePath;
-import static jbuild.util.FileUtils.readAllBytes;
 
 public class FileArtifactRetriever implements ArtifactRetriever<FileRetrievalError> {
 
     private final Path rootDir;
-
+    private final LocalRepositoryIndex index;
+
+    /**
+     * Create a retriever of artifacts from a local repository, using its shared index unless the
+     * {@code LOCAL_REPOSITORY_INDEX} environment variable is set to {@code false}.
+     *
+     * @param rootDir root directory of the repository
+     */
     public FileArtifactRetriever(Path rootDir) {
+        this(rootDir, Env.LOCAL_REPOSITORY_INDEX ? LocalRepositoryIndex.forRepository(rootDir) : null);
+    }
+
+    /**
+     * Create a retriever of artifacts from a local repository.
+     *
+     * @param rootDir root directory of the repository
+     * @param index   index of the repository, or null to always list the repository directories
+     */
+    public FileArtifactRetriever(Path rootDir, LocalRepositoryIndex index) {
         this.rootDir = rootDir;
+        this.index = index;
     }
 
     public FileArtifactRetriever() {
@@ -69,14 +91,17 @@ public class FileArtifactRetriever implements ArtifactRetriever<FileRetrievalErr
         var file = rootDir.resolve(Paths.get(path));
         var requestTime = System.currentTimeMillis();
 
-        if (file.toFile().isFile()) {
-            // we do not handle files so long that their length won't fit into an int
-            // because we wouldn't even be able to return an array if we did that.
-            return readAllBytes(file).handle((bytes, err) ->
-                    err != null
-                            ? completeWith(artifact, err)
-                            : completeWith(artifact, bytes, requestTime));
+        var fileObj = file.toFile();
+        var statistics = RunStatistics.get();
+        statistics.increment(FILE_REQUESTS);
+        if (fileObj.isFile()) {
+            var length = fileObj.length();
+            statistics.add(FILE_BYTES, length);
+            // the contents are not read here: the resolved artifact is backed by the file so that it
+            // can be copied or linked without going through the heap, or read lazily when needed.
+            return completedFuture(completeWith(artifact, file, length, requestTime));
         } else {
+            statistics.increment(FILE_NOT_FOUND);
             return completedFuture(completeWith(artifact, new FileNotFoundException(file.toString())));
         }
     }
@@ -84,7 +109,8 @@ public class FileArtifactRetriever implements ArtifactRetriever<FileRetrievalErr
     private CompletionStage<ArtifactResolution<FileRetrievalError>> retrieveFromVersionRange(
             Artifact artifact,
             VersionRange range) {
-        return retrieveMetadata(artifact).thenComposeAsync(completion -> completion.map(
+        // only versions that contain the requested file can be selected
+        return retrieveMetadata(artifact, true).thenComposeAsync(completion -> completion.map(
                 meta -> range.selectLatest(meta.getVersions())
                         .map(version -> retrieve(artifact.withVersion(version)))
                         .orElseGet(() -> completedStage(completeWith(artifact,
@@ -99,34 +125,50 @@ public class FileArtifactRetriever implements ArtifactRetriever<FileRetrievalErr
 
     @Override
     public CompletionStage<Either<? extends ArtifactMetadata, FileRetrievalError>> retrieveMetadata(Artifact artifact) {
-        var path = standardBasePath(artifact, true).toString();
-        var dir = rootDir.resolve(Paths.get(path));
+        return retrieveMetadata(artifact, false);
+    }
+
+    private CompletionStage<Either<? extends ArtifactMetadata, FileRetrievalError>> retrieveMetadata(
+            Artifact artifact,
+            boolean containingArtifact) {
         return CompletableFuture.supplyAsync(() -> {
-            var versions = directoriesUnder(dir);
-            if (versions.isEmpty()) {
+            var allVersions = availableVersions(artifact, containingArtifact);
+            if (allVersions.isEmpty()) {
                 return Either.right(new FileRetrievalError(this, artifact,
                         new JBuildException("no version of " + artifact.getCoordinates() + " is available", ACTION_ERROR)));
             }
-            var allVersions = versions.stream()
-                    .map(File::getName)
-                    .map(Version::parse)
-                    .sorted()
-                    .map(Version::toString)
-                    .collect(toList());
             var latestVersion = allVersions.get(allVersions.size() - 1);
             return Either.left(ArtifactMetadata.of(artifact, null, latestVersion,
                     new LinkedHashSet<>(allVersions)));
         });
     }
 
+    private List<String> availableVersions(Artifact artifact, boolean containingArtifact) {
+        if (index != null) {
+            return containingArtifact ? index.versionsContaining(artifact) : index.versionsOf(artifact);
+        }
+        var path = standardBasePath(artifact, true).toString();
+        return directoriesUnder(rootDir.resolve(Paths.get(path))).stream()
+                .filter(dir -> !containingArtifact || new File(dir, new Artifact(artifact.groupId, artifact.artifactId,
+                        dir.getName(), artifact.extension, artifact.classifier).toFileName()).isFile())
+                .map(File::getName)
+                .map(Version::parse)
+                .sorted()
+                .map(Version::toString)
+                .collect(toList());
+    }
+
     private static List<File> directoriesUnder(Path dir) {
         var files = dir.toFile().listFiles();
         if (files == null || files.length == 0) return List.of();
         return Arrays.stream(files).filter(File::isDirectory).collect(toList());
     }
 
-    private ArtifactResolution<FileRetrievalError> completeWith(Artifact artifact, byte[] bytes, long requestTime) {
-        return ArtifactResolution.success(new ResolvedArtifact(bytes, artifact, this, requestTime));
+    private ArtifactResolution<FileRetrievalError> completeWith(Artifact artifact,
+                                                                Path file,
+                                                                long length,
+                                                                long requestTime) {
+        return ArtifactResolution.success(new ResolvedArtifact(file, length, artifact, this, requestTime));
     }
 
     private ArtifactResolution<FileRetrievalError> completeWith(Artifact artifact, Throwable error) {
@@ -0,0 +1,375 @@
+package jbuild.artifact.file;
+
+import jbuild.artifact.Artifact;
+import jbuild.artifact.Version;
+import jbuild.maven.ArtifactKey;
+import jbuild.util.ChecksumAlgorithm;
+import jbuild.util.Env;
+import jbuild.util.FileUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static jbuild.maven.MavenUtils.standardBasePath;
+
+/**
+ * Index of the contents of a local Maven repository.
+ * <p>
+ * For each groupId and artifactId, the index records the available versions (sorted from oldest to newest)
+ * and, for each version, the names of the files available for it, from which the available packagings and
+ * classifiers can be determined.
+ * <p>
+ * The index is maintained incrementally: each entry records the modification time of the directory it was
+ * created from, so checking that an entry is up-to-date only requires reading the modification time of a single
+ * directory. Entries for directories modified too recently to be sure that their modification time would change
+ * again on the next modification (given the timestamp granularity of some file systems) are never trusted.
+ * <p>
+ * The index is stored in a compact binary format, which is read through a memory-mapped file.
+ * A missing or invalid index file is treated as an empty index.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class LocalRepositoryIndex {
+
+    private static final int MAGIC = 0x4A42_5249; // "JBRI"
+    private static final int FORMAT_VERSION = 1;
+    private static final long RACY_MILLIS = 2_000L;
+
+    // minimum sizes of the serialized items, used to validate counts before allocating anything for them
+    private static final int MIN_ENTRY_SIZE = 4 + 4 + 8 + 8 + 4; // groupId, artifactId, modified, scanTime, versions
+    private static final int MIN_VERSION_SIZE = 4 + 1; // version, files flag
+    private static final int MIN_FILE_NAME_SIZE = 4;
+
+    private static final Map<Path, LocalRepositoryIndex> instances = new ConcurrentHashMap<>();
+
+    private final Path repository;
+    private final Path indexFile;
+    private final Map<ArtifactKey, ArtifactEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private volatile boolean loaded;
+
+    /**
+     * Create an index of a local repository.
+     *
+     * @param repository root directory of the repository
+     * @param indexFile  file to store the index in
+     */
+    public LocalRepositoryIndex(Path repository, Path indexFile) {
+        this.repository = repository;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Get the shared index of a local repository, stored in the default location, which can be configured via
+     * the {@code LOCAL_REPOSITORY_INDEX_DIR} environment variable.
+     *
+     * @param repository root directory of the repository
+     * @return the index of the repository
+     */
+    public static LocalRepositoryIndex forRepository(Path repository) {
+        var root = repository.toAbsolutePath().normalize();
+        return instances.computeIfAbsent(root, dir -> {
+            var hash = ChecksumAlgorithm.SHA1.toHexString(
+                    ChecksumAlgorithm.SHA1.digest(dir.toString().getBytes(UTF_8)));
+            return new LocalRepositoryIndex(dir, Paths.get(Env.LOCAL_REPOSITORY_INDEX_DIR, hash + ".index"));
+        });
+    }
+
+    /**
+     * @return the indexes obtained with {@link LocalRepositoryIndex#forRepository(Path)}
+     */
+    public static Collection<LocalRepositoryIndex> sharedInstances() {
+        return instances.values();
+    }
+
+    public Path getRepository() {
+        return repository;
+    }
+
+    public Path getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * Get the versions of an artifact available in the repository.
+     *
+     * @param artifact whose versions to get (only groupId and artifactId are used)
+     * @return the available versions, from oldest to newest
+     */
+    public List<String> versionsOf(Artifact artifact) {
+        return artifactEntry(artifact).versions;
+    }
+
+    /**
+     * Get the versions of an artifact which contain the file for the artifact's extension and classifier.
+     *
+     * @param artifact whose versions to get (the version is ignored)
+     * @return the versions containing the artifact's file, from oldest to newest
+     */
+    public List<String> versionsContaining(Artifact artifact) {
+        var entry = artifactEntry(artifact);
+        var result = new ArrayList<String>(entry.versions.size());
+        for (var version : entry.versions) {
+            var fileName = new Artifact(artifact.groupId, artifact.artifactId, version,
+                    artifact.extension, artifact.classifier).toFileName();
+            if (filesOf(entry, artifact, version).contains(fileName)) {
+                result.add(version);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the names of the files available for the given version of an artifact.
+     *
+     * @param artifact whose files to get (only groupId, artifactId and version are used)
+     * @return the names of the available files
+     */
+    public Set<String> filesOf(Artifact artifact) {
+        return filesOf(artifactEntry(artifact), artifact, artifact.version);
+    }
+
+    /**
+     * Write the index to its file if it has changed since it was loaded or last written.
+     *
+     * @return true if the index was written, false if it had not changed
+     * @throws IOException if the index cannot be written
+     */
+    public boolean save() throws IOException {
+        if (!dirty.getAndSet(false)) return false;
+        try {
+            Files.createDirectories(indexFile.getParent());
+            FileUtils.writeAtomically(indexFile, false, tempFile -> {
+                try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                    write(out);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            dirty.set(true);
+            throw e;
+        }
+        return true;
+    }
+
+    private ArtifactEntry artifactEntry(Artifact artifact) {
+        ensureLoaded();
+        var key = ArtifactKey.of(artifact.groupId, artifact.artifactId);
+        var dir = repository.resolve(standardBasePath(artifact, true).toString()).toFile();
+        var entry = entries.get(key);
+        if (entry == null || !entry.isUpToDate(dir.lastModified())) {
+            entry = scanArtifact(dir, entry);
+            entries.put(key, entry);
+            dirty.set(true);
+        }
+        return entry;
+    }
+
+    private Set<String> filesOf(ArtifactEntry entry, Artifact artifact, String version) {
+        var dir = repository.resolve(standardBasePath(artifact, true) + version).toFile();
+        var files = entry.filesByVersion.get(version);
+        if (files == null || !files.isUpToDate(dir.lastModified())) {
+            files = scanVersion(dir);
+            entry.filesByVersion.put(version, files);
+            dirty.set(true);
+        }
+        return files.fileNames;
+    }
+
+    private static ArtifactEntry scanArtifact(File dir, ArtifactEntry previous) {
+        var scanTime = System.currentTimeMillis();
+        var modified = dir.lastModified();
+        var children = dir.listFiles(File::isDirectory);
+        var versions = children == null ? List.<String>of() : Arrays.stream(children)
+                .map(File::getName)
+                .map(Version::parse)
+                .sorted()
+                .map(Version::toString)
+                .collect(toList());
+        var entry = new ArtifactEntry(modified, scanTime, versions);
+        if (previous != null) {
+            // version directories are validated independently, so their entries remain usable
+            for (var version : versions) {
+                var files = previous.filesByVersion.get(version);
+                if (files != null) entry.filesByVersion.put(version, files);
+            }
+        }
+        return entry;
+    }
+
+    private static FilesEntry scanVersion(File dir) {
+        var scanTime = System.currentTimeMillis();
+        var modified = dir.lastModified();
+        var files = dir.listFiles(File::isFile);
+        var fileNames = files == null ? Set.<String>of() : Arrays.stream(files)
+                .map(File::getName)
+                .collect(toSet());
+        return new FilesEntry(modified, scanTime, fileNames);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        synchronized (this) {
+            if (loaded) return;
+            try {
+                read();
+            } catch (IOException | RuntimeException e) {
+                // the index is only a cache, so it is rebuilt from scratch if it cannot be read
+                entries.clear();
+                dirty.set(true);
+            }
+            loaded = true;
+        }
+    }
+
+    private void read() throws IOException {
+        ByteBuffer buffer;
+        try (var channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                dirty.set(true);
+                return;
+            }
+            var count = readCount(buffer, MIN_ENTRY_SIZE);
+            for (int i = 0; i < count; i++) {
+                var key = ArtifactKey.of(readString(buffer), readString(buffer));
+                var modified = buffer.getLong();
+                var scanTime = buffer.getLong();
+                var versionsCount = readCount(buffer, MIN_VERSION_SIZE);
+                var versions = new ArrayList<String>(versionsCount);
+                var entry = new ArtifactEntry(modified, scanTime, versions);
+                for (int j = 0; j < versionsCount; j++) {
+                    var version = readString(buffer);
+                    versions.add(version);
+                    if (buffer.get() != 0) {
+                        var filesModified = buffer.getLong();
+                        var filesScanTime = buffer.getLong();
+                        var filesCount = readCount(buffer, MIN_FILE_NAME_SIZE);
+                        var fileNames = new String[filesCount];
+                        for (int k = 0; k < filesCount; k++) {
+                            fileNames[k] = readString(buffer);
+                        }
+                        entry.filesByVersion.put(version, new FilesEntry(filesModified, filesScanTime, Set.of(fileNames)));
+                    }
+                }
+                entries.put(key, entry);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("index file is truncated: " + indexFile);
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        var snapshot = Map.copyOf(entries);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(snapshot.size());
+        for (var item : snapshot.entrySet()) {
+            var entry = item.getValue();
+            writeString(out, item.getKey().groupId);
+            writeString(out, item.getKey().artifactId);
+            out.writeLong(entry.modified);
+            out.writeLong(entry.scanTime);
+            out.writeInt(entry.versions.size());
+            for (var version : entry.versions) {
+                writeString(out, version);
+                var files = entry.filesByVersion.get(version);
+                out.writeBoolean(files != null);
+                if (files != null) {
+                    out.writeLong(files.modified);
+                    out.writeLong(files.scanTime);
+                    out.writeInt(files.fileNames.size());
+                    for (var fileName : files.fileNames) {
+                        writeString(out, fileName);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static int readCount(ByteBuffer buffer, int minItemSize) throws IOException {
+        var count = buffer.getInt();
+        // each item takes at least minItemSize bytes, so larger counts can only come from a corrupted index
+        if (count < 0 || (long) count * minItemSize > buffer.remaining()) {
+            throw new IOException("invalid count in index: " + count);
+        }
+        return count;
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        var length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("invalid string length in index: " + length);
+        }
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static boolean isUpToDate(long modified, long scanTime, long currentModified) {
+        return modified == currentModified && modified + RACY_MILLIS <= scanTime;
+    }
+
+    private static final class ArtifactEntry {
+        final long modified;
+        final long scanTime;
+        final List<String> versions;
+        final Map<String, FilesEntry> filesByVersion = new ConcurrentHashMap<>(4);
+
+        ArtifactEntry(long modified, long scanTime, List<String> versions) {
+            this.modified = modified;
+            this.scanTime = scanTime;
+            this.versions = versions;
+        }
+
+        boolean isUpToDate(long currentModified) {
+            return LocalRepositoryIndex.isUpToDate(modified, scanTime, currentModified);
+        }
+    }
+
+    private static final class FilesEntry {
+        final long modified;
+        final long scanTime;
+        final Set<String> fileNames;
+
+        FilesEntry(long modified, long scanTime, Set<String> fileNames) {
+            this.modified = modified;
+            this.scanTime = scanTime;
+            this.fileNames = fileNames;
+        }
+
+        boolean isUpToDate(long currentModified) {
+            return LocalRepositoryIndex.isUpToDate(modified, scanTime, currentModified);
+        }
+    }
+}
@@ -11,7 +11,6 @@ import java.io.File;
 import java.util.List;
 import java.util.concurrent.CompletionStage;
 
-import static java.util.concurrent.CompletableFuture.completedStage;
 import static jbuild.util.CollectionUtils.appendList;
 
 public final class MultiArtifactFileWriter extends ArtifactFileWriter {
@@ -25,13 +24,19 @@ public final class MultiArtifactFileWriter extends ArtifactFileWriter {
 
     @Override
     public CompletionStage<Either<List<File>, Describable>> write(ResolvedArtifact resolvedArtifact, boolean consume) {
-        // the first writer must never consume the artifact! Only one writer must do it.
-        return super.write(resolvedArtifact, false).thenCompose(res1 ->
-                res1.map(files1 -> secondWriter.write(resolvedArtifact, consume).thenApply(res2 ->
-                                res2.map(
-                                        files2 -> Either.left(appendList(files1, files2)),
-                                        Either::right)),
-                        err1 -> completedStage(Either.right(err1))));
+        // both destinations are written concurrently, so neither writer may consume the artifact,
+        // it's only consumed once both are done
+        var firstWrite = super.write(resolvedArtifact, false);
+        var secondWrite = secondWriter.write(resolvedArtifact, false);
+        return firstWrite.thenCombine(secondWrite, (res1, res2) -> {
+            if (consume) {
+                resolvedArtifact.discardContents();
+            }
+            return res1.map(files1 -> res2.map(
+                            files2 -> Either.<List<File>, Describable>left(appendList(files1, files2)),
+                            Either::right),
+                    Either::right);
+        });
     }
 
     @Override
@@ -78,6 +83,22 @@ public final class MultiArtifactFileWriter extends ArtifactFileWriter {
         }
     }
 
+    @Override
+    public CompletionStage<MavenPom> useCachedPom(ResolvedArtifactChecksum resolvedArtifact,
+                                                  MavenPom effectivePom) {
+        if (mode == WriteMode.FLAT_DIR) {
+            // super wouldn't write the POM, so calling super is unnecessary
+            return secondWriter.useCachedPom(resolvedArtifact, effectivePom);
+        }
+        // super writes to both writers
+        return super.useCachedPom(resolvedArtifact, effectivePom);
+    }
+
+    @Override
+    public boolean requiresPomFiles() {
+        return super.requiresPomFiles() || secondWriter.requiresPomFiles();
+    }
+
     @Override
     public boolean delete(Artifact artifact) {
         return super.delete(artifact) && secondWriter.delete(artifact);
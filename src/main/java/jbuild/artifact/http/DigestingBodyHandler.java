@@ -0,0 +1,96 @@
+package jbuild.artifact.http;
+
+import jbuild.util.ChecksumAlgorithm;
+import jbuild.util.ChecksumComputer;
+import jbuild.util.Checksums;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * HTTP body handler that computes checksums of the response body as its bytes arrive.
+ * <p>
+ * A new {@link ChecksumComputer} is used for every response, so the same handler may be re-used
+ * when a request is retried. The checksums of the last successfully received body can be obtained via
+ * {@link DigestingBodyHandler#getChecksums()}.
+ */
+final class DigestingBodyHandler implements HttpResponse.BodyHandler<byte[]> {
+
+    private final Set<ChecksumAlgorithm> algorithms;
+    private volatile Checksums checksums = Checksums.NONE;
+
+    DigestingBodyHandler(Set<ChecksumAlgorithm> algorithms) {
+        this.algorithms = algorithms;
+    }
+
+    Checksums getChecksums() {
+        return checksums;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<byte[]> apply(HttpResponse.ResponseInfo responseInfo) {
+        var delegate = HttpResponse.BodySubscribers.ofByteArray();
+        if (responseInfo.statusCode() != 200) {
+            return delegate;
+        }
+        return digesting(delegate);
+    }
+
+    /**
+     * Wrap a body subscriber so that the body it receives is digested.
+     *
+     * @param delegate subscriber of the body
+     * @param <T>      type of body
+     * @return a subscriber that digests the body before passing it on to the delegate
+     */
+    <T> HttpResponse.BodySubscriber<T> digesting(HttpResponse.BodySubscriber<T> delegate) {
+        if (algorithms.isEmpty()) {
+            return delegate;
+        }
+        return new DigestingSubscriber<>(delegate, new ChecksumComputer(algorithms));
+    }
+
+    private final class DigestingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+        private final HttpResponse.BodySubscriber<T> delegate;
+        private final ChecksumComputer computer;
+
+        DigestingSubscriber(HttpResponse.BodySubscriber<T> delegate, ChecksumComputer computer) {
+            this.delegate = delegate;
+            this.computer = computer;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            for (var buffer : item) {
+                computer.update(buffer);
+            }
+            delegate.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            checksums = computer.finish();
+            delegate.onComplete();
+        }
+    }
+}
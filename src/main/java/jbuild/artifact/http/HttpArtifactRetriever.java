@@ -10,12 +10,16 @@ import jbuild.artifact.Version;
 import jbuild.artifact.VersionRange;
 import jbuild.errors.HttpError;
 import jbuild.log.JBuildLog;
+import jbuild.log.RunStatistics;
 import jbuild.maven.ArtifactKey;
 import jbuild.maven.MavenUtils;
+import jbuild.util.ChecksumAlgorithm;
+import jbuild.util.ChecksumComputer;
 import jbuild.util.Either;
-import org.xml.sax.SAXException;
+import jbuild.util.Env;
+import jbuild.util.RetryPolicy;
 
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
@@ -23,45 +27,165 @@ import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Files;
 import java.time.Duration;
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 import static java.util.concurrent.CompletableFuture.completedStage;
+import static java.util.concurrent.CompletableFuture.failedStage;
 import static jbuild.api.JBuildException.ErrorCause.ACTION_ERROR;
+import static jbuild.log.RunStatistics.HTTP_BYTES;
+import static jbuild.log.RunStatistics.HTTP_CACHE_HITS;
+import static jbuild.log.RunStatistics.HTTP_CACHE_MISSES;
+import static jbuild.log.RunStatistics.HTTP_ERRORS;
+import static jbuild.log.RunStatistics.HTTP_NOT_FOUND;
+import static jbuild.log.RunStatistics.HTTP_REQUESTS;
+import static jbuild.log.RunStatistics.HTTP_REQUEST_MILLIS;
+import static jbuild.log.RunStatistics.HTTP_RETRIES;
 import static jbuild.maven.MavenUtils.standardArtifactPath;
 import static jbuild.util.AsyncUtils.toCompletableFuture;
 import static jbuild.util.AsyncUtils.withRetries;
 
+/**
+ * Retriever of artifacts from a HTTP Maven repository.
+ * <p>
+ * Only the checksums of the algorithms given when creating a retriever are computed while artifacts are
+ * downloaded. Those must include the algorithms of any checksums that will be needed after an artifact's contents
+ * are consumed (e.g. to verify an installed artifact), as other checksums are computed on demand from the contents.
+ * <p>
+ * Failed requests are retried with exponential backoff according to a {@link RetryPolicy}
+ * (the number of retries can be configured via the {@code HTTP_MAX_RETRIES} environment variable).
+ * <p>
+ * Artifacts of at least {@code RESUMABLE_DOWNLOAD_MIN_BYTES} bytes (1MiB by default) are downloaded into a
+ * part file in the {@code PARTIAL_DOWNLOADS_DIR} directory rather than into memory. If such a download
+ * is interrupted, it is resumed from where it stopped using a HTTP Range request, both when retrying the
+ * request and on a later JBuild run.
+ * <p>
+ * The health of the repository is tracked by a circuit breaker: after {@code HTTP_CIRCUIT_BREAKER_FAILURES}
+ * consecutive failed requests (each counted once, after its retries are exhausted), the repository is skipped for
+ * {@code HTTP_CIRCUIT_BREAKER_COOLDOWN_SECONDS}.
+ * Request timeouts adapt to the latency observed so far, up to {@code HTTP_REQUEST_TIMEOUT_SECONDS}.
+ * <p>
+ * By default, resolved artifacts and metadata are cached for the lifetime of the retriever, so each artifact
+ * is only downloaded once. Long-running processes, which may see artifacts and metadata change, and which may
+ * consume the resolved artifacts, should create retrievers that do not cache results.
+ */
 public class HttpArtifactRetriever implements ArtifactRetriever<HttpError> {
 
-    private static final Duration HTTP_REQUEST_RETRY_DELAY = Duration.ofSeconds(1);
+    public static final RetryPolicy DEFAULT_RETRY_POLICY = new RetryPolicy(
+            Math.max(0, Env.HTTP_MAX_RETRIES), Duration.ofMillis(500), Duration.ofSeconds(15));
 
     private final JBuildLog log;
     private final URI baseUrl;
     private final HttpClient httpClient;
+    private final Set<ChecksumAlgorithm> checksumAlgorithms;
+    private final RetryPolicy retryPolicy;
+    private final PartialDownloads partialDownloads;
+    private final RepositoryHealth health;
+    private final boolean cacheResults;
 
     private final Map<Artifact, CompletableFuture<Either<? extends ArtifactMetadata, HttpError>>> metadataCache;
     private final Map<Artifact, CompletableFuture<ArtifactResolution<HttpError>>> artifactCache;
 
+    /**
+     * Create a HTTP retriever.
+     *
+     * @param log                logger
+     * @param baseUrl            base URL of the Maven repository
+     * @param httpClient         HTTP client
+     * @param checksumAlgorithms algorithms of the checksums to compute while artifacts are downloaded
+     */
     public HttpArtifactRetriever(JBuildLog log,
                                  URI baseUrl,
-                                 HttpClient httpClient) {
+                                 HttpClient httpClient,
+                                 Set<ChecksumAlgorithm> checksumAlgorithms) {
+        this(log, baseUrl, httpClient, checksumAlgorithms, true);
+    }
+
+    /**
+     * Create a HTTP retriever.
+     *
+     * @param log                logger
+     * @param baseUrl            base URL of the Maven repository
+     * @param httpClient         HTTP client
+     * @param checksumAlgorithms algorithms of the checksums to compute while artifacts are downloaded
+     * @param cacheResults       whether to cache resolved artifacts and metadata for the lifetime of this retriever
+     */
+    public HttpArtifactRetriever(JBuildLog log,
+                                 URI baseUrl,
+                                 HttpClient httpClient,
+                                 Set<ChecksumAlgorithm> checksumAlgorithms,
+                                 boolean cacheResults) {
+        this(log, baseUrl, httpClient, checksumAlgorithms, DEFAULT_RETRY_POLICY,
+                PartialDownloads.createDefault(), RepositoryHealth.createDefault(), cacheResults);
+    }
+
+    HttpArtifactRetriever(JBuildLog log,
+                          URI baseUrl,
+                          HttpClient httpClient,
+                          Set<ChecksumAlgorithm> checksumAlgorithms,
+                          RetryPolicy retryPolicy,
+                          PartialDownloads partialDownloads,
+                          RepositoryHealth health,
+                          boolean cacheResults) {
         this.log = log;
         this.baseUrl = baseUrl;
         this.httpClient = httpClient;
+        this.checksumAlgorithms = checksumAlgorithms;
+        this.retryPolicy = retryPolicy;
+        this.partialDownloads = partialDownloads;
+        this.health = health;
+        this.cacheResults = cacheResults;
         metadataCache = new ConcurrentHashMap<>();
         artifactCache = new ConcurrentHashMap<>();
     }
 
+    public HttpArtifactRetriever(JBuildLog log,
+                                 URI baseUrl,
+                                 HttpClient httpClient) {
+        this(log, baseUrl, httpClient, EnumSet.noneOf(ChecksumAlgorithm.class));
+    }
+
     public HttpArtifactRetriever(JBuildLog log, String baseUrl) {
         this(log, URI.create(baseUrl), DefaultHttpClient.get());
     }
 
+    /**
+     * Create a HTTP retriever.
+     *
+     * @param log                logger
+     * @param baseUrl            base URL of the Maven repository
+     * @param checksumAlgorithms algorithms of the checksums to compute while artifacts are downloaded
+     */
+    public HttpArtifactRetriever(JBuildLog log, String baseUrl, Set<ChecksumAlgorithm> checksumAlgorithms) {
+        this(log, baseUrl, checksumAlgorithms, true);
+    }
+
+    /**
+     * Create a HTTP retriever.
+     *
+     * @param log                logger
+     * @param baseUrl            base URL of the Maven repository
+     * @param checksumAlgorithms algorithms of the checksums to compute while artifacts are downloaded
+     * @param cacheResults       whether to cache resolved artifacts and metadata for the lifetime of this retriever
+     */
+    public HttpArtifactRetriever(JBuildLog log,
+                                 String baseUrl,
+                                 Set<ChecksumAlgorithm> checksumAlgorithms,
+                                 boolean cacheResults) {
+        this(log, URI.create(baseUrl), DefaultHttpClient.get(), checksumAlgorithms, cacheResults);
+    }
+
     public HttpArtifactRetriever(JBuildLog log) {
         this(log, MavenUtils.MAVEN_CENTRAL_URL);
     }
@@ -82,7 +206,18 @@ public class HttpArtifactRetriever implements ArtifactRetriever<HttpError> {
             var range = VersionRange.parse(artifact.version);
             return retrieveFromVersionRange(artifact, range);
         }
-        return artifactCache.computeIfAbsent(artifact, a -> toCompletableFuture(doRetrieve(a)));
+        if (!cacheResults) {
+            return doRetrieve(artifact);
+        }
+        var cached = artifactCache.get(artifact);
+        if (cached != null) {
+            RunStatistics.get().increment(HTTP_CACHE_HITS);
+            return cached;
+        }
+        return artifactCache.computeIfAbsent(artifact, a -> {
+            RunStatistics.get().increment(HTTP_CACHE_MISSES);
+            return toCompletableFuture(doRetrieve(a));
+        });
     }
 
     private CompletionStage<ArtifactResolution<HttpError>> doRetrieve(Artifact artifact) {
@@ -94,27 +229,77 @@ public class HttpArtifactRetriever implements ArtifactRetriever<HttpError> {
             return completedStage(ArtifactResolution.failure(new HttpError(artifact, this, Either.right(e))));
         }
 
-        var request = HttpRequest.newBuilder(baseUrl.resolve(requestPath)).build();
-
         var requestTime = System.currentTimeMillis();
 
-        return sendArtifactRequest(artifact, request, requestTime);
+        return sendArtifactRequest(artifact, baseUrl.resolve(requestPath), requestTime);
     }
 
     private CompletionStage<ArtifactResolution<HttpError>> sendArtifactRequest(
-            Artifact artifact, HttpRequest request, long requestTime) {
-        return send(request, (response, err) -> {
+            Artifact artifact, URI uri, long requestTime) {
+        // checksum files themselves do not need to be digested
+        var digestingHandler = new DigestingBodyHandler(artifact.isChecksum() ? Set.of() : checksumAlgorithms);
+
+        // checksums and POMs are always small, so there's no point trying to resume their downloads
+        Optional<PartialDownloads.Partial> partial = artifact.isChecksum() || artifact.isPom()
+                ? Optional.empty()
+                : partialDownloads.tryAcquire(uri);
+
+        Supplier<CompletionStage<HttpResponse<ResumableBodyHandler.Download>>> sender = () -> {
+            var requestBuilder = newRequestBuilder(uri);
+            var offset = 0L;
+            var validator = partial.flatMap(PartialDownloads.Partial::getValidator);
+            if (validator.isPresent()) {
+                offset = partial.get().length();
+                var resumeFrom = offset;
+                log.verbosePrintln(() -> "Resuming download of " + uri + " from byte " + resumeFrom);
+                requestBuilder.header("Range", "bytes=" + offset + "-")
+                        .header("If-Range", validator.get());
+            }
+            var request = requestBuilder.build();
+            var bodyHandler = new ResumableBodyHandler(digestingHandler, partial.orElse(null),
+                    offset, partialDownloads.getMinFileSize());
+            return sendAsync(request, bodyHandler).thenCompose(response -> response.body().isUnexpectedRange()
+                    ? failedStage(new IOException("unexpected range in response: " + response))
+                    : completedStage(response));
+        };
+
+        CompletionStage<ArtifactResolution<HttpError>> result = send(sender, (response, err) -> {
             if (err != null) {
                 return completedStage(ArtifactResolution.failure(
                         new HttpError(artifact, this, Either.right(err))));
             }
+            var download = response.body();
+            if (download.partFile != null) {
+                try {
+                    var file = partial.orElseThrow().complete();
+                    var size = Files.size(file);
+                    // includes any bytes downloaded before the download was resumed
+                    RunStatistics.get().add(HTTP_BYTES, size);
+                    // resumed downloads are not digested as they arrive, so their checksums must be computed
+                    // from the whole file now, as the file is deleted when the artifact is consumed
+                    var checksums = download.checksums.getAlgorithms().containsAll(checksumAlgorithms)
+                            ? download.checksums
+                            : ChecksumComputer.compute(file, checksumAlgorithms);
+                    return completedStage(ArtifactResolution.success(
+                            new ResolvedArtifact(file, size, artifact, this, requestTime,
+                                    checksums, true)));
+                } catch (IOException e) {
+                    return completedStage(ArtifactResolution.failure(
+                            new HttpError(artifact, this, Either.right(e))));
+                }
+            }
             if (response.statusCode() == 200) {
+                RunStatistics.get().add(HTTP_BYTES, download.contents.length);
                 return completedStage(ArtifactResolution.success(
-                        new ResolvedArtifact(response.body(), artifact, this, requestTime)));
+                        new ResolvedArtifact(download.contents, artifact, this, requestTime,
+                                download.checksums)));
             }
             return completedStage(ArtifactResolution.failure(
-                    new HttpError(artifact, this, Either.left(response))));
+                    new HttpError(artifact, this, Either.left(
+                            new MappedHttpResponse<>(response, download.contents)))));
         });
+
+        return result.whenComplete((ok, err) -> partial.ifPresent(PartialDownloads.Partial::release));
     }
 
     private CompletionStage<ArtifactResolution<HttpError>> retrieveFromVersionRange(
@@ -143,20 +328,24 @@ public class HttpArtifactRetriever implements ArtifactRetriever<HttpError> {
 
     @Override
     public CompletionStage<Either<? extends ArtifactMetadata, HttpError>> retrieveMetadata(Artifact artifact) {
+        if (!cacheResults) {
+            return doRetrieveMetadata(artifact);
+        }
         return metadataCache.computeIfAbsent(artifact.forMetadata(), ignore -> toCompletableFuture(doRetrieveMetadata(artifact)));
     }
 
     public CompletionStage<Either<? extends ArtifactMetadata, HttpError>> doRetrieveMetadata(Artifact artifact) {
         var requestUri = buildMetadataUri(baseUrl, artifact);
-        var request = HttpRequest.newBuilder(requestUri).build();
-        return send(request, (response, httpRequestError) -> {
+        var request = newRequestBuilder(requestUri).build();
+        return send(() -> sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()), (response, httpRequestError) -> {
             Throwable error = null;
             if (httpRequestError == null) {
                 if (response.statusCode() == 200) {
+                    RunStatistics.get().add(HTTP_BYTES, response.body().length);
                     try {
                         return completedStage(Either.left(MavenUtils.parseMavenMetadata(
                                 new ByteArrayInputStream(response.body()))));
-                    } catch (ParserConfigurationException | IOException | SAXException e) {
+                    } catch (IOException | XMLStreamException e) {
                         error = e;
                     }
                 }
@@ -170,22 +359,80 @@ public class HttpArtifactRetriever implements ArtifactRetriever<HttpError> {
         });
     }
 
-    private <U> CompletionStage<U> send(
-            HttpRequest request,
-            BiFunction<HttpResponse<byte[]>, Throwable, CompletionStage<U>> handle) {
+    private HttpRequest.Builder newRequestBuilder(URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(health.requestTimeout());
+    }
+
+    private <T> CompletionStage<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                          HttpResponse.BodyHandler<T> bodyHandler) {
         log.verbosePrintln(() -> "Artifact retriever sending HTTP request: " + request);
-        var hasRetried = new AtomicBoolean(false);
-        return withRetries(
-                () -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((ok, err) -> {
-                    if (err != null) {
-                        if (hasRetried.compareAndSet(false, true)) {
-                            log.verbosePrintln(() -> "HTTP Request resulted in error, will retry: " + err);
-                        }
-                    } else {
-                        log.verbosePrintln(() -> "Received HTTP response: " + ok);
+        var statistics = RunStatistics.get();
+        statistics.increment(HTTP_REQUESTS);
+        var startTime = System.nanoTime();
+        return httpClient.sendAsync(request, responseInfo -> {
+            health.recordLatency(Duration.ofNanos(System.nanoTime() - startTime));
+            return bodyHandler.apply(responseInfo);
+        }).whenComplete((response, error) -> {
+            statistics.recordMillisSince(HTTP_REQUEST_MILLIS, startTime);
+            if (error != null || response.statusCode() >= 500) {
+                statistics.increment(HTTP_ERRORS);
+            } else if (response.statusCode() == 404) {
+                statistics.increment(HTTP_NOT_FOUND);
+            }
+        });
+    }
+
+    /**
+     * Send a request, retrying it if it fails.
+     * <p>
+     * The outcome of the request is only reported to the repository's circuit breaker once all attempts are done,
+     * so that retrying a single request cannot open the circuit on its own.
+     */
+    private <T, U> CompletionStage<U> send(
+            Supplier<CompletionStage<HttpResponse<T>>> sender,
+            BiFunction<HttpResponse<T>, Throwable, CompletionStage<U>> handle) {
+        var attempts = new AtomicInteger(0);
+        var sentRequest = new AtomicBoolean(false);
+        var rejected = new AtomicBoolean(false);
+        return withRetries(() -> {
+            if (!health.allowRequest()) {
+                rejected.set(true);
+                return failedStage(new JBuildException("too many requests to " + baseUrl +
+                        " have failed recently, skipping it", ACTION_ERROR));
+            }
+            sentRequest.set(true);
+            var attempt = attempts.incrementAndGet();
+            if (attempt > 1) {
+                RunStatistics.get().increment(HTTP_RETRIES);
+            }
+            return sender.get().whenComplete((ok, err) -> {
+                if (err != null) {
+                    if (attempt <= retryPolicy.maxRetries && !health.isOpen()) {
+                        log.verbosePrintln(() -> "HTTP Request resulted in error (attempt " + attempt +
+                                "), will retry: " + err);
                     }
-                }),
-                1, HTTP_REQUEST_RETRY_DELAY, handle);
+                } else {
+                    log.verbosePrintln(() -> "Received HTTP response: " + ok);
+                }
+            });
+        }, retryPolicy, error -> !rejected.get() && !health.isOpen(), (response, err) -> {
+            // requests that were never sent because the circuit was open must not affect it
+            if (sentRequest.get()) {
+                recordOutcome(response, err);
+            }
+            return handle.apply(response, err);
+        });
+    }
+
+    private void recordOutcome(HttpResponse<?> response, Throwable error) {
+        if (error != null || response.statusCode() >= 500) {
+            if (health.recordFailure()) {
+                log.println(() -> "WARNING: too many requests to " + baseUrl +
+                        " have failed, it will not be used for a while.");
+            }
+        } else {
+            health.recordSuccess();
+        }
     }
 
     private static URI buildMetadataUri(URI baseUri, Artifact artifact) {
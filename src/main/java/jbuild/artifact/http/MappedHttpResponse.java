@@ -0,0 +1,70 @@
+package jbuild.artifact.http;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Optional;
+
+/**
+ * A HTTP response with a different body than the original response.
+ *
+ * @param <T> type of body
+ */
+final class MappedHttpResponse<T> implements HttpResponse<T> {
+
+    private final HttpResponse<?> response;
+    private final T body;
+
+    MappedHttpResponse(HttpResponse<?> response, T body) {
+        this.response = response;
+        this.body = body;
+    }
+
+    @Override
+    public int statusCode() {
+        return response.statusCode();
+    }
+
+    @Override
+    public HttpRequest request() {
+        return response.request();
+    }
+
+    @Override
+    public Optional<HttpResponse<T>> previousResponse() {
+        return Optional.empty();
+    }
+
+    @Override
+    public HttpHeaders headers() {
+        return response.headers();
+    }
+
+    @Override
+    public T body() {
+        return body;
+    }
+
+    @Override
+    public Optional<SSLSession> sslSession() {
+        return response.sslSession();
+    }
+
+    @Override
+    public URI uri() {
+        return response.uri();
+    }
+
+    @Override
+    public HttpClient.Version version() {
+        return response.version();
+    }
+
+    @Override
+    public String toString() {
+        return response.toString();
+    }
+}
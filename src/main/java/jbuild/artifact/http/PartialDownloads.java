@@ -0,0 +1,198 @@
+package jbuild.artifact.http;
+
+import jbuild.util.ChecksumAlgorithm;
+import jbuild.util.Env;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Journal of partially downloaded files.
+ * <p>
+ * Large artifacts are downloaded into a part file. A journal next to it records the URI and the validator
+ * (ETag or Last-Modified header) of the response being downloaded. If a download is interrupted, the next
+ * attempt, possibly made by another JBuild process, can resume it from the end of the part file by sending a
+ * HTTP Range request, as long as the remote file has not changed in the meantime.
+ */
+final class PartialDownloads {
+
+    private final Path directory;
+    private final long minFileSize;
+
+    /**
+     * Create a journal of partial downloads.
+     *
+     * @param directory   directory where to keep the part files
+     * @param minFileSize minimum length of a download for it to be written to a part file
+     */
+    PartialDownloads(Path directory, long minFileSize) {
+        this.directory = directory;
+        this.minFileSize = minFileSize;
+    }
+
+    static PartialDownloads createDefault() {
+        return new PartialDownloads(Paths.get(Env.PARTIAL_DOWNLOADS_DIR), Env.RESUMABLE_DOWNLOAD_MIN_BYTES);
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    long getMinFileSize() {
+        return minFileSize;
+    }
+
+    /**
+     * Try to obtain exclusive access to the partial download of the given URI.
+     *
+     * @param uri the URI being downloaded
+     * @return the partial download if no other thread or process is downloading the same URI
+     */
+    Optional<Partial> tryAcquire(URI uri) {
+        var name = ChecksumAlgorithm.SHA1.toHexString(ChecksumAlgorithm.SHA1.digest(
+                uri.toString().getBytes(UTF_8)));
+        FileChannel lockChannel = null;
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve(name + ".lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            var lock = lockChannel.tryLock();
+            if (lock != null) {
+                return Optional.of(new Partial(uri, name, lock));
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            // fall through
+        }
+        closeQuietly(lockChannel);
+        return Optional.empty();
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * A partial download, which must be released after use.
+     */
+    final class Partial {
+
+        private final URI uri;
+        private final Path partFile;
+        private final Path journalFile;
+        private final FileLock lock;
+
+        private Partial(URI uri, String name, FileLock lock) {
+            this.uri = uri;
+            this.partFile = directory.resolve(name + ".part");
+            this.journalFile = directory.resolve(name + ".journal");
+            this.lock = lock;
+        }
+
+        Path getPartFile() {
+            return partFile;
+        }
+
+        /**
+         * @return the validator of the partially downloaded file if the download can be resumed.
+         */
+        Optional<String> getValidator() {
+            if (!Files.isRegularFile(journalFile) || length() == 0L) {
+                return Optional.empty();
+            }
+            var properties = new Properties();
+            try (var reader = Files.newBufferedReader(journalFile, UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                return Optional.empty();
+            }
+            if (!uri.toString().equals(properties.getProperty("uri"))) {
+                return Optional.empty();
+            }
+            return Optional.ofNullable(properties.getProperty("validator"));
+        }
+
+        /**
+         * @return the number of bytes already downloaded.
+         */
+        long length() {
+            try {
+                return Files.isRegularFile(partFile) ? Files.size(partFile) : 0L;
+            } catch (IOException e) {
+                return 0L;
+            }
+        }
+
+        /**
+         * Start a new download, discarding any previously downloaded bytes.
+         *
+         * @param validator the validator of the response, or null if the download cannot be resumed
+         * @throws IOException if the journal cannot be written
+         */
+        void start(String validator) throws IOException {
+            discard();
+            if (validator != null) {
+                var properties = new Properties();
+                properties.setProperty("uri", uri.toString());
+                properties.setProperty("validator", validator);
+                try (var writer = Files.newBufferedWriter(journalFile, UTF_8)) {
+                    properties.store(writer, null);
+                }
+            }
+        }
+
+        /**
+         * Complete the download, moving the part file to a new, unique location, so that it is no longer
+         * considered a partial download.
+         *
+         * @return the completely downloaded file
+         * @throws IOException if the part file cannot be moved
+         */
+        Path complete() throws IOException {
+            Files.deleteIfExists(journalFile);
+            var file = directory.resolve(UUID.randomUUID() + ".download");
+            Files.move(partFile, file, StandardCopyOption.ATOMIC_MOVE);
+            return file;
+        }
+
+        /**
+         * Discard any downloaded bytes.
+         */
+        void discard() {
+            try {
+                Files.deleteIfExists(journalFile);
+                Files.deleteIfExists(partFile);
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+
+        void release() {
+            try {
+                lock.release();
+            } catch (IOException e) {
+                // ignore
+            } finally {
+                closeQuietly(lock.channel());
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package jbuild.artifact.http;
+
+import jbuild.util.Env;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Health tracker of a remote repository.
+ * <p>
+ * Works as a circuit breaker: after a number of consecutive failures, the circuit opens and requests to the
+ * repository should not be made until a cool-down period has elapsed. After that, a single request is
+ * allowed to probe the repository. If it succeeds, the circuit closes again, otherwise it re-opens.
+ * <p>
+ * It also tracks the latency of responses from the repository (time until the response headers
+ * are received) in order to compute an adaptive timeout for requests, so that a repository which stops
+ * responding is detected much faster than with a fixed, conservative timeout.
+ * <p>
+ * All methods of this class are thread-safe.
+ */
+final class RepositoryHealth {
+
+    private static final int LATENCY_SAMPLES = 64;
+    private static final int MIN_LATENCY_SAMPLES = 10;
+    private static final int TIMEOUT_LATENCY_MULTIPLIER = 4;
+    private static final Duration MIN_TIMEOUT = Duration.ofSeconds(2);
+
+    private enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final int failureThreshold;
+    private final Duration coolDown;
+    private final Duration maxTimeout;
+
+    private final long[] latencyNanos = new long[LATENCY_SAMPLES];
+    private int latencyCount;
+    private int latencyIndex;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean probing;
+
+    /**
+     * Create a health tracker.
+     *
+     * @param failureThreshold number of consecutive failures that opens the circuit
+     * @param coolDown         time to wait after opening the circuit before probing the repository again
+     * @param maxTimeout       maximum (and initial) request timeout
+     */
+    RepositoryHealth(int failureThreshold, Duration coolDown, Duration maxTimeout) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1, not " + failureThreshold);
+        }
+        this.failureThreshold = failureThreshold;
+        this.coolDown = coolDown;
+        this.maxTimeout = maxTimeout;
+    }
+
+    static RepositoryHealth createDefault() {
+        return new RepositoryHealth(
+                Math.max(1, Env.HTTP_CIRCUIT_BREAKER_FAILURES),
+                Duration.ofSeconds(Env.HTTP_CIRCUIT_BREAKER_COOLDOWN_SECONDS),
+                Duration.ofSeconds(Env.HTTP_REQUEST_TIMEOUT_SECONDS));
+    }
+
+    /**
+     * Check whether a request may be sent to the repository.
+     * <p>
+     * If this method returns true, the result of the request must be reported via either
+     * {@link RepositoryHealth#recordSuccess()} or {@link RepositoryHealth#recordFailure()}.
+     *
+     * @return true if the circuit is closed, or if it's time to probe the repository
+     */
+    synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAtNanos >= coolDown.toNanos()) {
+                    state = State.HALF_OPEN;
+                    probing = true;
+                    return true;
+                }
+                return false;
+            case HALF_OPEN:
+                if (!probing) {
+                    probing = true;
+                    return true;
+                }
+                return false;
+            default:
+                throw new IllegalStateException("Unhandled case: " + state);
+        }
+    }
+
+    synchronized boolean isOpen() {
+        return state == State.OPEN;
+    }
+
+    synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probing = false;
+    }
+
+    /**
+     * Record a failed request.
+     *
+     * @return true if this failure opened the circuit
+     */
+    synchronized boolean recordFailure() {
+        consecutiveFailures++;
+        probing = false;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAtNanos = System.nanoTime();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record the time it took to receive the headers of a response.
+     *
+     * @param latency response latency
+     */
+    synchronized void recordLatency(Duration latency) {
+        latencyNanos[latencyIndex] = latency.toNanos();
+        latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+        if (latencyCount < LATENCY_SAMPLES) {
+            latencyCount++;
+        }
+    }
+
+    /**
+     * Compute the timeout for the next request.
+     * <p>
+     * Until enough latency samples are available, the maximum timeout is used. After that, the timeout
+     * is a multiple of the 99th percentile of recent latencies, bounded by the maximum timeout.
+     *
+     * @return the request timeout
+     */
+    synchronized Duration requestTimeout() {
+        if (latencyCount < MIN_LATENCY_SAMPLES) {
+            return maxTimeout;
+        }
+        var sorted = Arrays.copyOf(latencyNanos, latencyCount);
+        Arrays.sort(sorted);
+        var p99 = sorted[(int) Math.ceil(0.99 * latencyCount) - 1];
+        var timeout = Duration.ofNanos(p99 * TIMEOUT_LATENCY_MULTIPLIER);
+        if (timeout.compareTo(MIN_TIMEOUT) < 0) {
+            timeout = MIN_TIMEOUT;
+        }
+        return timeout.compareTo(maxTimeout) > 0 ? maxTimeout : timeout;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RepositoryHealth{" +
+                "state=" + state +
+                ", consecutiveFailures=" + consecutiveFailures +
+                ", latencySamples=" + latencyCount +
+                '}';
+    }
+}
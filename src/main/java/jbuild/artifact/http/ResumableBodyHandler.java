@@ -0,0 +1,152 @@
+package jbuild.artifact.http;
+
+import jbuild.util.Checksums;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * HTTP body handler that writes large response bodies into a {@link PartialDownloads.Partial} file,
+ * so that the download can be resumed if it is interrupted.
+ * <p>
+ * Small bodies, and all bodies if no partial download is available, are kept in memory.
+ */
+final class ResumableBodyHandler implements HttpResponse.BodyHandler<ResumableBodyHandler.Download> {
+
+    /**
+     * Body of a response.
+     */
+    static final class Download {
+
+        static final Download UNEXPECTED_RANGE = new Download(null, null, Checksums.NONE);
+
+        /**
+         * Contents of the body if kept in memory, null otherwise.
+         */
+        final byte[] contents;
+
+        /**
+         * The part file containing the body if not kept in memory, null otherwise.
+         */
+        final Path partFile;
+
+        final Checksums checksums;
+
+        private Download(byte[] contents, Path partFile, Checksums checksums) {
+            this.contents = contents;
+            this.partFile = partFile;
+            this.checksums = checksums;
+        }
+
+        boolean isUnexpectedRange() {
+            return this == UNEXPECTED_RANGE;
+        }
+    }
+
+    private final DigestingBodyHandler digestingHandler;
+    private final PartialDownloads.Partial partial;
+    private final long offset;
+    private final long minFileSize;
+
+    /**
+     * Create a body handler.
+     *
+     * @param digestingHandler handler of bodies that are not resumed
+     * @param partial          the partial download, or null if the body must be kept in memory
+     * @param offset           the offset requested via a Range header (0 if no range was requested)
+     * @param minFileSize      minimum length of a body for it to be written to the part file
+     */
+    ResumableBodyHandler(DigestingBodyHandler digestingHandler,
+                         PartialDownloads.Partial partial,
+                         long offset,
+                         long minFileSize) {
+        this.digestingHandler = digestingHandler;
+        this.partial = partial;
+        this.offset = offset;
+        this.minFileSize = minFileSize;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<Download> apply(HttpResponse.ResponseInfo responseInfo) {
+        if (partial != null) {
+            var status = responseInfo.statusCode();
+            if (status == 206) {
+                if (offset > 0 && rangeStart(responseInfo.headers()) == offset) {
+                    // only part of the file is received, so the retriever computes the checksums
+                    // from the whole file once it is complete
+                    return HttpResponse.BodySubscribers.mapping(
+                            HttpResponse.BodySubscribers.ofFile(partial.getPartFile(),
+                                    StandardOpenOption.WRITE, StandardOpenOption.APPEND),
+                            file -> new Download(null, file, Checksums.NONE));
+                }
+                partial.discard();
+                return HttpResponse.BodySubscribers.replacing(Download.UNEXPECTED_RANGE);
+            }
+            if (status == 416) {
+                // the part file is larger than the remote file, start again
+                partial.discard();
+                return HttpResponse.BodySubscribers.replacing(Download.UNEXPECTED_RANGE);
+            }
+            if (status == 200) {
+                var length = responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1L);
+                if (length >= minFileSize) {
+                    try {
+                        partial.start(validatorOf(responseInfo.headers()));
+                        return HttpResponse.BodySubscribers.mapping(
+                                digestingHandler.digesting(HttpResponse.BodySubscribers.ofFile(
+                                        partial.getPartFile(),
+                                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING)),
+                                file -> new Download(null, file, digestingHandler.getChecksums()));
+                    } catch (IOException e) {
+                        // keep the body in memory
+                    }
+                } else if (offset > 0) {
+                    // the server sent the whole file, what was downloaded before is not needed anymore
+                    partial.discard();
+                }
+            }
+        }
+        return HttpResponse.BodySubscribers.mapping(digestingHandler.apply(responseInfo),
+                bytes -> new Download(bytes, null, digestingHandler.getChecksums()));
+    }
+
+    /**
+     * Get the validator of a response, which can be used in a If-Range header to resume its download.
+     *
+     * @param headers response headers
+     * @return the strong ETag or Last-Modified header value, or null if none is available
+     */
+    static String validatorOf(HttpHeaders headers) {
+        var etag = headers.firstValue("ETag");
+        if (etag.isPresent() && !etag.get().startsWith("W/")) {
+            return etag.get();
+        }
+        return headers.firstValue("Last-Modified").orElse(null);
+    }
+
+    /**
+     * Parse the start of a Content-Range header, e.g. {@code bytes 100-999/1000}.
+     *
+     * @param headers response headers
+     * @return the first byte position of the range, or -1 if not available
+     */
+    static long rangeStart(HttpHeaders headers) {
+        var contentRange = headers.firstValue("Content-Range").orElse("");
+        if (!contentRange.startsWith("bytes ")) {
+            return -1L;
+        }
+        var dashIndex = contentRange.indexOf('-');
+        if (dashIndex < 0) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), dashIndex).trim());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+}
@@ -5,29 +5,49 @@ import jbuild.api.JBuildException;
 import jbuild.api.JBuildException.ErrorCause;
 import jbuild.artifact.Artifact;
 import jbuild.artifact.ArtifactRetriever;
+import jbuild.artifact.OfflineArtifactRetriever;
+import jbuild.artifact.file.ArtifactCache;
 import jbuild.artifact.file.ArtifactFileWriter;
+import jbuild.artifact.file.ContentAddressableStore;
+import jbuild.artifact.file.FileArtifactRetriever;
+import jbuild.artifact.file.LocalRepositoryIndex;
 import jbuild.artifact.file.MultiArtifactFileWriter;
+import jbuild.artifact.http.HttpArtifactRetriever;
 import jbuild.commands.CompileCommandExecutor;
+import jbuild.commands.DependencyLockFile;
 import jbuild.commands.DepsCommandExecutor;
 import jbuild.commands.DoctorCommandExecutor;
 import jbuild.commands.FetchCommandExecutor;
 import jbuild.commands.InstallCommandExecutor;
 import jbuild.commands.RequirementsCommandExecutor;
+import jbuild.commands.ServeRepoCommandExecutor;
 import jbuild.commands.ShowModuleCommand;
 import jbuild.commands.VersionsCommandExecutor;
 import jbuild.errors.ArtifactRetrievalError;
 import jbuild.log.JBuildLog;
+import jbuild.log.ResolutionProfiler;
+import jbuild.log.RunStatistics;
+import jbuild.maven.EffectivePomCache;
 import jbuild.maven.MavenPom;
 import jbuild.maven.MavenUtils;
+import jbuild.util.ChecksumAlgorithm;
 import jbuild.util.Describable;
+import jbuild.util.Env;
 import jbuild.util.Executable;
 import jbuild.util.FileUtils;
 import jbuild.util.NonEmptyCollection;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
@@ -38,7 +58,9 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static jbuild.api.JBuildException.ErrorCause.ACTION_ERROR;
@@ -68,6 +90,9 @@ public final class Main {
                     "Root Options:" + LINE_END +
                     "    --quiet" + LINE_END +
                     "     -q       print only minimum output." + LINE_END +
+                    "    --offline" + LINE_END +
+                    "     -o       only use local repositories and caches, never the network." + LINE_END +
+                    "    --stats   print statistics of the run (requests, bytes, cache hits...) as JSON." + LINE_END +
                     "    --repository" + LINE_END +
                     "     -r       Maven repository to use to locate artifacts (file location or HTTP URL)." + LINE_END +
                     "    --working-dir" + LINE_END +
@@ -87,6 +112,7 @@ public final class Main {
                     "  * " + FetchOptions.NAME + " - " + FetchOptions.DESCRIPTION + LINE_END +
                     "  * " + InstallOptions.NAME + " - " + InstallOptions.DESCRIPTION + LINE_END +
                     "  * " + RequirementsOptions.NAME + " - " + RequirementsOptions.DESCRIPTION + LINE_END +
+                    "  * " + ServeRepoOptions.NAME + " - " + ServeRepoOptions.DESCRIPTION + LINE_END +
                     "  * " + ShowModulesOptions.NAME + " - " + ShowModulesOptions.DESCRIPTION + LINE_END +
                     "  * " + VersionsOptions.NAME + " - " + VersionsOptions.DESCRIPTION + LINE_END +
                     "  * help - displays this help message or help for one of the other commands" + LINE_END +
@@ -111,6 +137,8 @@ public final class Main {
 
     private final JBuildLog log;
     private final Consumer<Integer> exit;
+    private final OfflineArtifactRetriever.MissingArtifacts missingArtifacts =
+            new OfflineArtifactRetriever.MissingArtifacts();
 
     public Main(String[] args,
                 Consumer<Integer> exit,
@@ -140,7 +168,11 @@ public final class Main {
             return;
         }
 
-        withErrorHandling(() -> run(options), startTime, options.quiet);
+        if (options.stats && !RunStatistics.get().isEnabled()) {
+            RunStatistics.set(new RunStatistics(true));
+        }
+
+        withErrorHandling(() -> run(options), startTime, options.quiet, options.stats);
     }
 
     private void run(Options options) throws Exception {
@@ -173,6 +205,9 @@ public final class Main {
             case ShowModulesOptions.NAME:
                 showModules(options);
                 break;
+            case ServeRepoOptions.NAME:
+                serveRepo(options);
+                break;
             default:
                 throw new JBuildException("Unknown command: " + options.command +
                         ". Run jbuild --help for usage.", USER_INPUT);
@@ -204,6 +239,9 @@ public final class Main {
                 case RequirementsOptions.NAME:
                     System.out.println(RequirementsOptions.USAGE);
                     break;
+                case ServeRepoOptions.NAME:
+                    System.out.println(ServeRepoOptions.USAGE);
+                    break;
                 case ShowModulesOptions.NAME:
                     System.out.println(ShowModulesOptions.USAGE);
                     break;
@@ -317,14 +355,21 @@ public final class Main {
 
         var fileWriter = selectArtifactWriter(options.workingDir, installOptions);
 
-        var installCommandExecutor = createInstallCommandExecutor(options, fileWriter);
+        var installCommandExecutor = createInstallCommandExecutor(options, fileWriter,
+                checksumAlgorithmsFor(installOptions));
         var latch = new CountDownLatch(1);
         var anyError = new AtomicReference<ErrorCause>();
 
-        installCommandExecutor.installDependencyTree(
+        var installation = installOptions.lockFile == null
+                ? installCommandExecutor.installDependencyTree(
                 artifacts, installOptions.scopes, installOptions.optional, installOptions.transitive,
-                installOptions.exclusions, installOptions.checksum
-        ).whenComplete((successCount, err) -> {
+                installOptions.exclusions, installOptions.checksum)
+                : installCommandExecutor.installDependencyTree(
+                artifacts, installOptions.scopes, installOptions.optional, installOptions.transitive,
+                installOptions.exclusions, installOptions.checksum,
+                Paths.get(relativize(options.workingDir, installOptions.lockFile)));
+
+        installation.whenComplete((successCount, err) -> {
             try {
                 if (err == null) {
                     var successes = successCount.map(ok -> ok, errors -> {
@@ -411,21 +456,43 @@ public final class Main {
     private void listVersions(Options options) throws Exception {
         var commandExecutor = createVersionsCommandExecutor(options);
         var versionsOptions = VersionsOptions.parse(options.commandArgs, !options.quiet);
-        var artifacts = parseArtifacts(versionsOptions.artifacts);
+        var coordinates = new LinkedHashSet<>(versionsOptions.artifacts);
+        if (versionsOptions.inputFile != null) {
+            coordinates.addAll(readArtifactsInput(options.workingDir, versionsOptions.inputFile));
+        }
+
+        // keep the given order, so versions are queried in that order
+        var artifacts = coordinates.stream()
+                .map(Artifact::parseCoordinates)
+                .collect(toCollection(LinkedHashSet::new));
 
         if (artifacts.isEmpty()) {
             log.println("No artifacts were provided. Nothing to do.");
             return;
         }
 
+        var json = versionsOptions.format == VersionsOptions.Format.JSONL;
         var versionLogger = new VersionLogger(log);
         var latch = new CountDownLatch(artifacts.size());
         var anyError = new AtomicReference<ErrorCause>();
 
-        commandExecutor.getVersions(artifacts).forEach((artifact, eitherCompletionStage) ->
+        commandExecutor.getVersions(artifacts, versionsOptions.concurrency).forEach((artifact, eitherCompletionStage) ->
                 eitherCompletionStage.whenComplete((completion, err) -> {
                     try {
-                        if (err == null) {
+                        if (json) {
+                            if (err == null) {
+                                completion.use(
+                                        ok -> versionLogger.logJson(artifact, ok),
+                                        errors -> versionLogger.logJsonErrors(artifact, errors.stream()
+                                                .map(Describable::getDescription)
+                                                .collect(toList())));
+                            } else {
+                                versionLogger.logJsonErrors(artifact, List.of(err.toString()));
+                            }
+                            if (err != null || completion.map(ok -> false, errors -> true)) {
+                                anyError.compareAndSet(null, ACTION_ERROR);
+                            }
+                        } else if (err == null) {
                             completion.use(
                                     ok -> versionLogger.log(artifact, ok),
                                     errors -> reportErrors(anyError, errors));
@@ -445,6 +512,24 @@ public final class Main {
         }
     }
 
+    private static List<String> readArtifactsInput(String workingDir, String inputFile) throws IOException {
+        List<String> lines;
+        if (inputFile.equals("-")) {
+            var reader = new BufferedReader(new InputStreamReader(System.in, UTF_8));
+            lines = reader.lines().collect(toList());
+        } else {
+            var file = Paths.get(relativize(workingDir, inputFile));
+            if (!Files.isRegularFile(file)) {
+                throw new JBuildException("Input file does not exist: " + file, USER_INPUT);
+            }
+            lines = Files.readAllLines(file, UTF_8);
+        }
+        return lines.stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .collect(toList());
+    }
+
     private void requirements(Options options) {
         var command = RequirementsCommandExecutor.createDefault(log);
         var reqOptions = RequirementsOptions.parse(options.commandArgs, !options.quiet);
@@ -462,8 +547,52 @@ public final class Main {
         }
     }
 
+    private void serveRepo(Options options) throws Exception {
+        var serveOptions = ServeRepoOptions.parse(options.commandArgs, !options.quiet);
+        var cacheDir = Paths.get(relativize(options.workingDir, serveOptions.cacheDir));
+        var cache = new ArtifactCache(cacheDir, serveOptions.maxSizeInBytes);
+        cache.load();
+
+        // the server runs for a long time and consumes the artifacts it fetches, so retrievers must not cache them
+        // (the cache stores artifacts by their checksum)
+        var command = new ServeRepoCommandExecutor(log,
+                new FetchCommandExecutor<>(log,
+                        nonCachingRetrievers(options, Set.of(ContentAddressableStore.CHECKSUM_ALGORITHM))),
+                new VersionsCommandExecutor(log, nonCachingRetrievers(options, Set.of())), cache);
+
+        var address = serveOptions.host == null
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(), serveOptions.port)
+                : new InetSocketAddress(serveOptions.host, serveOptions.port);
+        if (address.isUnresolved()) {
+            throw new JBuildException("unable to resolve host: " + serveOptions.host, USER_INPUT);
+        }
+
+        try (var server = command.serve(address, serveOptions.threads)) {
+            var host = server.getAddress().getHostString();
+            var urlHost = host.contains(":") ? "[" + host + "]" : host;
+            log.println(() -> "Serving Maven repository at http://" + urlHost + ":" + server.getAddress().getPort() +
+                    " (cache: " + cacheDir + ", " + cache.getStats().entries + " entries)");
+            // serve until the process is terminated
+            new CountDownLatch(1).await();
+        }
+    }
+
+    /**
+     * Get the retrievers configured by the user (or the default ones), making sure HTTP retrievers do not
+     * cache the artifacts and metadata they resolve.
+     */
+    private NonEmptyCollection<ArtifactRetriever<? extends ArtifactRetrievalError>> nonCachingRetrievers(
+            Options options, Set<ChecksumAlgorithm> checksumAlgorithms) {
+        var retrievers = getRetrievers(options, checksumAlgorithms, false);
+        if (retrievers.isEmpty()) {
+            retrievers = List.of(new FileArtifactRetriever(),
+                    new HttpArtifactRetriever(log, MavenUtils.MAVEN_CENTRAL_URL, checksumAlgorithms, false));
+        }
+        return NonEmptyCollection.of(retrievers);
+    }
+
     private VersionsCommandExecutor createVersionsCommandExecutor(Options options) {
-        var retrievers = options.getRetrievers(options.workingDir, log);
+        var retrievers = getRetrievers(options, Set.of());
         if (retrievers.isEmpty()) {
             return new VersionsCommandExecutor(log);
         }
@@ -471,13 +600,63 @@ public final class Main {
     }
 
     private FetchCommandExecutor<ArtifactRetrievalError> createFetchCommandExecutor(Options options) {
-        var retrievers = options.getRetrievers(options.workingDir, log);
+        return createFetchCommandExecutor(options, Set.of());
+    }
+
+    private FetchCommandExecutor<ArtifactRetrievalError> createFetchCommandExecutor(
+            Options options, Set<ChecksumAlgorithm> checksumAlgorithms) {
+        var retrievers = getRetrievers(options, checksumAlgorithms);
         if (retrievers.isEmpty()) {
-            return FetchCommandExecutor.createDefault(log);
+            return FetchCommandExecutor.createDefault(log, checksumAlgorithms);
         }
         return createFetch(log, NonEmptyCollection.of(retrievers));
     }
 
+    /**
+     * Get the algorithms of the checksums that are needed after installed artifacts have been written
+     * (and their contents released), hence must be computed while they are downloaded.
+     */
+    private static Set<ChecksumAlgorithm> checksumAlgorithmsFor(InstallOptions installOptions) {
+        var algorithms = EnumSet.noneOf(ChecksumAlgorithm.class);
+        if (installOptions.checksum != null) {
+            algorithms.add(installOptions.checksum);
+        }
+        if (installOptions.storeDir != null) {
+            algorithms.add(ContentAddressableStore.CHECKSUM_ALGORITHM);
+        }
+        if (installOptions.lockFile != null) {
+            algorithms.add(DependencyLockFile.CHECKSUM_ALGORITHM);
+        }
+        return algorithms;
+    }
+
+    /**
+     * Get the retrievers configured by the user. In offline mode, only local retrievers are returned (falling back
+     * to the local Maven repository if no local repository was configured), and the artifacts they cannot find
+     * are recorded so they can be reported at the end.
+     */
+    private List<ArtifactRetriever<? extends ArtifactRetrievalError>> getRetrievers(
+            Options options, Set<ChecksumAlgorithm> checksumAlgorithms) {
+        return getRetrievers(options, checksumAlgorithms, true);
+    }
+
+    private List<ArtifactRetriever<? extends ArtifactRetrievalError>> getRetrievers(
+            Options options, Set<ChecksumAlgorithm> checksumAlgorithms, boolean cacheResults) {
+        var retrievers = options.getRetrievers(options.workingDir, log, checksumAlgorithms, cacheResults);
+        if (!options.offline) return retrievers;
+        if (retrievers.isEmpty()) {
+            log.verbosePrintln(() -> "Offline mode: using local Maven repository only");
+            retrievers = List.of(new FileArtifactRetriever());
+        }
+        return retrievers.stream()
+                .map(this::offline)
+                .collect(toList());
+    }
+
+    private <E extends ArtifactRetrievalError> ArtifactRetriever<E> offline(ArtifactRetriever<E> retriever) {
+        return new OfflineArtifactRetriever<>(retriever, missingArtifacts);
+    }
+
     private static <E extends ArtifactRetrievalError> FetchCommandExecutor<E> createFetch(
             JBuildLog log,
             NonEmptyCollection<ArtifactRetriever<? extends E>> retrievers) {
@@ -485,14 +664,17 @@ public final class Main {
     }
 
     private DepsCommandExecutor<ArtifactRetrievalError> createDepsCommandExecutor(Options options) {
-        return DepsCommandExecutor.create(log, createFetchCommandExecutor(options));
+        return DepsCommandExecutor.create(log, createFetchCommandExecutor(options),
+                EffectivePomCache.createDefault());
     }
 
     private InstallCommandExecutor createInstallCommandExecutor(Options options,
-                                                                ArtifactFileWriter writer) {
+                                                                ArtifactFileWriter writer,
+                                                                Set<ChecksumAlgorithm> checksumAlgorithms) {
         return new InstallCommandExecutor(log,
-                createFetchCommandExecutor(options),
-                writer);
+                createFetchCommandExecutor(options, checksumAlgorithms),
+                writer,
+                EffectivePomCache.createDefault());
     }
 
     private void reportErrors(AtomicReference<ErrorCause> anyError,
@@ -527,10 +709,17 @@ public final class Main {
         }
     }
 
-    private void withErrorHandling(Executable exe, long startTime, boolean quiet) {
+    private void withErrorHandling(Executable exe, long startTime, boolean quiet, boolean printStats) {
         var isError = true;
         try {
-            exe.run();
+            try {
+                exe.run();
+            } finally {
+                writeResolutionProfile();
+                saveRepositoryIndexes();
+                reportMissingOfflineArtifacts();
+                writeRunStatistics(printStats);
+            }
             isError = false;
         } catch (JBuildException e) {
             exitWithError(e.getMessage(), e.getErrorCause(), startTime, quiet);
@@ -551,6 +740,57 @@ public final class Main {
         exit.accept(0);
     }
 
+    private void writeResolutionProfile() {
+        var profiler = ResolutionProfiler.get();
+        if (!profiler.isEnabled()) return;
+        log.print(profiler.report(10));
+        var traceFile = Paths.get(Env.RESOLUTION_TRACE_FILE);
+        try {
+            profiler.writeChromeTrace(traceFile);
+            log.println(() -> "Resolution trace written to " + traceFile);
+        } catch (IOException e) {
+            log.println(() -> "WARNING: unable to write resolution trace to " + traceFile + " due to " + e);
+        }
+    }
+
+    private void writeRunStatistics(boolean print) {
+        var statistics = RunStatistics.get();
+        if (!statistics.isEnabled()) return;
+        if (print) {
+            log.println(statistics.toJson());
+        }
+        if (!Env.STATS_FILE.isBlank()) {
+            var statsFile = Paths.get(Env.STATS_FILE);
+            try {
+                statistics.writeJson(statsFile);
+                log.verbosePrintln(() -> "Run statistics written to " + statsFile);
+            } catch (IOException e) {
+                log.println(() -> "WARNING: unable to write run statistics to " + statsFile + " due to " + e);
+            }
+        }
+    }
+
+    private void reportMissingOfflineArtifacts() {
+        var missing = missingArtifacts.getMissing();
+        if (missing.isEmpty()) return;
+        log.println(() -> "Offline mode: the following " + (missing.size() == 1 ? "artifact is" : missing.size() +
+                " artifacts are") + " not available in " + missingArtifacts.getRepositories() + ":" + LINE_END +
+                missing.stream().map(artifact -> "  * " + artifact + LINE_END).collect(joining()) +
+                "Run the command again without offline mode to download " + (missing.size() == 1 ? "it." : "them."));
+    }
+
+    private void saveRepositoryIndexes() {
+        for (var index : LocalRepositoryIndex.sharedInstances()) {
+            try {
+                if (index.save()) {
+                    log.verbosePrintln(() -> "Saved index of " + index.getRepository() + " at " + index.getIndexFile());
+                }
+            } catch (IOException e) {
+                log.verbosePrintln(() -> "Unable to save index of " + index.getRepository() + " due to " + e);
+            }
+        }
+    }
+
     private Set<? extends Artifact> parseArtifacts(Set<String> coordinates) {
         Set<Artifact> artifacts = coordinates.stream()
                 .map(Artifact::parseCoordinates)
@@ -577,16 +817,19 @@ public final class Main {
 
     private ArtifactFileWriter selectArtifactWriter(
             String workingDir, InstallOptions installOptions) {
+        var store = installOptions.storeDir == null
+                ? null
+                : new ContentAddressableStore(Paths.get(relativize(workingDir, installOptions.storeDir)));
         var writer = installOptions.outDir == null
-                ? new ArtifactFileWriter(new File(relativize(workingDir, installOptions.repoDir)), MAVEN_REPOSITORY)
-                : new ArtifactFileWriter(new File(relativize(workingDir, installOptions.outDir)), FLAT_DIR);
+                ? new ArtifactFileWriter(new File(relativize(workingDir, installOptions.repoDir)), MAVEN_REPOSITORY, store)
+                : new ArtifactFileWriter(new File(relativize(workingDir, installOptions.outDir)), FLAT_DIR, store);
 
         if (installOptions.mavenLocal) {
             var m2Repo = MavenUtils.mavenHome().toAbsolutePath();
             var targetRepo = installOptions.outDir == null ? new File(writer.getDestination()).getAbsolutePath() : null;
             // make sure to not write twice to the same target location
             if (!m2Repo.toString().equals(targetRepo)) {
-                var mavenRepoWriter = new ArtifactFileWriter(m2Repo.toFile(), MAVEN_REPOSITORY);
+                var mavenRepoWriter = new ArtifactFileWriter(m2Repo.toFile(), MAVEN_REPOSITORY, store);
                 log.verbosePrintln(() -> "Artifact writers: " + writer + ", " + mavenRepoWriter);
                 return new MultiArtifactFileWriter(writer, mavenRepoWriter);
             }
@@ -6,11 +6,14 @@ import jbuild.artifact.file.FileArtifactRetriever;
 import jbuild.artifact.http.HttpArtifactRetriever;
 import jbuild.commands.IncrementalChanges;
 import jbuild.commands.InstallCommandExecutor;
+import jbuild.commands.ServeRepoCommandExecutor;
 import jbuild.errors.ArtifactRetrievalError;
 import jbuild.log.JBuildLog;
 import jbuild.maven.DependencyExclusions;
 import jbuild.maven.Scope;
+import jbuild.util.ChecksumAlgorithm;
 import jbuild.util.Either;
+import jbuild.util.Env;
 import jbuild.util.TextUtils;
 
 import java.io.File;
@@ -45,6 +48,8 @@ final class Options {
     final boolean help;
     final boolean version;
     final boolean quiet;
+    final boolean offline;
+    final boolean stats;
     final String workingDir;
     final String command;
     final List<String> repositories;
@@ -55,6 +60,8 @@ final class Options {
             boolean help,
             boolean version,
             boolean quiet,
+            boolean offline,
+            boolean stats,
             String workingDir,
             String command,
             List<String> repositories,
@@ -64,6 +71,8 @@ final class Options {
         this.help = help;
         this.version = version;
         this.quiet = quiet;
+        this.offline = offline;
+        this.stats = stats;
         this.workingDir = workingDir;
         this.command = command;
         this.repositories = repositories;
@@ -71,11 +80,24 @@ final class Options {
         this.applicationArgs = applicationArgs;
     }
 
-    List<ArtifactRetriever<? extends ArtifactRetrievalError>> getRetrievers(String workingDir, JBuildLog log) {
+    List<ArtifactRetriever<? extends ArtifactRetrievalError>> getRetrievers(
+            String workingDir, JBuildLog log, Set<ChecksumAlgorithm> checksumAlgorithms) {
+        return getRetrievers(workingDir, log, checksumAlgorithms, true);
+    }
+
+    List<ArtifactRetriever<? extends ArtifactRetrievalError>> getRetrievers(
+            String workingDir, JBuildLog log, Set<ChecksumAlgorithm> checksumAlgorithms, boolean cacheResults) {
         return repositories.stream()
+                .filter(address -> {
+                    if (offline && TextUtils.isHttp(address)) {
+                        log.println(() -> "WARNING: ignoring repository " + address + " in offline mode");
+                        return false;
+                    }
+                    return true;
+                })
                 .map(address -> {
                     if (TextUtils.isHttp(address)) {
-                        return new HttpArtifactRetriever(log, address);
+                        return new HttpArtifactRetriever(log, address, checksumAlgorithms, cacheResults);
                     }
                     return new FileArtifactRetriever(Paths.get(relativize(workingDir, address)));
                 }).collect(toList());
@@ -83,7 +105,8 @@ final class Options {
 
     static Options parse(String[] args) {
         var repositories = new ArrayList<String>(4);
-        boolean verbose = false, help = false, version = false, quiet = false;
+        boolean verbose = false, help = false, version = false, quiet = false, offline = Env.OFFLINE,
+                stats = false;
         String command = "", workingDir = ".";
         boolean expectingRepository = false, expectingWorkingDir = false;
         int i;
@@ -112,6 +135,10 @@ final class Options {
                 version = true;
             } else if (isEither(arg, "-q", "--quiet")) {
                 quiet = true;
+            } else if (isEither(arg, "-o", "--offline")) {
+                offline = true;
+            } else if ("--stats".equals(arg)) {
+                stats = true;
             } else if (isEither(arg, "-h", "--help")) {
                 help = true;
             } else {
@@ -157,7 +184,7 @@ final class Options {
             applicationArgs = List.of();
         }
 
-        return new Options(verbose, help, version, quiet, workingDir,
+        return new Options(verbose, help, version, quiet, offline, stats, workingDir,
                 command, repositories, commandArgs, applicationArgs);
     }
 
@@ -402,6 +429,16 @@ final class InstallOptions {
             "                   listed artifact, or globally if not preceded by any artifact." + LINE_END +
             "        --checksum" + LINE_END +
             "        -c         download and verify the checksum of all artifacts." + LINE_END +
+            "        --checksum-algorithm" + LINE_END +
+            "        -a <alg>   checksum algorithm to use: sha1 (default), sha256 or sha512 (implies -c)." + LINE_END +
+            "        --store" + LINE_END +
+            "        -S <dir>   content-addressable store directory: artifacts are written into the store" + LINE_END +
+            "                   only once, and installed by creating hard links to the stored files" + LINE_END +
+            "                   (falling back to copying files if links are not supported)." + LINE_END +
+            "        --lock-file" + LINE_END +
+            "        -L <file>  dependency lock file: if it exists, the artifacts it lists are installed" + LINE_END +
+            "                   without resolving dependencies, verifying their checksums. Otherwise," + LINE_END +
+            "                   dependencies are resolved and the file is created." + LINE_END +
             "      Note:" + LINE_END +
             "        The --directory and --repository options are mutually exclusive." + LINE_END +
             "        If the --maven-local flag is used, then artifacts are installed at ~/.m2/repository" + LINE_END +
@@ -419,22 +456,33 @@ final class InstallOptions {
     final EnumSet<Scope> scopes;
     final String outDir;
     final String repoDir;
-    final boolean optional, transitive, mavenLocal, checksum;
+    final String storeDir;
+    final String lockFile;
+    final boolean optional, transitive, mavenLocal;
+
+    /**
+     * The algorithm to use to verify checksums, or null if checksums should not be verified.
+     */
+    final ChecksumAlgorithm checksum;
 
     InstallOptions(Set<String> artifacts,
                    DependencyExclusions exclusions,
                    EnumSet<Scope> scopes,
                    String outDir,
                    String repoDir,
+                   String storeDir,
+                   String lockFile,
                    boolean optional,
                    boolean transitive,
                    boolean mavenLocal,
-                   boolean checksum) {
+                   ChecksumAlgorithm checksum) {
         this.artifacts = artifacts;
         this.exclusions = exclusions;
         this.scopes = scopes;
         this.outDir = outDir;
         this.repoDir = repoDir;
+        this.storeDir = storeDir;
+        this.lockFile = lockFile;
         this.optional = optional;
         this.transitive = transitive;
         this.mavenLocal = mavenLocal;
@@ -446,17 +494,27 @@ final class InstallOptions {
         var exclusions = new LinkedHashMap<String, Set<Pattern>>(2);
         var scopes = EnumSet.noneOf(Scope.class);
         var optional = false;
-        String outDir = null, repoDir = null;
+        String outDir = null, repoDir = null, storeDir = null, lockFile = null;
+        ChecksumAlgorithm checksum = null;
         boolean expectScope = false,
                 expectOutDir = false,
                 expectRepoDir = false,
+                expectStoreDir = false,
+                expectLockFile = false,
                 expectExclusion = false,
+                expectChecksumAlgorithm = false,
                 transitive = true,
-                mavenLocal = false,
-                checksum = false;
+                mavenLocal = false;
 
         for (String arg : args) {
-            if (expectScope) {
+            if (expectChecksumAlgorithm) {
+                expectChecksumAlgorithm = false;
+                checksum = ChecksumAlgorithm.parse(arg).orElseThrow(() -> new JBuildException(
+                        "invalid checksum algorithm: '" + arg + "'. Acceptable values are: " +
+                                Arrays.stream(ChecksumAlgorithm.values())
+                                        .map(alg -> alg.extension)
+                                        .collect(toList()), USER_INPUT));
+            } else if (expectScope) {
                 expectScope = false;
                 try {
                     scopes.add(Scope.valueOf(arg.toUpperCase(Locale.ROOT)));
@@ -472,6 +530,22 @@ final class InstallOptions {
                     throw new JBuildException("cannot provide output directory more than once." +
                             (verbose ? LINE_END + "Run jbuild --help for usage." : ""), USER_INPUT);
                 }
+            } else if (expectStoreDir) {
+                expectStoreDir = false;
+                if (storeDir == null) {
+                    storeDir = arg;
+                } else {
+                    throw new JBuildException("cannot provide store directory more than once." +
+                            (verbose ? LINE_END + "Run jbuild --help for usage." : ""), USER_INPUT);
+                }
+            } else if (expectLockFile) {
+                expectLockFile = false;
+                if (lockFile == null) {
+                    lockFile = arg;
+                } else {
+                    throw new JBuildException("cannot provide lock file more than once." +
+                            (verbose ? LINE_END + "Run jbuild --help for usage." : ""), USER_INPUT);
+                }
             } else if (expectRepoDir) {
                 expectRepoDir = false;
                 if (repoDir == null) {
@@ -496,7 +570,13 @@ final class InstallOptions {
                 } else if (isEither(arg, "-m", "--maven-local")) {
                     mavenLocal = true;
                 } else if (isEither(arg, "-c", "--checksum")) {
-                    checksum = true;
+                    if (checksum == null) checksum = ChecksumAlgorithm.SHA1;
+                } else if (isEither(arg, "-a", "--checksum-algorithm")) {
+                    expectChecksumAlgorithm = true;
+                } else if (isEither(arg, "-S", "--store")) {
+                    expectStoreDir = true;
+                } else if (isEither(arg, "-L", "--lock-file")) {
+                    expectLockFile = true;
                 } else if (isEither(arg, "-n", "--non-transitive")) {
                     transitive = false;
                 } else if (isEither(arg, "-x", "--exclusion")) {
@@ -510,8 +590,14 @@ final class InstallOptions {
             }
         }
 
-        if (expectScope || expectOutDir || expectRepoDir) {
-            var opt = expectScope ? "scope" : expectOutDir ? "directory" : "repository";
+        if (expectScope || expectOutDir || expectRepoDir || expectStoreDir || expectLockFile
+                || expectChecksumAlgorithm) {
+            var opt = expectScope ? "scope"
+                    : expectOutDir ? "directory"
+                    : expectRepoDir ? "repository"
+                    : expectStoreDir ? "store"
+                    : expectLockFile ? "lock-file"
+                    : "checksum-algorithm";
             throw new JBuildException("expecting value for '" + opt + "' option", USER_INPUT);
         }
 
@@ -526,7 +612,7 @@ final class InstallOptions {
         }
 
         return new InstallOptions(unmodifiableSet(artifacts), createExclusionsFromOptions(exclusions),
-                scopes, outDir, repoDir, optional, transitive, mavenLocal, checksum);
+                scopes, outDir, repoDir, storeDir, lockFile, optional, transitive, mavenLocal, checksum);
     }
 
 }
@@ -667,21 +753,63 @@ final class VersionsOptions {
     static final String USAGE = "  ## " + NAME + LINE_END +
             "    List the versions of the given artifacts that are available on configured repositories." + LINE_END +
             "      Usage:" + LINE_END +
-            "        jbuild " + NAME + " <artifact...>" + LINE_END +
-            "      Example:" + LINE_END +
-            "        jbuild " + NAME + " junit:junit";
+            "        jbuild " + NAME + " <options... | artifact...>" + LINE_END +
+            "      Options:" + LINE_END +
+            "        --input" + LINE_END +
+            "        -i <file> file containing one artifact per line ('-' to read from stdin)." + LINE_END +
+            "        --format" + LINE_END +
+            "        -f <fmt>  output format: 'text' (default) or 'jsonl' (one JSON object per artifact)." + LINE_END +
+            "        --concurrency" + LINE_END +
+            "        -c <n>    maximum number of artifacts queried at the same time (default: " +
+            Env.VERSIONS_MAX_CONCURRENCY + ")." + LINE_END +
+            "      Note:" + LINE_END +
+            "        Results are printed as soon as they are available, not in the order artifacts were given." + LINE_END +
+            "      Examples:" + LINE_END +
+            "        jbuild " + NAME + " junit:junit" + LINE_END +
+            "        jbuild -q " + NAME + " -f jsonl -i artifacts.txt";
+
+    enum Format {TEXT, JSONL}
 
     final Set<String> artifacts;
+    final String inputFile;
+    final Format format;
+    final int concurrency;
 
-    public VersionsOptions(Set<String> artifacts) {
+    public VersionsOptions(Set<String> artifacts, String inputFile, Format format, int concurrency) {
         this.artifacts = artifacts;
+        this.inputFile = inputFile;
+        this.format = format;
+        this.concurrency = concurrency;
     }
 
     static VersionsOptions parse(List<String> args, boolean verbose) {
         var artifacts = new LinkedHashSet<String>();
+        String inputFile = null;
+        var format = Format.TEXT;
+        var concurrency = Env.VERSIONS_MAX_CONCURRENCY;
+        String expecting = null;
 
         for (String arg : args) {
-            if (arg.startsWith("-")) {
+            if (expecting != null) {
+                switch (expecting) {
+                    case "input":
+                        inputFile = arg;
+                        break;
+                    case "format":
+                        format = parseFormat(arg);
+                        break;
+                    case "concurrency":
+                        concurrency = parseConcurrency(arg);
+                        break;
+                }
+                expecting = null;
+            } else if (isEither(arg, "-i", "--input")) {
+                expecting = "input";
+            } else if (isEither(arg, "-f", "--format")) {
+                expecting = "format";
+            } else if (isEither(arg, "-c", "--concurrency")) {
+                expecting = "concurrency";
+            } else if (arg.startsWith("-")) {
                 throw new JBuildException("invalid " + NAME + " option: " + arg + "." +
                         (verbose ? LINE_END + "Run jbuild --help for usage." : ""), USER_INPUT);
             } else {
@@ -689,7 +817,137 @@ final class VersionsOptions {
             }
         }
 
-        return new VersionsOptions(unmodifiableSet(artifacts));
+        if (expecting != null) {
+            throw new JBuildException("expecting value for '--" + expecting + "' option", USER_INPUT);
+        }
+
+        return new VersionsOptions(unmodifiableSet(artifacts), inputFile, format, concurrency);
+    }
+
+    private static Format parseFormat(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "text":
+                return Format.TEXT;
+            case "jsonl":
+                return Format.JSONL;
+            default:
+                throw new JBuildException("invalid value for '--format' option: " + value +
+                        " (expected 'text' or 'jsonl')", USER_INPUT);
+        }
+    }
+
+    private static int parseConcurrency(String value) {
+        try {
+            var result = Integer.parseInt(value);
+            if (result > 0) return result;
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new JBuildException("invalid value for '--concurrency' option: " + value, USER_INPUT);
+    }
+
+}
+
+final class ServeRepoOptions {
+
+    static final String NAME = "serve-repo";
+    static final String DESCRIPTION = "serves a caching Maven repository over HTTP";
+
+    static final String USAGE = "  ## " + NAME + LINE_END +
+            "    Serves a Maven repository over HTTP, fetching artifacts from the configured repositories" + LINE_END +
+            "    and caching them locally." + LINE_END +
+            "      Usage:" + LINE_END +
+            "        jbuild " + NAME + " <options...>" + LINE_END +
+            "      Options:" + LINE_END +
+            "        --port" + LINE_END +
+            "        -p <port> port to listen on (default: 8080)." + LINE_END +
+            "        --host" + LINE_END +
+            "        -H <host> host name or address to listen on (default: loopback address)." + LINE_END +
+            "        --cache-dir" + LINE_END +
+            "        -c <dir>  cache directory (default: jbuild-proxy-cache)." + LINE_END +
+            "        --max-size" + LINE_END +
+            "        -m <mb>   maximum size of the cache in megabytes (default: 1024)." + LINE_END +
+            "        --threads" + LINE_END +
+            "        -t <n>    number of threads used to send responses (default: 8)." + LINE_END +
+            "      Note:" + LINE_END +
+            "        Metrics are available at the " + ServeRepoCommandExecutor.METRICS_PATH + " path." + LINE_END +
+            "      Example:" + LINE_END +
+            "        jbuild -r https://repo1.maven.org/maven2 " + NAME + " -p 9000 -m 4096";
+
+    final int port;
+    final String host;
+    final String cacheDir;
+    final long maxSizeInBytes;
+    final int threads;
+
+    /**
+     * @param host host name or address to listen on, or null to listen on the loopback address only
+     */
+    public ServeRepoOptions(int port, String host, String cacheDir, long maxSizeInBytes, int threads) {
+        this.port = port;
+        this.host = host;
+        this.cacheDir = cacheDir;
+        this.maxSizeInBytes = maxSizeInBytes;
+        this.threads = threads;
+    }
+
+    static ServeRepoOptions parse(List<String> args, boolean verbose) {
+        int port = 8080, threads = 8;
+        long maxSizeInMb = 1024;
+        String cacheDir = "jbuild-proxy-cache", host = null;
+        String expecting = null;
+
+        for (String arg : args) {
+            if (expecting != null) {
+                switch (expecting) {
+                    case "port":
+                        port = parsePositive(expecting, arg, 65535);
+                        break;
+                    case "host":
+                        host = arg;
+                        break;
+                    case "cache-dir":
+                        cacheDir = arg;
+                        break;
+                    case "max-size":
+                        maxSizeInMb = parsePositive(expecting, arg, Integer.MAX_VALUE);
+                        break;
+                    case "threads":
+                        threads = parsePositive(expecting, arg, 1024);
+                        break;
+                }
+                expecting = null;
+            } else if (isEither(arg, "-p", "--port")) {
+                expecting = "port";
+            } else if (isEither(arg, "-H", "--host")) {
+                expecting = "host";
+            } else if (isEither(arg, "-c", "--cache-dir")) {
+                expecting = "cache-dir";
+            } else if (isEither(arg, "-m", "--max-size")) {
+                expecting = "max-size";
+            } else if (isEither(arg, "-t", "--threads")) {
+                expecting = "threads";
+            } else {
+                throw new JBuildException("invalid " + NAME + " option: " + arg + "." +
+                        (verbose ? LINE_END + "Run jbuild --help for usage." : ""), USER_INPUT);
+            }
+        }
+
+        if (expecting != null) {
+            throw new JBuildException("expecting value for '--" + expecting + "' option", USER_INPUT);
+        }
+
+        return new ServeRepoOptions(port, host, cacheDir, maxSizeInMb * 1024L * 1024L, threads);
+    }
+
+    private static int parsePositive(String option, String value, int max) {
+        try {
+            var result = Integer.parseInt(value);
+            if (result > 0 && result <= max) return result;
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new JBuildException("invalid value for '--" + option + "' option: " + value, USER_INPUT);
     }
 
 }
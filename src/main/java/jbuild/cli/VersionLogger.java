@@ -6,10 +6,15 @@ import jbuild.artifact.Version;
 import jbuild.log.JBuildLog;
 import jbuild.maven.ArtifactKey;
 import jbuild.maven.MavenArtifactMetadata;
+import jbuild.util.TextUtils;
 
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+
+import static java.util.stream.Collectors.joining;
+import static jbuild.util.TextUtils.jsonString;
 
 final class VersionLogger {
 
@@ -19,6 +24,44 @@ final class VersionLogger {
         this.log = log;
     }
 
+    /**
+     * Log the versions of an artifact as a single line containing a JSON object, with the fields
+     * {@code artifact}, {@code latest}, {@code release}, {@code lastUpdated} (ISO-8601 instant, if known)
+     * and {@code versions} (from oldest to newest).
+     *
+     * @param artifact         the artifact
+     * @param artifactMetadata metadata of the artifact
+     */
+    synchronized void logJson(Artifact artifact, ArtifactMetadata artifactMetadata) {
+        var release = (artifactMetadata instanceof MavenArtifactMetadata)
+                ? ((MavenArtifactMetadata) artifactMetadata).getReleaseVersion()
+                : "";
+        var json = new StringBuilder(256)
+                .append("{\"artifact\":").append(jsonString(ArtifactKey.of(artifact).getCoordinates()))
+                .append(",\"latest\":").append(jsonString(artifactMetadata.getLatestVersion()))
+                .append(",\"release\":").append(jsonString(release));
+        artifactMetadata.getLastUpdated().ifPresent(updated ->
+                json.append(",\"lastUpdated\":").append(jsonString(updated.toString())));
+        json.append(",\"versions\":[").append(artifactMetadata.getVersions().stream()
+                .map(Version::parse)
+                .sorted()
+                .map(version -> jsonString(version.toString()))
+                .collect(joining(","))).append("]}");
+        log.println(json);
+    }
+
+    /**
+     * Log the errors that prevented the versions of an artifact from being retrieved as a single line containing
+     * a JSON object, with the fields {@code artifact} and {@code errors}.
+     *
+     * @param artifact the artifact
+     * @param errors   the errors
+     */
+    synchronized void logJsonErrors(Artifact artifact, Collection<String> errors) {
+        log.println("{\"artifact\":" + jsonString(ArtifactKey.of(artifact).getCoordinates()) +
+                ",\"errors\":[" + errors.stream().map(TextUtils::jsonString).collect(joining(",")) + "]}");
+    }
+
     synchronized void log(Artifact artifact, ArtifactMetadata artifactMetadata) {
         log.println("Versions of " + ArtifactKey.of(artifact).getCoordinates() + ":");
 
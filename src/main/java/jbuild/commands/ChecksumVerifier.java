@@ -2,10 +2,10 @@ package jbuild.commands;
 
 import jbuild.artifact.ResolvedArtifact;
 import jbuild.artifact.ResolvedArtifactChecksum;
+import jbuild.util.ChecksumAlgorithm;
 import jbuild.util.Describable;
 import jbuild.util.Either;
 import jbuild.util.NonEmptyCollection;
-import jbuild.util.SHA1;
 
 import java.util.Arrays;
 
@@ -13,17 +13,32 @@ final class ChecksumVerifier {
 
     static Either<ResolvedArtifactChecksum, NonEmptyCollection<Describable>> verify(
             ResolvedArtifact artifact,
-            ResolvedArtifact sha,
+            ResolvedArtifact checksum,
             boolean verbose) {
-        var actual = SHA1.computeSha1(artifact.getContents());
-        var expected = SHA1.fromSha1StringBytes(sha.getContents());
+        var algorithm = checksum.artifact.getChecksumAlgorithm().orElse(ChecksumAlgorithm.SHA1);
+        byte[] expected;
+        try {
+            expected = algorithm.parseChecksumFile(checksum.getContents());
+        } catch (IllegalArgumentException e) {
+            return Either.right(NonEmptyCollection.of(Describable.of(
+                    "Checksum file " + checksum.artifact + " is invalid: " + e.getMessage())));
+        }
+        byte[] actual;
+        try {
+            actual = artifact.getChecksum(algorithm);
+        } catch (IllegalStateException e) {
+            return Either.right(NonEmptyCollection.of(Describable.of(
+                    "Checksum of " + artifact.artifact.getCoordinates() + " could not be computed: " +
+                            e.getMessage())));
+        }
         if (!Arrays.equals(expected, actual)) {
             var suffix = verbose
-                    ? " (actual=" + Arrays.toString(actual) + ", expected=" + Arrays.toString(expected) + ")"
+                    ? " (actual=" + algorithm.toHexString(actual) +
+                    ", expected=" + algorithm.toHexString(expected) + ")"
                     : "";
             return Either.right(NonEmptyCollection.of(Describable.of(
                     "Checksum of " + artifact.artifact.getCoordinates() + " did not match!" + suffix)));
         }
-        return Either.left(new ResolvedArtifactChecksum(artifact, sha));
+        return Either.left(new ResolvedArtifactChecksum(artifact, checksum));
     }
 }
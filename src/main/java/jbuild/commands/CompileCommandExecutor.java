@@ -8,12 +8,13 @@ import jbuild.java.tools.GroovyCompiler;
 import jbuild.java.tools.ToolRunResult;
 import jbuild.java.tools.Tools;
 import jbuild.log.JBuildLog;
+import jbuild.util.ChecksumAlgorithm;
+import jbuild.util.ChecksumComputer;
 import jbuild.util.Either;
 import jbuild.util.FileCollection;
 import jbuild.util.FileUtils;
 import jbuild.util.JarPatcher;
 import jbuild.util.NoOp;
-import jbuild.util.SHA1;
 
 import java.io.File;
 import java.io.FilenameFilter;
@@ -24,6 +25,7 @@ import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -316,7 +318,9 @@ public final class CompileCommandExecutor {
             final var startTime = System.currentTimeMillis();
             String sha1;
             try {
-                sha1 = SHA1.computeSha1HexString(Files.readAllBytes(Paths.get(jarFile)));
+                // stream the file through the digest rather than loading the whole jar into memory
+                var checksums = ChecksumComputer.compute(Paths.get(jarFile), EnumSet.of(ChecksumAlgorithm.SHA1));
+                sha1 = ChecksumAlgorithm.SHA1.toHexString(checksums.get(ChecksumAlgorithm.SHA1).orElseThrow());
             } catch (IOException e) {
                 throw new JBuildException("Could not read jar file that should have been created at: " + jarFile, IO_READ);
             }
@@ -0,0 +1,243 @@
+package jbuild.commands;
+
+import jbuild.api.JBuildException;
+import jbuild.artifact.Artifact;
+import jbuild.util.ChecksumAlgorithm;
+import jbuild.util.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static jbuild.api.JBuildException.ErrorCause.IO_READ;
+import static jbuild.api.JBuildException.ErrorCause.USER_INPUT;
+
+/**
+ * Dependency lock file.
+ * <p>
+ * Records the exact set of artifacts that were installed for a certain install request, together with the
+ * checksum of each artifact and the repository it was retrieved from. Installing from a lock file only requires
+ * fetching the listed artifacts and verifying their checksums: no POM is fetched or parsed.
+ * <p>
+ * The file is line-based. Lines starting with {@code #} are comments. The first non-comment line contains the
+ * request the lock file was created for, and every other line has the format:
+ * <pre>
+ * groupId:artifactId:version:extension:classifier sha256:checksum repository
+ * </pre>
+ */
+public final class DependencyLockFile {
+
+    /**
+     * The algorithm used to compute the checksums of the locked artifacts.
+     */
+    public static final ChecksumAlgorithm CHECKSUM_ALGORITHM = ChecksumAlgorithm.SHA256;
+
+    private static final String HEADER = "# JBuild dependency lock file - do not edit manually";
+    private static final String REQUEST_PREFIX = "request ";
+
+    /**
+     * A locked artifact.
+     */
+    public static final class Entry {
+        public final Artifact artifact;
+        private final byte[] checksum;
+        public final String repository;
+
+        /**
+         * Create a lock file entry.
+         *
+         * @param artifact   the exact artifact that was installed
+         * @param checksum   checksum of the artifact computed with {@link DependencyLockFile#CHECKSUM_ALGORITHM}
+         * @param repository description of the repository the artifact was retrieved from
+         */
+        public Entry(Artifact artifact, byte[] checksum, String repository) {
+            this.artifact = artifact;
+            this.checksum = checksum.clone();
+            this.repository = repository;
+        }
+
+        public byte[] getChecksum() {
+            return checksum.clone();
+        }
+
+        public boolean checksumMatches(byte[] otherChecksum) {
+            return Arrays.equals(checksum, otherChecksum);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Entry entry = (Entry) o;
+
+            return artifact.equals(entry.artifact) &&
+                    Arrays.equals(checksum, entry.checksum) &&
+                    repository.equals(entry.repository);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = artifact.hashCode();
+            result = 31 * result + Arrays.hashCode(checksum);
+            result = 31 * result + repository.hashCode();
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "artifact=" + artifact +
+                    ", " + CHECKSUM_ALGORITHM.extension + "=" + CHECKSUM_ALGORITHM.toHexString(checksum) +
+                    ", repository='" + repository + '\'' +
+                    '}';
+        }
+    }
+
+    public final String request;
+    public final List<Entry> entries;
+
+    /**
+     * Create a lock file.
+     *
+     * @param request description of the request the entries were installed for
+     * @param entries locked artifacts
+     */
+    public DependencyLockFile(String request, Collection<Entry> entries) {
+        this.request = request;
+        this.entries = entries.stream()
+                .sorted(Comparator.comparing(entry -> toCoordinates(entry.artifact)))
+                .collect(toList());
+    }
+
+    /**
+     * Read a lock file.
+     *
+     * @param file the lock file
+     * @return the lock file, or empty if the file does not exist
+     * @throws JBuildException if the file cannot be read or is invalid
+     */
+    public static Optional<DependencyLockFile> read(Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, UTF_8);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new JBuildException("Unable to read lock file " + file + " due to " + e, IO_READ);
+        }
+        String request = null;
+        var entries = new ArrayList<Entry>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            var line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            if (request == null) {
+                if (!line.startsWith(REQUEST_PREFIX)) {
+                    throw invalidLockFile(file, i, "expected request line");
+                }
+                request = line.substring(REQUEST_PREFIX.length());
+            } else {
+                entries.add(parseEntry(file, i, line));
+            }
+        }
+        if (request == null) {
+            throw invalidLockFile(file, lines.size(), "missing request line");
+        }
+        return Optional.of(new DependencyLockFile(request, entries));
+    }
+
+    /**
+     * Write this lock file atomically.
+     *
+     * @param file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        var parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        var lines = new ArrayList<String>(entries.size() + 2);
+        lines.add(HEADER);
+        lines.add(REQUEST_PREFIX + request);
+        for (var entry : entries) {
+            lines.add(toCoordinates(entry.artifact) + ' ' +
+                    CHECKSUM_ALGORITHM.extension + ':' + CHECKSUM_ALGORITHM.toHexString(entry.checksum) + ' ' +
+                    entry.repository);
+        }
+        FileUtils.writeAtomically(file, false, tempFile -> Files.write(tempFile, lines, UTF_8));
+    }
+
+    /**
+     * @param artifact to represent
+     * @return the full coordinates of the artifact, including extension and classifier
+     */
+    static String toCoordinates(Artifact artifact) {
+        return artifact.groupId + ':' + artifact.artifactId + ':' + artifact.version + ':' +
+                artifact.extension + ':' + artifact.classifier;
+    }
+
+    private static Entry parseEntry(Path file, int index, String line) {
+        var parts = line.split(" ", 3);
+        if (parts.length != 3) {
+            throw invalidLockFile(file, index, "expected coordinates, checksum and repository");
+        }
+        Artifact artifact;
+        try {
+            artifact = Artifact.parseCoordinates(parts[0]);
+        } catch (JBuildException e) {
+            throw invalidLockFile(file, index, e.getMessage());
+        }
+        var checksumPrefix = CHECKSUM_ALGORITHM.extension + ':';
+        if (!parts[1].startsWith(checksumPrefix)) {
+            throw invalidLockFile(file, index, "expected " + CHECKSUM_ALGORITHM.extension + " checksum");
+        }
+        byte[] checksum;
+        try {
+            checksum = CHECKSUM_ALGORITHM.parseChecksumFile(
+                    parts[1].substring(checksumPrefix.length()).getBytes(US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw invalidLockFile(file, index, e.getMessage());
+        }
+        return new Entry(artifact, checksum, parts[2]);
+    }
+
+    private static JBuildException invalidLockFile(Path file, int index, String reason) {
+        return new JBuildException("Invalid lock file " + file + " at line " + (index + 1) + ": " + reason,
+                USER_INPUT);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        DependencyLockFile that = (DependencyLockFile) o;
+
+        return request.equals(that.request) && entries.equals(that.entries);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(request, entries);
+    }
+
+    @Override
+    public String toString() {
+        return "DependencyLockFile{" +
+                "request='" + request + '\'' +
+                ", entries=" + entries +
+                '}';
+    }
+}
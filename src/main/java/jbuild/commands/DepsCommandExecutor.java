@@ -4,29 +4,43 @@ import jbuild.artifact.Artifact;
 import jbuild.commands.MavenPomRetriever.DefaultPomCreator;
 import jbuild.errors.ArtifactRetrievalError;
 import jbuild.log.JBuildLog;
+import jbuild.log.ResolutionProfiler;
+import jbuild.maven.ArtifactKey;
 import jbuild.maven.Dependency;
 import jbuild.maven.DependencyExclusions;
+import jbuild.maven.DependencyMediator;
 import jbuild.maven.DependencyTree;
+import jbuild.maven.EffectivePomCache;
 import jbuild.maven.MavenPom;
 import jbuild.maven.Scope;
 import jbuild.util.Either;
 import jbuild.util.Env;
+import jbuild.util.NoOp;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
+import static java.util.Comparator.comparing;
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
-import static jbuild.maven.MavenUtils.applyExclusionPatterns;
+import static jbuild.maven.MavenUtils.applyExclusions;
 import static jbuild.maven.MavenUtils.asPatterns;
 import static jbuild.maven.Scope.expandScopes;
 import static jbuild.util.AsyncUtils.awaitValues;
@@ -34,6 +48,7 @@ import static jbuild.util.CollectionUtils.append;
 import static jbuild.util.CollectionUtils.appendList;
 import static jbuild.util.CollectionUtils.mapEntries;
 import static jbuild.util.CollectionUtils.mapValues;
+import static jbuild.util.CollectionUtils.sorted;
 
 public final class DepsCommandExecutor<Err extends ArtifactRetrievalError> {
 
@@ -56,9 +71,18 @@ public final class DepsCommandExecutor<Err extends ArtifactRetrievalError> {
     public static <E extends ArtifactRetrievalError> DepsCommandExecutor<E> create(
             JBuildLog log,
             FetchCommandExecutor<E> fetchCommandExecutor) {
+        return create(log, fetchCommandExecutor, null);
+    }
+
+    public static <E extends ArtifactRetrievalError> DepsCommandExecutor<E> create(
+            JBuildLog log,
+            FetchCommandExecutor<E> fetchCommandExecutor,
+            EffectivePomCache effectivePomCache) {
         var mavenPomRetriever = new MavenPomRetriever<>(log,
                 fetchCommandExecutor,
-                DefaultPomCreator.INSTANCE);
+                DefaultPomCreator.INSTANCE,
+                null,
+                effectivePomCache);
         return new DepsCommandExecutor<>(log, mavenPomRetriever);
     }
 
@@ -77,6 +101,35 @@ public final class DepsCommandExecutor<Err extends ArtifactRetrievalError> {
             boolean transitive,
             boolean optional,
             DependencyExclusions exclusions) {
+        return fetchDependencyTree(artifacts, mavenPom, scopes, transitive, optional, exclusions, null);
+    }
+
+    /**
+     * Fetch the dependency trees of the given artifacts.
+     * <p>
+     * The POM listener, if given, is notified of the POM of each artifact that is certain to win the version
+     * mediation of the trees (see {@link DependencyMediator}) as soon as it is resolved, before the resolution of
+     * the dependency trees completes. It is called at most once for each artifact, possibly concurrently,
+     * and always before the returned trees are completed. POMs of artifacts that may still lose the mediation
+     * to another version are not notified.
+     *
+     * @param artifacts   whose dependency trees to fetch
+     * @param mavenPom    local POM whose dependency tree to fetch, or null
+     * @param scopes      scopes to include
+     * @param transitive  whether to include transitive dependencies
+     * @param optional    whether to include optional dependencies
+     * @param exclusions  dependency exclusions
+     * @param pomListener listener of resolved POMs, or null
+     * @return the dependency tree of each artifact
+     */
+    public Map<Artifact, CompletionStage<Optional<DependencyTree>>> fetchDependencyTree(
+            Set<? extends Artifact> artifacts,
+            MavenPom mavenPom,
+            EnumSet<Scope> scopes,
+            boolean transitive,
+            boolean optional,
+            DependencyExclusions exclusions,
+            Consumer<MavenPom> pomListener) {
         var expandedScopes = expandScopes(scopes);
         var exclusionsWithUsage = exclusions.withUsage();
 
@@ -85,20 +138,36 @@ public final class DepsCommandExecutor<Err extends ArtifactRetrievalError> {
                 " with scopes " + expandedScopes +
                 (exclusions.isEmpty() ? "" : " with exclusions " + exclusions));
 
-        var result = mapEntries(withLocalPom(mavenPomRetriever.fetchPoms(artifacts), mavenPom),
-                (artifact, completionStage) ->
-                        completionStage.thenCompose(pom ->
-                                pom.map(value -> fetchChildren(Set.of(), value,
-                                                expandedScopes, transitive, optional, exclusionsWithUsage)
-                                                .thenApply(Optional::of))
-                                        .orElseGet(() -> completedFuture(Optional.empty()))));
-        var completedCount = new AtomicInteger(result.size());
-        return mapValues(result, completion ->
-                completion.whenComplete((ok, err) -> {
-                    if (completedCount.decrementAndGet() == 0) {
-                        warnIfExclusionPatternNotUsed(exclusionsWithUsage);
-                    }
-                }));
+        var resolution = new Resolution(transitive, optional, ResolutionProfiler.get().start(
+                ResolutionProfiler.CATEGORY_RESOLUTION, artifacts.stream()
+                        .map(Artifact::getCoordinates)
+                        .collect(joining(", ")), null), pomListener);
+
+        var rootLevel = resolution.startLevel(0);
+        var fetchedRootPoms = mapValues(mavenPomRetriever.fetchPoms(artifacts), resolution::notifyListener);
+        fetchedRootPoms.forEach((artifact, completion) -> resolution.waitFor(rootLevel, artifact.pom(), completion));
+        var rootPoms = withLocalPom(fetchedRootPoms, mavenPom);
+        resolution.intern(exclusionsWithUsage);
+        var roots = mapValues(rootPoms, ignore -> new Node(null, Set.of(), expandedScopes, exclusionsWithUsage));
+        roots.values().forEach(root -> root.undisputed = true);
+
+        // shared nodes are memoized while building the trees, so all trees must be built by the same thread
+        var trees = rootLevel.endOn(awaitValues(rootPoms)).thenCompose(poms -> {
+            poms.forEach((artifact, pom) -> resolution.addRoot(artifact, roots.get(artifact), pom));
+            return resolveLevels(resolution, roots.values(), 0);
+        }).thenApply(ignore -> mapValues(roots, root -> root.pom.map(
+                pom -> Either.<Optional<DependencyTree>, Throwable>left(pom.map(value -> buildTree(root, value))),
+                Either::<Optional<DependencyTree>, Throwable>right)
+        )).whenComplete((ok, err) -> {
+            resolution.span.end();
+            warnIfExclusionPatternNotUsed(exclusionsWithUsage);
+        });
+
+        return mapEntries(roots, (artifact, ignore) -> trees.thenApply(results -> results.get(artifact).map(
+                tree -> tree,
+                err -> {
+                    throw new CompletionException(err);
+                })));
     }
 
     private void warnIfExclusionPatternNotUsed(DependencyExclusions.ExclusionsWithUsage exclusionsWithUsage) {
@@ -126,25 +195,61 @@ public final class DepsCommandExecutor<Err extends ArtifactRetrievalError> {
         return result;
     }
 
-    private CompletionStage<DependencyTree> fetchChildren(
-            Set<Dependency> chain,
-            MavenPom pom,
-            EnumSet<Scope> scopes,
-            boolean transitive,
-            boolean includeOptionals,
-            DependencyExclusions.ExclusionsWithUsage exclusions) {
+    /**
+     * Resolve the dependency graph one level at a time.
+     * <p>
+     * The POMs of all nodes of a level are fetched concurrently, and only once all of them have been
+     * fetched are the nodes expanded into the next level. Expanding a level is done by a single thread,
+     * so the resolution state does not need to be synchronized.
+     */
+    private CompletionStage<Void> resolveLevels(Resolution resolution, Collection<Node> level, int depth) {
+        var nextLevel = new ArrayList<Node>();
+        for (var node : level) {
+            node.pom.use(pom -> pom.ifPresent(value -> expand(resolution, node, value, nextLevel)), NoOp.ignore());
+        }
+
+        if (nextLevel.isEmpty()) {
+            return completedFuture(null);
+        }
+
+        log.verbosePrintln(() -> "Resolving " + nextLevel.size() + " dependencies at depth " + (depth + 1));
+
+        // all nodes up to the next level are known now, so it's known which ones cannot lose the mediation
+        for (var node : nextLevel) {
+            node.undisputed = node.undisputed && resolution.isUndisputed(node.key.artifact, depth + 1);
+        }
+
+        var levelSpan = resolution.startLevel(depth + 1);
+        var poms = nextLevel.stream()
+                .map(node -> resolution.fetchPom(node.key.artifact.pom(), levelSpan, node.undisputed))
+                .collect(toList());
+
+        return levelSpan.endOn(awaitValues(poms)).thenCompose(results -> {
+            var iterator = results.iterator();
+            for (var node : nextLevel) {
+                node.pom = iterator.next();
+            }
+            return resolveLevels(resolution, nextLevel, depth + 1);
+        });
+    }
+
+    private void expand(Resolution resolution, Node node, MavenPom pom, List<Node> nextLevel) {
         var artifact = pom.getArtifact();
+        var exclusions = node.exclusions;
         var forAll = exclusions.globalExclusions;
         var forThis = exclusions.get(artifact.getCoordinates());
         var applicableExclusions = forThis == null ? forAll : appendList(forAll, forThis);
-        var dependencies = applyExclusionPatterns(pom.getDependencies(scopes, includeOptionals), applicableExclusions);
+        var dependencies = applyExclusions(
+                pom.getDependencies(node.scopes, resolution.includeOptionals),
+                exclusions.matcherFor(artifact.getCoordinates()));
 
         log.verbosePrintln(() -> "Dependencies of " + artifact.getCoordinates() + " after exclusions (" +
                 applicableExclusions + "): " + dependencies.stream()
                 .map(dep -> dep.artifact.getCoordinates())
                 .collect(joining(", ")));
 
-        var maxTreeDepthExceeded = transitive && chain.size() + 1 > Env.MAX_DEPENDENCY_TREE_DEPTH;
+        var chain = node.chain;
+        var maxTreeDepthExceeded = resolution.transitive && chain.size() + 1 > Env.MAX_DEPENDENCY_TREE_DEPTH;
 
         if (maxTreeDepthExceeded || dependencies.isEmpty()) {
             if (maxTreeDepthExceeded) {
@@ -155,46 +260,61 @@ public final class DepsCommandExecutor<Err extends ArtifactRetrievalError> {
                 log.verbosePrintln(() -> "Artifact " + artifact.getCoordinates() +
                         " does not have any dependencies");
             }
-            return completedFuture(DependencyTree.childless(artifact.pom(), pom));
+            return;
         }
 
         log.verbosePrintln(() -> "Fetching " + dependencies);
 
-        var children = dependencies.stream()
-                .map(dependency -> {
-                    var newChain = append(chain, dependency);
-                    if (newChain.size() == chain.size()) {
-                        log.println(() -> "WARNING: Detected circular dependency chain - " +
-                                collectDependencyChain(chain, dependency));
-                    } else if (transitive) {
-                        log.verbosePrintln(() -> "Fetching dependency of " +
-                                artifact.getCoordinates() + " - " + dependency);
-
-                        return fetch(newChain, dependency, includeOptionals,
-                                // the applicable exclusions now become "global" within this branch
-                                exclusions.withGlobalExclusions(applicableExclusions));
-                    }
-                    return completedFuture(Optional.of(DependencyTree.childless(dependency.artifact, pom)));
-                })
-                .collect(toList());
+        // expanding dependencies in a stable order makes the resolved graph, in particular where cycles are cut,
+        // independent of the iteration order of the dependencies Set
+        for (var dependency : sorted(dependencies, comparing(dep -> dep.artifact.getCoordinates()))) {
+            var newChain = append(chain, dependency);
+            if (newChain.size() == chain.size()) {
+                log.println(() -> "WARNING: Detected circular dependency chain - " +
+                        collectDependencyChain(chain, dependency));
+            } else if (resolution.transitive) {
+                log.verbosePrintln(() -> "Fetching dependency of " +
+                        artifact.getCoordinates() + " - " + dependency);
 
-        return awaitValues(children).thenApply(c -> createTree(artifact.pom(), pom, c));
-    }
-
-    private CompletionStage<Optional<DependencyTree>> fetch(
-            Set<Dependency> chain,
-            Dependency dependency,
-            boolean includeOptionals,
-            DependencyExclusions.ExclusionsWithUsage exclusions) {
-        return mavenPomRetriever.fetchPom(dependency.artifact.pom()).thenComposeAsync(child -> {
-            if (child.isEmpty()) return completedFuture(Optional.empty());
-            var pom = child.get();
-            var depExclusions = asPatterns(dependency.exclusions).globalExclusions;
-            return fetchChildren(chain, pom,
-                    dependency.scope.transitiveScopes(), true, includeOptionals,
-                    exclusions.withGlobalExclusions(depExclusions)
-            ).thenApply(Optional::of);
-        });
+                // the applicable exclusions now become "global" within this branch
+                var childExclusions = resolution.intern(exclusions.withGlobalExclusions(applicableExclusions)
+                        .withGlobalExclusions(resolution.exclusionPatterns(dependency.exclusions)));
+                var scopes = dependency.scope.transitiveScopes();
+                var key = new NodeKey(dependency.artifact, scopes, childExclusions);
+                var child = resolution.nodes.get(key);
+                if (child == null) {
+                    child = new Node(key, newChain, scopes, childExclusions);
+                    child.undisputed = node.undisputed;
+                    resolution.addNode(key, child);
+                    resolution.register(dependency.artifact, child);
+                    nextLevel.add(child);
+                    node.children.add(child);
+                    continue;
+                }
+                if (resolution.link(node, child)) {
+                    continue;
+                }
+                log.println(() -> "WARNING: Detected circular dependency chain - " +
+                        collectDependencyChain(chain, dependency) + " -> ...");
+            }
+            var leaf = Node.leaf(DependencyTree.childless(dependency.artifact, pom));
+            resolution.register(dependency.artifact, leaf);
+            node.children.add(leaf);
+        }
+    }
+
+    private DependencyTree buildTree(Node node, MavenPom pom) {
+        if (node.tree == null) {
+            var children = node.children.stream()
+                    .map(child -> child.tree != null
+                            ? Either.<Optional<DependencyTree>, Throwable>left(Optional.of(child.tree))
+                            : child.pom.<Either<Optional<DependencyTree>, Throwable>>map(
+                            childPom -> Either.left(childPom.map(value -> buildTree(child, value))),
+                            Either::right))
+                    .collect(toList());
+            node.tree = createTree(pom.getArtifact().pom(), pom, children);
+        }
+        return node.tree;
     }
 
     private String collectDependencyChain(Set<Dependency> chain, Dependency dependency) {
@@ -238,4 +358,305 @@ public final class DepsCommandExecutor<Err extends ArtifactRetrievalError> {
         return DependencyTree.resolved(artifact, mavenPom, childrenNodes);
     }
 
+    /**
+     * Identity of a node in the dependency graph.
+     * <p>
+     * The sub-tree of a dependency only depends on the dependency itself, the scopes it is resolved with
+     * and the exclusions in effect, so those are the only components of the key.
+     */
+    private static final class NodeKey {
+        private final Artifact artifact;
+        private final EnumSet<Scope> scopes;
+        private final Set<String> exclusions;
+        private final int hashCode;
+
+        NodeKey(Artifact artifact, EnumSet<Scope> scopes, DependencyExclusions.ExclusionsWithUsage exclusions) {
+            this.artifact = artifact;
+            this.scopes = scopes;
+            this.exclusions = exclusions.getGlobalPatterns();
+            this.hashCode = computeHashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            NodeKey nodeKey = (NodeKey) o;
+
+            return hashCode == nodeKey.hashCode &&
+                    artifact.equals(nodeKey.artifact) &&
+                    scopes.equals(nodeKey.scopes) &&
+                    exclusions.equals(nodeKey.exclusions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        private int computeHashCode() {
+            int result = artifact.hashCode();
+            result = 31 * result + scopes.hashCode();
+            result = 31 * result + exclusions.hashCode();
+            return result;
+        }
+    }
+
+    /**
+     * A node of the dependency graph being resolved.
+     */
+    private static final class Node {
+
+        // null for the root nodes
+        final NodeKey key;
+
+        // the dependency chain through which the node was first reached
+        final Set<Dependency> chain;
+        final EnumSet<Scope> scopes;
+        final DependencyExclusions.ExclusionsWithUsage exclusions;
+        final List<Node> children = new ArrayList<>();
+
+        Either<Optional<MavenPom>, Throwable> pom;
+        DependencyTree tree;
+
+        // whether the node is certain to win the version mediation
+        boolean undisputed;
+
+        // position in the topological order of the resolution's nodes (roots come before and leaves after all nodes)
+        int order = -1;
+
+        Node(NodeKey key,
+             Set<Dependency> chain,
+             EnumSet<Scope> scopes,
+             DependencyExclusions.ExclusionsWithUsage exclusions) {
+            this.key = key;
+            this.chain = chain;
+            this.scopes = scopes;
+            this.exclusions = exclusions;
+        }
+
+        static Node leaf(DependencyTree tree) {
+            var node = new Node(null, Set.of(), EnumSet.noneOf(Scope.class), null);
+            node.tree = tree;
+            node.order = Integer.MAX_VALUE;
+            return node;
+        }
+    }
+
+    /**
+     * State of a single dependency resolution.
+     * <p>
+     * The same dependency is normally reached through many paths of the dependency graph. Each distinct node
+     * (see {@link NodeKey}) is resolved only once, and the resulting {@link DependencyTree} instance is shared
+     * by all paths leading to it, so the resolved "tree" is really a DAG.
+     * <p>
+     * A link to an existing node is only made if it does not close a cycle in the graph, otherwise the
+     * dependency is left without children, just like when a cycle is detected within a single path.
+     * To check that cheaply, the nodes are kept in a topological order (see {@link Resolution#link(Node, Node)}).
+     * <p>
+     * As the graph is resolved breadth-first, once a level is known, it's also known whether each of its nodes
+     * can still lose the version mediation: a node cannot lose if its parent cannot lose, no other node
+     * with the same {@link ArtifactKey} exists at the same or lower depth, and no root manages a different
+     * version for it.
+     */
+    private final class Resolution {
+
+        final boolean transitive;
+        final boolean includeOptionals;
+        final ResolutionProfiler.Span span;
+        final Map<NodeKey, Node> nodes = new HashMap<>();
+
+        // every link goes from a node to a later node in this list (roots and leaves are not included)
+        private final List<Node> topologicalOrder = new ArrayList<>();
+        private final Map<ArtifactKey, Node> nodeByKey = new HashMap<>();
+        private final Set<ArtifactKey> disputedKeys = new HashSet<>();
+        private final List<Map<ArtifactKey, String>> managedVersions = new ArrayList<>(2);
+        private final PomRequests pomRequests;
+
+        // exclusions are interned so that the matchers of each distinct set of exclusions are compiled only once
+        private final Map<Set<String>, DependencyExclusions.ExclusionsWithUsage> exclusionsByPatterns =
+                new HashMap<>();
+        private final Map<Set<ArtifactKey>, List<DependencyExclusions.PatternUsage>> patternsByExclusions =
+                new HashMap<>();
+
+        Resolution(boolean transitive,
+                   boolean includeOptionals,
+                   ResolutionProfiler.Span span,
+                   Consumer<MavenPom> pomListener) {
+            this.transitive = transitive;
+            this.includeOptionals = includeOptionals;
+            this.span = span;
+            this.pomRequests = new PomRequests(pomListener);
+        }
+
+        ResolutionProfiler.Span startLevel(int depth) {
+            return ResolutionProfiler.get().start(ResolutionProfiler.CATEGORY_LEVEL, "depth " + depth, span);
+        }
+
+        DependencyExclusions.ExclusionsWithUsage intern(DependencyExclusions.ExclusionsWithUsage exclusions) {
+            // all exclusions of a resolution share the same exclusions by artifact
+            var existing = exclusionsByPatterns.putIfAbsent(exclusions.getGlobalPatterns(), exclusions);
+            return existing == null ? exclusions : existing;
+        }
+
+        List<DependencyExclusions.PatternUsage> exclusionPatterns(Set<ArtifactKey> exclusions) {
+            if (exclusions.isEmpty()) return List.of();
+            return patternsByExclusions.computeIfAbsent(exclusions, e -> asPatterns(e).globalExclusions);
+        }
+
+        void addNode(NodeKey key, Node node) {
+            nodes.put(key, node);
+            node.order = topologicalOrder.size();
+            topologicalOrder.add(node);
+        }
+
+        /**
+         * Link a node to an existing node unless that would close a cycle.
+         * <p>
+         * A link to a node that comes later in the topological order cannot close a cycle. Otherwise, a path from
+         * the child back to the parent could only go through nodes between them in that order, so only those
+         * are visited. If there is no such path, the nodes reachable from the child are moved after the parent
+         * so that the order remains topological (as in the incremental algorithm by Marchetti-Spaccamela et al.).
+         *
+         * @return true if the link was made, false if it would close a cycle
+         */
+        boolean link(Node parent, Node child) {
+            if (parent.order < child.order) {
+                parent.children.add(child);
+                return true;
+            }
+            if (parent == child) return false;
+
+            var reachable = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+            var toVisit = new ArrayDeque<Node>();
+            reachable.add(child);
+            toVisit.add(child);
+            while (!toVisit.isEmpty()) {
+                for (var next : toVisit.poll().children) {
+                    if (next == parent) return false;
+                    if (next.order < parent.order && reachable.add(next)) toVisit.add(next);
+                }
+            }
+
+            var from = child.order;
+            var region = new ArrayList<>(topologicalOrder.subList(from, parent.order + 1));
+            var position = from;
+            for (var node : region) {
+                if (!reachable.contains(node)) position = moveTo(node, position);
+            }
+            for (var node : region) {
+                if (reachable.contains(node)) position = moveTo(node, position);
+            }
+            parent.children.add(child);
+            return true;
+        }
+
+        private int moveTo(Node node, int position) {
+            node.order = position;
+            topologicalOrder.set(position, node);
+            return position + 1;
+        }
+
+        void addRoot(Artifact artifact, Node root, Either<Optional<MavenPom>, Throwable> pom) {
+            root.pom = pom;
+            register(artifact, root);
+            pom.use(value -> value.ifPresent(rootPom ->
+                    managedVersions.add(DependencyMediator.managedVersions(rootPom))), NoOp.ignore());
+        }
+
+        void register(Artifact artifact, Node node) {
+            // mediation uses the artifact of the dependency's POM, which has no classifier
+            var key = ArtifactKey.of(artifact.groupId, artifact.artifactId);
+            var existing = nodeByKey.putIfAbsent(key, node);
+            if (existing != null && existing != node) {
+                disputedKeys.add(key);
+            }
+        }
+
+        boolean isUndisputed(Artifact artifact, int depth) {
+            var key = ArtifactKey.of(artifact.groupId, artifact.artifactId);
+            if (disputedKeys.contains(key)) return false;
+            // the versions of direct dependencies are not managed
+            if (depth > 1) {
+                for (var management : managedVersions) {
+                    var version = management.get(key);
+                    if (version != null && !version.isBlank() && !version.equals(artifact.version)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        CompletionStage<Optional<MavenPom>> fetchPom(Artifact artifact,
+                                                     ResolutionProfiler.Span level,
+                                                     boolean undisputed) {
+            return pomRequests.fetch(artifact, undisputed,
+                    a -> waitFor(level, a, mavenPomRetriever.fetchPom(a)));
+        }
+
+        CompletionStage<Optional<MavenPom>> notifyListener(CompletionStage<Optional<MavenPom>> pom) {
+            return pomRequests.notifyListener(pom);
+        }
+
+        <T> CompletionStage<T> waitFor(ResolutionProfiler.Span level, Artifact artifact, CompletionStage<T> stage) {
+            var profiler = ResolutionProfiler.get();
+            profiler.startWait(artifact.getCoordinates(), level, profiler.resolutionOf(artifact)).endOn(stage);
+            return stage;
+        }
+    }
+
+    /**
+     * The POMs requested by a resolution, each of which is fetched only once.
+     * <p>
+     * The POM listener is notified of a POM only once, as soon as it is requested by a node that cannot lose
+     * the version mediation, even if nodes that could lose it requested the same POM earlier.
+     * <p>
+     * This class is not thread-safe, as each resolution uses it from a single thread.
+     */
+    static final class PomRequests {
+
+        private final Consumer<MavenPom> pomListener;
+        private final Map<Artifact, CompletionStage<Optional<MavenPom>>> poms = new HashMap<>();
+        private final Set<Artifact> notified = new HashSet<>();
+
+        PomRequests(Consumer<MavenPom> pomListener) {
+            this.pomListener = pomListener;
+        }
+
+        /**
+         * Fetch a POM unless it has already been requested.
+         *
+         * @param artifact the POM artifact
+         * @param notify   whether the POM listener should be notified of the POM
+         * @param fetcher  to use to fetch the POM if it has not been requested yet
+         * @return the POM
+         */
+        CompletionStage<Optional<MavenPom>> fetch(Artifact artifact,
+                                                  boolean notify,
+                                                  Function<Artifact, CompletionStage<Optional<MavenPom>>> fetcher) {
+            var pom = poms.get(artifact);
+            if (pom == null) {
+                pom = fetcher.apply(artifact);
+                poms.put(artifact, pom);
+            }
+            if (notify && notified.add(artifact)) {
+                // later requests also wait for the listener
+                pom = notifyListener(pom);
+                poms.put(artifact, pom);
+            }
+            return pom;
+        }
+
+        // the returned stage completes only after the listener was called, so the listener always runs
+        // before the resolution proceeds
+        CompletionStage<Optional<MavenPom>> notifyListener(CompletionStage<Optional<MavenPom>> pom) {
+            if (pomListener == null) return pom;
+            return pom.whenComplete((ok, err) -> {
+                if (ok != null) ok.ifPresent(pomListener);
+            });
+        }
+    }
+
 }
@@ -12,9 +12,12 @@ import jbuild.artifact.VersionRange;
 import jbuild.artifact.file.ArtifactFileWriter;
 import jbuild.errors.ArtifactRetrievalError;
 import jbuild.log.JBuildLog;
+import jbuild.log.ResolutionProfiler;
+import jbuild.util.ChecksumAlgorithm;
 import jbuild.util.CollectionUtils;
 import jbuild.util.Describable;
 import jbuild.util.Either;
+import jbuild.util.Env;
 import jbuild.util.NonEmptyCollection;
 import jbuild.util.TextUtils;
 
@@ -56,6 +59,33 @@ public final class FetchCommandExecutor<Err extends ArtifactRetrievalError> {
         return new FetchCommandExecutor(log, DefaultArtifactRetrievers.get(log));
     }
 
+    /**
+     * Create a fetch command executor using the default retrievers.
+     *
+     * @param log                logger
+     * @param checksumAlgorithms algorithms of the checksums to compute while artifacts are downloaded
+     * @return the fetch command executor
+     */
+    @SuppressWarnings("rawtypes")
+    public static FetchCommandExecutor<ArtifactRetrievalError> createDefault(JBuildLog log,
+                                                                             Set<ChecksumAlgorithm> checksumAlgorithms) {
+        return new FetchCommandExecutor(log, DefaultArtifactRetrievers.get(log, Env.OFFLINE, checksumAlgorithms));
+    }
+
+    /**
+     * @return true if all retrievers used by this executor are local file retrievers
+     */
+    public boolean usesOnlyLocalRetrievers() {
+        return retrievers.stream().allMatch(ArtifactRetriever::isLocalFileRetriever);
+    }
+
+    /**
+     * @return the retrievers used by this executor, in the order they are tried
+     */
+    public NonEmptyCollection<? extends ArtifactRetriever<? extends Err>> getRetrievers() {
+        return retrievers;
+    }
+
     public CompletionStage<Either<ResolvedArtifact, NonEmptyCollection<Describable>>> fetchArtifact(Artifact artifact) {
         return fetchArtifact(artifact,
                 (FetchHandler<Either<ResolvedArtifact, NonEmptyCollection<Describable>>>)
@@ -96,7 +126,12 @@ public final class FetchCommandExecutor<Err extends ArtifactRetrievalError> {
                                                              Iterator<? extends ArtifactRetriever<?>> remainingRetrievers,
                                                              FetchHandler<S> handler,
                                                              Iterable<S> currentResults) {
-        return retriever.retrieve(artifact)
+        var profiler = ResolutionProfiler.get();
+        var span = profiler.start(ResolutionProfiler.CATEGORY_FETCH,
+                        artifact.getCoordinates() + ':' + artifact.extension,
+                        profiler.resolutionOf(artifact))
+                .arg("repository", retriever.getDescription());
+        return span.endOn(retriever.retrieve(artifact))
                 .thenCompose(resolution -> handler.handle(artifact, resolution)
                         .thenCompose(res ->
                                 fetchIfNotDone(artifact, remainingRetrievers, handler, currentResults, res)));
@@ -175,7 +210,31 @@ public final class FetchCommandExecutor<Err extends ArtifactRetrievalError> {
                 mapValues(fetchCompletions, c ->
                         c.thenApply(CollectionUtils::foldEither));
 
-        // third stage: report all successes if verbose log is enabled
+        return reportResults(errorFoldingCompletions);
+    }
+
+    /**
+     * Write artifacts that have already been fetched (e.g. with {@link #fetchArtifact(Artifact)}).
+     * <p>
+     * The results are reported in the same way as by {@link #fetchArtifacts(Set, ArtifactFileWriter, boolean)}.
+     *
+     * @param fetchedArtifacts the results of fetching the artifacts
+     * @param fileWriter       writer of the artifacts
+     * @param consumeArtifacts whether to consume the artifacts' contents when writing them
+     * @return the written artifacts, or empty for each artifact that could not be fetched or written
+     */
+    public Map<Artifact, CompletionStage<Optional<ResolvedArtifact>>> writeArtifacts(
+            Map<Artifact, CompletionStage<Either<ResolvedArtifact, NonEmptyCollection<Describable>>>> fetchedArtifacts,
+            ArtifactFileWriter fileWriter,
+            boolean consumeArtifacts) {
+        return reportResults(mapValues(fetchedArtifacts, c -> c.thenCompose(result -> result.map(
+                success -> handleResolved(fileWriter, success, consumeArtifacts),
+                errors -> completedFuture(Either.right(errors))))));
+    }
+
+    private Map<Artifact, CompletionStage<Optional<ResolvedArtifact>>> reportResults(
+            Map<Artifact, CompletionStage<Either<ResolvedArtifact, NonEmptyCollection<Describable>>>> errorFoldingCompletions) {
+        // report all successes if verbose log is enabled
         Map<Artifact, CompletionStage<Either<ResolvedArtifact, NonEmptyCollection<Describable>>>> reportingCompletions;
 
         if (log.isVerbose()) {
@@ -187,7 +246,7 @@ public final class FetchCommandExecutor<Err extends ArtifactRetrievalError> {
             reportingCompletions = errorFoldingCompletions;
         }
 
-        // final stage: report all errors
+        // report all errors
         return mapEntries(reportingCompletions, (artifact, c) -> c.thenApply((result) -> result.map(
                 Optional::of,
                 errors -> reportErrors(log, artifact, errors)
@@ -208,7 +267,9 @@ public final class FetchCommandExecutor<Err extends ArtifactRetrievalError> {
         log.verbosePrintln(() -> resolvedArtifact.artifact + " successfully resolved (" +
                 resolvedArtifact.contentLength + " bytes) from " +
                 resolvedArtifact.retriever.getDescription() + " in " + durationText(requestDuration));
-        return fileWriter.write(resolvedArtifact, consumeArtifacts).thenApply(result -> result.map(files -> {
+        // checksum files are tiny and must be kept around so they can be used for verification
+        var consume = consumeArtifacts && !resolvedArtifact.artifact.isChecksum();
+        return fileWriter.write(resolvedArtifact, consume).thenApply(result -> result.map(files -> {
             for (var file : files) {
                 log.verbosePrintln(() -> "Wrote artifact " + resolvedArtifact.artifact + " to " + file.getPath());
             }
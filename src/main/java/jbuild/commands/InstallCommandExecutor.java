@@ -1,32 +1,55 @@
 package jbuild.commands;
 
+import jbuild.api.JBuildException;
 import jbuild.artifact.Artifact;
 import jbuild.artifact.ResolvedArtifact;
 import jbuild.artifact.file.ArtifactFileWriter;
 import jbuild.artifact.file.MultiArtifactFileWriter;
 import jbuild.log.JBuildLog;
+import jbuild.maven.ArtifactKey;
 import jbuild.maven.DependencyExclusions;
+import jbuild.maven.DependencyMediator;
 import jbuild.maven.DependencyTree;
+import jbuild.maven.EffectivePomCache;
+import jbuild.maven.MavenPom;
 import jbuild.maven.ResolvedDependency;
 import jbuild.maven.Scope;
+import jbuild.util.ChecksumAlgorithm;
 import jbuild.util.Describable;
 import jbuild.util.Either;
+import jbuild.util.NoOp;
 import jbuild.util.NonEmptyCollection;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 import static java.util.concurrent.CompletableFuture.completedStage;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
+import static jbuild.api.JBuildException.ErrorCause.ACTION_ERROR;
+import static jbuild.api.JBuildException.ErrorCause.IO_WRITE;
 import static jbuild.maven.MavenUtils.extensionOfPackaging;
 import static jbuild.util.AsyncUtils.awaitValues;
 import static jbuild.util.CollectionUtils.foldEither;
@@ -38,13 +61,30 @@ public final class InstallCommandExecutor {
     private final JBuildLog log;
     private final FetchCommandExecutor<?> fetchCommand;
     private final ArtifactFileWriter writer;
+    private final EffectivePomCache effectivePomCache;
 
     public InstallCommandExecutor(JBuildLog log,
                                   FetchCommandExecutor<?> fetchCommand,
                                   ArtifactFileWriter writer) {
+        this(log, fetchCommand, writer, null);
+    }
+
+    /**
+     * Create an install command executor.
+     *
+     * @param log               logger
+     * @param fetchCommand      fetch command executor
+     * @param writer            writer of the installed artifacts
+     * @param effectivePomCache persistent cache of effective POMs, or null to not use a persistent cache
+     */
+    public InstallCommandExecutor(JBuildLog log,
+                                  FetchCommandExecutor<?> fetchCommand,
+                                  ArtifactFileWriter writer,
+                                  EffectivePomCache effectivePomCache) {
         this.log = log;
         this.fetchCommand = fetchCommand;
         this.writer = writer;
+        this.effectivePomCache = effectivePomCache;
     }
 
     public static InstallCommandExecutor create(JBuildLog log,
@@ -60,27 +100,258 @@ public final class InstallCommandExecutor {
             boolean transitive,
             DependencyExclusions exclusions,
             boolean checksum) {
-        var depsCommand = new DepsCommandExecutor<>(log, new MavenPomRetriever<>(log, fetchCommand, writer, checksum));
+        return installDependencyTree(artifacts, scopes, optional, transitive, exclusions,
+                checksum ? ChecksumAlgorithm.SHA1 : null);
+    }
+
+    /**
+     * Install the dependency tree of the given artifacts.
+     *
+     * @param artifacts         to install
+     * @param scopes            scopes to include
+     * @param optional          whether to include optional dependencies
+     * @param transitive        whether to include transitive dependencies
+     * @param exclusions        dependency exclusions
+     * @param checksumAlgorithm algorithm to use for verifying the checksum of all artifacts,
+     *                          or null to not verify checksums
+     * @return the number of installed artifacts, or the errors that occurred
+     */
+    public CompletionStage<Either<Long, NonEmptyCollection<Throwable>>> installDependencyTree(
+            Set<? extends Artifact> artifacts,
+            EnumSet<Scope> scopes,
+            boolean optional,
+            boolean transitive,
+            DependencyExclusions exclusions,
+            ChecksumAlgorithm checksumAlgorithm) {
+        return resolveAndInstall(artifacts, scopes, optional, transitive, exclusions, checksumAlgorithm, null);
+    }
+
+    /**
+     * Install the dependency tree of the given artifacts using a lock file.
+     * <p>
+     * If the lock file exists and was created for the same request, the artifacts it lists are installed
+     * directly, without resolving the dependency tree, and their checksums are verified against the lock file.
+     * Otherwise, the dependency tree is resolved and installed as usual, then the lock file is written if all
+     * artifacts were installed successfully.
+     *
+     * @param artifacts         to install
+     * @param scopes            scopes to include
+     * @param optional          whether to include optional dependencies
+     * @param transitive        whether to include transitive dependencies
+     * @param exclusions        dependency exclusions
+     * @param checksumAlgorithm algorithm to use for verifying the checksum of all artifacts,
+     *                          or null to not verify checksums
+     * @param lockFile          the lock file
+     * @return the number of installed artifacts, or the errors that occurred
+     */
+    public CompletionStage<Either<Long, NonEmptyCollection<Throwable>>> installDependencyTree(
+            Set<? extends Artifact> artifacts,
+            EnumSet<Scope> scopes,
+            boolean optional,
+            boolean transitive,
+            DependencyExclusions exclusions,
+            ChecksumAlgorithm checksumAlgorithm,
+            Path lockFile) {
+        var request = lockRequest(artifacts, scopes, optional, transitive, exclusions, checksumAlgorithm);
+        var lock = DependencyLockFile.read(lockFile);
+        if (lock.isPresent()) {
+            if (lock.get().request.equals(request)) {
+                log.verbosePrintln(() -> "Installing artifacts from lock file " + lockFile);
+                return installLocked(lock.get());
+            }
+            log.println(() -> "Lock file " + lockFile + " was created for a different request, " +
+                    "it will be re-created.");
+        }
+        var collector = new LockFileCollector();
+        return resolveAndInstall(artifacts, scopes, optional, transitive, exclusions, checksumAlgorithm, collector)
+                .thenApply(result -> {
+                    if (result.map(ok -> collector.complete, err -> false)) {
+                        try {
+                            new DependencyLockFile(request, collector.entries).write(lockFile);
+                        } catch (IOException e) {
+                            throw new JBuildException("Unable to write lock file " + lockFile +
+                                    " due to " + e, IO_WRITE);
+                        }
+                        log.verbosePrintln(() -> "Wrote lock file " + lockFile);
+                    } else {
+                        log.println(() -> "WARNING: not all artifacts were installed successfully, " +
+                                "lock file " + lockFile + " was not written.");
+                    }
+                    return result;
+                });
+    }
+
+    private CompletionStage<Either<Long, NonEmptyCollection<Throwable>>> resolveAndInstall(
+            Set<? extends Artifact> artifacts,
+            EnumSet<Scope> scopes,
+            boolean optional,
+            boolean transitive,
+            DependencyExclusions exclusions,
+            ChecksumAlgorithm checksumAlgorithm,
+            LockFileCollector collector) {
+        var depsCommand = new DepsCommandExecutor<>(log,
+                new MavenPomRetriever<>(log, fetchCommand, writer, checksumAlgorithm, effectivePomCache));
 
         if (!transitive) {
             // not installing transitive dependencies, but may still need to retrieve poms for the repository writer
             var mustInstallPom = includesMavenRepositoryWriter(writer);
             return awaitValues(artifacts.stream().map(artifact ->
-                            install(DependencyTree.childless(artifact, null), checksum, mustInstallPom))
+                            install(Set.of(new ResolvedDependency(artifact.pom(), null)), checksumAlgorithm,
+                                    mustInstallPom, collector, null))
                     .collect(toList()))
                     .thenApply(this::groupErrors)
                     .thenApply(e -> foldEither(e, Long::sum));
         }
 
+        // artifacts that cannot lose the version mediation start being fetched as soon as their POMs are resolved,
+        // in parallel with the rest of the resolution, but they are only written once the mediation completes
+        var pipeline = new PipelinedFetch(checksumAlgorithm);
+
+        return awaitValues(new ArrayList<>(
+                depsCommand.fetchDependencyTree(artifacts, null, scopes, true, optional, exclusions,
+                        pipeline::prefetch).values())
+        ).thenCompose(treeResults -> {
+            var results = new ArrayList<Either<Long, NonEmptyCollection<Throwable>>>(treeResults.size() + 1);
+            var trees = new ArrayList<DependencyTree>(treeResults.size());
+            for (var treeResult : treeResults) {
+                treeResult.use(tree -> tree.ifPresent(trees::add),
+                        error -> results.add(Either.right(NonEmptyCollection.of(error))));
+            }
+            if (trees.isEmpty()) {
+                pipeline.discardUnused(Set.of());
+                if (results.isEmpty()) results.add(Either.left(0L));
+                return completedStage(foldEither(results, Long::sum));
+            }
+            return mediate(depsCommand, trees, new HashMap<>(), scopes, optional, exclusions, results)
+                    .thenCompose(mediation -> {
+                        logConflicts(mediation);
+                        return awaitValues(List.of(
+                                install(mediation.dependencies, checksumAlgorithm, false, collector, pipeline)));
+                    }).thenApply(installResults -> {
+                        results.addAll(groupErrors(installResults));
+                        return foldEither(results, Long::sum);
+                    });
+        });
+    }
+
+    /**
+     * Mediate the versions of the dependency trees, resolving the trees of the versions imposed by
+     * dependencyManagement that are not part of the trees (so that their POMs and their own dependencies are used)
+     * and mediating again until all of them have been resolved.
+     */
+    private CompletionStage<DependencyMediator.Mediation> mediate(
+            DepsCommandExecutor<?> depsCommand,
+            List<DependencyTree> trees,
+            Map<Artifact, DependencyTree> managedTrees,
+            EnumSet<Scope> scopes,
+            boolean optional,
+            DependencyExclusions exclusions,
+            List<Either<Long, NonEmptyCollection<Throwable>>> results) {
+        var mediation = DependencyMediator.mediate(trees, managedTrees);
+        if (mediation.unresolvedManagedVersions.isEmpty()) {
+            return completedStage(mediation);
+        }
+        var managedArtifacts = mediation.unresolvedManagedVersions;
+        log.verbosePrintln(() -> "Resolving versions imposed by dependencyManagement: " + managedArtifacts.stream()
+                .map(Artifact::getCoordinates)
+                .sorted()
+                .collect(joining(", ")));
+        var fetches = depsCommand.fetchDependencyTree(managedArtifacts, null, scopes, true, optional, exclusions);
+        return awaitValues(fetches).thenCompose(fetched -> {
+            var unresolved = new ArrayList<Artifact>();
+            for (var artifact : managedArtifacts) {
+                var tree = fetched.getOrDefault(artifact.pom(), Either.left(Optional.empty()))
+                        .map(ok -> ok.orElse(null), err -> null);
+                if (tree == null) {
+                    unresolved.add(artifact);
+                } else {
+                    managedTrees.put(artifact, tree);
+                }
+            }
+            if (!unresolved.isEmpty()) {
+                // without its POM, a managed version can only be installed as a jar, which may not be correct
+                for (var artifact : unresolved) {
+                    results.add(Either.right(NonEmptyCollection.of(new JBuildException(
+                            "Unable to resolve " + artifact.getCoordinates() +
+                                    " (version imposed by dependencyManagement)", ACTION_ERROR))));
+                }
+                return completedStage(mediation);
+            }
+            return mediate(depsCommand, trees, managedTrees, scopes, optional, exclusions, results);
+        });
+    }
+
+    private void logConflicts(DependencyMediator.Mediation mediation) {
+        if (mediation.conflicts.isEmpty()) return;
+        var winnerByKey = mediation.dependencies.stream()
+                .collect(toMap(dep -> ArtifactKey.of(dep.artifact), dep -> dep.artifact.version, (a, b) -> a));
+        log.verbosePrintln(() -> "Resolved version conflicts: " + mediation.conflicts.entrySet().stream()
+                .map(entry -> entry.getKey().getCoordinates() + " " + entry.getValue() +
+                        " -> " + winnerByKey.get(entry.getKey()))
+                .sorted()
+                .collect(joining(", ")));
+    }
+
+    private CompletionStage<Either<Long, NonEmptyCollection<Throwable>>> installLocked(DependencyLockFile lock) {
+        var entryByArtifact = lock.entries.stream()
+                .collect(toMap(entry -> entry.artifact, Function.identity()));
+
+        log.verbosePrintln(() -> "Will install " + entryByArtifact.size() + " locked artifact" +
+                (entryByArtifact.size() == 1 ? "" : "s") + " at " + writer.getDestination());
+
         return awaitValues(
-                depsCommand.fetchDependencyTree(artifacts, null, scopes, true, optional, exclusions)
-                        .values().stream()
-                        .map((completion) -> completion.thenCompose(tree ->
-                                tree.map(a -> install(a, checksum, false)).orElseGet(() ->
-                                        completedStage(0L))))
-                        .collect(toList())
-        ).thenApply(this::groupErrors)
-                .thenApply(e -> foldEither(e, Long::sum));
+                fetchCommand.fetchArtifacts(entryByArtifact.keySet(), writer, true)
+        ).thenApply(results -> {
+            var errors = new ArrayList<Throwable>();
+            var successCount = 0L;
+            for (var result : results.entrySet()) {
+                var entry = entryByArtifact.get(result.getKey());
+                var resolved = result.getValue().map(ok -> ok.orElse(null), err -> null);
+                if (resolved == null) {
+                    errors.add(new JBuildException("Failed to fetch locked artifact " + entry.artifact,
+                            ACTION_ERROR));
+                } else if (entry.checksumMatches(resolved.getChecksum(DependencyLockFile.CHECKSUM_ALGORITHM))) {
+                    successCount++;
+                    if (!entry.repository.equals(resolved.retriever.getDescription())) {
+                        log.verbosePrintln(() -> entry.artifact + " was locked from " + entry.repository +
+                                " but retrieved from " + resolved.retriever.getDescription());
+                    }
+                } else {
+                    errors.add(new JBuildException("Checksum of " + entry.artifact +
+                            " does not match the lock file!", ACTION_ERROR));
+                    if (!writer.delete(resolved.artifact)) {
+                        log.println("WARNING: Could not delete " + resolved.artifact +
+                                " (invalid checksum was detected - do not use installed files).");
+                    }
+                }
+            }
+            if (errors.isEmpty()) {
+                return Either.left(successCount);
+            }
+            return Either.right(NonEmptyCollection.of(errors));
+        });
+    }
+
+    private String lockRequest(Set<? extends Artifact> artifacts,
+                               EnumSet<Scope> scopes,
+                               boolean optional,
+                               boolean transitive,
+                               DependencyExclusions exclusions,
+                               ChecksumAlgorithm checksumAlgorithm) {
+        var exclusionsText = new TreeMap<String, Set<String>>();
+        exclusions.getExclusions().forEach((artifact, patterns) -> exclusionsText.put(artifact,
+                patterns.stream().map(Pattern::pattern).collect(toCollection(TreeSet::new))));
+        return "artifacts=" + artifacts.stream()
+                .map(DependencyLockFile::toCoordinates)
+                .sorted()
+                .collect(toList()) +
+                " scopes=" + scopes +
+                " optional=" + optional +
+                " transitive=" + transitive +
+                " exclusions=" + exclusionsText +
+                " checksum=" + (checksumAlgorithm == null ? "none" : checksumAlgorithm.extension) +
+                // POMs are installed with non-transitive installations into Maven repositories
+                " poms=" + (!transitive && includesMavenRepositoryWriter(writer));
     }
 
     private static boolean includesMavenRepositoryWriter(ArtifactFileWriter writer) {
@@ -96,19 +367,31 @@ public final class InstallCommandExecutor {
                 .collect(toList());
     }
 
-    private CompletionStage<Long> install(DependencyTree tree,
-                                          boolean checksum,
-                                          boolean mustInstallPom) {
-        var treeSet = tree.toSet().stream()
-                .flatMap(dep -> artifactsToFetchFrom(dep, checksum, mustInstallPom))
+    private CompletionStage<Long> install(Set<ResolvedDependency> dependencies,
+                                          ChecksumAlgorithm checksumAlgorithm,
+                                          boolean mustInstallPom,
+                                          LockFileCollector collector,
+                                          PipelinedFetch pipeline) {
+        var treeSet = dependencies.stream()
+                .flatMap(dep -> artifactsToFetchFrom(dep, checksumAlgorithm, mustInstallPom))
                 .collect(toSet());
 
         log.verbosePrintln(() -> "Will install " + treeSet.size() +
                 " artifact" + (treeSet.size() == 1 ? "" : "s") + " at " + writer.getDestination());
 
-        return awaitValues(
-                fetchCommand.fetchArtifacts(treeSet, writer, false)
-        ).thenApply(results -> checkResultsCountingSuccess(results, checksum));
+        // artifacts are consumed as they are written, checksums are computed by the retrievers
+        // while reading the artifacts, so they do not need to be kept in memory for verification
+        var fetches = pipeline == null
+                ? fetchCommand.fetchArtifacts(treeSet, writer, true)
+                : pipeline.fetchAndWrite(treeSet);
+
+        return awaitValues(fetches).thenApply(results -> {
+            var successCount = checkResultsCountingSuccess(results, checksumAlgorithm != null);
+            if (collector != null) {
+                collector.collect(results, successCount);
+            }
+            return successCount;
+        });
     }
 
     private long checkResultsCountingSuccess(
@@ -130,35 +413,35 @@ public final class InstallCommandExecutor {
 
     private long verifyChecksumCountingSuccess(
             Map<Artifact, Either<Optional<ResolvedArtifact>, Throwable>> results) {
-        class Sha1 {
+        class Checksum {
             final ResolvedArtifact resolved;
-            ResolvedArtifact sha1;
+            ResolvedArtifact checksum;
 
-            Sha1(ResolvedArtifact resolved) {
+            Checksum(ResolvedArtifact resolved) {
                 this.resolved = resolved;
             }
         }
 
         final var successCount = new AtomicLong(0L);
-        var checksumByArtifact = new HashMap<Artifact, Sha1>(results.size() / 2);
+        var checksumByArtifact = new HashMap<Artifact, Checksum>(results.size() / 2);
 
         // put the non-checksum files in the Map
         for (var result : results.values()) {
             var resolved = result.map(ok -> ok.orElse(null), err -> null);
-            if (resolved != null && !resolved.artifact.isSha1()) {
-                checksumByArtifact.computeIfAbsent(resolved.artifact, ignore -> new Sha1(resolved));
+            if (resolved != null && !resolved.artifact.isChecksum()) {
+                checksumByArtifact.computeIfAbsent(resolved.artifact, ignore -> new Checksum(resolved));
             }
         }
 
         // try to match the checksums with the artifacts in the Map
         for (var result : results.values()) {
             var resolved = result.map(ok -> ok.orElse(null), err -> null);
-            if (resolved != null && resolved.artifact.isSha1()) {
-                var sha = checksumByArtifact.get(resolved.artifact.noSha1());
+            if (resolved != null && resolved.artifact.isChecksum()) {
+                var sha = checksumByArtifact.get(resolved.artifact.noChecksum());
                 if (sha == null) {
                     throw new IllegalStateException("Did not find checksum for " + resolved.artifact.getCoordinates());
                 } else {
-                    sha.sha1 = resolved;
+                    sha.checksum = resolved;
                 }
             }
         }
@@ -167,18 +450,18 @@ public final class InstallCommandExecutor {
         for (var entry : checksumByArtifact.entrySet()) {
             var artifact = entry.getKey();
             var shaEntry = entry.getValue();
-            if (shaEntry.sha1 != null) {
-                var result = ChecksumVerifier.verify(shaEntry.resolved, shaEntry.sha1, log.isVerbose());
+            if (shaEntry.checksum != null) {
+                var result = ChecksumVerifier.verify(shaEntry.resolved, shaEntry.checksum, log.isVerbose());
                 result.use(ok -> {
                     successCount.incrementAndGet();
                     log.verbosePrintln(() -> artifact + "'s checksum successfully verified.");
                 }, errors -> {
                     log.println("ERROR: " + errors.stream().map(Describable::getDescription).collect(joining(", ")));
-                    if (!writer.delete(shaEntry.resolved.artifact.noSha1())) {
+                    if (!writer.delete(shaEntry.resolved.artifact)) {
                         log.println("WARNING: Could not delete " + artifact +
                                 " (invalid checksum was detected - do not use installed files).");
                     }
-                    writer.delete(shaEntry.resolved.artifact.sha1());
+                    writer.delete(shaEntry.checksum.artifact);
                 });
             }
         }
@@ -186,21 +469,108 @@ public final class InstallCommandExecutor {
         return successCount.get();
     }
 
+    /**
+     * Fetches the artifacts of resolved POMs while the rest of the dependency tree is still being resolved.
+     * <p>
+     * Only the POMs of artifacts that cannot lose the version mediation are given to this class, so versions
+     * that are not going to be installed are not downloaded. Fetched artifacts are kept (in memory or in
+     * temporary files, depending on the retriever) until the artifacts to install are known. Those are then
+     * written, while any that are not installed after all (e.g. because the resolution failed) are discarded.
+     */
+    private final class PipelinedFetch {
+        private final ChecksumAlgorithm checksumAlgorithm;
+        private final Map<Artifact, CompletionStage<Either<ResolvedArtifact, NonEmptyCollection<Describable>>>>
+                prefetched = new ConcurrentHashMap<>();
+
+        PipelinedFetch(ChecksumAlgorithm checksumAlgorithm) {
+            this.checksumAlgorithm = checksumAlgorithm;
+        }
+
+        void prefetch(MavenPom pom) {
+            artifactsToFetchFrom(new ResolvedDependency(pom.getArtifact().pom(), pom), checksumAlgorithm, false)
+                    .forEach(artifact -> prefetched.computeIfAbsent(artifact, fetchCommand::fetchArtifact));
+        }
+
+        Map<Artifact, CompletionStage<Optional<ResolvedArtifact>>> fetchAndWrite(Set<Artifact> artifacts) {
+            var ready = new HashMap<Artifact, CompletionStage<Either<ResolvedArtifact, NonEmptyCollection<Describable>>>>(
+                    artifacts.size());
+            var remaining = new HashSet<Artifact>();
+            for (var artifact : artifacts) {
+                var fetch = prefetched.get(artifact);
+                if (fetch == null) {
+                    remaining.add(artifact);
+                } else {
+                    ready.put(artifact, fetch);
+                }
+            }
+
+            log.verbosePrintln(() -> ready.size() + " of " + artifacts.size() +
+                    " artifacts to install were fetched while resolving dependencies");
+
+            discardUnused(artifacts);
+
+            var result = new HashMap<>(fetchCommand.writeArtifacts(ready, writer, true));
+            if (!remaining.isEmpty()) {
+                result.putAll(fetchCommand.fetchArtifacts(remaining, writer, true));
+            }
+            return result;
+        }
+
+        void discardUnused(Set<Artifact> used) {
+            prefetched.forEach((artifact, fetch) -> {
+                if (!used.contains(artifact)) {
+                    fetch.thenAccept(result -> result.use(ResolvedArtifact::discardContents, NoOp.ignore()));
+                }
+            });
+        }
+    }
+
+    /**
+     * Collects the entries of a lock file while artifacts are installed.
+     */
+    private final class LockFileCollector {
+        final Queue<DependencyLockFile.Entry> entries = new ConcurrentLinkedQueue<>();
+        volatile boolean complete = true;
+
+        void collect(Map<Artifact, Either<Optional<ResolvedArtifact>, Throwable>> results, long successCount) {
+            // the success count only includes checksum files when checksums are not being verified
+            var expectedSuccessCount = results.keySet().stream().filter(a -> !a.isChecksum()).count();
+            if (successCount != expectedSuccessCount) {
+                complete = false;
+            }
+            for (var result : results.values()) {
+                var resolved = result.map(ok -> ok.orElse(null), err -> null);
+                if (resolved == null) {
+                    complete = false;
+                    continue;
+                }
+                try {
+                    entries.add(new DependencyLockFile.Entry(resolved.artifact,
+                            resolved.getChecksum(DependencyLockFile.CHECKSUM_ALGORITHM),
+                            resolved.retriever.getDescription()));
+                } catch (IllegalStateException e) {
+                    log.verbosePrintln(() -> "Unable to lock " + resolved.artifact + ": " + e.getMessage());
+                    complete = false;
+                }
+            }
+        }
+    }
+
     private static Stream<Artifact> artifactsToFetchFrom(ResolvedDependency dep,
-                                                         boolean checksum,
+                                                         ChecksumAlgorithm checksumAlgorithm,
                                                          boolean mustInstallPom) {
         var mainArtifact = dep.artifact.withExtension(
                 dep.pom == null ? "jar" : extensionOfPackaging(dep.pom.getPackaging()));
         Stream<Artifact> artifacts;
-        if (checksum && !mainArtifact.isSha1()) {
-            artifacts = Stream.of(mainArtifact, mainArtifact.sha1());
+        if (checksumAlgorithm != null && !mainArtifact.isChecksum()) {
+            artifacts = Stream.of(mainArtifact, mainArtifact.checksum(checksumAlgorithm));
         } else {
             artifacts = Stream.of(mainArtifact);
         }
         if (mustInstallPom && !mainArtifact.isPom()) {
             var pom = mainArtifact.pom();
-            if (checksum) {
-                return Stream.concat(artifacts, Stream.of(pom, pom.sha1()));
+            if (checksumAlgorithm != null) {
+                return Stream.concat(artifacts, Stream.of(pom, pom.checksum(checksumAlgorithm)));
             }
             return Stream.concat(artifacts, Stream.of(pom));
         }
@@ -2,22 +2,29 @@ package jbuild.commands;
 
 import jbuild.api.JBuildException;
 import jbuild.artifact.Artifact;
+import jbuild.artifact.ArtifactRetriever;
 import jbuild.artifact.ResolvedArtifact;
 import jbuild.artifact.ResolvedArtifactChecksum;
 import jbuild.errors.ArtifactRetrievalError;
 import jbuild.log.JBuildLog;
+import jbuild.log.ResolutionProfiler;
+import jbuild.log.RunStatistics;
+import jbuild.maven.EffectivePomCache;
 import jbuild.maven.MavenPom;
 import jbuild.maven.MavenUtils;
+import jbuild.util.ChecksumAlgorithm;
 import jbuild.util.Describable;
 import jbuild.util.Either;
+import jbuild.util.Env;
+import jbuild.util.NoOp;
 import jbuild.util.NonEmptyCollection;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -25,6 +32,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.concurrent.CompletableFuture.completedStage;
@@ -34,6 +42,12 @@ import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
 import static jbuild.api.JBuildException.ErrorCause.ACTION_ERROR;
 import static jbuild.commands.FetchCommandExecutor.reportErrors;
+import static jbuild.log.RunStatistics.EFFECTIVE_POM_CACHE_HITS;
+import static jbuild.log.RunStatistics.EFFECTIVE_POM_CACHE_MISSES;
+import static jbuild.log.RunStatistics.POM_CACHE_HITS;
+import static jbuild.log.RunStatistics.POM_CACHE_MISSES;
+import static jbuild.log.RunStatistics.POM_PARSE_MICROS;
+import static jbuild.log.RunStatistics.POM_PREFETCHES;
 import static jbuild.maven.MavenUtils.importsOf;
 import static jbuild.util.AsyncUtils.awaitValues;
 import static jbuild.util.CollectionUtils.mapEntries;
@@ -44,10 +58,17 @@ public final class MavenPomRetriever<Err extends ArtifactRetrievalError> {
     private final JBuildLog log;
     private final FetchCommandExecutor<Err> fetchCommandExecutor;
     private final PomCreator pomCreator;
-    private final boolean checksum;
+    private final ChecksumAlgorithm checksumAlgorithm;
+    private final EffectivePomCache effectivePomCache;
+
+    // whether to start fetching parent and imported POMs as soon as the POM referring to them is fetched
+    private final boolean prefetch;
 
     private final Map<Artifact, CompletionStage<Either<MavenPom, NonEmptyCollection<Describable>>>> cache;
 
+    // the POMs that contributed to each cacheable effective POM, mapped to their checksums
+    private final Map<Artifact, Map<Artifact, byte[]>> contributorsByPom;
+
     public MavenPomRetriever(JBuildLog log,
                              FetchCommandExecutor<Err> fetchCommandExecutor,
                              PomCreator pomCreator) {
@@ -58,11 +79,46 @@ public final class MavenPomRetriever<Err extends ArtifactRetrievalError> {
                              FetchCommandExecutor<Err> fetchCommandExecutor,
                              PomCreator pomCreator,
                              boolean checksum) {
+        this(log, fetchCommandExecutor, pomCreator, checksum ? ChecksumAlgorithm.SHA1 : null);
+    }
+
+    /**
+     * Create a POM retriever.
+     *
+     * @param log                  logger
+     * @param fetchCommandExecutor fetch command executor
+     * @param pomCreator           POM creator
+     * @param checksumAlgorithm    algorithm to use to verify POMs checksums, or null to not verify checksums
+     */
+    public MavenPomRetriever(JBuildLog log,
+                             FetchCommandExecutor<Err> fetchCommandExecutor,
+                             PomCreator pomCreator,
+                             ChecksumAlgorithm checksumAlgorithm) {
+        this(log, fetchCommandExecutor, pomCreator, checksumAlgorithm, null);
+    }
+
+    /**
+     * Create a POM retriever.
+     *
+     * @param log                  logger
+     * @param fetchCommandExecutor fetch command executor
+     * @param pomCreator           POM creator
+     * @param checksumAlgorithm    algorithm to use to verify POMs checksums, or null to not verify checksums
+     * @param effectivePomCache    persistent cache of effective POMs, or null to not use a persistent cache
+     */
+    public MavenPomRetriever(JBuildLog log,
+                             FetchCommandExecutor<Err> fetchCommandExecutor,
+                             PomCreator pomCreator,
+                             ChecksumAlgorithm checksumAlgorithm,
+                             EffectivePomCache effectivePomCache) {
         this.log = log;
         this.fetchCommandExecutor = fetchCommandExecutor;
         this.pomCreator = pomCreator;
         this.cache = new ConcurrentHashMap<>();
-        this.checksum = checksum;
+        this.checksumAlgorithm = checksumAlgorithm;
+        this.effectivePomCache = effectivePomCache;
+        this.contributorsByPom = new ConcurrentHashMap<>();
+        this.prefetch = Env.POM_PREFETCH && !fetchCommandExecutor.usesOnlyLocalRetrievers();
     }
 
     public static MavenPomRetriever<? extends ArtifactRetrievalError> createDefault(JBuildLog log) {
@@ -105,14 +161,28 @@ public final class MavenPomRetriever<Err extends ArtifactRetrievalError> {
         var fromCache = new AtomicBoolean(true);
         var result = cache.computeIfAbsent(artifact, a -> {
             fromCache.set(false);
+            var span = ResolutionProfiler.get().startResolution(a);
+            var trustedPom = trustedCachedPom(a.pom());
+            if (trustedPom != null) {
+                span.arg("cached", "true").end();
+                return completedStage(Either.left(trustedPom));
+            }
             var pomResult = fetchCommandExecutor.fetchArtifact(a.pom());
+            if (prefetch) {
+                // async as fetching other POMs must not happen within computeIfAbsent
+                pomResult = pomResult.thenApplyAsync(res -> {
+                    res.use(this::prefetchReferencedPoms, NoOp.ignore());
+                    return res;
+                });
+            }
             CompletionStage<Either<ResolvedArtifactChecksum, NonEmptyCollection<Describable>>> fullResult;
-            if (checksum) {
+            if (checksumAlgorithm != null) {
                 fullResult = pomResult.thenComposeAsync(pom ->
                         pom.map(resolvedArtifact -> {
                                     log.verbosePrintln(() -> "Fetching checksum of POM for " +
                                             resolvedArtifact.artifact.getCoordinates());
-                                    return fetchCommandExecutor.fetchArtifact(resolvedArtifact.artifact.pom().sha1())
+                                    return fetchCommandExecutor.fetchArtifact(
+                                                    resolvedArtifact.artifact.pom().checksum(checksumAlgorithm))
                                             .thenApply(sha -> sha.map(
                                                     shaOk -> ChecksumVerifier.verify(resolvedArtifact, shaOk, log.isVerbose()),
                                                     Either::right));
@@ -121,27 +191,162 @@ public final class MavenPomRetriever<Err extends ArtifactRetrievalError> {
             } else {
                 fullResult = pomResult.thenApply(e -> e.mapLeft(res -> new ResolvedArtifactChecksum(res, null)));
             }
-            return fullResult.thenComposeAsync(res -> res.map(this::handleResolved, this::handleRetrievalErrors));
+            return span.endOn(fullResult.thenComposeAsync(res -> res.map(
+                    resolved -> handleResolved(resolved, span),
+                    this::handleRetrievalErrors)));
         });
 
         if (fromCache.get()) {
+            RunStatistics.get().increment(POM_CACHE_HITS);
             log.verbosePrintln(() -> artifact + " present in cache, will not resolve it again");
+        } else {
+            RunStatistics.get().increment(POM_CACHE_MISSES);
         }
 
         return result;
     }
 
+    /**
+     * Speculatively start fetching the parent and imported POMs referred to by a POM that has just been fetched.
+     * <p>
+     * Without this, each parent or import is only fetched after the POM referring to it has had its checksum
+     * verified and has been fully parsed (and merged with its own parent, in the case of imports), so each level
+     * of a POM hierarchy costs at least one extra round-trip. Prefetched POMs are resolved as usual, which means
+     * that their own parents and imports are also prefetched as soon as they arrive.
+     */
+    private void prefetchReferencedPoms(ResolvedArtifact resolvedArtifact) {
+        Set<Artifact> referencedPoms;
+        try {
+            referencedPoms = MavenUtils.scanReferencedPoms(new ByteArrayInputStream(resolvedArtifact.getContents()));
+        } catch (IOException | XMLStreamException | IllegalArgumentException e) {
+            // errors are reported when the POM is parsed
+            return;
+        }
+        for (var pom : referencedPoms) {
+            if (!cache.containsKey(pom)) {
+                RunStatistics.get().increment(POM_PREFETCHES);
+                log.verbosePrintln(() -> "Prefetching POM of " + pom.getCoordinates() + " referred to by " +
+                        resolvedArtifact.artifact.getCoordinates());
+                fetch(pom);
+            }
+        }
+    }
+
+    /**
+     * Get the effective POM of a released artifact from the cache without fetching its POM.
+     * <p>
+     * This is only possible if the cache trusts released artifacts, checksums are not being verified,
+     * the POM creator does not need the actual POM files and no local repository is used, as releases may be
+     * re-installed in local repositories. Entries are looked up for each repository in the order they would
+     * be tried when fetching the POM.
+     *
+     * @return the cached effective POM or null if it is not available
+     */
+    private MavenPom trustedCachedPom(Artifact pomArtifact) {
+        if (effectivePomCache == null || !effectivePomCache.trustsReleases() || checksumAlgorithm != null ||
+                pomCreator.requiresPomFiles()) {
+            return null;
+        }
+        var retrievers = fetchCommandExecutor.getRetrievers();
+        if (retrievers.stream().anyMatch(ArtifactRetriever::isLocalFileRetriever)) {
+            return null;
+        }
+        try {
+            for (var retriever : retrievers) {
+                var cached = effectivePomCache.get(retriever.getDescription(), pomArtifact);
+                if (cached.isPresent()) {
+                    RunStatistics.get().increment(EFFECTIVE_POM_CACHE_HITS);
+                    log.verbosePrintln(() -> "Using effective POM of released artifact " +
+                            pomArtifact.getCoordinates() + " from " + retriever.getDescription() +
+                            " from cache at " + effectivePomCache.getDirectory() + " without fetching it");
+                    contributorsByPom.put(pomArtifact, cached.get().getContributors());
+                    return cached.get().pom;
+                }
+            }
+        } catch (IOException e) {
+            log.verbosePrintln(() -> "Unable to read effective POM of " + pomArtifact.getCoordinates() +
+                    " from cache due to " + e);
+        }
+        return null;
+    }
+
     private CompletionStage<Either<MavenPom, NonEmptyCollection<Describable>>> handleResolved(
-            ResolvedArtifactChecksum resolvedArtifactChecksum) {
+            ResolvedArtifactChecksum resolvedArtifactChecksum,
+            ResolutionProfiler.Span span) {
         var resolvedArtifact = resolvedArtifactChecksum.artifact;
         var requestDuration = Duration.ofMillis(System.currentTimeMillis() - resolvedArtifact.requestTime);
         log.verbosePrintln(() -> resolvedArtifact.artifact + " successfully resolved (" +
                 resolvedArtifact.contentLength + " bytes) from " +
                 resolvedArtifact.retriever.getDescription() + " in " + durationText(requestDuration));
 
+        var pomArtifact = resolvedArtifact.artifact.pom();
+        var repository = resolvedArtifact.retriever.getDescription();
+        Contributors contributors = null;
+
+        if (effectivePomCache != null && EffectivePomCache.isCacheable(pomArtifact)) {
+            var pomChecksum = resolvedArtifact.getChecksum(EffectivePomCache.CHECKSUM_ALGORITHM);
+            try {
+                var cached = effectivePomCache.get(repository, pomArtifact, pomChecksum);
+                if (cached.isPresent()) {
+                    RunStatistics.get().increment(EFFECTIVE_POM_CACHE_HITS);
+                    log.verbosePrintln(() -> "Using effective POM of " + pomArtifact.getCoordinates() +
+                            " from cache at " + effectivePomCache.getDirectory());
+                    contributorsByPom.put(pomArtifact, cached.get().getContributors());
+                    span.arg("cached", "true");
+                    return pomCreator.useCachedPom(resolvedArtifactChecksum, cached.get().pom)
+                            .thenApply(Either::left);
+                }
+            } catch (IOException e) {
+                log.verbosePrintln(() -> "Unable to read effective POM of " + pomArtifact.getCoordinates() +
+                        " from cache due to " + e);
+            }
+            RunStatistics.get().increment(EFFECTIVE_POM_CACHE_MISSES);
+            contributors = new Contributors();
+            contributors.checksums.put(pomArtifact, pomChecksum);
+        }
+
         log.verbosePrintln(() -> "Parsing POM of " + resolvedArtifact.artifact);
 
-        return withParentIfNeeded(pomCreator.createPom(resolvedArtifactChecksum));
+        var parseSpan = ResolutionProfiler.get().start(ResolutionProfiler.CATEGORY_PARSE,
+                pomArtifact.getCoordinates(), span);
+        var result = withParentIfNeeded(parseSpan.endOn(pomCreator.createPom(resolvedArtifactChecksum)),
+                contributors, span);
+
+        if (contributors == null) {
+            return result;
+        }
+
+        final var allContributors = contributors;
+        return result.thenApply(res -> {
+            res.use(pom -> storeEffectivePom(repository, pomArtifact, pom, allContributors), ignore -> {
+            });
+            return res;
+        });
+    }
+
+    private void storeEffectivePom(String repository, Artifact pomArtifact, MavenPom pom, Contributors contributors) {
+        // if the contributors of any parent or import are unknown, the effective POM cannot be cached
+        if (!contributors.complete) return;
+        contributorsByPom.put(pomArtifact, contributors.checksums);
+        try {
+            var entry = new EffectivePomCache.Entry(pom, contributors.checksums);
+            if (effectivePomCache.put(repository, pomArtifact, entry)) {
+                log.verbosePrintln(() -> "Stored effective POM of " + pomArtifact.getCoordinates() + " in cache");
+            }
+        } catch (IOException e) {
+            log.verbosePrintln(() -> "Unable to store effective POM of " + pomArtifact.getCoordinates() +
+                    " in cache due to " + e);
+        }
+    }
+
+    private void addContributorsOf(Artifact artifact, Contributors contributors) {
+        if (contributors == null) return;
+        var pomContributors = contributorsByPom.get(artifact.pom());
+        if (pomContributors == null) {
+            contributors.complete = false;
+        } else {
+            contributors.checksums.putAll(pomContributors);
+        }
     }
 
     private CompletionStage<Either<MavenPom, NonEmptyCollection<Describable>>> handleRetrievalErrors(
@@ -151,20 +356,36 @@ public final class MavenPomRetriever<Err extends ArtifactRetrievalError> {
     }
 
     private CompletionStage<Either<MavenPom, NonEmptyCollection<Describable>>> withParentIfNeeded(
-            CompletionStage<MavenPom> pomCompletion) {
+            CompletionStage<MavenPom> pomCompletion,
+            Contributors contributors,
+            ResolutionProfiler.Span span) {
         return pomCompletion.thenComposeAsync(pom -> {
             var parentArtifact = pom.getParentArtifact();
 
             if (parentArtifact.isEmpty()) {
-                return withImportsIfNeeded(pom);
+                return withImportsIfNeeded(pom, contributors, span);
             }
 
-            return fetch(parentArtifact.get().pom()).thenCompose(res -> res.mapLeft(pom::withParent)
-                    .map(this::withImportsIfNeeded, err -> completedFuture(Either.right(err))));
+            var parentPom = parentArtifact.get().pom();
+            var parentResult = fetch(parentPom);
+            var profiler = ResolutionProfiler.get();
+
+            return profiler.startWait(parentPom.getCoordinates(), span, profiler.resolutionOf(parentPom))
+                    .endOn(parentResult)
+                    .thenCompose(res -> {
+                        addContributorsOf(parentArtifact.get(), contributors);
+                        return res.mapLeft(parent -> merging(span, "parent " + parentPom.getCoordinates(),
+                                        () -> pom.withParent(parent)))
+                                .map(p -> withImportsIfNeeded(p, contributors, span),
+                                        err -> completedFuture(Either.right(err)));
+                    });
         });
     }
 
-    private CompletionStage<Either<MavenPom, NonEmptyCollection<Describable>>> withImportsIfNeeded(MavenPom pom) {
+    private CompletionStage<Either<MavenPom, NonEmptyCollection<Describable>>> withImportsIfNeeded(
+            MavenPom pom,
+            Contributors contributors,
+            ResolutionProfiler.Span span) {
         var imports = importsOf(pom);
 
         if (imports.isEmpty()) {
@@ -176,7 +397,12 @@ public final class MavenPomRetriever<Err extends ArtifactRetrievalError> {
                 .map(Artifact::getCoordinates)
                 .collect(joining(", ")));
 
-        return awaitValues(fetchPoms(imports)).thenApply(res -> {
+        var importCompletions = fetchPoms(imports);
+        var profiler = ResolutionProfiler.get();
+        importCompletions.forEach((imp, completion) ->
+                profiler.startWait(imp.getCoordinates(), span, profiler.resolutionOf(imp)).endOn(completion));
+
+        return awaitValues(importCompletions).thenApply(res -> merging(span, "imports", () -> {
             var errors = new ArrayList<Describable>(imports.size() / 2);
             var resultPom = pom;
             for (var item : res.values()) {
@@ -193,11 +419,33 @@ public final class MavenPomRetriever<Err extends ArtifactRetrievalError> {
                     resultPom = resultPom.importing(imp);
                 }
             }
+            for (var imp : imports) {
+                addContributorsOf(imp, contributors);
+            }
             if (errors.isEmpty()) {
-                return Either.left(resultPom);
+                return Either.<MavenPom, NonEmptyCollection<Describable>>left(resultPom);
             }
-            return Either.right(NonEmptyCollection.of(errors));
-        });
+            return Either.<MavenPom, NonEmptyCollection<Describable>>right(NonEmptyCollection.of(errors));
+        }));
+    }
+
+    private static <T> T merging(ResolutionProfiler.Span span, String name, Supplier<T> merge) {
+        var mergeSpan = ResolutionProfiler.get().start(ResolutionProfiler.CATEGORY_MERGE, name, span);
+        try {
+            return merge.get();
+        } finally {
+            mergeSpan.end();
+        }
+    }
+
+    /**
+     * The POMs contributing to an effective POM, mapped to their checksums.
+     */
+    private static final class Contributors {
+        final Map<Artifact, byte[]> checksums = new LinkedHashMap<>(4);
+
+        // false if the contributors of a parent or imported POM are unknown
+        boolean complete = true;
     }
 
     public interface PomCreator {
@@ -208,6 +456,27 @@ public final class MavenPomRetriever<Err extends ArtifactRetrievalError> {
         CompletionStage<MavenPom> createPom(ResolvedArtifact resolvedArtifact, boolean consume);
 
         CompletionStage<MavenPom> createPom(ResolvedArtifactChecksum resolvedArtifact, boolean consume);
+
+        /**
+         * Handle a resolved POM whose effective POM was found in a cache, hence does not need to be parsed.
+         *
+         * @param resolvedArtifact the resolved POM
+         * @param effectivePom     the cached effective POM
+         * @return the effective POM once the resolved POM has been handled
+         */
+        default CompletionStage<MavenPom> useCachedPom(ResolvedArtifactChecksum resolvedArtifact,
+                                                       MavenPom effectivePom) {
+            resolvedArtifact.artifact.discardContents();
+            return completedStage(effectivePom);
+        }
+
+        /**
+         * @return true if the POM files themselves are required, even if effective POMs are found in a cache
+         * without having to fetch them.
+         */
+        default boolean requiresPomFiles() {
+            return false;
+        }
     }
 
     public enum DefaultPomCreator implements PomCreator {
@@ -216,11 +485,14 @@ public final class MavenPomRetriever<Err extends ArtifactRetrievalError> {
         @Override
         public CompletionStage<MavenPom> createPom(ResolvedArtifact artifact, boolean consume) {
             var contents = consume ? artifact.consumeContents() : new ByteArrayInputStream(artifact.getContents());
+            var startTime = System.nanoTime();
             try {
                 return completedStage(MavenUtils.parsePom(contents));
-            } catch (ParserConfigurationException | IOException | SAXException e) {
+            } catch (IOException | XMLStreamException e) {
                 return failedStage(new JBuildException("Could not parse POM of '" +
                         artifact.artifact.getCoordinates() + "' due to: " + e, ACTION_ERROR));
+            } finally {
+                RunStatistics.get().recordMicrosSince(POM_PARSE_MICROS, startTime);
             }
 
         }
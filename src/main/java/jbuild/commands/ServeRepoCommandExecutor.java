@@ -0,0 +1,353 @@
+package jbuild.commands;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jbuild.artifact.Artifact;
+import jbuild.artifact.ArtifactMetadata;
+import jbuild.artifact.ResolvedArtifact;
+import jbuild.artifact.VersionRange;
+import jbuild.artifact.file.ArtifactCache;
+import jbuild.log.JBuildLog;
+import jbuild.maven.MavenUtils;
+import jbuild.util.Describable;
+import jbuild.util.NonEmptyCollection;
+
+import javax.xml.transform.TransformerException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static jbuild.util.TextUtils.LINE_END;
+import static jbuild.util.TextUtils.trimStart;
+
+/**
+ * Server exposing a Maven repository over HTTP, backed by jbuild's artifact retrievers and a local
+ * {@link ArtifactCache}.
+ * <p>
+ * Artifacts are served from the cache if possible. Otherwise, they are fetched from the retrievers (in order),
+ * stored in the cache and then served. Concurrent requests for the same artifact are coalesced into a single fetch.
+ * <p>
+ * Requests for {@code maven-metadata.xml} files are answered with the metadata of all retrievers merged together.
+ * Metadata changes over time, so it is never cached.
+ * <p>
+ * The server consumes the artifacts it fetches once they are stored in its cache, and keeps running for a long time,
+ * so the given executors must use retrievers that do not cache the artifacts and metadata they resolve
+ * (see {@link jbuild.artifact.http.HttpArtifactRetriever}).
+ * <p>
+ * Metrics about the server and the cache are available at the {@code /.metrics} path.
+ */
+public final class ServeRepoCommandExecutor {
+
+    public static final String METRICS_PATH = "/.metrics";
+
+    private static final String METADATA_FILE = "maven-metadata.xml";
+
+    private final JBuildLog log;
+    private final FetchCommandExecutor<?> fetchCommandExecutor;
+    private final VersionsCommandExecutor versionsCommandExecutor;
+    private final ArtifactCache cache;
+
+    private final Map<String, CompletableFuture<Optional<Path>>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong coalescedRequests = new AtomicLong();
+    private final AtomicLong upstreamFetches = new AtomicLong();
+    private final AtomicLong upstreamMisses = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    public ServeRepoCommandExecutor(JBuildLog log,
+                                    FetchCommandExecutor<?> fetchCommandExecutor,
+                                    VersionsCommandExecutor versionsCommandExecutor,
+                                    ArtifactCache cache) {
+        this.log = log;
+        this.fetchCommandExecutor = fetchCommandExecutor;
+        this.versionsCommandExecutor = versionsCommandExecutor;
+        this.cache = cache;
+    }
+
+    /**
+     * Start serving the repository.
+     *
+     * @param address to bind to
+     * @param threads number of threads used to send responses
+     * @return the running server, which must be closed by the caller
+     * @throws IOException if the server cannot be started
+     */
+    public RunningServer serve(InetSocketAddress address, int threads) throws IOException {
+        var server = HttpServer.create(address, 0);
+        var executor = Executors.newFixedThreadPool(threads, new ServerThreadFactory());
+        server.createContext("/", exchange -> handle(exchange, executor));
+        server.setExecutor(executor);
+        server.start();
+        return new RunningServer(server, executor);
+    }
+
+    /**
+     * @return a description of the current metrics of the server and of its cache
+     */
+    public String getMetrics() {
+        var stats = cache.getStats();
+        return "requests " + requests.get() + LINE_END +
+                "coalesced_requests " + coalescedRequests.get() + LINE_END +
+                "upstream_fetches " + upstreamFetches.get() + LINE_END +
+                "upstream_misses " + upstreamMisses.get() + LINE_END +
+                "errors " + errors.get() + LINE_END +
+                "bytes_served " + bytesServed.get() + LINE_END +
+                "cache_hits " + stats.hits + LINE_END +
+                "cache_misses " + stats.misses + LINE_END +
+                "cache_evictions " + stats.evictions + LINE_END +
+                "cache_entries " + stats.entries + LINE_END +
+                "cache_size_bytes " + stats.sizeInBytes + LINE_END +
+                "cache_max_size_bytes " + stats.maxSizeInBytes + LINE_END;
+    }
+
+    private void handle(HttpExchange exchange, ExecutorService executor) {
+        requests.incrementAndGet();
+        try {
+            var method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                sendText(exchange, 405, "Method not allowed: " + method);
+                return;
+            }
+            var path = exchange.getRequestURI().getPath();
+            if (path.equals(METRICS_PATH)) {
+                sendText(exchange, 200, getMetrics());
+                return;
+            }
+            var repoPath = trimStart(path, '/');
+            if (repoPath.equals(METADATA_FILE) || repoPath.endsWith("/" + METADATA_FILE)) {
+                serveMetadata(exchange, repoPath, executor);
+            } else {
+                serveArtifact(exchange, repoPath, executor);
+            }
+        } catch (Exception e) {
+            sendError(exchange, e);
+        }
+    }
+
+    private void serveArtifact(HttpExchange exchange, String repoPath, ExecutorService executor) throws IOException {
+        var cached = cache.get(repoPath);
+        if (cached.isPresent()) {
+            try {
+                sendFile(exchange, cached.get());
+                return;
+            } catch (NoSuchFileException e) {
+                // evicted concurrently, fetch it again
+            }
+        }
+
+        var artifact = MavenUtils.parseArtifactPath(repoPath)
+                .filter(a -> !VersionRange.isVersionRange(a.version));
+        if (artifact.isEmpty()) {
+            sendText(exchange, 404, "Not a Maven artifact path: " + repoPath);
+            return;
+        }
+
+        fetch(repoPath, artifact.get()).whenCompleteAsync((file, err) -> {
+            try {
+                if (err != null) {
+                    sendError(exchange, err);
+                } else if (file.isEmpty()) {
+                    sendText(exchange, 404, "Artifact not found: " + artifact.get().getCoordinates());
+                } else {
+                    sendFile(exchange, file.get());
+                }
+            } catch (Exception e) {
+                sendError(exchange, e);
+            }
+        }, executor);
+    }
+
+    private CompletableFuture<Optional<Path>> fetch(String repoPath, Artifact artifact) {
+        var future = new CompletableFuture<Optional<Path>>();
+        var existing = inFlight.putIfAbsent(repoPath, future);
+        if (existing != null) {
+            coalescedRequests.incrementAndGet();
+            return existing;
+        }
+        future.whenComplete((ok, err) -> inFlight.remove(repoPath, future));
+
+        // another request may have completed the same fetch between the cache lookup and now
+        var cached = cache.peek(repoPath);
+        if (cached.isPresent()) {
+            future.complete(cached);
+            return future;
+        }
+
+        upstreamFetches.incrementAndGet();
+        log.verbosePrintln(() -> "Fetching " + repoPath + " from upstream repositories");
+
+        fetchCommandExecutor.fetchArtifact(artifact).whenComplete((result, err) -> {
+            if (err != null) {
+                future.completeExceptionally(err);
+                return;
+            }
+            try {
+                future.complete(result.map(resolved -> store(repoPath, resolved), this::notFound));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private Optional<Path> store(String repoPath, ResolvedArtifact resolvedArtifact) {
+        try {
+            return Optional.of(cache.put(repoPath, resolvedArtifact));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to cache " + resolvedArtifact.artifact.getCoordinates(), e);
+        } finally {
+            resolvedArtifact.discardContents();
+        }
+    }
+
+    private Optional<Path> notFound(NonEmptyCollection<Describable> errors) {
+        upstreamMisses.incrementAndGet();
+        log.verbosePrintln(errors.first::getDescription);
+        return Optional.empty();
+    }
+
+    private void serveMetadata(HttpExchange exchange, String repoPath, ExecutorService executor) throws IOException {
+        var parts = repoPath.split("/");
+        if (parts.length < 3) {
+            sendText(exchange, 404, "Not a Maven metadata path: " + repoPath);
+            return;
+        }
+        var artifact = Artifact.uninterned(String.join(".", Arrays.asList(parts).subList(0, parts.length - 2)),
+                parts[parts.length - 2], "", "", "");
+
+        versionsCommandExecutor.getVersions(Set.of(artifact)).get(artifact).whenCompleteAsync((result, err) -> {
+            try {
+                if (err != null) {
+                    sendError(exchange, err);
+                } else {
+                    var metadata = result.map(Optional::of, errors -> {
+                        notFound(errors);
+                        return Optional.<ArtifactMetadata>empty();
+                    });
+                    if (metadata.isPresent()) {
+                        sendMetadata(exchange, metadata.get());
+                    } else {
+                        sendText(exchange, 404, "Metadata not found: " + artifact.getCoordinates());
+                    }
+                }
+            } catch (Exception e) {
+                sendError(exchange, e);
+            }
+        }, executor);
+    }
+
+    private void sendMetadata(HttpExchange exchange, ArtifactMetadata metadata)
+            throws IOException, TransformerException {
+        var output = new ByteArrayOutputStream(1024);
+        MavenUtils.writeMavenMetadata(metadata, output);
+        send(exchange, 200, "application/xml", output.toByteArray());
+    }
+
+    private void sendFile(HttpExchange exchange, Path file) throws IOException {
+        // opening the file first guarantees it can still be read even if it's evicted while being sent
+        var channel = Files.newByteChannel(file);
+        try (channel) {
+            var size = channel.size();
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().set("Content-Length", Long.toString(size));
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, size);
+                try (var body = exchange.getResponseBody()) {
+                    Channels.newInputStream(channel).transferTo(body);
+                }
+                bytesServed.addAndGet(size);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        send(exchange, status, "text/plain; charset=utf-8", text.getBytes(UTF_8));
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, byte[] bytes) throws IOException {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (var body = exchange.getResponseBody()) {
+                    body.write(bytes);
+                }
+                bytesServed.addAndGet(bytes.length);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void sendError(HttpExchange exchange, Throwable error) {
+        errors.incrementAndGet();
+        log.println(() -> "ERROR: unable to serve " + exchange.getRequestURI() + " due to " + error);
+        try {
+            sendText(exchange, 502, "Unable to serve " + exchange.getRequestURI() + ": " + error);
+        } catch (IOException e) {
+            // the client is gone or the response was already started
+            exchange.close();
+        }
+    }
+
+    /**
+     * A running server.
+     */
+    public static final class RunningServer implements AutoCloseable {
+        private final HttpServer server;
+        private final ExecutorService executor;
+
+        private RunningServer(HttpServer server, ExecutorService executor) {
+            this.server = server;
+            this.executor = executor;
+        }
+
+        public InetSocketAddress getAddress() {
+            return server.getAddress();
+        }
+
+        /**
+         * Stop the server, waiting at most one second for ongoing requests to complete.
+         */
+        @Override
+        public void close() {
+            server.stop(1);
+            executor.shutdown();
+        }
+    }
+
+    private static final class ServerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            var thread = new Thread(runnable, "jbuild-serve-repo-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -7,11 +7,13 @@ import jbuild.artifact.DefaultArtifactRetrievers;
 import jbuild.log.JBuildLog;
 import jbuild.util.Describable;
 import jbuild.util.Either;
+import jbuild.util.Env;
 import jbuild.util.NonEmptyCollection;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
@@ -35,20 +37,71 @@ public final class VersionsCommandExecutor {
         this(log, DefaultArtifactRetrievers.get(log));
     }
 
+    /**
+     * Get the versions of the given artifacts, querying the versions of at most
+     * {@code VERSIONS_MAX_CONCURRENCY} artifacts at a time.
+     *
+     * @param artifacts whose versions to get
+     * @return the metadata of each artifact, or the errors that occurred
+     * @see #getVersions(Set, int)
+     */
     public Map<Artifact, CompletionStage<Either<ArtifactMetadata, NonEmptyCollection<Describable>>>> getVersions(
             Set<? extends Artifact> artifacts) {
-        var results = new HashMap<
+        return getVersions(artifacts, Env.VERSIONS_MAX_CONCURRENCY);
+    }
+
+    /**
+     * Get the versions of the given artifacts, querying the versions of at most {@code maxConcurrency}
+     * artifacts at a time.
+     * <p>
+     * Queries are started in the iteration order of the given artifacts. Each artifact's result completes as
+     * soon as its own query completes, so results can be consumed as they arrive. Metadata is cached by
+     * the retrievers, so artifacts that only differ in version are queried only once.
+     *
+     * @param artifacts      whose versions to get
+     * @param maxConcurrency maximum number of artifacts whose versions are being queried at the same time
+     * @return the metadata of each artifact, or the errors that occurred
+     */
+    public Map<Artifact, CompletionStage<Either<ArtifactMetadata, NonEmptyCollection<Describable>>>> getVersions(
+            Set<? extends Artifact> artifacts,
+            int maxConcurrency) {
+        var results = new LinkedHashMap<
                 Artifact,
                 CompletionStage<Either<ArtifactMetadata, NonEmptyCollection<Describable>>>>(artifacts.size());
+        var queue = new ConcurrentLinkedQueue<Query>();
 
         for (var artifact : artifacts) {
-            results.put(artifact, fetch(artifact));
+            var query = new Query(artifact);
+            queue.add(query);
+            results.put(artifact, query.result);
+        }
+
+        for (int i = 0; i < Math.max(1, maxConcurrency); i++) {
+            startNext(queue);
         }
 
         return results;
     }
 
-    private CompletionStage<Either<ArtifactMetadata, NonEmptyCollection<Describable>>> fetch(Artifact artifact) {
+    private void startNext(Queue<Query> queue) {
+        Query query;
+        // queries completing synchronously are handled in this loop to avoid deep recursion
+        while ((query = queue.poll()) != null) {
+            var current = query;
+            var completion = fetch(current.artifact);
+            if (completion.isDone()) {
+                current.completeWith(completion);
+            } else {
+                completion.whenComplete((ok, err) -> {
+                    current.completeWith(completion);
+                    startNext(queue);
+                });
+                return;
+            }
+        }
+    }
+
+    private CompletableFuture<Either<ArtifactMetadata, NonEmptyCollection<Describable>>> fetch(Artifact artifact) {
         var counter = new AtomicInteger(retrievers.size());
         var successes = new ConcurrentLinkedQueue<ArtifactMetadata>();
         var errors = new ConcurrentLinkedQueue<Describable>();
@@ -96,6 +149,23 @@ public final class VersionsCommandExecutor {
         return result;
     }
 
+    private static final class Query {
+        final Artifact artifact;
+        final CompletableFuture<Either<ArtifactMetadata, NonEmptyCollection<Describable>>> result =
+                new CompletableFuture<>();
+
+        Query(Artifact artifact) {
+            this.artifact = artifact;
+        }
+
+        void completeWith(CompletableFuture<Either<ArtifactMetadata, NonEmptyCollection<Describable>>> completion) {
+            completion.whenComplete((ok, err) -> {
+                if (err == null) result.complete(ok);
+                else result.completeExceptionally(err);
+            });
+        }
+    }
+
     private ArtifactMetadata mergeMetadata(NonEmptyCollection<ArtifactMetadata> metadatas) {
         var iter = metadatas.iterator();
         var result = iter.next();
@@ -0,0 +1,385 @@
+package jbuild.log;
+
+import jbuild.artifact.Artifact;
+import jbuild.util.Env;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static jbuild.util.TextUtils.LINE_END;
+import static jbuild.util.TextUtils.durationText;
+import static jbuild.util.TextUtils.jsonString;
+
+/**
+ * Profiler of dependency resolution.
+ * <p>
+ * Resolution is recorded as a tree of {@link Span}s: each POM resolution has its own span, under which
+ * each attempt to fetch it from a repository, parsing it and merging it with its parent and imports are
+ * recorded. Time spent waiting for another POM is recorded as a wait span linked to the span of the POM
+ * being waited for, which allows following the critical path of a resolution across POMs that are shared
+ * by many dependency paths.
+ * <p>
+ * The profiler is disabled unless the {@code RESOLUTION_TRACE_FILE} environment variable is set, in which case
+ * recording spans has a negligible cost.
+ */
+public final class ResolutionProfiler {
+
+    public static final String CATEGORY_RESOLUTION = "resolution";
+    public static final String CATEGORY_LEVEL = "level";
+    public static final String CATEGORY_POM = "pom";
+    public static final String CATEGORY_FETCH = "fetch";
+    public static final String CATEGORY_PARSE = "parse";
+    public static final String CATEGORY_MERGE = "merge";
+    public static final String CATEGORY_WAIT = "wait";
+
+    private static volatile ResolutionProfiler current = new ResolutionProfiler(
+            !Env.RESOLUTION_TRACE_FILE.isBlank());
+
+    private final boolean enabled;
+    private final long startNanos;
+    private final AtomicLong ids = new AtomicLong();
+    private final Queue<Span> spans = new ConcurrentLinkedQueue<>();
+    private final Map<Artifact, Span> resolutionsByPom = new ConcurrentHashMap<>();
+
+    public ResolutionProfiler(boolean enabled) {
+        this.enabled = enabled;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the profiler used by the current process
+     */
+    public static ResolutionProfiler get() {
+        return current;
+    }
+
+    /**
+     * Set the profiler used by the current process.
+     *
+     * @param profiler to use
+     */
+    public static void set(ResolutionProfiler profiler) {
+        current = profiler;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start a new span.
+     *
+     * @param category of the span
+     * @param name     of the span
+     * @param parent   span, or null if this is a root span
+     * @return the started span
+     */
+    public Span start(String category, String name, Span parent) {
+        return start(category, name, parent, null);
+    }
+
+    /**
+     * Start a span recording the time spent waiting for another span to end.
+     *
+     * @param name       of the span
+     * @param parent     span, or null if this is a root span
+     * @param waitingFor span being waited for, or null if unknown
+     * @return the started span
+     */
+    public Span startWait(String name, Span parent, Span waitingFor) {
+        return start(CATEGORY_WAIT, name, parent, waitingFor);
+    }
+
+    /**
+     * Start the span of the resolution of a POM, so that it can be found later with {@link #resolutionOf(Artifact)}.
+     *
+     * @param artifact whose POM is being resolved
+     * @return the started span
+     */
+    public Span startResolution(Artifact artifact) {
+        if (!enabled) return Span.NONE;
+        var pom = artifact.noChecksum().pom();
+        var span = start(CATEGORY_POM, pom.getCoordinates(), null);
+        resolutionsByPom.putIfAbsent(pom, span);
+        return span;
+    }
+
+    /**
+     * @param artifact POM artifact or its checksum
+     * @return the span of the resolution of the POM, or null if it has not been started
+     */
+    public Span resolutionOf(Artifact artifact) {
+        if (!enabled) return null;
+        var noChecksum = artifact.noChecksum();
+        if (!noChecksum.isPom()) return null;
+        return resolutionsByPom.get(noChecksum);
+    }
+
+    private Span start(String category, String name, Span parent, Span link) {
+        if (!enabled) return Span.NONE;
+        return new Span(this, ids.incrementAndGet(), category, name, parent, link);
+    }
+
+    /**
+     * @return all spans that have ended, in the order they ended
+     */
+    public List<Span> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    /**
+     * Compute the critical path of the recorded resolution.
+     * <p>
+     * Starting from the resolution span that ended last (or any root span if there is none), the path
+     * follows the child that ended last at each step.
+     * When a wait span is reached, the path continues into the span that was being waited for.
+     *
+     * @return the spans in the critical path, starting from its root
+     */
+    public List<Span> criticalPath() {
+        var allSpans = getSpans();
+        var childrenByParent = new HashMap<Span, List<Span>>();
+        Span root = null;
+        for (var span : allSpans) {
+            if (span.parent == null) {
+                if (root == null || isBetterRoot(span, root)) root = span;
+            } else {
+                childrenByParent.computeIfAbsent(span.parent, ignore -> new ArrayList<>(4)).add(span);
+            }
+        }
+        var path = new ArrayList<Span>();
+        var visited = new HashSet<Span>();
+        var span = root;
+        while (span != null && visited.add(span)) {
+            path.add(span);
+            if (span.link != null && span.link.end != Span.NOT_ENDED) {
+                span = span.link;
+            } else {
+                span = childrenByParent.getOrDefault(span, List.of()).stream()
+                        .max(Comparator.comparingLong(s -> s.end))
+                        .orElse(null);
+            }
+        }
+        return path;
+    }
+
+    private static boolean isBetterRoot(Span span, Span root) {
+        var isResolution = CATEGORY_RESOLUTION.equals(span.category);
+        if (isResolution != CATEGORY_RESOLUTION.equals(root.category)) return isResolution;
+        return span.end > root.end;
+    }
+
+    /**
+     * Create a report of the recorded resolution, showing its critical path and where most time was spent.
+     *
+     * @param topCount maximum number of artifacts and repositories to show
+     * @return the report
+     */
+    public String report(int topCount) {
+        var report = new StringBuilder("Resolution profile:").append(LINE_END);
+
+        var criticalPath = criticalPath();
+        report.append("  Critical path:").append(LINE_END);
+        for (var span : criticalPath) {
+            report.append("    ").append(span.category).append(' ').append(span.name)
+                    .append(" - ").append(durationText(span.getDuration()));
+            var repository = span.args.get("repository");
+            if (repository != null) {
+                report.append(" from ").append(repository);
+            }
+            report.append(LINE_END);
+        }
+
+        var fetches = new ArrayList<Span>();
+        var timeByRepository = new LinkedHashMap<String, long[]>();
+        for (var span : getSpans()) {
+            if (!CATEGORY_FETCH.equals(span.category)) continue;
+            fetches.add(span);
+            var repository = span.args.getOrDefault("repository", "<unknown>");
+            var total = timeByRepository.computeIfAbsent(repository, ignore -> new long[2]);
+            total[0] += span.end - span.start;
+            total[1]++;
+        }
+        fetches.sort(Comparator.comparingLong((Span s) -> s.end - s.start).reversed());
+
+        report.append("  Slowest artifacts:").append(LINE_END);
+        fetches.stream().limit(topCount).forEach(span -> report.append("    ").append(span.name)
+                .append(" - ").append(durationText(span.getDuration()))
+                .append(" from ").append(span.args.getOrDefault("repository", "<unknown>"))
+                .append(LINE_END));
+
+        report.append("  Slowest repositories:").append(LINE_END);
+        timeByRepository.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, long[]> e) -> e.getValue()[0]).reversed())
+                .limit(topCount)
+                .forEach(entry -> {
+                    var total = entry.getValue();
+                    report.append("    ").append(entry.getKey())
+                            .append(" - ").append(durationText(Duration.ofNanos(total[0])))
+                            .append(" in ").append(total[1]).append(" requests, average ")
+                            .append(durationText(Duration.ofNanos(total[0] / total[1])))
+                            .append(LINE_END);
+                });
+
+        return report.toString();
+    }
+
+    /**
+     * Write all spans that have ended to a file, in the Chrome trace event format.
+     * <p>
+     * Concurrent spans are laid out on separate lanes (threads, for trace viewers) so that they do not overlap.
+     *
+     * @param file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void writeChromeTrace(Path file) throws IOException {
+        var allSpans = getSpans();
+        allSpans.sort(Comparator.comparingLong(s -> s.start));
+        var laneEnds = new ArrayList<Long>();
+        var json = new StringBuilder("{\"traceEvents\":[");
+        var first = true;
+        for (var span : allSpans) {
+            var lane = 0;
+            while (lane < laneEnds.size() && laneEnds.get(lane) > span.start) lane++;
+            if (lane == laneEnds.size()) laneEnds.add(span.end);
+            else laneEnds.set(lane, span.end);
+
+            if (!first) json.append(',');
+            first = false;
+            json.append(LINE_END).append("{\"name\":").append(jsonString(span.name))
+                    .append(",\"cat\":").append(jsonString(span.category))
+                    .append(",\"ph\":\"X\",\"pid\":1,\"tid\":").append(lane + 1)
+                    .append(",\"ts\":").append(micros(span.start))
+                    .append(",\"dur\":").append((span.end - span.start) / 1_000L)
+                    .append(",\"args\":{\"id\":").append(span.id);
+            if (span.parent != null) json.append(",\"parent\":").append(span.parent.id);
+            if (span.link != null) json.append(",\"waitingFor\":").append(span.link.id);
+            span.args.forEach((key, value) -> json.append(',')
+                    .append(jsonString(key)).append(':').append(jsonString(value)));
+            json.append("}}");
+        }
+        json.append(LINE_END).append("]}").append(LINE_END);
+        Files.writeString(file, json, UTF_8);
+    }
+
+    private long micros(long nanoTime) {
+        return (nanoTime - startNanos) / 1_000L;
+    }
+
+    /**
+     * A timed operation within a resolution.
+     * <p>
+     * Spans obtained from a disabled profiler do not record anything.
+     */
+    public static final class Span {
+
+        static final long NOT_ENDED = Long.MIN_VALUE;
+
+        static final Span NONE = new Span(null, 0L, "", "", null, null);
+
+        private final ResolutionProfiler profiler;
+        private final long id;
+        private final String category;
+        private final String name;
+        private final Span parent;
+        private final Span link;
+        private final Map<String, String> args;
+        private final long start;
+        private volatile long end = NOT_ENDED;
+
+        private Span(ResolutionProfiler profiler, long id, String category, String name, Span parent, Span link) {
+            this.profiler = profiler;
+            this.id = id;
+            this.category = category;
+            this.name = name;
+            this.parent = parent == NONE ? null : parent;
+            this.link = link == NONE ? null : link;
+            this.args = profiler == null ? Map.of() : new ConcurrentHashMap<>(2);
+            this.start = System.nanoTime();
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Span getParent() {
+            return parent;
+        }
+
+        public Span getLink() {
+            return link;
+        }
+
+        public Map<String, String> getArgs() {
+            return args;
+        }
+
+        /**
+         * @return the duration of this span, or zero if it has not ended
+         */
+        public Duration getDuration() {
+            var endTime = end;
+            return endTime == NOT_ENDED ? Duration.ZERO : Duration.ofNanos(endTime - start);
+        }
+
+        /**
+         * Add an argument to this span.
+         *
+         * @param key   of the argument
+         * @param value of the argument
+         * @return this span
+         */
+        public Span arg(String key, String value) {
+            if (profiler != null) args.put(key, value);
+            return this;
+        }
+
+        /**
+         * End this span. Only the first call has any effect.
+         */
+        public void end() {
+            if (profiler == null || end != NOT_ENDED) return;
+            synchronized (this) {
+                if (end != NOT_ENDED) return;
+                end = System.nanoTime();
+            }
+            profiler.spans.add(this);
+        }
+
+        /**
+         * End this span when the given stage completes.
+         *
+         * @param stage to wait for
+         * @param <T>   type of the stage result
+         * @return a stage that completes like the given stage, but only after this span has ended
+         */
+        public <T> CompletionStage<T> endOn(CompletionStage<T> stage) {
+            if (profiler == null) return stage;
+            return stage.whenComplete((ok, err) -> end());
+        }
+
+        @Override
+        public String toString() {
+            return category + " " + name;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package jbuild.log;
+
+import jbuild.util.Env;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static jbuild.util.TextUtils.LINE_END;
+import static jbuild.util.TextUtils.jsonString;
+
+/**
+ * Statistics of a JBuild run, such as how many requests were made to repositories, how many bytes were downloaded
+ * and written, how effective caches were and how long POMs took to be parsed.
+ * <p>
+ * Statistics consist of named counters and histograms. Names are formed by the component recording the statistic
+ * and what is being recorded, e.g. {@code http.requests}. The names of histograms of durations end with
+ * the unit of the recorded values, e.g. {@code pom.parseMicros}.
+ * <p>
+ * Statistics are not recorded unless enabled with the {@code --stats} option, or the {@code STATS_FILE}
+ * environment variable is set, in which case they are written to that file as JSON at the end of the run.
+ */
+public final class RunStatistics {
+
+    public static final String HTTP_REQUESTS = "http.requests";
+    public static final String HTTP_RETRIES = "http.retries";
+    public static final String HTTP_ERRORS = "http.errors";
+    public static final String HTTP_NOT_FOUND = "http.notFound";
+    public static final String HTTP_BYTES = "http.bytes";
+    public static final String HTTP_CACHE_HITS = "http.cache.hits";
+    public static final String HTTP_CACHE_MISSES = "http.cache.misses";
+    public static final String HTTP_REQUEST_MILLIS = "http.requestMillis";
+
+    public static final String FILE_REQUESTS = "file.requests";
+    public static final String FILE_NOT_FOUND = "file.notFound";
+    public static final String FILE_BYTES = "file.bytes";
+
+    public static final String POM_CACHE_HITS = "pom.cache.hits";
+    public static final String POM_CACHE_MISSES = "pom.cache.misses";
+    public static final String POM_PREFETCHES = "pom.prefetches";
+    public static final String POM_PARSE_MICROS = "pom.parseMicros";
+    public static final String EFFECTIVE_POM_CACHE_HITS = "effectivePom.cache.hits";
+    public static final String EFFECTIVE_POM_CACHE_MISSES = "effectivePom.cache.misses";
+
+    public static final String WRITE_FILES = "write.files";
+    public static final String WRITE_DUPLICATES = "write.duplicates";
+    public static final String WRITE_ERRORS = "write.errors";
+    public static final String WRITE_BYTES = "write.bytes";
+    public static final String WRITE_MICROS = "write.micros";
+
+    private static volatile RunStatistics current = new RunStatistics(!Env.STATS_FILE.isBlank());
+
+    private final boolean enabled;
+    private final long startNanos;
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public RunStatistics(boolean enabled) {
+        this.enabled = enabled;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the statistics of the current process
+     */
+    public static RunStatistics get() {
+        return current;
+    }
+
+    /**
+     * Set the statistics of the current process.
+     *
+     * @param statistics to use
+     */
+    public static void set(RunStatistics statistics) {
+        current = statistics;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Increment a counter by one.
+     *
+     * @param counter name of the counter
+     */
+    public void increment(String counter) {
+        add(counter, 1L);
+    }
+
+    /**
+     * Add an amount to a counter.
+     *
+     * @param counter name of the counter
+     * @param amount  to add
+     */
+    public void add(String counter, long amount) {
+        if (!enabled) return;
+        counters.computeIfAbsent(counter, ignore -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * Record a value in a histogram.
+     *
+     * @param histogram name of the histogram
+     * @param value     to record, must not be negative
+     */
+    public void record(String histogram, long value) {
+        if (!enabled) return;
+        histograms.computeIfAbsent(histogram, ignore -> new Histogram()).record(value);
+    }
+
+    /**
+     * Record the time elapsed since the given time in a histogram, in microseconds.
+     *
+     * @param histogram  name of the histogram
+     * @param startNanos start time, as given by {@link System#nanoTime()}
+     */
+    public void recordMicrosSince(String histogram, long startNanos) {
+        if (!enabled) return;
+        record(histogram, (System.nanoTime() - startNanos) / 1_000L);
+    }
+
+    /**
+     * Record the time elapsed since the given time in a histogram, in milliseconds.
+     *
+     * @param histogram  name of the histogram
+     * @param startNanos start time, as given by {@link System#nanoTime()}
+     */
+    public void recordMillisSince(String histogram, long startNanos) {
+        if (!enabled) return;
+        record(histogram, (System.nanoTime() - startNanos) / 1_000_000L);
+    }
+
+    /**
+     * @param counter name of the counter
+     * @return the current value of the counter, or zero if nothing has been recorded for it
+     */
+    public long getCounter(String counter) {
+        var adder = counters.get(counter);
+        return adder == null ? 0L : adder.sum();
+    }
+
+    /**
+     * @return the current value of all counters that have been recorded, sorted by name
+     */
+    public Map<String, Long> getCounters() {
+        var result = new TreeMap<String, Long>();
+        counters.forEach((name, adder) -> result.put(name, adder.sum()));
+        return result;
+    }
+
+    /**
+     * @param histogram name of the histogram
+     * @return the histogram, or null if nothing has been recorded for it
+     */
+    public Histogram getHistogram(String histogram) {
+        return histograms.get(histogram);
+    }
+
+    /**
+     * @return all histograms that have been recorded, sorted by name
+     */
+    public Map<String, Histogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /**
+     * @return the statistics as a single-line JSON object
+     */
+    public String toJson() {
+        var json = new StringBuilder(512)
+                .append("{\"elapsedMillis\":").append((System.nanoTime() - startNanos) / 1_000_000L)
+                .append(",\"counters\":{");
+        var first = true;
+        for (var entry : getCounters().entrySet()) {
+            if (!first) json.append(',');
+            first = false;
+            json.append(jsonString(entry.getKey())).append(':').append(entry.getValue());
+        }
+        json.append("},\"histograms\":{");
+        first = true;
+        for (var entry : getHistograms().entrySet()) {
+            if (!first) json.append(',');
+            first = false;
+            json.append(jsonString(entry.getKey())).append(':');
+            entry.getValue().appendJson(json);
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Write the statistics to a file as JSON.
+     *
+     * @param file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void writeJson(Path file) throws IOException {
+        Files.writeString(file, toJson() + LINE_END, UTF_8);
+    }
+
+    /**
+     * Histogram of non-negative values.
+     * <p>
+     * Values are counted in buckets whose upper bounds are powers of two, so percentiles are approximate:
+     * they are the upper bound of the bucket containing the percentile, but never more than the maximum value.
+     */
+    public static final class Histogram {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+        // bucket i counts values v such that 2^(i-1) <= v < 2^i, with bucket 0 counting only zeroes
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+        void record(long value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("value must not be negative: " + value);
+            }
+            count.increment();
+            sum.add(value);
+            min.accumulate(value);
+            max.accumulate(value);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        public long getMin() {
+            return getCount() == 0 ? 0L : min.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public long getMean() {
+            var n = getCount();
+            return n == 0 ? 0L : getSum() / n;
+        }
+
+        /**
+         * @param percentile from 0.0 to 100.0
+         * @return the approximate value at the given percentile
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0.0 || percentile > 100.0) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100, not " + percentile);
+            }
+            var n = getCount();
+            if (n == 0) return 0L;
+            var rank = Math.max(1L, (long) Math.ceil(n * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    var upperBound = i == 0 ? 0L : i >= 63 ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Math.min(upperBound, getMax());
+                }
+            }
+            return getMax();
+        }
+
+        void appendJson(StringBuilder json) {
+            json.append("{\"count\":").append(getCount())
+                    .append(",\"sum\":").append(getSum())
+                    .append(",\"min\":").append(getMin())
+                    .append(",\"mean\":").append(getMean())
+                    .append(",\"p50\":").append(getPercentile(50))
+                    .append(",\"p90\":").append(getPercentile(90))
+                    .append(",\"p99\":").append(getPercentile(99))
+                    .append(",\"max\":").append(getMax())
+                    .append('}');
+        }
+
+        @Override
+        public String toString() {
+            var json = new StringBuilder(128);
+            appendJson(json);
+            return json.toString();
+        }
+    }
+}
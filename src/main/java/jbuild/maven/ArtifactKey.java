@@ -1,9 +1,10 @@
 package jbuild.maven;
 
 import jbuild.artifact.Artifact;
+import jbuild.artifact.CoordinatePool;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A key object that can be used to identify a particular {@link Artifact}
@@ -18,15 +19,18 @@ public final class ArtifactKey {
     public final String artifactId;
     public final DependencyType type;
 
-    private static final Map<String, Map<String, Map<DependencyType, ArtifactKey>>> keyCache = new HashMap<>();
+    private final String coordinates;
+    private final int hashCode;
+
+    private static final Map<String, Map<String, Map<DependencyType, ArtifactKey>>> keyCache =
+            new ConcurrentHashMap<>();
 
     public static ArtifactKey of(Dependency dependency) {
         return of(dependency.artifact.groupId, dependency.artifact.artifactId, dependency.type);
     }
 
     public static ArtifactKey of(Artifact artifact) {
-        return new ArtifactKey(artifact.groupId, artifact.artifactId,
-                DependencyType.fromClassifier(artifact.classifier));
+        return of(artifact.groupId, artifact.artifactId, DependencyType.fromClassifier(artifact.classifier));
     }
 
     public static ArtifactKey of(String groupId, String artifactId) {
@@ -34,21 +38,21 @@ public final class ArtifactKey {
     }
 
     public static ArtifactKey of(String groupId, String artifactId, DependencyType type) {
-        synchronized (keyCache) {
-            return keyCache.computeIfAbsent(groupId, g -> new HashMap<>(4))
-                    .computeIfAbsent(artifactId, a -> new HashMap<>(2))
-                    .computeIfAbsent(type, t -> new ArtifactKey(groupId, artifactId, t));
-        }
+        return keyCache.computeIfAbsent(groupId, g -> new ConcurrentHashMap<>(4))
+                .computeIfAbsent(artifactId, a -> new ConcurrentHashMap<>(2))
+                .computeIfAbsent(type, t -> new ArtifactKey(groupId, artifactId, t));
     }
 
     private ArtifactKey(String groupId, String artifactId, DependencyType type) {
-        this.groupId = groupId;
-        this.artifactId = artifactId;
+        this.groupId = CoordinatePool.intern(groupId);
+        this.artifactId = CoordinatePool.intern(artifactId);
         this.type = type;
+        this.coordinates = groupId + ':' + artifactId;
+        this.hashCode = computeHashCode();
     }
 
     public String getCoordinates() {
-        return groupId + ':' + artifactId;
+        return coordinates;
     }
 
     @Override
@@ -64,6 +68,10 @@ public final class ArtifactKey {
 
     @Override
     public int hashCode() {
+        return hashCode;
+    }
+
+    private int computeHashCode() {
         int result = groupId.hashCode();
         result = 31 * result + artifactId.hashCode();
         result = 31 * result + type.hashCode();
@@ -22,6 +22,8 @@ public final class Dependency implements WritableXml {
     final boolean explicitScope;
     final boolean explicitType;
 
+    private final int hashCode;
+
     Dependency(Artifact artifact,
                Scope scope,
                String optionalString,
@@ -51,6 +53,7 @@ public final class Dependency implements WritableXml {
                 : artifact;
 
         this.type = depType;
+        this.hashCode = computeHashCode();
     }
 
     public Dependency(Artifact artifact) {
@@ -68,6 +71,7 @@ public final class Dependency implements WritableXml {
 
         Dependency that = (Dependency) o;
 
+        if (hashCode != that.hashCode) return false;
         if (optional != that.optional) return false;
         if (scope != that.scope) return false;
         if (type != that.type) return false;
@@ -77,6 +81,10 @@ public final class Dependency implements WritableXml {
 
     @Override
     public int hashCode() {
+        return hashCode;
+    }
+
+    private int computeHashCode() {
         int result = artifact.hashCode();
         result = 31 * result + scope.hashCode();
         result = 31 * result + (optional ? 1 : 0);
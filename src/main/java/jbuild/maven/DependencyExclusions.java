@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.regex.Pattern;
@@ -21,24 +22,43 @@ public final class DependencyExclusions {
 
     public static final class PatternUsage {
         private final Pattern pattern;
+        private final ArtifactKey artifactKey;
         private final AtomicInteger usages = new AtomicInteger(0);
 
         PatternUsage(Pattern pattern) {
+            this(pattern, null);
+        }
+
+        /**
+         * @param pattern     the pattern
+         * @param artifactKey the exclusion the pattern was created from, if any. A groupId or artifactId equal
+         *                    to {@code *} matches anything.
+         */
+        PatternUsage(Pattern pattern, ArtifactKey artifactKey) {
             this.pattern = pattern;
+            this.artifactKey = artifactKey;
         }
 
         public int getUsages() {
             return usages.get();
         }
 
+        ArtifactKey getArtifactKey() {
+            return artifactKey;
+        }
+
         boolean matches(CharSequence input) {
             var match = pattern.matcher(input).matches();
             if (match) {
-                usages.incrementAndGet();
+                use();
             }
             return match;
         }
 
+        void use() {
+            usages.incrementAndGet();
+        }
+
         @Override
         public String toString() {
             return pattern.toString();
@@ -54,10 +74,26 @@ public final class DependencyExclusions {
         public final List<PatternUsage> globalExclusions;
         public final Map<String, List<PatternUsage>> exclusionsByArtifact;
 
-        private ExclusionsWithUsage(List<PatternUsage> globalExclusions,
-                                    Map<String, List<PatternUsage>> exclusionsByArtifact) {
+        // compiled on demand, keyed by the artifact whose exclusions apply in addition to the global ones
+        // (or the empty String if only the global exclusions apply)
+        private final Map<String, ExclusionMatcher> matchers = new ConcurrentHashMap<>(4);
+
+        private final Set<String> globalPatterns;
+
+        ExclusionsWithUsage(List<PatternUsage> globalExclusions,
+                            Map<String, List<PatternUsage>> exclusionsByArtifact) {
             this.globalExclusions = globalExclusions;
             this.exclusionsByArtifact = exclusionsByArtifact;
+            this.globalPatterns = globalExclusions.stream()
+                    .map(PatternUsage::toString)
+                    .collect(Collectors.toUnmodifiableSet());
+        }
+
+        /**
+         * @return the global exclusion patterns, as Strings
+         */
+        public Set<String> getGlobalPatterns() {
+            return globalPatterns;
         }
 
         public boolean isEmpty() {
@@ -68,8 +104,31 @@ public final class DependencyExclusions {
             return exclusionsByArtifact.get(artifact);
         }
 
+        /**
+         * Get the matcher of the exclusions applicable to the dependencies of an artifact.
+         * <p>
+         * Matchers are compiled only once for each instance of this class.
+         *
+         * @param artifact coordinates of the artifact whose dependencies are to be matched
+         * @return matcher of the global exclusions followed by the exclusions of the given artifact
+         */
+        public ExclusionMatcher matcherFor(String artifact) {
+            var forThis = exclusionsByArtifact.get(artifact);
+            if (forThis == null) {
+                return matchers.computeIfAbsent("", ignore -> ExclusionMatcher.of(globalExclusions));
+            }
+            return matchers.computeIfAbsent(artifact, ignore ->
+                    ExclusionMatcher.of(CollectionUtils.appendList(globalExclusions, forThis)));
+        }
+
+        /**
+         * Add global exclusions.
+         *
+         * @param exclusions to add
+         * @return this instance if it already contains all the given exclusions, or a new instance otherwise
+         */
         public ExclusionsWithUsage withGlobalExclusions(List<PatternUsage> exclusions) {
-            if (exclusions.isEmpty()) return this;
+            if (exclusions.stream().allMatch(p -> globalPatterns.contains(p.toString()))) return this;
             var globalExclusions = merge(this.globalExclusions, exclusions);
             return new DependencyExclusions.ExclusionsWithUsage(globalExclusions, exclusionsByArtifact);
         }
@@ -77,8 +136,8 @@ public final class DependencyExclusions {
         private static List<PatternUsage> merge(List<PatternUsage> first, List<PatternUsage> second) {
             if (first.isEmpty()) return second;
             if (second.isEmpty()) return first;
-            var firstMap = first.stream().collect(toMap(p -> p.pattern, Function.identity()));
-            var secondMap = second.stream().collect(toMap(p -> p.pattern, Function.identity()));
+            var firstMap = first.stream().collect(toMap(PatternUsage::toString, Function.identity()));
+            var secondMap = second.stream().collect(toMap(PatternUsage::toString, Function.identity()));
             var result = new ArrayList<PatternUsage>(firstMap.size() + secondMap.size());
             for (var entry : firstMap.entrySet()) {
                 var patternUsage = entry.getValue();
@@ -0,0 +1,246 @@
+package jbuild.maven;
+
+import jbuild.artifact.Artifact;
+import jbuild.artifact.Version;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Maven-compatible dependency version mediation.
+ * <p>
+ * A dependency tree may contain several versions of the same artifact. Mediation selects a single version
+ * for each {@link ArtifactKey} using the same rules as Maven:
+ * <ul>
+ *     <li>the dependencyManagement section of the root POM overrides the version of transitive
+ *     dependencies.</li>
+ *     <li>otherwise, the version nearest to the root wins.</li>
+ * </ul>
+ * Only the dependencies of the winning nodes are visited, so the transitive dependencies of versions that
+ * lost the mediation do not take part in it.
+ * <p>
+ * Maven breaks ties between versions at the same depth by declaration order. As {@link MavenPom} does not
+ * keep the order in which dependencies are declared, the highest version wins ties instead.
+ * <p>
+ * When the root's dependencyManagement imposes a version that is not the one found in the tree, the dependency
+ * tree of the managed version must be given to the mediation so that its POM and its own dependencies are used.
+ * Managed versions whose trees were not given are reported in {@link Mediation#unresolvedManagedVersions}, so
+ * that callers can resolve them and mediate again.
+ */
+public final class DependencyMediator {
+
+    /**
+     * The result of a mediation.
+     */
+    public static final class Mediation {
+
+        /**
+         * The winners of the mediation: at most one version for each {@link ArtifactKey},
+         * except for the roots of the trees, which are always included.
+         * <p>
+         * Dependencies listed in {@link Mediation#unresolvedManagedVersions} do not have a POM.
+         */
+        public final Set<ResolvedDependency> dependencies;
+
+        /**
+         * Versions imposed by dependencyManagement that won the mediation, but whose dependency trees
+         * were not given to the mediation.
+         */
+        public final Set<Artifact> unresolvedManagedVersions;
+
+        /**
+         * For each {@link ArtifactKey} found with more than one version, all versions found.
+         */
+        public final Map<ArtifactKey, Set<String>> conflicts;
+
+        private Mediation(Set<ResolvedDependency> dependencies,
+                          Set<Artifact> unresolvedManagedVersions,
+                          Map<ArtifactKey, Set<String>> conflicts) {
+            this.dependencies = dependencies;
+            this.unresolvedManagedVersions = unresolvedManagedVersions;
+            this.conflicts = conflicts;
+        }
+    }
+
+    private DependencyMediator() {
+    }
+
+    /**
+     * Mediate the versions of the dependencies of the given trees.
+     * <p>
+     * The trees are mediated together, as if their roots were the direct dependencies of a single project.
+     *
+     * @param trees dependency trees
+     * @return the result of the mediation
+     */
+    public static Mediation mediate(Collection<DependencyTree> trees) {
+        return mediate(trees, Map.of());
+    }
+
+    /**
+     * Mediate the versions of the dependencies of the given trees.
+     * <p>
+     * The trees are mediated together, as if their roots were the direct dependencies of a single project.
+     *
+     * @param trees        dependency trees
+     * @param managedTrees dependency trees of versions imposed by dependencyManagement, by their artifacts
+     *                     (as listed in {@link Mediation#unresolvedManagedVersions})
+     * @return the result of the mediation
+     */
+    public static Mediation mediate(Collection<DependencyTree> trees, Map<Artifact, DependencyTree> managedTrees) {
+        var decidedKeys = new HashSet<ArtifactKey>();
+        var winners = new ArrayList<Winner>();
+        var rootDependencies = new ArrayList<ResolvedDependency>(trees.size());
+        var conflicts = new HashMap<ArtifactKey, Set<String>>();
+        var visited = Collections.newSetFromMap(new IdentityHashMap<DependencyTree, Boolean>());
+
+        // the roots are not mediated as they were explicitly requested
+        List<Node> level = new ArrayList<>();
+        for (var tree : trees) {
+            if (!visited.add(tree)) continue;
+            rootDependencies.add(tree.root);
+            var management = managedVersions(tree.root.pom);
+            for (var child : tree.dependencies) {
+                level.add(new Node(child, management));
+            }
+        }
+        for (var root : rootDependencies) {
+            decidedKeys.add(ArtifactKey.of(root.artifact));
+        }
+
+        var depth = 1;
+        while (!level.isEmpty()) {
+            var candidates = new LinkedHashMap<ArtifactKey, List<Node>>();
+            for (var node : level) {
+                var key = ArtifactKey.of(node.tree.root.artifact);
+                recordVersion(conflicts, key, node.tree.root.artifact.version);
+                if (!decidedKeys.contains(key)) {
+                    candidates.computeIfAbsent(key, ignore -> new ArrayList<>(2)).add(node);
+                }
+            }
+            var nextLevel = new ArrayList<Node>();
+            for (var entry : candidates.entrySet()) {
+                var winner = select(entry.getKey(), entry.getValue(), depth);
+                decidedKeys.add(entry.getKey());
+                if (winner.managedVersion != null) {
+                    recordVersion(conflicts, entry.getKey(), winner.managedVersion);
+                    var managedTree = managedTrees.get(winner.managedArtifact());
+                    if (managedTree != null) {
+                        // the managed version's own dependencies replace those of the version found in the tree
+                        winner = new Winner(new Node(managedTree, winner.node.management), null);
+                    }
+                }
+                winners.add(winner);
+                if (visited.add(winner.node.tree)) {
+                    for (var child : winner.node.tree.dependencies) {
+                        nextLevel.add(new Node(child, winner.node.management));
+                    }
+                }
+            }
+            level = nextLevel;
+            depth++;
+        }
+
+        var dependencies = new HashSet<ResolvedDependency>(rootDependencies);
+        var unresolvedManagedVersions = new HashSet<Artifact>();
+        for (var winner : winners) {
+            dependencies.add(winner.toResolvedDependency());
+            if (winner.managedVersion != null) {
+                unresolvedManagedVersions.add(winner.managedArtifact());
+            }
+        }
+        conflicts.values().removeIf(versions -> versions.size() < 2);
+
+        return new Mediation(dependencies, unresolvedManagedVersions, conflicts);
+    }
+
+    private static Winner select(ArtifactKey key, List<Node> candidates, int depth) {
+        Node nearest = candidates.get(0);
+        for (int i = 1; i < candidates.size(); i++) {
+            var candidate = candidates.get(i);
+            if (Version.parse(candidate.tree.root.artifact.version)
+                    .isAfter(Version.parse(nearest.tree.root.artifact.version))) {
+                nearest = candidate;
+            }
+        }
+        // the versions of direct dependencies are managed by the POM itself already
+        if (depth > 1) {
+            var managedVersion = nearest.management.get(key);
+            if (managedVersion != null && !managedVersion.isBlank()) {
+                for (var candidate : candidates) {
+                    if (candidate.tree.root.artifact.version.equals(managedVersion)) {
+                        return new Winner(candidate, null);
+                    }
+                }
+                return new Winner(nearest, managedVersion);
+            }
+        }
+        return new Winner(nearest, null);
+    }
+
+    /**
+     * @param pom root POM, or null
+     * @return the versions the dependencyManagement section of the POM imposes on transitive dependencies
+     */
+    public static Map<ArtifactKey, String> managedVersions(MavenPom pom) {
+        if (pom == null) return Map.of();
+        var result = new HashMap<ArtifactKey, String>();
+        for (var entry : pom.getDependencyManagement().entrySet()) {
+            for (var dependency : entry.getValue()) {
+                if (dependency.scope != Scope.IMPORT) {
+                    result.putIfAbsent(entry.getKey(), dependency.artifact.version);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void recordVersion(Map<ArtifactKey, Set<String>> conflicts, ArtifactKey key, String version) {
+        conflicts.computeIfAbsent(key, ignore -> new TreeSet<>()).add(version);
+    }
+
+    private static final class Node {
+        final DependencyTree tree;
+
+        // dependencyManagement of the root the node was reached from
+        final Map<ArtifactKey, String> management;
+
+        Node(DependencyTree tree, Map<ArtifactKey, String> management) {
+            this.tree = tree;
+            this.management = management;
+        }
+    }
+
+    private static final class Winner {
+        final Node node;
+        final String managedVersion;
+
+        Winner(Node node, String managedVersion) {
+            this.node = node;
+            this.managedVersion = managedVersion;
+        }
+
+        Artifact managedArtifact() {
+            var artifact = node.tree.root.artifact;
+            return new Artifact(artifact.groupId, artifact.artifactId, managedVersion,
+                    artifact.extension, artifact.classifier);
+        }
+
+        ResolvedDependency toResolvedDependency() {
+            if (managedVersion == null) {
+                return node.tree.root;
+            }
+            return new ResolvedDependency(managedArtifact(), null);
+        }
+    }
+}
@@ -2,8 +2,11 @@ package jbuild.maven;
 
 import jbuild.artifact.Artifact;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -12,6 +15,10 @@ import java.util.stream.Collectors;
  * A tree of dependencies.
  * <p>
  * Each node in a tree is a {@link DependencyTree} itself. It consists of a root and its possibly empty children.
+ * <p>
+ * When a dependency is reached through several paths, the same node instance may be shared by all of them,
+ * so the nodes actually form a directed acyclic graph. Visiting the tree naively visits shared nodes once for
+ * each path leading to them, so prefer {@link DependencyTree#toSet()} when each node is only needed once.
  */
 public final class DependencyTree {
 
@@ -61,14 +68,19 @@ public final class DependencyTree {
     }
 
     private static void visitArtifacts(DependencyTree node, Set<ResolvedDependency> result) {
-        var current = List.of(node);
-        while (!current.isEmpty()) {
-            for (var dependency : current) {
-                result.add(dependency.root);
+        // shared nodes are only visited once
+        var visited = Collections.newSetFromMap(new IdentityHashMap<DependencyTree, Boolean>());
+        var toVisit = new ArrayDeque<DependencyTree>();
+        toVisit.add(node);
+        visited.add(node);
+        while (!toVisit.isEmpty()) {
+            var current = toVisit.poll();
+            result.add(current.root);
+            for (var child : current.dependencies) {
+                if (visited.add(child)) {
+                    toVisit.add(child);
+                }
             }
-            current = current.stream()
-                    .flatMap(c -> c.dependencies.stream())
-                    .collect(Collectors.toList());
         }
     }
 
@@ -0,0 +1,399 @@
+package jbuild.maven;
+
+import jbuild.artifact.Artifact;
+import jbuild.util.ChecksumAlgorithm;
+import jbuild.util.Env;
+import jbuild.util.FileUtils;
+import jbuild.util.NonEmptyCollection;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Persistent cache of effective POMs, i.e. POMs that have already been merged with their parents and with
+ * the POMs they import.
+ * <p>
+ * Each entry records the checksum of every POM that contributed to the effective POM. An entry is only used
+ * if the POM of the artifact itself still has the same checksum, in which case resolving the artifact does not
+ * require fetching, parsing or merging any of its parent or imported POMs.
+ * <p>
+ * As released Maven artifacts never change, the checksums of the contributing POMs are trusted once the
+ * entry is written. For this reason, effective POMs that depend on SNAPSHOT versions are not cached.
+ * <p>
+ * Entries are keyed by the repository the artifact's own POM was obtained from as well as by the artifact,
+ * so an artifact with the same coordinates obtained from a different repository never uses the entry.
+ * <p>
+ * If the cache is configured to trust released artifacts (see {@link EffectivePomCache#trustsReleases()}),
+ * even the POM of the artifact itself does not need to be fetched again, so once a dependency graph has been
+ * resolved, resolving it again only requires fetching the POMs of artifacts that were not part of it.
+ * Callers must only do that for remote repositories, as releases in local repositories may be re-installed.
+ * <p>
+ * Entries are stored in a compact binary format, one file per artifact. Entries that cannot be decoded
+ * (e.g. because a write was interrupted) are deleted and treated as cache misses.
+ */
+public final class EffectivePomCache {
+
+    /**
+     * The algorithm used to compute the checksums of contributing POMs.
+     */
+    public static final ChecksumAlgorithm CHECKSUM_ALGORITHM = ChecksumAlgorithm.SHA256;
+
+    private static final int MAGIC = 0x4A42_4550; // "JBEP"
+    private static final int FORMAT_VERSION = 1;
+    private static final String FILE_EXTENSION = ".effective-pom";
+
+    // minimum sizes of the items stored in an entry, in bytes
+    private static final int MIN_COUNT_SIZE = 4;
+    private static final int MIN_BYTES_SIZE = 4;
+    private static final int MIN_ARTIFACT_SIZE = 5 * MIN_BYTES_SIZE;
+    private static final int MIN_ARTIFACT_KEY_SIZE = 3 * MIN_BYTES_SIZE;
+    private static final int MIN_DEPENDENCY_SIZE = MIN_ARTIFACT_SIZE + 3 * MIN_BYTES_SIZE + 1 + MIN_COUNT_SIZE;
+
+    /**
+     * An effective POM together with the checksums of all POMs that contributed to it.
+     */
+    public static final class Entry {
+        public final MavenPom pom;
+        private final Map<Artifact, byte[]> contributors;
+
+        public Entry(MavenPom pom, Map<Artifact, byte[]> contributors) {
+            this.pom = pom;
+            this.contributors = contributors;
+        }
+
+        /**
+         * @return the POM artifacts that contributed to the effective POM, mapped to their checksums
+         * (computed with {@link EffectivePomCache#CHECKSUM_ALGORITHM}).
+         */
+        public Map<Artifact, byte[]> getContributors() {
+            return contributors;
+        }
+    }
+
+    private final Path directory;
+    private final boolean trustReleases;
+
+    public EffectivePomCache(Path directory) {
+        this(directory, false);
+    }
+
+    /**
+     * Create an effective POM cache.
+     *
+     * @param directory     where to store the cache entries
+     * @param trustReleases whether cached entries may be used without fetching the artifact's own POM
+     */
+    public EffectivePomCache(Path directory, boolean trustReleases) {
+        this.directory = directory;
+        this.trustReleases = trustReleases;
+    }
+
+    /**
+     * @return the cache in the default location, which can be configured via the
+     * {@code EFFECTIVE_POM_CACHE_DIR} environment variable. Released artifacts are only trusted if the
+     * {@code EFFECTIVE_POM_CACHE_TRUST_RELEASES} environment variable is set to {@code true}.
+     */
+    public static EffectivePomCache createDefault() {
+        return new EffectivePomCache(Paths.get(Env.EFFECTIVE_POM_CACHE_DIR), Env.EFFECTIVE_POM_CACHE_TRUST_RELEASES);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return true if entries may be used without checking that the artifact's own POM has not changed
+     * (see {@link EffectivePomCache#get(String, Artifact)}).
+     */
+    public boolean trustsReleases() {
+        return trustReleases;
+    }
+
+    /**
+     * @param artifact artifact to check
+     * @return true if an effective POM for the artifact may be cached, false otherwise
+     */
+    public static boolean isCacheable(Artifact artifact) {
+        return !artifact.version.isBlank() && !artifact.version.endsWith("-SNAPSHOT");
+    }
+
+    /**
+     * Get the effective POM of an artifact.
+     *
+     * @param repository  description of the repository the artifact's own POM was obtained from
+     * @param artifact    the POM artifact
+     * @param pomChecksum checksum of the contents of the artifact's own POM
+     * @return the cached entry if it exists and was created from a POM with the same checksum
+     * (entries that are found to be corrupted are deleted and treated as missing)
+     * @throws IOException if the cache entry exists but cannot be read
+     */
+    public Optional<Entry> get(String repository, Artifact artifact, byte[] pomChecksum) throws IOException {
+        return read(repository, artifact, pomChecksum);
+    }
+
+    /**
+     * Get the effective POM of an artifact without checking its own POM.
+     * <p>
+     * This should only be used if the cache {@link EffectivePomCache#trustsReleases()} and the repository
+     * is a remote one.
+     *
+     * @param repository description of the repository the artifact's own POM would be obtained from
+     * @param artifact   the POM artifact
+     * @return the cached entry if it exists
+     * @throws IOException if the cache entry exists but cannot be read
+     */
+    public Optional<Entry> get(String repository, Artifact artifact) throws IOException {
+        return read(repository, artifact, null);
+    }
+
+    private Optional<Entry> read(String repository, Artifact artifact, byte[] pomChecksum) throws IOException {
+        if (!isCacheable(artifact)) {
+            return Optional.empty();
+        }
+        var file = fileOf(repository, artifact);
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        try {
+            return read(new DataInputStream(new ByteArrayInputStream(contents)), artifact, pomChecksum);
+        } catch (EOFException | StreamCorruptedException | RuntimeException e) {
+            // a truncated or corrupted entry is a cache miss, and must be removed so that it can be replaced
+            Files.deleteIfExists(file);
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<Entry> read(DataInputStream in, Artifact artifact, byte[] pomChecksum)
+            throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            return Optional.empty();
+        }
+        var contributorsCount = readCount(in, MIN_ARTIFACT_SIZE + MIN_BYTES_SIZE);
+        var contributors = new LinkedHashMap<Artifact, byte[]>(contributorsCount);
+        for (int i = 0; i < contributorsCount; i++) {
+            contributors.put(readArtifact(in), readBytes(in));
+        }
+        var ownChecksum = contributors.get(artifact.pom());
+        if (ownChecksum == null || (pomChecksum != null && !Arrays.equals(ownChecksum, pomChecksum))) {
+            return Optional.empty();
+        }
+        return Optional.of(new Entry(readPom(in), contributors));
+    }
+
+    /**
+     * Store an effective POM.
+     *
+     * @param repository description of the repository the artifact's own POM was obtained from
+     * @param artifact   the POM artifact
+     * @param entry      the effective POM and its contributors, which must include the POM artifact itself
+     * @return true if the entry was stored, false if it is not cacheable
+     * @throws IOException if the entry cannot be written
+     */
+    public boolean put(String repository, Artifact artifact, Entry entry) throws IOException {
+        if (!entry.contributors.containsKey(artifact.pom()) ||
+                !entry.contributors.keySet().stream().allMatch(EffectivePomCache::isCacheable)) {
+            return false;
+        }
+        var file = fileOf(repository, artifact);
+        Files.createDirectories(file.getParent());
+        FileUtils.writeAtomically(file, false, tempFile -> {
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entry.contributors.size());
+                for (var contributor : entry.contributors.entrySet()) {
+                    writeArtifact(out, contributor.getKey());
+                    writeBytes(out, contributor.getValue());
+                }
+                writePom(out, entry.pom);
+            }
+        });
+        return true;
+    }
+
+    private Path fileOf(String repository, Artifact artifact) {
+        var repositoryHash = ChecksumAlgorithm.SHA1.toHexString(
+                ChecksumAlgorithm.SHA1.digest(repository.getBytes(UTF_8)));
+        return directory.resolve(repositoryHash)
+                .resolve(artifact.groupId)
+                .resolve(artifact.artifactId)
+                .resolve(artifact.version + FILE_EXTENSION);
+    }
+
+    private static void writePom(DataOutputStream out, MavenPom pom) throws IOException {
+        var parent = pom.getParentPom();
+        out.writeBoolean(parent.isPresent());
+        if (parent.isPresent()) {
+            writePom(out, parent.get());
+        }
+        var parentArtifact = pom.getParentArtifact();
+        out.writeBoolean(parentArtifact.isPresent());
+        if (parentArtifact.isPresent()) {
+            writeArtifact(out, parentArtifact.get());
+        }
+        writeArtifact(out, pom.getArtifact());
+        writeString(out, pom.getPackaging());
+        var properties = pom.getProperties();
+        out.writeInt(properties.size());
+        for (var property : properties.entrySet()) {
+            writeString(out, property.getKey());
+            writeString(out, property.getValue());
+        }
+        var dependencyManagement = pom.getDependencyManagement();
+        out.writeInt(dependencyManagement.size());
+        for (var managed : dependencyManagement.entrySet()) {
+            writeArtifactKey(out, managed.getKey());
+            writeDependencies(out, managed.getValue().toList());
+        }
+        writeDependencies(out, pom.getDependencies());
+        var licenses = pom.getLicenses();
+        out.writeInt(licenses.size());
+        for (var license : licenses) {
+            writeString(out, license.name);
+            writeString(out, license.url);
+        }
+    }
+
+    private static MavenPom readPom(DataInputStream in) throws IOException {
+        var parentPom = in.readBoolean() ? readPom(in) : null;
+        var parentArtifact = in.readBoolean() ? readArtifact(in) : null;
+        var coordinates = readArtifact(in);
+        var packaging = readString(in);
+        var propertiesCount = readCount(in, 2 * MIN_BYTES_SIZE);
+        var properties = new LinkedHashMap<String, String>(propertiesCount);
+        for (int i = 0; i < propertiesCount; i++) {
+            properties.put(readString(in), readString(in));
+        }
+        var dependencyManagementCount = readCount(in, MIN_ARTIFACT_KEY_SIZE + MIN_COUNT_SIZE);
+        var dependencyManagement = new HashMap<ArtifactKey, NonEmptyCollection<Dependency>>(
+                dependencyManagementCount);
+        for (int i = 0; i < dependencyManagementCount; i++) {
+            dependencyManagement.put(readArtifactKey(in), NonEmptyCollection.of(readDependencies(in)));
+        }
+        var dependencies = new HashSet<>(readDependencies(in));
+        var licensesCount = readCount(in, 2 * MIN_BYTES_SIZE);
+        var licenses = new HashSet<License>(licensesCount);
+        for (int i = 0; i < licensesCount; i++) {
+            licenses.add(new License(readString(in), readString(in)));
+        }
+        return new MavenPom(parentPom, parentArtifact, coordinates, packaging, properties,
+                dependencyManagement, dependencies, licenses);
+    }
+
+    private static void writeDependencies(DataOutputStream out,
+                                          Collection<Dependency> dependencies) throws IOException {
+        out.writeInt(dependencies.size());
+        for (var dependency : dependencies) {
+            writeArtifact(out, dependency.artifact);
+            writeString(out, dependency.scope.name());
+            writeString(out, dependency.optionalString);
+            out.writeBoolean(dependency.explicitScope);
+            writeString(out, dependency.explicitType ? dependency.type.string() : "");
+            out.writeInt(dependency.exclusions.size());
+            for (var exclusion : dependency.exclusions) {
+                writeArtifactKey(out, exclusion);
+            }
+        }
+    }
+
+    private static ArrayList<Dependency> readDependencies(DataInputStream in) throws IOException {
+        var count = readCount(in, MIN_DEPENDENCY_SIZE);
+        var dependencies = new ArrayList<Dependency>(count);
+        for (int i = 0; i < count; i++) {
+            var artifact = readArtifact(in);
+            var scope = Scope.valueOf(readString(in));
+            var optional = readString(in);
+            var explicitScope = in.readBoolean();
+            var type = readString(in);
+            var exclusionsCount = readCount(in, MIN_ARTIFACT_KEY_SIZE);
+            Set<ArtifactKey> exclusions = new HashSet<>(exclusionsCount);
+            for (int j = 0; j < exclusionsCount; j++) {
+                exclusions.add(readArtifactKey(in));
+            }
+            dependencies.add(new Dependency(artifact, scope, optional, exclusions, type, explicitScope));
+        }
+        return dependencies;
+    }
+
+    private static void writeArtifactKey(DataOutputStream out, ArtifactKey key) throws IOException {
+        writeString(out, key.groupId);
+        writeString(out, key.artifactId);
+        writeString(out, key.type.name());
+    }
+
+    private static ArtifactKey readArtifactKey(DataInputStream in) throws IOException {
+        return ArtifactKey.of(readString(in), readString(in), DependencyType.valueOf(readString(in)));
+    }
+
+    private static void writeArtifact(DataOutputStream out, Artifact artifact) throws IOException {
+        writeString(out, artifact.groupId);
+        writeString(out, artifact.artifactId);
+        writeString(out, artifact.version);
+        writeString(out, artifact.extension);
+        writeString(out, artifact.classifier);
+    }
+
+    private static Artifact readArtifact(DataInputStream in) throws IOException {
+        return new Artifact(readString(in), readString(in), readString(in), readString(in), readString(in));
+    }
+
+    // not using writeUTF because it cannot write Strings longer than 64KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        var bytes = new byte[readCount(in, 1)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Read the number of items that follow, checking that they could fit in the rest of the entry
+     * so that a corrupted entry cannot cause huge allocations.
+     *
+     * @param in          input, which must know how many bytes remain to be read
+     * @param minItemSize minimum number of bytes used by each item
+     * @return the number of items
+     * @throws StreamCorruptedException if the number of items is invalid
+     */
+    private static int readCount(DataInputStream in, int minItemSize) throws IOException {
+        var count = in.readInt();
+        if (count < 0 || (long) count * minItemSize > in.available()) {
+            throw new StreamCorruptedException("invalid count: " + count);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,113 @@
+package jbuild.maven;
+
+import jbuild.artifact.Artifact;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of exclusion patterns compiled into a single matcher.
+ * <p>
+ * Exclusions declared in POMs only ever match a groupId and an artifactId, either of which may be the
+ * {@code *} wildcard. Those are indexed by groupId and then by artifactId, so matching an artifact against
+ * any number of them only takes a few map lookups. Other patterns are arbitrary regular expressions, and
+ * are checked in order, but only if they come before the best match found in the index.
+ * <p>
+ * As when checking each pattern in order, only the first pattern matching an artifact has its usage counted.
+ */
+public final class ExclusionMatcher {
+
+    private static final String WILDCARD = "*";
+
+    private final Map<String, Map<String, IndexedPattern>> patternsByGroupId;
+    private final List<IndexedPattern> regularExpressions;
+
+    private ExclusionMatcher(Map<String, Map<String, IndexedPattern>> patternsByGroupId,
+                             List<IndexedPattern> regularExpressions) {
+        this.patternsByGroupId = patternsByGroupId;
+        this.regularExpressions = regularExpressions;
+    }
+
+    /**
+     * Compile the given exclusion patterns.
+     *
+     * @param patterns in the order they should be checked
+     * @return the matcher
+     */
+    public static ExclusionMatcher of(Collection<DependencyExclusions.PatternUsage> patterns) {
+        var patternsByGroupId = new HashMap<String, Map<String, IndexedPattern>>();
+        var regularExpressions = new ArrayList<IndexedPattern>();
+        var index = 0;
+        for (var pattern : patterns) {
+            var indexedPattern = new IndexedPattern(index++, pattern);
+            var key = pattern.getArtifactKey();
+            if (key == null) {
+                regularExpressions.add(indexedPattern);
+            } else {
+                // keep the first pattern only, as it's the only one that could ever match
+                patternsByGroupId.computeIfAbsent(key.groupId, ignore -> new HashMap<>(4))
+                        .putIfAbsent(key.artifactId, indexedPattern);
+            }
+        }
+        return new ExclusionMatcher(patternsByGroupId, regularExpressions);
+    }
+
+    /**
+     * @return true if there are no patterns to match
+     */
+    public boolean isEmpty() {
+        return patternsByGroupId.isEmpty() && regularExpressions.isEmpty();
+    }
+
+    /**
+     * Check whether the given artifact is excluded, counting the usage of the matching pattern if so.
+     *
+     * @param artifact to check
+     * @return true if any of the patterns match the artifact
+     */
+    public boolean matches(Artifact artifact) {
+        var best = first(first(
+                        find(artifact.groupId, artifact.artifactId),
+                        find(artifact.groupId, WILDCARD)),
+                first(find(WILDCARD, artifact.artifactId),
+                        find(WILDCARD, WILDCARD)));
+        if (!regularExpressions.isEmpty()) {
+            var coordinates = artifact.getCoordinates();
+            for (var regex : regularExpressions) {
+                if (best != null && regex.index > best.index) break;
+                if (regex.pattern.matches(coordinates)) {
+                    return true;
+                }
+            }
+        }
+        if (best != null) {
+            best.pattern.use();
+            return true;
+        }
+        return false;
+    }
+
+    private IndexedPattern find(String groupId, String artifactId) {
+        var byArtifactId = patternsByGroupId.get(groupId);
+        return byArtifactId == null ? null : byArtifactId.get(artifactId);
+    }
+
+    private static IndexedPattern first(IndexedPattern a, IndexedPattern b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.index < b.index ? a : b;
+    }
+
+    private static final class IndexedPattern {
+        final int index;
+        final DependencyExclusions.PatternUsage pattern;
+
+        IndexedPattern(int index, DependencyExclusions.PatternUsage pattern) {
+            this.index = index;
+            this.pattern = pattern;
+        }
+    }
+}
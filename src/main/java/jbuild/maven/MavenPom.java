@@ -1,13 +1,15 @@
 package jbuild.maven;
 
 import jbuild.artifact.Artifact;
+import jbuild.maven.MavenXmlParser.RawDependency;
+import jbuild.maven.MavenXmlParser.RawExclusion;
+import jbuild.maven.MavenXmlParser.RawLicense;
+import jbuild.maven.MavenXmlParser.RawPom;
 import jbuild.util.NonEmptyCollection;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 
 import java.util.EnumSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
@@ -22,9 +24,6 @@ import static jbuild.maven.MavenUtils.isFullyResolved;
 import static jbuild.util.CollectionUtils.mapValues;
 import static jbuild.util.CollectionUtils.union;
 import static jbuild.util.TextUtils.firstNonBlank;
-import static jbuild.util.XmlUtils.childNamed;
-import static jbuild.util.XmlUtils.childrenNamed;
-import static jbuild.util.XmlUtils.textOf;
 
 /**
  * Representation of a Maven POM.
@@ -49,70 +48,99 @@ public final class MavenPom {
     private final Set<Dependency> dependencies;
     private final Set<License> licenses;
 
-    private MavenPom(Element project, MavenPom parentPom) {
+    private MavenPom(RawPom project, MavenPom parentPom) {
         // hide the non-populated properties in this block to avoid mistakes using it
         {
             var properties = resolveProperties(project, parentPom);
 
+            // the project properties are only added later, so this resolver must not be used after that
+            var coordinatesResolver = new PropertyResolver(properties);
+
             this.parentPom = parentPom;
-            this.parentArtifact = resolveParentArtifact(project, properties);
-            this.coordinates = resolveCoordinates(project, properties, parentArtifact);
+            this.parentArtifact = resolveParentArtifact(project, coordinatesResolver);
+            this.coordinates = resolveCoordinates(project, coordinatesResolver, parentArtifact);
             this.properties = populateProjectPropertiesWith(coordinates, parentArtifact, properties);
         }
-        this.packaging = resolveProperty(properties, childNamed("packaging", project), "jar");
-        this.dependencyManagement = resolveDependencyManagement(project, properties, parentPom);
-        this.dependencies = resolveDependencies(project, dependencyManagement, properties, parentPom);
-        this.licenses = resolveLicenses(project, properties, parentPom);
+        var resolver = new PropertyResolver(properties);
+        this.packaging = resolveElement(resolver, project.packaging, "jar");
+        this.dependencyManagement = resolveDependencyManagement(project, resolver, parentPom);
+        this.dependencies = resolveDependencies(project, dependencyManagement, resolver, parentPom);
+        this.licenses = resolveLicenses(project, resolver, parentPom);
     }
 
     private MavenPom(MavenPom pom, MavenPom other, MergeMode mode) {
+        PropertyResolver resolver;
         switch (mode) {
             case PARENT:
                 this.parentPom = other;
                 this.properties = union(other.properties, pom.properties);
-                this.parentArtifact = resolveArtifact(other.coordinates, properties);
-                this.coordinates = resolveArtifact(pom.coordinates, properties);
-                this.packaging = resolveProperty(properties, pom.packaging, "jar");
+                resolver = new PropertyResolver(properties);
+                this.parentArtifact = resolveArtifact(other.coordinates, resolver);
+                this.coordinates = resolveArtifact(pom.coordinates, resolver);
+                this.packaging = resolveProperty(resolver, pom.packaging, "jar");
                 this.dependencyManagement = union(other.dependencyManagement,
                         mapValues(pom.dependencyManagement, deps ->
-                                deps.map(dep -> refineDependency(dep, properties, other.dependencyManagement))),
+                                deps.map(dep -> refineDependency(dep, resolver, other.dependencyManagement))),
                         NonEmptyCollection::of);
                 this.dependencies = union(other.dependencies, pom.dependencies)
-                        .stream().map(dep -> refineDependency(dep, properties, dependencyManagement))
+                        .stream().map(dep -> refineDependency(dep, resolver, dependencyManagement))
                         .collect(toSet());
                 this.licenses = union(other.licenses, pom.licenses)
-                        .stream().map(license -> refineLicense(license, properties))
+                        .stream().map(license -> refineLicense(license, resolver))
                         .collect(toSet());
                 break;
             case IMPORT:
             default:
                 this.parentPom = pom.parentPom;
                 this.properties = pom.properties;
+                resolver = new PropertyResolver(properties);
                 this.parentArtifact = pom.parentArtifact;
                 this.coordinates = pom.coordinates;
                 this.packaging = pom.packaging;
                 this.dependencyManagement = union(other.dependencyManagement,
                         mapValues(pom.dependencyManagement, deps ->
-                                deps.map(dep -> refineDependency(dep, properties, other.dependencyManagement))),
+                                deps.map(dep -> refineDependency(dep, resolver, other.dependencyManagement))),
                         NonEmptyCollection::of);
                 this.dependencies = pom.dependencies
-                        .stream().map(dep -> refineDependency(dep, properties, dependencyManagement))
+                        .stream().map(dep -> refineDependency(dep, resolver, dependencyManagement))
                         .collect(toSet());
                 this.licenses = pom.licenses
-                        .stream().map(license -> refineLicense(license, properties))
+                        .stream().map(license -> refineLicense(license, resolver))
                         .collect(toSet());
         }
     }
 
     /**
-     * Create a POM from an XML {@link Document}.
+     * Create a POM from its already resolved elements.
+     * <p>
+     * Used to restore POMs from {@link EffectivePomCache}.
+     */
+    MavenPom(MavenPom parentPom,
+             Artifact parentArtifact,
+             Artifact coordinates,
+             String packaging,
+             Map<String, String> properties,
+             Map<ArtifactKey, NonEmptyCollection<Dependency>> dependencyManagement,
+             Set<Dependency> dependencies,
+             Set<License> licenses) {
+        this.parentPom = parentPom;
+        this.parentArtifact = parentArtifact;
+        this.coordinates = coordinates;
+        this.packaging = packaging;
+        this.properties = unmodifiableMap(properties);
+        this.dependencyManagement = dependencyManagement;
+        this.dependencies = dependencies;
+        this.licenses = licenses;
+    }
+
+    /**
+     * Create a POM from the elements parsed from a POM XML document.
      *
-     * @param doc XML document
+     * @param project the POM's elements
+     * @see MavenUtils#parsePom(java.io.InputStream)
      */
-    public MavenPom(Document doc) {
-        this(childNamed("project", doc).orElseThrow(() ->
-                        new IllegalArgumentException("Not a POM XML document")),
-                null);
+    MavenPom(RawPom project) {
+        this(project, null);
     }
 
     /**
@@ -236,14 +264,14 @@ public final class MavenPom {
     }
 
     private static Map<ArtifactKey, NonEmptyCollection<Dependency>> resolveDependencyManagement(
-            Element project,
-            Map<String, String> properties,
+            RawPom project,
+            PropertyResolver properties,
             MavenPom parentPom) {
-        var deps = childNamed("dependencyManagement", project)
-                .map(dep -> resolveDependencies(dep, properties, Map.of())
-                        .stream().collect(toMap(ArtifactKey::of,
-                                NonEmptyCollection::of, NonEmptyCollection::of)))
-                .orElse(Map.of());
+        Map<ArtifactKey, NonEmptyCollection<Dependency>> deps = project.dependencyManagement == null
+                ? Map.of()
+                : resolveDependencies(project.dependencyManagement, properties, Map.of())
+                .stream().collect(toMap(ArtifactKey::of,
+                        NonEmptyCollection::of, NonEmptyCollection::of));
 
         return parentPom == null
                 ? deps
@@ -251,82 +279,77 @@ public final class MavenPom {
     }
 
     private static Set<Dependency> resolveDependencies(
-            Element project,
+            RawPom project,
             Map<ArtifactKey, NonEmptyCollection<Dependency>> dependencyManagement,
-            Map<String, String> properties,
+            PropertyResolver properties,
             MavenPom parentPom) {
-        var deps = resolveDependencies(project, properties, dependencyManagement);
+        var deps = project.dependencies == null
+                ? Set.<Dependency>of()
+                : resolveDependencies(project.dependencies, properties, dependencyManagement);
         return union(parentPom == null ? Set.of() : parentPom.getDependencies(), deps);
     }
 
     private static Set<Dependency> resolveDependencies(
-            Element parentElement,
-            Map<String, String> properties,
+            List<RawDependency> deps,
+            PropertyResolver properties,
             Map<ArtifactKey, NonEmptyCollection<Dependency>> dependencyManagement) {
-        var depsNode = childNamed("dependencies", parentElement);
-        if (depsNode.isEmpty()) {
-            return Set.of();
-        }
-
-        var deps = childrenNamed("dependency", depsNode.get());
-
         return deps.stream()
                 .map(dep -> toDependency(dep, properties, dependencyManagement))
                 .collect(toSet());
     }
 
-    private static Set<ArtifactKey> resolveDependencyExclusions(Element dependencyElement,
-                                                                Map<String, String> properties) {
-        return childNamed("exclusions", dependencyElement)
-                .map(exc -> childrenNamed("exclusion", exc).stream()
-                        .map(exclusion -> toArtifactKey(exclusion, properties))
-                        .collect(toSet()))
-                .orElse(Set.of());
+    private static Set<ArtifactKey> resolveDependencyExclusions(RawDependency dependency,
+                                                                PropertyResolver properties) {
+        if (dependency.exclusions == null) {
+            return Set.of();
+        }
+        return dependency.exclusions.stream()
+                .map(exclusion -> toArtifactKey(exclusion, properties))
+                .collect(toSet());
     }
 
     private static Set<License> resolveLicenses(
-            Element project,
-            Map<String, String> properties,
+            RawPom project,
+            PropertyResolver properties,
             MavenPom parentPom) {
         var licenses = resolveLicenses(project, properties);
         return union(parentPom == null ? Set.of() : parentPom.getLicenses(), licenses);
     }
 
     private static Set<License> resolveLicenses(
-            Element project,
-            Map<String, String> properties) {
-        return childNamed("licenses", project).map(licenses ->
-                childrenNamed("license", licenses).stream()
-                        .map(license -> toLicense(license, properties))
-                        .collect(toSet())
-        ).orElse(Set.of());
-
+            RawPom project,
+            PropertyResolver properties) {
+        if (project.licenses == null) {
+            return Set.of();
+        }
+        return project.licenses.stream()
+                .map(license -> toLicense(license, properties))
+                .collect(toSet());
     }
 
-    private static Artifact resolveParentArtifact(Element project, Map<String, String> properties) {
-        return childNamed("parent", project)
-                .map(a -> toDependency(a, properties, Map.of()))
-                .map(d -> d.artifact)
-                .orElse(null);
+    private static Artifact resolveParentArtifact(RawPom project, PropertyResolver properties) {
+        return project.parent == null
+                ? null
+                : toDependency(project.parent, properties, Map.of()).artifact;
     }
 
-    private static Artifact resolveCoordinates(Element project, Map<String, String> properties, Artifact parentArtifact) {
-        var artifact = toDependency(project, properties, Map.of()).artifact;
+    private static Artifact resolveCoordinates(RawPom project, PropertyResolver properties, Artifact parentArtifact) {
+        var artifact = toDependency(project.coordinates, properties, Map.of()).artifact;
         if ((artifact.groupId.isBlank() || artifact.version.isBlank()) && parentArtifact != null) {
             return artifact.mergeWith(parentArtifact);
         }
         return artifact;
     }
 
-    private static License toLicense(Element element,
-                                     Map<String, String> properties) {
-        var name = resolveProperty(properties, childNamed("name", element), "<unspecified>");
-        var url = resolveProperty(properties, childNamed("url", element), "<unspecified>");
+    private static License toLicense(RawLicense license,
+                                     PropertyResolver properties) {
+        var name = resolveElement(properties, license.name, "<unspecified>");
+        var url = resolveElement(properties, license.url, "<unspecified>");
         return new License(name, url);
     }
 
     private static License refineLicense(License license,
-                                         Map<String, String> properties) {
+                                         PropertyResolver properties) {
         if (isFullyResolved(license)) {
             return license;
         }
@@ -335,31 +358,31 @@ public final class MavenPom {
         return new License(name, url);
     }
 
-    private static Dependency toDependency(Element element,
-                                           Map<String, String> properties,
+    private static Dependency toDependency(RawDependency dependency,
+                                           PropertyResolver properties,
                                            Map<ArtifactKey, NonEmptyCollection<Dependency>> dependencyManagement) {
-        var groupId = resolveProperty(properties, childNamed("groupId", element), "");
-        var artifactId = resolveProperty(properties, childNamed("artifactId", element), "");
-        var type = resolveProperty(properties, childNamed("type", element), "");
+        var groupId = resolveElement(properties, dependency.groupId, "");
+        var artifactId = resolveElement(properties, dependency.artifactId, "");
+        var type = resolveElement(properties, dependency.type, "");
 
         var artifactKey = ArtifactKey.of(groupId, artifactId, DependencyType.fromString(type));
 
         var scope = Optional.ofNullable(
-                resolvePropertyScope(properties, childNamed("scope", element), () ->
+                resolveElementScope(properties, dependency.scope, () ->
                         scopeFrom(dependencyManagement.get(artifactKey))));
-        var version = resolveProperty(properties, childNamed("version", element),
+        var version = resolveElement(properties, dependency.version,
                 () -> defaultVersionOrFrom(scope.orElse(null),
                         dependencyManagement.get(artifactKey)));
-        var optional = resolveProperty(properties, childNamed("optional", element), "false");
-        var exclusions = resolveDependencyExclusions(element, properties);
-        var classifier = resolveProperty(properties, childNamed("classifier", element), "");
+        var optional = resolveElement(properties, dependency.optional, "false");
+        var exclusions = resolveDependencyExclusions(dependency, properties);
+        var classifier = resolveElement(properties, dependency.classifier, "");
 
         return new Dependency(new Artifact(groupId, artifactId, version, "", classifier),
                 scope.orElse(Scope.COMPILE), optional, exclusions, type, scope.isPresent());
     }
 
     private static Dependency refineDependency(Dependency dependency,
-                                               Map<String, String> properties,
+                                               PropertyResolver properties,
                                                Map<ArtifactKey, NonEmptyCollection<Dependency>> dependencyManagement) {
         var groupId = resolveProperty(properties,
                 dependency.artifact.groupId, dependency.artifact.groupId);
@@ -389,7 +412,7 @@ public final class MavenPom {
     }
 
     private static Set<ArtifactKey> refineExclusions(Set<ArtifactKey> exclusions,
-                                                     Map<String, String> properties) {
+                                                     PropertyResolver properties) {
         return exclusions.stream().map(exclusion -> {
             var groupId = resolveProperty(properties, exclusion.groupId, exclusion.groupId);
             var artifactId = resolveProperty(properties, exclusion.artifactId, exclusion.artifactId);
@@ -397,50 +420,51 @@ public final class MavenPom {
         }).collect(toSet());
     }
 
-    private static ArtifactKey toArtifactKey(Element element,
-                                             Map<String, String> properties) {
-        var groupId = resolveProperty(properties, childNamed("groupId", element), () -> "");
-        var artifactId = resolveProperty(properties, childNamed("artifactId", element), () -> "");
+    private static ArtifactKey toArtifactKey(RawExclusion exclusion,
+                                             PropertyResolver properties) {
+        var groupId = resolveElement(properties, exclusion.groupId, "");
+        var artifactId = resolveElement(properties, exclusion.artifactId, "");
         return ArtifactKey.of(groupId, artifactId);
     }
 
-    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-    private static String resolveProperty(Map<String, String> properties,
-                                          Optional<? extends Node> element,
-                                          Supplier<String> defaultValue) {
-        return MavenUtils.resolveProperty(textOf(element, defaultValue), properties);
+    /**
+     * Resolve the value of an element, using the default value only if the element is missing (i.e. null).
+     */
+    private static String resolveElement(PropertyResolver properties,
+                                         String element,
+                                         Supplier<String> defaultValue) {
+        return properties.resolve(element == null ? defaultValue.get() : element);
     }
 
-    private static String resolveProperty(Map<String, String> properties,
-                                          Optional<? extends Node> element,
-                                          String defaultValue) {
-        return MavenUtils.resolveProperty(textOf(element, defaultValue), properties);
+    private static String resolveElement(PropertyResolver properties,
+                                         String element,
+                                         String defaultValue) {
+        return properties.resolve(element == null ? defaultValue : element);
     }
 
-    private static String resolveProperty(Map<String, String> properties,
+    private static String resolveProperty(PropertyResolver properties,
                                           String value,
                                           Supplier<String> defaultValue) {
-        return MavenUtils.resolveProperty(firstNonBlank(value, defaultValue), properties);
+        return properties.resolve(firstNonBlank(value, defaultValue));
     }
 
-    private static String resolveProperty(Map<String, String> properties,
+    private static String resolveProperty(PropertyResolver properties,
                                           String value,
                                           String defaultValue) {
-        return MavenUtils.resolveProperty(firstNonBlank(value, defaultValue), properties);
+        return properties.resolve(firstNonBlank(value, defaultValue));
     }
 
-    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-    private static Scope resolvePropertyScope(Map<String, String> properties,
-                                              Optional<? extends Node> element,
-                                              Supplier<Scope> defaultValue) {
-        var scopeText = resolveProperty(properties, element, "");
+    private static Scope resolveElementScope(PropertyResolver properties,
+                                             String element,
+                                             Supplier<Scope> defaultValue) {
+        var scopeText = resolveElement(properties, element, "");
         return scopeText.isBlank()
                 ? defaultValue.get()
                 : Scope.valueOf(scopeText.toUpperCase(Locale.ROOT));
     }
 
     private static Artifact resolveArtifact(Artifact artifact,
-                                            Map<String, String> properties) {
+                                            PropertyResolver properties) {
         return new Artifact(
                 resolveProperty(properties, artifact.groupId, artifact.groupId),
                 resolveProperty(properties, artifact.artifactId, artifact.artifactId),
@@ -483,28 +507,20 @@ public final class MavenPom {
         return dependencies.first.type;
     }
 
-    private static Map<String, String> resolveProperties(Element project, MavenPom parentPom) {
-        return childNamed("properties", project)
-                .map(p -> {
-                    var children = p.getChildNodes();
-                    Map<String, String> parentProperties = parentPom == null ? Map.of() : parentPom.properties;
-
-                    // "12 +" because we'll add about 10 built-in properties later
-                    Map<String, String> result = new LinkedHashMap<>(12 +
-                            children.getLength() + parentProperties.size());
+    private static Map<String, String> resolveProperties(RawPom project, MavenPom parentPom) {
+        if (project.properties == null) {
+            return new LinkedHashMap<>(12);
+        }
+        Map<String, String> parentProperties = parentPom == null ? Map.of() : parentPom.properties;
 
-                    result.putAll(parentProperties);
+        // "12 +" because we'll add about 10 built-in properties later
+        Map<String, String> result = new LinkedHashMap<>(12 +
+                project.properties.size() + parentProperties.size());
 
-                    for (int i = 0; i < children.getLength(); i++) {
-                        var child = children.item(i);
-                        if (child instanceof Element) {
-                            var elem = (Element) child;
-                            result.put(elem.getTagName(), elem.getTextContent().trim());
-                        }
-                    }
+        result.putAll(parentProperties);
+        result.putAll(project.properties);
 
-                    return result;
-                }).orElseGet(() -> new LinkedHashMap<>(12));
+        return result;
     }
 
     private static Map<String, String> populateProjectPropertiesWith(Artifact coordinates,
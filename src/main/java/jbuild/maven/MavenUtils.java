@@ -1,27 +1,36 @@
 package jbuild.maven;
 
 import jbuild.artifact.Artifact;
+import jbuild.artifact.ArtifactMetadata;
 import jbuild.util.NonEmptyCollection;
 import jbuild.util.XmlUtils;
-import org.xml.sax.SAXException;
+import org.w3c.dom.Document;
 
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.TransformerException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Pattern;
 
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static jbuild.util.TextUtils.firstNonBlank;
 
@@ -49,14 +58,72 @@ public final class MavenUtils {
         return artifact.groupId.replace('.', sep) + sep + artifact.artifactId + sep;
     }
 
-    private static boolean matches(Dependency dependency, Collection<DependencyExclusions.PatternUsage> exclusions) {
-        var coordinates = dependency.artifact.getCoordinates();
-        for (var pattern : exclusions) {
-            if (pattern.matches(coordinates)) {
-                return true;
-            }
+    /**
+     * Parse the path of an artifact file in a Maven repository, as computed by
+     * {@link MavenUtils#standardArtifactPath(Artifact, boolean)} with the {@code /} separator.
+     * <p>
+     * As paths may come from untrusted input, the returned artifact is not interned
+     * (see {@link Artifact#uninterned(String, String, String, String, String)}).
+     *
+     * @param path of the artifact file, relative to the repository root
+     * @return the artifact, or empty if the path is not a valid artifact path
+     */
+    public static Optional<Artifact> parseArtifactPath(String path) {
+        var parts = path.split("/");
+        if (parts.length < 4) return Optional.empty();
+        for (var part : parts) {
+            if (part.isEmpty() || part.equals(".") || part.equals("..")) return Optional.empty();
+        }
+        var fileName = parts[parts.length - 1];
+        var version = parts[parts.length - 2];
+        var artifactId = parts[parts.length - 3];
+        var prefix = artifactId + "-" + version;
+        if (!fileName.startsWith(prefix)) return Optional.empty();
+        var rest = fileName.substring(prefix.length());
+        var classifier = "";
+        if (rest.startsWith("-")) {
+            var dotIndex = rest.indexOf('.');
+            if (dotIndex < 2) return Optional.empty();
+            classifier = rest.substring(1, dotIndex);
+            rest = rest.substring(dotIndex);
+        }
+        if (rest.length() < 2 || rest.charAt(0) != '.') return Optional.empty();
+        var groupId = String.join(".", Arrays.asList(parts).subList(0, parts.length - 3));
+        return Optional.of(Artifact.uninterned(groupId, artifactId, version, rest.substring(1), classifier));
+    }
+
+    /**
+     * Write the given metadata in the format of a Maven repository's {@code maven-metadata.xml} file.
+     *
+     * @param metadata to write
+     * @param output   to write to
+     * @throws TransformerException if the XML cannot be written
+     */
+    public static void writeMavenMetadata(ArtifactMetadata metadata, OutputStream output) throws TransformerException {
+        Document document;
+        try {
+            document = XmlUtils.XmlSingletons.INSTANCE.factory.newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new TransformerException(e);
+        }
+        var artifact = metadata.getCoordinates();
+        var root = document.createElement("metadata");
+        document.appendChild(root);
+        root.appendChild(document.createElement("groupId")).setTextContent(artifact.groupId);
+        root.appendChild(document.createElement("artifactId")).setTextContent(artifact.artifactId);
+        var versioning = root.appendChild(document.createElement("versioning"));
+        if (!metadata.getLatestVersion().isBlank()) {
+            versioning.appendChild(document.createElement("latest")).setTextContent(metadata.getLatestVersion());
         }
-        return false;
+        var versions = versioning.appendChild(document.createElement("versions"));
+        for (var version : metadata.getVersions()) {
+            versions.appendChild(document.createElement("version")).setTextContent(version);
+        }
+        metadata.getLastUpdated().ifPresent(lastUpdated -> versioning.appendChild(
+                document.createElement("lastUpdated")).setTextContent(
+                DateTimeFormatter.ofPattern("yyyyMMddHHmmss", Locale.ROOT)
+                        .format(LocalDateTime.ofInstant(lastUpdated, ZoneOffset.UTC))));
+        XmlUtils.writeXml(document, output, true);
     }
 
     public static Set<Dependency> applyExclusions(Set<Dependency> dependencies,
@@ -69,37 +136,93 @@ public final class MavenUtils {
     public static Set<Dependency> applyExclusionPatterns(
             Set<Dependency> dependencies,
             Collection<DependencyExclusions.PatternUsage> exclusions) {
-        if (exclusions.isEmpty()) return dependencies;
+        if (exclusions.isEmpty() || dependencies.isEmpty()) return dependencies;
+        return applyExclusions(dependencies, ExclusionMatcher.of(exclusions));
+    }
+
+    public static Set<Dependency> applyExclusions(Set<Dependency> dependencies,
+                                                  ExclusionMatcher matcher) {
+        if (matcher.isEmpty() || dependencies.isEmpty()) return dependencies;
 
         // try to avoid allocating a new Set as usually it won't be necessary
-        var requiresChanges = false;
+        Set<Dependency> result = null;
         for (var dependency : dependencies) {
-            if (matches(dependency, exclusions)) {
-                requiresChanges = true;
-                break;
+            if (matcher.matches(dependency.artifact)) {
+                if (result == null) {
+                    result = new HashSet<>(dependencies);
+                }
+                result.remove(dependency);
             }
         }
 
-        if (!requiresChanges) return dependencies;
+        return result == null ? dependencies : result;
+    }
 
-        return dependencies.stream()
-                .filter(dep -> !matches(dep, exclusions))
-                .collect(toSet());
+    public static MavenPom parsePom(InputStream stream) throws IOException, XMLStreamException {
+        try (stream) {
+            return new MavenPom(MavenXmlParser.parsePom(stream));
+        }
     }
 
-    public static MavenPom parsePom(InputStream stream)
-            throws ParserConfigurationException, IOException, SAXException {
-        var db = XmlUtils.XmlSingletons.INSTANCE.factory.newDocumentBuilder();
+    /**
+     * Find the POMs referred to by a POM, i.e. its parent and the POMs it imports, without fully parsing it.
+     * <p>
+     * This is only meant to allow fetching those POMs early. Properties inherited from the parent are not
+     * known at this point, so references that cannot be resolved using only the POM's own properties
+     * are not included in the result.
+     *
+     * @param stream to read the POM from
+     * @return the parent and imported POM artifacts that could be resolved
+     */
+    public static Set<Artifact> scanReferencedPoms(InputStream stream) throws IOException, XMLStreamException {
+        MavenXmlParser.RawPom pom;
         try (stream) {
-            return new MavenPom(db.parse(stream));
+            pom = MavenXmlParser.parsePomReferences(stream);
+        }
+        var result = new LinkedHashSet<Artifact>(4);
+        var properties = new HashMap<String, String>();
+        if (pom.properties != null) {
+            properties.putAll(pom.properties);
         }
+        var parent = pom.parent == null ? null : literalPomArtifact(pom.parent, new PropertyResolver(Map.of()));
+        if (parent != null) {
+            result.add(parent);
+            properties.put("project.parent.groupId", parent.groupId);
+            properties.put("project.parent.version", parent.version);
+        }
+        var groupId = pom.coordinates.groupId == null && parent != null ? parent.groupId : pom.coordinates.groupId;
+        var version = pom.coordinates.version == null && parent != null ? parent.version : pom.coordinates.version;
+        if (groupId != null) properties.put("project.groupId", groupId);
+        if (version != null) properties.put("project.version", version);
+        if (pom.dependencyManagement != null) {
+            var resolver = new PropertyResolver(properties);
+            for (var dependency : pom.dependencyManagement) {
+                if ("import".equals(dependency.scope)) {
+                    var imported = literalPomArtifact(dependency, resolver);
+                    if (imported != null) result.add(imported);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Artifact literalPomArtifact(MavenXmlParser.RawDependency dependency, PropertyResolver resolver) {
+        var groupId = dependency.groupId == null ? null : resolver.resolve(dependency.groupId);
+        var artifactId = dependency.artifactId == null ? null : resolver.resolve(dependency.artifactId);
+        var version = dependency.version == null ? null : resolver.resolve(dependency.version);
+        if (isNotLiteral(groupId) || isNotLiteral(artifactId) || isNotLiteral(version)) {
+            return null;
+        }
+        return new Artifact(groupId, artifactId, version).pom();
     }
 
-    public static MavenArtifactMetadata parseMavenMetadata(InputStream stream)
-            throws ParserConfigurationException, IOException, SAXException {
-        var db = XmlUtils.XmlSingletons.INSTANCE.factory.newDocumentBuilder();
+    private static boolean isNotLiteral(String value) {
+        return value == null || value.isBlank() || value.contains("${");
+    }
+
+    public static MavenArtifactMetadata parseMavenMetadata(InputStream stream) throws IOException, XMLStreamException {
         try (stream) {
-            return new MavenArtifactMetadata(db.parse(stream));
+            return MavenXmlParser.parseMetadata(stream);
         }
     }
 
@@ -110,25 +233,7 @@ public final class MavenUtils {
     }
 
     public static String resolveProperty(String value, Map<String, String> properties) {
-        String result = value;
-        Set<String> visitedProperties = null;
-        while (isUnresolvedProperty(result)) {
-            var key = result.substring(2, result.length() - 1);
-            if (properties.containsKey(key)) {
-                if (visitedProperties == null) {
-                    visitedProperties = new LinkedHashSet<>(4);
-                }
-                var isNew = visitedProperties.add(key);
-                if (!isNew) {
-                    throw new IllegalStateException("infinite loop detected resolving property: " +
-                            String.join(" -> ", visitedProperties) + " -> " + key);
-                }
-                result = properties.get(key);
-            } else {
-                return result;
-            }
-        }
-        return result;
+        return new PropertyResolver(properties).resolve(value);
     }
 
     public static boolean isUnresolvedProperty(String value) {
@@ -166,9 +271,9 @@ public final class MavenUtils {
 
     public static DependencyExclusions.ExclusionsWithUsage asPatterns(Set<ArtifactKey> exclusions) {
         var patterns = exclusions.stream()
-                .map(MavenUtils::patternOf)
-                .collect(toSet());
-        return new DependencyExclusions(patterns, Map.of()).withUsage();
+                .map(key -> new DependencyExclusions.PatternUsage(patternOf(key), key))
+                .collect(toList());
+        return new DependencyExclusions.ExclusionsWithUsage(patterns, Map.of());
     }
 
     private static Pattern patternOf(ArtifactKey key) {
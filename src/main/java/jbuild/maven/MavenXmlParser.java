@@ -0,0 +1,326 @@
+package jbuild.maven;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static jbuild.util.XmlUtils.newXmlStreamReader;
+import static jbuild.util.XmlUtils.nextChildElement;
+import static jbuild.util.XmlUtils.nextRootElement;
+import static jbuild.util.XmlUtils.readTextContent;
+import static jbuild.util.XmlUtils.skipElement;
+
+/**
+ * Streaming parser of Maven XML documents.
+ * <p>
+ * Only the sections of a POM that JBuild uses are read. Everything else (e.g. {@code build}, {@code reporting}
+ * and {@code profiles}) is skipped without creating any objects.
+ * <p>
+ * As with a DOM, only the first occurrence of each element is taken into consideration, and a missing element
+ * is represented as {@code null}, while an empty element is represented as an empty String.
+ */
+final class MavenXmlParser {
+
+    /**
+     * The elements of a POM, with values exactly as they appear in the XML document
+     * (i.e. properties are not resolved).
+     */
+    static final class RawPom {
+        final RawDependency coordinates = new RawDependency();
+        RawDependency parent;
+        String packaging;
+        Map<String, String> properties;
+        List<RawDependency> dependencyManagement;
+        List<RawDependency> dependencies;
+        List<RawLicense> licenses;
+    }
+
+    static final class RawDependency {
+        String groupId, artifactId, version, type, scope, optional, classifier;
+        List<RawExclusion> exclusions;
+    }
+
+    static final class RawExclusion {
+        String groupId, artifactId;
+    }
+
+    static final class RawLicense {
+        String name, url;
+    }
+
+    /**
+     * Parse a POM.
+     *
+     * @param stream to read the POM from (not closed by this method)
+     * @return the raw POM
+     * @throws XMLStreamException if the document is not well-formed
+     * @throws IllegalArgumentException if the document is not a POM
+     */
+    static RawPom parsePom(InputStream stream) throws XMLStreamException {
+        return parsePom(stream, true);
+    }
+
+    /**
+     * Parse only the sections of a POM that refer to other POMs: the parent, the coordinates, the properties
+     * and the dependency management section (which contains the imports).
+     *
+     * @param stream to read the POM from (not closed by this method)
+     * @return the raw POM, without dependencies, packaging and licenses
+     * @throws XMLStreamException if the document is not well-formed
+     * @throws IllegalArgumentException if the document is not a POM
+     */
+    static RawPom parsePomReferences(InputStream stream) throws XMLStreamException {
+        return parsePom(stream, false);
+    }
+
+    private static RawPom parsePom(InputStream stream, boolean full) throws XMLStreamException {
+        var reader = newXmlStreamReader(stream);
+        try {
+            if (!"project".equals(nextRootElement(reader))) {
+                throw new IllegalArgumentException("Not a POM XML document");
+            }
+            var pom = new RawPom();
+            while (nextChildElement(reader)) {
+                switch (reader.getLocalName()) {
+                    case "parent":
+                        if (pom.parent == null) {
+                            pom.parent = new RawDependency();
+                            readDependency(reader, pom.parent);
+                        } else skipElement(reader);
+                        break;
+                    case "packaging":
+                        if (full && pom.packaging == null) pom.packaging = readTextContent(reader);
+                        else skipElement(reader);
+                        break;
+                    case "properties":
+                        if (pom.properties == null) pom.properties = readProperties(reader);
+                        else skipElement(reader);
+                        break;
+                    case "dependencyManagement":
+                        if (pom.dependencyManagement == null) pom.dependencyManagement = readDependencyManagement(reader);
+                        else skipElement(reader);
+                        break;
+                    case "dependencies":
+                        if (full && pom.dependencies == null) pom.dependencies = readDependencies(reader);
+                        else skipElement(reader);
+                        break;
+                    case "licenses":
+                        if (full && pom.licenses == null) pom.licenses = readLicenses(reader);
+                        else skipElement(reader);
+                        break;
+                    default:
+                        if (!readDependencyElement(reader, pom.coordinates)) {
+                            skipElement(reader);
+                        }
+                }
+            }
+            return pom;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Parse a Maven metadata document.
+     *
+     * @param stream to read the metadata from (not closed by this method)
+     * @return the metadata
+     * @throws XMLStreamException if the document is not well-formed
+     * @throws IllegalArgumentException if the document is not a Maven metadata document
+     */
+    static MavenArtifactMetadata parseMetadata(InputStream stream) throws XMLStreamException {
+        var reader = newXmlStreamReader(stream);
+        try {
+            if (!"metadata".equals(nextRootElement(reader))) {
+                throw new IllegalArgumentException("Not a Maven metadata XML document");
+            }
+            String groupId = null, artifactId = null, lastUpdated = null, latest = null, release = null;
+            Set<String> versions = null;
+            var versioningDone = false;
+            while (nextChildElement(reader)) {
+                switch (reader.getLocalName()) {
+                    case "groupId":
+                        if (groupId == null) groupId = readTextContent(reader);
+                        else skipElement(reader);
+                        break;
+                    case "artifactId":
+                        if (artifactId == null) artifactId = readTextContent(reader);
+                        else skipElement(reader);
+                        break;
+                    case "versioning":
+                        if (versioningDone) {
+                            skipElement(reader);
+                            break;
+                        }
+                        versioningDone = true;
+                        while (nextChildElement(reader)) {
+                            switch (reader.getLocalName()) {
+                                case "lastUpdated":
+                                    if (lastUpdated == null) lastUpdated = readTextContent(reader);
+                                    else skipElement(reader);
+                                    break;
+                                case "latest":
+                                    if (latest == null) latest = readTextContent(reader);
+                                    else skipElement(reader);
+                                    break;
+                                case "release":
+                                    if (release == null) release = readTextContent(reader);
+                                    else skipElement(reader);
+                                    break;
+                                case "versions":
+                                    if (versions == null) {
+                                        versions = new LinkedHashSet<>();
+                                        while (nextChildElement(reader)) {
+                                            if ("version".equals(reader.getLocalName())) {
+                                                versions.add(readTextContent(reader));
+                                            } else skipElement(reader);
+                                        }
+                                    } else skipElement(reader);
+                                    break;
+                                default:
+                                    skipElement(reader);
+                            }
+                        }
+                        break;
+                    default:
+                        skipElement(reader);
+                }
+            }
+            return new MavenArtifactMetadata(orEmpty(groupId), orEmpty(artifactId), orEmpty(lastUpdated),
+                    orEmpty(latest), orEmpty(release), versions == null ? Set.of() : versions);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static Map<String, String> readProperties(XMLStreamReader reader) throws XMLStreamException {
+        var properties = new LinkedHashMap<String, String>();
+        while (nextChildElement(reader)) {
+            properties.put(reader.getLocalName(), readTextContent(reader));
+        }
+        return properties;
+    }
+
+    private static List<RawDependency> readDependencyManagement(XMLStreamReader reader) throws XMLStreamException {
+        List<RawDependency> dependencies = null;
+        while (nextChildElement(reader)) {
+            if (dependencies == null && "dependencies".equals(reader.getLocalName())) {
+                dependencies = readDependencies(reader);
+            } else skipElement(reader);
+        }
+        return dependencies == null ? List.of() : dependencies;
+    }
+
+    private static List<RawDependency> readDependencies(XMLStreamReader reader) throws XMLStreamException {
+        var dependencies = new ArrayList<RawDependency>();
+        while (nextChildElement(reader)) {
+            if ("dependency".equals(reader.getLocalName())) {
+                var dependency = new RawDependency();
+                readDependency(reader, dependency);
+                dependencies.add(dependency);
+            } else skipElement(reader);
+        }
+        return dependencies;
+    }
+
+    private static void readDependency(XMLStreamReader reader, RawDependency dependency) throws XMLStreamException {
+        while (nextChildElement(reader)) {
+            if (!readDependencyElement(reader, dependency)) {
+                skipElement(reader);
+            }
+        }
+    }
+
+    /**
+     * Read the current element into the dependency if it's one of the dependency's elements.
+     *
+     * @return true if the element was consumed, false otherwise
+     */
+    private static boolean readDependencyElement(XMLStreamReader reader, RawDependency dependency)
+            throws XMLStreamException {
+        switch (reader.getLocalName()) {
+            case "groupId":
+                if (dependency.groupId == null) dependency.groupId = readTextContent(reader);
+                else skipElement(reader);
+                return true;
+            case "artifactId":
+                if (dependency.artifactId == null) dependency.artifactId = readTextContent(reader);
+                else skipElement(reader);
+                return true;
+            case "version":
+                if (dependency.version == null) dependency.version = readTextContent(reader);
+                else skipElement(reader);
+                return true;
+            case "type":
+                if (dependency.type == null) dependency.type = readTextContent(reader);
+                else skipElement(reader);
+                return true;
+            case "scope":
+                if (dependency.scope == null) dependency.scope = readTextContent(reader);
+                else skipElement(reader);
+                return true;
+            case "optional":
+                if (dependency.optional == null) dependency.optional = readTextContent(reader);
+                else skipElement(reader);
+                return true;
+            case "classifier":
+                if (dependency.classifier == null) dependency.classifier = readTextContent(reader);
+                else skipElement(reader);
+                return true;
+            case "exclusions":
+                if (dependency.exclusions == null) dependency.exclusions = readExclusions(reader);
+                else skipElement(reader);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static List<RawExclusion> readExclusions(XMLStreamReader reader) throws XMLStreamException {
+        var exclusions = new ArrayList<RawExclusion>(2);
+        while (nextChildElement(reader)) {
+            if ("exclusion".equals(reader.getLocalName())) {
+                var exclusion = new RawExclusion();
+                while (nextChildElement(reader)) {
+                    var name = reader.getLocalName();
+                    if (exclusion.groupId == null && "groupId".equals(name)) {
+                        exclusion.groupId = readTextContent(reader);
+                    } else if (exclusion.artifactId == null && "artifactId".equals(name)) {
+                        exclusion.artifactId = readTextContent(reader);
+                    } else skipElement(reader);
+                }
+                exclusions.add(exclusion);
+            } else skipElement(reader);
+        }
+        return exclusions;
+    }
+
+    private static List<RawLicense> readLicenses(XMLStreamReader reader) throws XMLStreamException {
+        var licenses = new ArrayList<RawLicense>(2);
+        while (nextChildElement(reader)) {
+            if ("license".equals(reader.getLocalName())) {
+                var license = new RawLicense();
+                while (nextChildElement(reader)) {
+                    var name = reader.getLocalName();
+                    if (license.name == null && "name".equals(name)) {
+                        license.name = readTextContent(reader);
+                    } else if (license.url == null && "url".equals(name)) {
+                        license.url = readTextContent(reader);
+                    } else skipElement(reader);
+                }
+                licenses.add(license);
+            } else skipElement(reader);
+        }
+        return licenses;
+    }
+
+    private static String orEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
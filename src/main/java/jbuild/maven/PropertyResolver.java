@@ -0,0 +1,77 @@
+package jbuild.maven;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static jbuild.maven.MavenUtils.isUnresolvedProperty;
+
+/**
+ * Resolver of Maven property placeholders against a fixed set of properties.
+ * <p>
+ * Resolving a placeholder may require following a chain of properties whose values are themselves
+ * placeholders. The result of following each chain is memoized for every property along it, so
+ * each property is only resolved once regardless of how many elements of a POM refer to it.
+ * <p>
+ * The given properties must not change after the resolver is created. Instances are not thread-safe, they are
+ * meant to be used while creating a single {@link MavenPom}.
+ *
+ * @see MavenUtils#resolveProperty(String, Map)
+ */
+final class PropertyResolver {
+
+    private final Map<String, String> properties;
+    private final Map<String, String> resolvedProperties;
+
+    PropertyResolver(Map<String, String> properties) {
+        this.properties = properties;
+        this.resolvedProperties = new HashMap<>();
+    }
+
+    Map<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Resolve the given value.
+     *
+     * @param value to resolve
+     * @return the resolved value, or the value itself if it is not a property placeholder or
+     * the property it refers to does not exist
+     * @throws IllegalStateException if the property chain of the value is circular
+     */
+    String resolve(String value) {
+        if (!isUnresolvedProperty(value)) {
+            return value;
+        }
+        var result = value;
+        Set<String> visitedProperties = null;
+        while (isUnresolvedProperty(result)) {
+            var key = result.substring(2, result.length() - 1);
+            var resolved = resolvedProperties.get(key);
+            if (resolved != null) {
+                result = resolved;
+                break;
+            }
+            if (!properties.containsKey(key)) {
+                break;
+            }
+            if (visitedProperties == null) {
+                visitedProperties = new LinkedHashSet<>(4);
+            }
+            var isNew = visitedProperties.add(key);
+            if (!isNew) {
+                throw new IllegalStateException("infinite loop detected resolving property: " +
+                        String.join(" -> ", visitedProperties) + " -> " + key);
+            }
+            result = properties.get(key);
+        }
+        if (visitedProperties != null) {
+            for (var key : visitedProperties) {
+                resolvedProperties.put(key, result);
+            }
+        }
+        return result;
+    }
+}
@@ -23,6 +23,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import static java.util.concurrent.CompletableFuture.completedStage;
@@ -168,6 +169,62 @@ public final class AsyncUtils {
         });
     }
 
+    /**
+     * Run an action, retrying it according to the given policy in case it fails.
+     *
+     * @param future      supplier of the action, called once for every attempt
+     * @param retryPolicy retry policy
+     * @param handle      handler of the result of the last attempt
+     * @return the result of the handler
+     */
+    public static <T, U> CompletionStage<U> withRetries(
+            Supplier<CompletionStage<T>> future,
+            RetryPolicy retryPolicy,
+            BiFunction<T, Throwable, CompletionStage<U>> handle) {
+        return withRetries(future, retryPolicy, error -> true, handle);
+    }
+
+    /**
+     * Run an action, retrying it according to the given policy in case it fails with a retryable error.
+     *
+     * @param future      supplier of the action, called once for every attempt
+     * @param retryPolicy retry policy
+     * @param isRetryable whether an error may be retried
+     * @param handle      handler of the result of the last attempt
+     * @return the result of the handler
+     */
+    public static <T, U> CompletionStage<U> withRetries(
+            Supplier<CompletionStage<T>> future,
+            RetryPolicy retryPolicy,
+            Predicate<Throwable> isRetryable,
+            BiFunction<T, Throwable, CompletionStage<U>> handle) {
+        return withRetries(future, retryPolicy, isRetryable, 1, handle);
+    }
+
+    private static <T, U> CompletionStage<U> withRetries(
+            Supplier<CompletionStage<T>> future,
+            RetryPolicy retryPolicy,
+            Predicate<Throwable> isRetryable,
+            int retry,
+            BiFunction<T, Throwable, CompletionStage<U>> handle) {
+        CompletionStage<T> completionStage;
+        try {
+            completionStage = future.get();
+        } catch (Throwable t) {
+            return handle.apply(null, unwrapConcurrentException(t));
+        }
+        return handlingAsync(completionStage, (T ok, Throwable err) -> {
+            if (err != null) {
+                var error = unwrapConcurrentException(err);
+                return retry <= retryPolicy.maxRetries && isRetryable.test(error)
+                        ? afterDelay(retryPolicy.delayBeforeRetry(retry), () -> withRetries(
+                        future, retryPolicy, isRetryable, retry + 1, handle))
+                        : handle.apply(ok, error);
+            }
+            return handle.apply(ok, null);
+        });
+    }
+
     private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor((runnable) -> {
         var thread = new Thread(runnable, "jbuild-scheduler");
         thread.setDaemon(true);
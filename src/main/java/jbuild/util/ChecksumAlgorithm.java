@@ -0,0 +1,150 @@
+package jbuild.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Checksum algorithms supported by JBuild.
+ * <p>
+ * Each algorithm has a corresponding file extension which Maven repositories use for checksum "sidecar" files,
+ * e.g. {@code guava-31.0.1-jre.jar.sha256}.
+ */
+public enum ChecksumAlgorithm {
+    SHA1("SHA-1", "sha1", 20),
+    SHA256("SHA-256", "sha256", 32),
+    SHA512("SHA-512", "sha512", 64),
+    ;
+
+    private final String javaName;
+
+    /**
+     * The file extension used by checksum files of this algorithm (without the dot).
+     */
+    public final String extension;
+
+    /**
+     * The length of the digests computed by this algorithm, in bytes.
+     */
+    public final int digestLength;
+
+    ChecksumAlgorithm(String javaName, String extension, int digestLength) {
+        this.javaName = javaName;
+        this.extension = extension;
+        this.digestLength = digestLength;
+    }
+
+    /**
+     * @return a new {@link MessageDigest} for this algorithm.
+     */
+    public MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(javaName);
+        } catch (NoSuchAlgorithmException e) {
+            // the JVM must provide all algorithms we support, so just re-throw if something is wrong!
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Compute the digest of the given bytes.
+     *
+     * @param bytes input bytes
+     * @return digest of bytes
+     */
+    public byte[] digest(byte[] bytes) {
+        return newMessageDigest().digest(bytes);
+    }
+
+    /**
+     * Convert a digest computed by this algorithm to a lower-case hex string.
+     *
+     * @param digest the digest
+     * @return hex string
+     */
+    public String toHexString(byte[] digest) {
+        if (digest.length != digestLength) {
+            throw new IllegalArgumentException("Not a " + this + " digest");
+        }
+        var hexChars = new char[digestLength * 2];
+        for (int i = 0; i < digestLength; i++) {
+            var byteValue = digest[i] & 0xFF;
+            hexChars[i * 2] = toHexDigit((byteValue >> 4) & 0xF);
+            hexChars[i * 2 + 1] = toHexDigit(byteValue & 0xF);
+        }
+        return new String(hexChars);
+    }
+
+    /**
+     * Parse the contents of a checksum file.
+     * <p>
+     * Checksum files may contain only the hex-encoded digest, or the digest followed by whitespace and
+     * the name of the file the checksum refers to (as generated by tools such as {@code sha256sum}).
+     *
+     * @param fileContents bytes of the checksum file
+     * @return the digest bytes
+     * @throws IllegalArgumentException if the contents do not contain a digest of this algorithm
+     */
+    public byte[] parseChecksumFile(byte[] fileContents) {
+        var start = 0;
+        while (start < fileContents.length && Character.isWhitespace(fileContents[start])) {
+            start++;
+        }
+        var end = start;
+        while (end < fileContents.length && !Character.isWhitespace(fileContents[end])) {
+            end++;
+        }
+        if (end - start != digestLength * 2) {
+            throw new IllegalArgumentException("Not a " + this + " string");
+        }
+        var result = new byte[digestLength];
+        for (int i = start, j = 0; i < end; i += 2, j++) {
+            var high = fromHexDigit((char) fileContents[i]);
+            var low = fromHexDigit((char) fileContents[i + 1]);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Not a " + this + " string");
+            }
+            result[j] = (byte) ((high << 4) + low);
+        }
+        return result;
+    }
+
+    /**
+     * Find the algorithm that uses the given file extension.
+     *
+     * @param extension file extension (without the dot)
+     * @return the algorithm if any uses the extension, empty otherwise
+     */
+    public static Optional<ChecksumAlgorithm> fromExtension(String extension) {
+        for (var algorithm : values()) {
+            if (algorithm.extension.equals(extension)) {
+                return Optional.of(algorithm);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Parse a user-provided algorithm name, accepting both the extension-style name (e.g. {@code sha256})
+     * and the standard name (e.g. {@code SHA-256}).
+     *
+     * @param name of the algorithm
+     * @return the algorithm if the name is recognized, empty otherwise
+     */
+    public static Optional<ChecksumAlgorithm> parse(String name) {
+        return fromExtension(name.toLowerCase(Locale.ROOT).replace("-", ""));
+    }
+
+    private static char toHexDigit(int digit) {
+        return digit < 10 ? (char) ('0' + digit) : (char) ('a' + digit - 10);
+    }
+
+    private static int fromHexDigit(char c) {
+        if ('0' <= c && c <= '9') return c - '0';
+        if ('a' <= c && c <= 'f') return c - 'a' + 10;
+        if ('A' <= c && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+
+}
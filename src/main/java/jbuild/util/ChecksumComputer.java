@@ -0,0 +1,149 @@
+package jbuild.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.EnumMap;
+import java.util.Set;
+
+/**
+ * Incremental checksum computer.
+ * <p>
+ * Bytes can be fed into an instance of this class as they are read or written, so that checksums of an
+ * artifact never require the artifact to be read again, or to be kept fully in memory.
+ * <p>
+ * Instances of this class are not thread-safe and can only be used once: after {@link ChecksumComputer#finish()}
+ * is called, no more bytes may be given to it.
+ */
+public final class ChecksumComputer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final EnumMap<ChecksumAlgorithm, MessageDigest> digests;
+    private boolean finished;
+
+    public ChecksumComputer(Set<ChecksumAlgorithm> algorithms) {
+        this.digests = new EnumMap<>(ChecksumAlgorithm.class);
+        for (var algorithm : algorithms) {
+            digests.put(algorithm, algorithm.newMessageDigest());
+        }
+    }
+
+    /**
+     * @return true if this computer has no algorithms to compute.
+     */
+    public boolean isEmpty() {
+        return digests.isEmpty();
+    }
+
+    public void update(byte[] bytes, int offset, int length) {
+        ensureNotFinished();
+        for (var digest : digests.values()) {
+            digest.update(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Update the digests with the remaining bytes of the given buffer.
+     * <p>
+     * The buffer's position is not modified.
+     *
+     * @param buffer bytes to update the digests with
+     */
+    public void update(ByteBuffer buffer) {
+        ensureNotFinished();
+        for (var digest : digests.values()) {
+            digest.update(buffer.duplicate());
+        }
+    }
+
+    /**
+     * Finish computing the checksums.
+     *
+     * @return the computed checksums
+     */
+    public Checksums finish() {
+        ensureNotFinished();
+        finished = true;
+        if (digests.isEmpty()) return Checksums.NONE;
+        var result = new EnumMap<ChecksumAlgorithm, byte[]>(ChecksumAlgorithm.class);
+        digests.forEach((algorithm, digest) -> result.put(algorithm, digest.digest()));
+        return new Checksums(result);
+    }
+
+    /**
+     * Wrap the given stream so that all bytes written to it are also fed into this computer.
+     *
+     * @param delegate the actual output stream
+     * @return stream that computes checksums of everything written to it
+     */
+    public OutputStream wrap(OutputStream delegate) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                delegate.write(b);
+                update(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                delegate.write(b, off, len);
+                update(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                delegate.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                delegate.close();
+            }
+        };
+    }
+
+    /**
+     * Compute the checksums of the given bytes.
+     *
+     * @param bytes      input
+     * @param algorithms to compute
+     * @return checksums
+     */
+    public static Checksums compute(byte[] bytes, Set<ChecksumAlgorithm> algorithms) {
+        var computer = new ChecksumComputer(algorithms);
+        computer.update(bytes, 0, bytes.length);
+        return computer.finish();
+    }
+
+    /**
+     * Compute the checksums of a file, streaming its contents through a fixed-size buffer.
+     *
+     * @param file       input
+     * @param algorithms to compute
+     * @return checksums
+     * @throws IOException if the file cannot be read
+     */
+    public static Checksums compute(Path file, Set<ChecksumAlgorithm> algorithms) throws IOException {
+        var computer = new ChecksumComputer(algorithms);
+        var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                computer.update(buffer);
+                buffer.clear();
+            }
+        }
+        return computer.finish();
+    }
+
+    private void ensureNotFinished() {
+        if (finished) {
+            throw new IllegalStateException("checksum computation has already finished");
+        }
+    }
+}
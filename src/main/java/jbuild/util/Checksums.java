@@ -0,0 +1,85 @@
+package jbuild.util;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Immutable collection of the checksums of some contents, computed with one or more
+ * {@link ChecksumAlgorithm}s.
+ *
+ * @see ChecksumComputer
+ */
+public final class Checksums {
+
+    public static final Checksums NONE = new Checksums(new EnumMap<>(ChecksumAlgorithm.class));
+
+    private final EnumMap<ChecksumAlgorithm, byte[]> digests;
+
+    Checksums(EnumMap<ChecksumAlgorithm, byte[]> digests) {
+        this.digests = digests;
+    }
+
+    /**
+     * @param algorithm checksum algorithm
+     * @return the checksum computed with the given algorithm, if available
+     */
+    public Optional<byte[]> get(ChecksumAlgorithm algorithm) {
+        var digest = digests.get(algorithm);
+        return digest == null ? Optional.empty() : Optional.of(digest.clone());
+    }
+
+    /**
+     * @return the algorithms for which a checksum is available
+     */
+    public Set<ChecksumAlgorithm> getAlgorithms() {
+        return digests.isEmpty() ? Set.of() : Set.copyOf(digests.keySet());
+    }
+
+    /**
+     * @param algorithm checksum algorithm
+     * @param digest    the checksum computed with the given algorithm
+     * @return a copy of this object with the extra checksum
+     */
+    public Checksums with(ChecksumAlgorithm algorithm, byte[] digest) {
+        var result = new EnumMap<>(digests);
+        result.put(algorithm, digest.clone());
+        return new Checksums(result);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        var other = ((Checksums) o).digests;
+        if (!digests.keySet().equals(other.keySet())) return false;
+        for (Map.Entry<ChecksumAlgorithm, byte[]> entry : digests.entrySet()) {
+            if (!Arrays.equals(entry.getValue(), other.get(entry.getKey()))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        var result = 0;
+        for (Map.Entry<ChecksumAlgorithm, byte[]> entry : digests.entrySet()) {
+            result += entry.getKey().hashCode() ^ Arrays.hashCode(entry.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        var builder = new StringBuilder("Checksums{");
+        var first = true;
+        for (var entry : digests.entrySet()) {
+            if (!first) builder.append(", ");
+            first = false;
+            builder.append(entry.getKey().extension).append('=')
+                    .append(entry.getKey().toHexString(entry.getValue()));
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -1,13 +1,61 @@
 package jbuild.util;
 
+import java.nio.file.Paths;
+
 /**
  * Environment variables and system properties provider.
  */
 public final class Env {
     public static final int MAX_DEPENDENCY_TREE_DEPTH;
+    public static final int ARTIFACT_WRITER_THREADS;
+    public static final boolean ARTIFACT_WRITER_FSYNC;
+    public static final int HTTP_MAX_RETRIES;
+    public static final int RESUMABLE_DOWNLOAD_MIN_BYTES;
+    public static final String PARTIAL_DOWNLOADS_DIR;
+    public static final int HTTP_REQUEST_TIMEOUT_SECONDS;
+    public static final int HTTP_CIRCUIT_BREAKER_FAILURES;
+    public static final int HTTP_CIRCUIT_BREAKER_COOLDOWN_SECONDS;
+    public static final String EFFECTIVE_POM_CACHE_DIR;
+    public static final boolean EFFECTIVE_POM_CACHE_TRUST_RELEASES;
+    public static final String RESOLUTION_TRACE_FILE;
+    public static final boolean LOCAL_REPOSITORY_INDEX;
+    public static final String LOCAL_REPOSITORY_INDEX_DIR;
+    public static final int VERSIONS_MAX_CONCURRENCY;
+    public static final boolean OFFLINE;
+    public static final boolean POM_PREFETCH;
+    public static final String STATS_FILE;
 
     static {
         MAX_DEPENDENCY_TREE_DEPTH = readInt("MAX_DEPENDENCY_TREE_DEPTH", 100);
+        ARTIFACT_WRITER_THREADS = readInt("ARTIFACT_WRITER_THREADS",
+                Math.min(4, Runtime.getRuntime().availableProcessors()));
+        ARTIFACT_WRITER_FSYNC = readBoolean("ARTIFACT_WRITER_FSYNC", false);
+        HTTP_MAX_RETRIES = readInt("HTTP_MAX_RETRIES", 3);
+        RESUMABLE_DOWNLOAD_MIN_BYTES = readInt("RESUMABLE_DOWNLOAD_MIN_BYTES", 1024 * 1024);
+        PARTIAL_DOWNLOADS_DIR = readString("PARTIAL_DOWNLOADS_DIR",
+                Paths.get(System.getProperty("java.io.tmpdir"), "jbuild-partial-downloads").toString());
+        HTTP_REQUEST_TIMEOUT_SECONDS = readInt("HTTP_REQUEST_TIMEOUT_SECONDS", 30);
+        HTTP_CIRCUIT_BREAKER_FAILURES = readInt("HTTP_CIRCUIT_BREAKER_FAILURES", 3);
+        HTTP_CIRCUIT_BREAKER_COOLDOWN_SECONDS = readInt("HTTP_CIRCUIT_BREAKER_COOLDOWN_SECONDS", 30);
+        EFFECTIVE_POM_CACHE_DIR = readString("EFFECTIVE_POM_CACHE_DIR",
+                Paths.get(System.getProperty("user.home", "."), ".jbuild", "effective-poms").toString());
+        EFFECTIVE_POM_CACHE_TRUST_RELEASES = readBoolean("EFFECTIVE_POM_CACHE_TRUST_RELEASES", false);
+        RESOLUTION_TRACE_FILE = readString("RESOLUTION_TRACE_FILE", "");
+        LOCAL_REPOSITORY_INDEX = readBoolean("LOCAL_REPOSITORY_INDEX", true);
+        LOCAL_REPOSITORY_INDEX_DIR = readString("LOCAL_REPOSITORY_INDEX_DIR",
+                Paths.get(System.getProperty("user.home", "."), ".jbuild", "repository-index").toString());
+        VERSIONS_MAX_CONCURRENCY = readInt("VERSIONS_MAX_CONCURRENCY", 32);
+        OFFLINE = readBoolean("OFFLINE", false);
+        POM_PREFETCH = readBoolean("POM_PREFETCH", true);
+        STATS_FILE = readString("STATS_FILE", "");
+    }
+
+    private static String readString(String name, String defaultValue) {
+        var value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return value;
     }
 
     private static int readInt(String name, int defaultValue) {
@@ -23,4 +71,23 @@ public final class Env {
             return defaultValue;
         }
     }
+
+    private static boolean readBoolean(String name, boolean defaultValue) {
+        var value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        switch (value.trim().toLowerCase()) {
+            case "true":
+            case "1":
+                return true;
+            case "false":
+            case "0":
+                return false;
+            default:
+                System.err.println("WARNING: environment variable " + name +
+                        " does not have a valid boolean value: " + value);
+                return defaultValue;
+        }
+    }
 }
@@ -10,15 +10,21 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static jbuild.api.JBuildException.ErrorCause.USER_INPUT;
@@ -105,6 +111,50 @@ public final class FileUtils {
         return completionStage;
     }
 
+    /**
+     * Write a file atomically.
+     * <p>
+     * The writer is given a temporary file in the same directory as the target, which is then renamed
+     * to the target, so that neither concurrent readers nor a crash can observe a partially written target.
+     *
+     * @param target file to write (replaced if it already exists)
+     * @param fsync  whether to flush the file to the storage device before renaming it
+     * @param writer creates the temporary file, which does not exist when the writer is called
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeAtomically(Path target, boolean fsync, TempFileWriter writer) throws IOException {
+        // not using Files.createTempFile because it creates files only readable by the current user
+        // (the unique name makes it safe for concurrent writers to use the same directory)
+        var tempFile = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            writer.write(tempFile);
+            if (fsync) {
+                try (var channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+            try {
+                Files.move(tempFile, target, ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, REPLACE_EXISTING);
+            }
+            if (fsync) {
+                syncDirectory(target.toAbsolutePath().getParent());
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void syncDirectory(Path directory) {
+        // persists the rename on POSIX systems, not possible on some OSs (e.g. Windows), hence best-effort
+        try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
     public static File[] allFilesInDir(File directory, FileFilter filter) {
         if (!directory.isDirectory()) {
             throw new JBuildException("not a directory: " + directory, USER_INPUT);
@@ -150,4 +200,8 @@ public final class FileUtils {
         return Stream.of();
     }
 
+    @FunctionalInterface
+    public interface TempFileWriter {
+        void write(Path tempFile) throws IOException;
+    }
 }
@@ -0,0 +1,66 @@
+package jbuild.util;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Policy for retrying failed actions.
+ * <p>
+ * The delay before each retry grows exponentially, up to a maximum delay, and includes a random jitter
+ * so that many actions failing at the same time (e.g. because a server became unavailable) do not
+ * all retry at the same time.
+ */
+public final class RetryPolicy {
+
+    public static final RetryPolicy NO_RETRIES = new RetryPolicy(0, Duration.ZERO, Duration.ZERO);
+
+    public final int maxRetries;
+    private final Duration initialDelay;
+    private final Duration maxDelay;
+
+    /**
+     * Create a retry policy.
+     *
+     * @param maxRetries   maximum number of retries after the first attempt
+     * @param initialDelay delay before the first retry, without jitter
+     * @param maxDelay     maximum delay before any retry
+     */
+    public RetryPolicy(int maxRetries, Duration initialDelay, Duration maxDelay) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must not be negative: " + maxRetries);
+        }
+        if (initialDelay.isNegative() || maxDelay.compareTo(initialDelay) < 0) {
+            throw new IllegalArgumentException("invalid delays: initial=" + initialDelay + ", max=" + maxDelay);
+        }
+        this.maxRetries = maxRetries;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Compute the delay before a retry.
+     * <p>
+     * The result is between half of the exponential delay for the given retry and the full exponential delay.
+     *
+     * @param retry the retry number, starting from 1
+     * @return the delay to wait for before retrying
+     */
+    public Duration delayBeforeRetry(int retry) {
+        var delayMillis = initialDelay.toMillis();
+        for (int i = 1; i < retry && delayMillis < maxDelay.toMillis(); i++) {
+            delayMillis *= 2;
+        }
+        delayMillis = Math.min(delayMillis, maxDelay.toMillis());
+        var halfDelay = delayMillis / 2;
+        return Duration.ofMillis(halfDelay + ThreadLocalRandom.current().nextLong(delayMillis - halfDelay + 1));
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{" +
+                "maxRetries=" + maxRetries +
+                ", initialDelay=" + initialDelay +
+                ", maxDelay=" + maxDelay +
+                '}';
+    }
+}
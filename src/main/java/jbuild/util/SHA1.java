@@ -1,10 +1,9 @@
 package jbuild.util;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-
 /**
  * SHA1 hash helper.
+ *
+ * @see ChecksumAlgorithm
  */
 public final class SHA1 {
 
@@ -15,14 +14,7 @@ public final class SHA1 {
      * @return SHA1 of bytes
      */
     public static byte[] computeSha1(byte[] bytes) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance("SHA-1");
-        } catch (NoSuchAlgorithmException e) {
-            // the JVM must provide the SHA-1 algorithm, so just re-throw if something is wrong!
-            throw new RuntimeException(e);
-        }
-        return digest.digest(bytes);
+        return ChecksumAlgorithm.SHA1.digest(bytes);
     }
 
     /**
@@ -32,16 +24,7 @@ public final class SHA1 {
      * @return SHA1 of bytes as a hex string
      */
     public static String computeSha1HexString(byte[] bytes) {
-        var sha1 = computeSha1(bytes);
-        assert sha1.length == 20;
-        // Convert each byte to two hex characters
-        var hexChars = new char[40];
-        for (int i = 0; i < 20; i++) {
-            var byteValue = sha1[i] & 0xFF;
-            hexChars[i * 2] = toHexDigit((byteValue >> 4) & 0xF);
-            hexChars[i * 2 + 1] = toHexDigit(byteValue & 0xF);
-        }
-        return new String(hexChars);
+        return ChecksumAlgorithm.SHA1.toHexString(computeSha1(bytes));
     }
 
     /**
@@ -63,10 +46,6 @@ public final class SHA1 {
         return result;
     }
 
-    private static char toHexDigit(int digit) {
-        return digit < 10 ? (char) ('0' + digit) : (char) ('a' + digit - 10);
-    }
-
     private static byte fromHexDigit(char c) {
         if ('0' <= c && c <= '9') return (byte) (c - 48);
         if ('a' <= c && c <= 'f') return (byte) (c - 87);
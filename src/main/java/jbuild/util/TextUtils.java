@@ -111,4 +111,39 @@ public final class TextUtils {
     public static boolean isHttp(String address) {
         return address.startsWith("http://") || address.startsWith("https://");
     }
+
+    /**
+     * @param value any text
+     * @return the text as a quoted JSON string
+     */
+    public static String jsonString(String value) {
+        var result = new StringBuilder(value.length() + 2).append('"');
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        result.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        result.append(c);
+                    }
+            }
+        }
+        return result.append('"').toString();
+    }
 }
@@ -6,11 +6,16 @@ import org.w3c.dom.Node;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
@@ -37,6 +42,126 @@ public final class XmlUtils {
 
     }
 
+    // XMLInputFactory is not guaranteed to be thread-safe, so each thread gets its own configured instance
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        var factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
+    });
+
+    /**
+     * Create a streaming XML reader.
+     * <p>
+     * The reader does not support DTDs or external entities. It must be closed after use, but closing
+     * it does not close the underlying stream.
+     *
+     * @param stream to read
+     * @return a new reader
+     * @throws XMLStreamException if the reader cannot be created
+     */
+    public static XMLStreamReader newXmlStreamReader(InputStream stream) throws XMLStreamException {
+        return INPUT_FACTORY.get().createXMLStreamReader(stream);
+    }
+
+    /**
+     * Move a streaming XML reader to the root element of the document.
+     *
+     * @param reader streaming XML reader
+     * @return the name of the root element
+     * @throws XMLStreamException if the document has no root element
+     */
+    public static String nextRootElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                return reader.getLocalName();
+            }
+        }
+        throw new XMLStreamException("Document has no root element");
+    }
+
+    /**
+     * Move a streaming XML reader positioned at, or inside, an element to its next child element.
+     *
+     * @param reader streaming XML reader
+     * @return true if the reader is now at the start of a child element, false if the end of the
+     * parent element was reached instead
+     * @throws XMLStreamException if the document is malformed
+     */
+    public static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    return true;
+                case XMLStreamConstants.END_ELEMENT:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skip the element the reader is positioned at, including all of its descendants,
+     * without reading any of its contents.
+     *
+     * @param reader streaming XML reader positioned at the start of an element
+     * @throws XMLStreamException if the document is malformed
+     */
+    public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        var depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Read the text content of the element the reader is positioned at, including the text of all
+     * of its descendants (like {@link Node#getTextContent()}).
+     *
+     * @param reader streaming XML reader positioned at the start of an element
+     * @return the trimmed text content of the element
+     * @throws XMLStreamException if the document is malformed
+     */
+    public static String readTextContent(XMLStreamReader reader) throws XMLStreamException {
+        String text = null;
+        StringBuilder builder = null;
+        var depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    // most elements have a single text node, so avoid copying it when possible
+                    if (text == null) {
+                        text = reader.getText();
+                    } else {
+                        if (builder == null) {
+                            builder = new StringBuilder(text);
+                        }
+                        builder.append(reader.getText());
+                    }
+                    break;
+            }
+        }
+        if (builder != null) return builder.toString().trim();
+        return text == null ? "" : text.trim();
+    }
+
     public static Optional<Element> descendantOf(Node node, String... names) {
         var current = node;
         for (var name : names) {
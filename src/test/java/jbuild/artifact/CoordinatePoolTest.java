@@ -0,0 +1,65 @@
+package jbuild.artifact;
+
+import jbuild.maven.ArtifactKey;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CoordinatePoolTest {
+
+    @Test
+    void artifactsShareCoordinateComponents() {
+        var a = new Artifact(new String("org.example"), new String("lib"), new String("1.0"));
+        var b = new Artifact(new String("org.example"), new String("lib"), new String("1.0"));
+
+        assertThat(a).isEqualTo(b);
+        assertThat(a.groupId).isSameAs(b.groupId);
+        assertThat(a.artifactId).isSameAs(b.artifactId);
+        assertThat(a.version).isSameAs(b.version);
+        assertThat(a.getCoordinates()).isEqualTo(b.getCoordinates()).isEqualTo("org.example:lib:1.0");
+    }
+
+    @Test
+    void derivedArtifactsReuseUnchangedComponents() {
+        var artifact = new Artifact(new String("org.example"), new String("lib"), new String("1.0"));
+        var sha1 = artifact.pom().sha1();
+
+        assertThat(sha1).isEqualTo(new Artifact("org.example", "lib", "1.0", "pom.sha1"));
+        assertThat(sha1.groupId).isSameAs(artifact.groupId);
+        assertThat(sha1.artifactId).isSameAs(artifact.artifactId);
+        assertThat(sha1.version).isSameAs(artifact.version);
+        assertThat(sha1.noChecksum()).isEqualTo(artifact.pom());
+        assertThat(artifact.withClassifier("tests").classifier).isEqualTo("tests");
+    }
+
+    @Test
+    void uninternedArtifactsDoNotGrowThePool() {
+        var groupId = "org.example.uninterned." + System.nanoTime();
+        var artifact = Artifact.uninterned(groupId, "lib", "1.0-uninterned", "jar", "");
+        var size = CoordinatePool.size();
+
+        var derived = artifact.pom().sha1().withVersion(Version.parse("2.0-uninterned")).forMetadata();
+
+        assertThat(CoordinatePool.size()).isEqualTo(size);
+        assertThat(CoordinatePool.intern(new String(groupId))).isNotSameAs(artifact.groupId);
+        assertThat(derived).isEqualTo(new Artifact(groupId, "lib"));
+        assertThat(artifact).isEqualTo(new Artifact(groupId, "lib", "1.0-uninterned"));
+    }
+
+    @Test
+    void pomArtifactIsReused() {
+        var artifact = new Artifact("org.example", "lib", "1.0");
+
+        assertThat(artifact.pom()).isSameAs(artifact.pom());
+        assertThat(artifact.pom()).isEqualTo(new Artifact("org.example", "lib", "1.0", "pom"));
+        assertThat(artifact.pom().pom()).isSameAs(artifact.pom());
+    }
+
+    @Test
+    void artifactKeysAreCanonical() {
+        var artifact = new Artifact("org.example", "lib", "1.0");
+
+        assertThat(ArtifactKey.of(artifact)).isSameAs(ArtifactKey.of("org.example", "lib"));
+        assertThat(ArtifactKey.of(artifact).getCoordinates()).isEqualTo("org.example:lib");
+    }
+}
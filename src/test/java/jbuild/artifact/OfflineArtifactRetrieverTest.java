@@ -0,0 +1,80 @@
+package jbuild.artifact;
+
+import jbuild.artifact.file.FileArtifactRetriever;
+import jbuild.artifact.http.HttpArtifactRetriever;
+import jbuild.log.JBuildLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OfflineArtifactRetrieverTest {
+
+    private Path tempDir;
+    private Path repo1;
+    private Path repo2;
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDir = Files.createTempDirectory(OfflineArtifactRetrieverTest.class.getName());
+        repo1 = Files.createDirectories(tempDir.resolve("repo1"));
+        repo2 = Files.createDirectories(tempDir.resolve("repo2"));
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void onlyArtifactsMissingFromAllRepositoriesAreReported() throws Exception {
+        var dir = Files.createDirectories(repo2.resolve("com/g/a/1.0"));
+        Files.writeString(dir.resolve("a-1.0.jar"), "jar");
+
+        var missing = new OfflineArtifactRetriever.MissingArtifacts();
+        var retriever1 = new OfflineArtifactRetriever<>(new FileArtifactRetriever(repo1, null), missing);
+        var retriever2 = new OfflineArtifactRetriever<>(new FileArtifactRetriever(repo2, null), missing);
+
+        var found = new Artifact("com.g", "a", "1.0", "jar");
+        var notFound = new Artifact("com.g", "b", "2.0", "jar", "sources");
+
+        for (var retriever : new OfflineArtifactRetriever<?>[]{retriever1, retriever2}) {
+            retriever.retrieve(found).toCompletableFuture().get();
+            retriever.retrieve(notFound).toCompletableFuture().get();
+        }
+
+        assertThat(missing.getRepositories()).hasSize(2);
+        assertThat(missing.getMissing()).containsExactly("com.g:b:2.0:sources (jar)");
+    }
+
+    @Test
+    void missingMetadataIsReported() throws Exception {
+        var missing = new OfflineArtifactRetriever.MissingArtifacts();
+        var retriever = new OfflineArtifactRetriever<>(new FileArtifactRetriever(repo1, null), missing);
+
+        retriever.retrieveMetadata(new Artifact("com.g", "a", "")).toCompletableFuture().get();
+
+        assertThat(missing.getMissing()).containsExactly("com.g:a (metadata)");
+    }
+
+    @Test
+    void cannotWrapNonLocalRetriever() {
+        var missing = new OfflineArtifactRetriever.MissingArtifacts();
+        var log = new JBuildLog(System.out, false);
+
+        assertThatThrownBy(() -> new OfflineArtifactRetriever<>(new HttpArtifactRetriever(log), missing))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(missing.getRepositories()).isEmpty();
+    }
+}
@@ -0,0 +1,51 @@
+package jbuild.artifact;
+
+import jbuild.artifact.file.FileArtifactRetriever;
+import jbuild.util.ChecksumAlgorithm;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ResolvedArtifactTest {
+
+    @Test
+    void fileBackedArtifactIsCopiedWithoutLoadingContents() throws Exception {
+        var dir = Files.createTempDirectory(ResolvedArtifactTest.class.getName());
+        var contents = "file contents".getBytes(UTF_8);
+        var source = Files.write(dir.resolve("a-1.0.jar"), contents);
+        var target = dir.resolve("copy.jar");
+
+        var resolved = new ResolvedArtifact(source, contents.length,
+                new Artifact("g", "a", "1.0"), new FileArtifactRetriever(dir), 0L);
+
+        assertThat(resolved.getFile()).hasValue(source);
+        assertThat(resolved.contentLength).isEqualTo(contents.length);
+
+        resolved.writeTo(target, true);
+
+        assertThat(target).hasBinaryContent(contents);
+        assertThatThrownBy(resolved::getContents).isInstanceOf(IllegalStateException.class);
+
+        // checksums can still be computed from the backing file
+        assertThat(resolved.getChecksum(ChecksumAlgorithm.SHA1))
+                .isEqualTo(ChecksumAlgorithm.SHA1.digest(contents));
+    }
+
+    @Test
+    void fileBackedArtifactContentsCanBeLoaded() throws Exception {
+        var dir = Files.createTempDirectory(ResolvedArtifactTest.class.getName());
+        var contents = "more contents".getBytes(UTF_8);
+        var source = Files.write(dir.resolve("b-1.0.jar"), contents);
+
+        var resolved = new ResolvedArtifact(source, contents.length,
+                new Artifact("g", "b", "1.0"), new FileArtifactRetriever(dir), 0L);
+
+        assertThat(resolved.getContents()).isEqualTo(contents);
+        assertThat(resolved.consumeContentsToArray()).isEqualTo(contents);
+        assertThatThrownBy(resolved::getContents).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,101 @@
+package jbuild.artifact.file;
+
+import jbuild.artifact.Artifact;
+import jbuild.artifact.ResolvedArtifact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ArtifactCacheTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDir = Files.createTempDirectory(ArtifactCacheTest.class.getName());
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void canStoreAndGetFiles() throws Exception {
+        var cache = new ArtifactCache(tempDir, 1024);
+
+        assertThat(cache.get("g/a/1/a-1.jar")).isEmpty();
+
+        var file = cache.put("g/a/1/a-1.jar", artifact("a", "hello"));
+
+        assertThat(cache.get("g/a/1/a-1.jar")).contains(file);
+        assertThat(Files.readString(file, UTF_8)).isEqualTo("hello");
+
+        var stats = cache.getStats();
+        assertThat(stats.hits).isEqualTo(1);
+        assertThat(stats.misses).isEqualTo(1);
+        assertThat(stats.entries).isEqualTo(1);
+        assertThat(stats.sizeInBytes).isEqualTo(5);
+    }
+
+    @Test
+    void identicalContentsAreStoredOnce() throws Exception {
+        var cache = new ArtifactCache(tempDir, 1024);
+
+        var file1 = cache.put("g/a/1/a-1.jar", artifact("a", "same"));
+        var file2 = cache.put("g/b/1/b-1.jar", artifact("b", "same"));
+
+        assertThat(file1).isEqualTo(file2);
+        assertThat(cache.getStats().entries).isEqualTo(2);
+        assertThat(cache.getStats().sizeInBytes).isEqualTo(4);
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() throws Exception {
+        var cache = new ArtifactCache(tempDir, 10);
+
+        var fileA = cache.put("g/a/1/a-1.jar", artifact("a", "aaaa"));
+        cache.put("g/b/1/b-1.jar", artifact("b", "bbbb"));
+        cache.get("g/a/1/a-1.jar");
+        cache.put("g/c/1/c-1.jar", artifact("c", "cccc"));
+
+        assertThat(cache.get("g/b/1/b-1.jar")).isEmpty();
+        assertThat(cache.get("g/a/1/a-1.jar")).contains(fileA);
+        assertThat(cache.get("g/c/1/c-1.jar")).isPresent();
+
+        var stats = cache.getStats();
+        assertThat(stats.evictions).isEqualTo(1);
+        assertThat(stats.entries).isEqualTo(2);
+        assertThat(stats.sizeInBytes).isEqualTo(8);
+    }
+
+    @Test
+    void canRestoreEntriesAfterRestart() throws Exception {
+        var cache = new ArtifactCache(tempDir, 1024);
+        var file = cache.put("g/a/1/a-1.jar", artifact("a", "hello"));
+        cache.put("g/a/1/a-1.pom", artifact("a", "<project/>"));
+
+        var restored = new ArtifactCache(tempDir, 1024);
+        restored.load();
+
+        assertThat(restored.get("g/a/1/a-1.jar")).contains(file);
+        assertThat(restored.get("g/a/1/a-1.pom")).isPresent();
+        assertThat(restored.getStats().sizeInBytes).isEqualTo(15);
+    }
+
+    private static ResolvedArtifact artifact(String artifactId, String contents) {
+        return new ResolvedArtifact(contents.getBytes(UTF_8), new Artifact("g", artifactId, "1"), null, 0L);
+    }
+}
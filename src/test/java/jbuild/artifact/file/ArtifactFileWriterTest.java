@@ -0,0 +1,114 @@
+package jbuild.artifact.file;
+
+import jbuild.artifact.Artifact;
+import jbuild.artifact.ResolvedArtifact;
+import jbuild.util.Describable;
+import jbuild.util.Either;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static jbuild.artifact.file.ArtifactFileWriter.WriteMode.FLAT_DIR;
+import static jbuild.artifact.file.ArtifactFileWriter.WriteMode.MAVEN_REPOSITORY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ArtifactFileWriterTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDir = Files.createTempDirectory(ArtifactFileWriterTest.class.getName());
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void canWriteManyArtifactsInParallel() throws Exception {
+        var outDir = tempDir.resolve("out").toFile();
+        var retriever = new FileArtifactRetriever(tempDir);
+        var results = new ArrayList<CompletionStage<Either<List<File>, Describable>>>();
+
+        try (var writer = new ArtifactFileWriter(outDir, FLAT_DIR, null, 4, true)) {
+            for (int i = 0; i < 50; i++) {
+                var artifact = new Artifact("g", "a" + i, "1.0");
+                results.add(writer.write(new ResolvedArtifact(
+                        ("jar " + i).getBytes(UTF_8), artifact, retriever, 0L), true));
+            }
+            CompletableFuture.allOf(results.stream()
+                    .map(CompletionStage::toCompletableFuture)
+                    .toArray(CompletableFuture[]::new)).get();
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(new File(outDir, "a" + i + "-1.0.jar")).hasContent("jar " + i);
+        }
+
+        // no temporary files should be left behind
+        assertThat(outDir.list()).hasSize(50);
+    }
+
+    @Test
+    void writesEachFileOnlyOnce() throws Exception {
+        var outDir = tempDir.resolve("out").toFile();
+        var artifact = new Artifact("g", "a", "1.0");
+        var retriever = new FileArtifactRetriever(tempDir);
+        var first = new ResolvedArtifact("first".getBytes(UTF_8), artifact, retriever, 0L);
+        var second = new ResolvedArtifact("second".getBytes(UTF_8), artifact, retriever, 0L);
+
+        try (var writer = new ArtifactFileWriter(outDir, FLAT_DIR, null, 2, false)) {
+            var result1 = writer.write(first, false);
+            var result2 = writer.write(second, true);
+            assertThat(filesOf(result1)).containsExactly(new File(outDir, "a-1.0.jar"));
+            assertThat(filesOf(result2)).containsExactly(new File(outDir, "a-1.0.jar"));
+        }
+
+        assertThat(new File(outDir, "a-1.0.jar")).hasContent("first");
+
+        // the artifact must be consumed even though it was not written
+        assertThatThrownBy(second::getContents).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void multiWriterWritesToBothDestinationsAndConsumesArtifactOnce() throws Exception {
+        var outDir = tempDir.resolve("out").toFile();
+        var repoDir = tempDir.resolve("repo").toFile();
+        var artifact = new Artifact("g", "a", "1.0");
+        var resolved = new ResolvedArtifact("jar".getBytes(UTF_8), artifact,
+                new FileArtifactRetriever(tempDir), 0L);
+
+        try (var writer = new MultiArtifactFileWriter(
+                new ArtifactFileWriter(outDir, FLAT_DIR),
+                new ArtifactFileWriter(repoDir, MAVEN_REPOSITORY))) {
+            assertThat(filesOf(writer.write(resolved, true))).hasSize(2);
+        }
+
+        assertThat(new File(outDir, "a-1.0.jar")).hasContent("jar");
+        assertThat(repoDir.toPath().resolve(Path.of("g", "a", "1.0", "a-1.0.jar"))).hasContent("jar");
+        assertThatThrownBy(resolved::getContents).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static List<File> filesOf(CompletionStage<Either<List<File>, Describable>> result) throws Exception {
+        return result.toCompletableFuture().get().map(ok -> ok, err -> {
+            throw new AssertionError(err.getDescription());
+        });
+    }
+}
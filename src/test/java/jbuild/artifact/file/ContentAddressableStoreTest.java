@@ -0,0 +1,125 @@
+package jbuild.artifact.file;
+
+import jbuild.artifact.Artifact;
+import jbuild.artifact.ResolvedArtifact;
+import jbuild.util.ChecksumAlgorithm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ContentAddressableStoreTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDir = Files.createTempDirectory(ContentAddressableStoreTest.class.getName());
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void storesContentsOnceAndLinksDestinations() throws Exception {
+        var store = new ContentAddressableStore(tempDir.resolve("store"));
+        var artifact = new Artifact("g", "a", "1.0");
+        var retriever = new FileArtifactRetriever(tempDir);
+        var contents = "jar contents".getBytes(UTF_8);
+
+        var entry = store.store(new ResolvedArtifact(contents, artifact, retriever, 0L));
+        var entry2 = store.store(new ResolvedArtifact(contents.clone(), artifact, retriever, 0L));
+
+        assertThat(entry).isEqualTo(entry2).hasBinaryContent(contents);
+        assertThat(entry.startsWith(tempDir.resolve("store"))).isTrue();
+
+        var dir1 = Files.createDirectories(tempDir.resolve("dir1"));
+        var dir2 = Files.createDirectories(tempDir.resolve("dir2"));
+
+        store.materialize(entry, dir1.resolve("a.jar"));
+        store.materialize(entry, dir2.resolve("a.jar"));
+
+        assertThat(dir1.resolve("a.jar")).hasBinaryContent(contents);
+        assertThat(dir2.resolve("a.jar")).hasBinaryContent(contents);
+
+        // materializing again is a no-op
+        assertThat(store.materialize(entry, dir1.resolve("a.jar"))).isFalse();
+        assertThat(dir1.resolve("a.jar")).hasBinaryContent(contents);
+    }
+
+    @Test
+    void incompleteEntriesAreWrittenAgain() throws Exception {
+        var store = new ContentAddressableStore(tempDir.resolve("store"), false);
+        var artifact = new Artifact("g", "a", "1.0");
+        var retriever = new FileArtifactRetriever(tempDir);
+        var contents = "jar contents".getBytes(UTF_8);
+        var resolvedArtifact = new ResolvedArtifact(contents, artifact, retriever, 0L);
+
+        // simulate entries left behind by a crash before their contents reached the disk
+        var entry = store.pathOf(resolvedArtifact.getChecksum(ContentAddressableStore.CHECKSUM_ALGORITHM));
+        Files.createDirectories(entry.getParent());
+        Files.write(entry, new byte[0]);
+
+        assertThat(store.store(resolvedArtifact)).isEqualTo(entry).hasBinaryContent(contents);
+
+        Files.write(entry, "jar".getBytes(UTF_8));
+        var file = Files.write(tempDir.resolve("a.jar"), contents);
+
+        assertThat(store.store(resolvedArtifact.getChecksum(ContentAddressableStore.CHECKSUM_ALGORITHM), file))
+                .isEqualTo(entry).hasBinaryContent(contents);
+    }
+
+    @Test
+    void errorLinkingOneEntryDoesNotPreventLinkingOthers() throws Exception {
+        var store = new ContentAddressableStore(tempDir.resolve("store"));
+        var contents = "jar contents".getBytes(UTF_8);
+        var entry = store.store(new ResolvedArtifact(contents, new Artifact("g", "a", "1.0"),
+                new FileArtifactRetriever(tempDir), 0L));
+        var missingEntry = store.pathOf(ChecksumAlgorithm.SHA256.digest("other".getBytes(UTF_8)));
+
+        var dir = Files.createDirectories(tempDir.resolve("dir"));
+
+        assertThatThrownBy(() -> store.materialize(missingEntry, dir.resolve("b.jar")))
+                .isInstanceOf(NoSuchFileException.class);
+
+        // the file store still supports links
+        assertThat(store.materialize(entry, dir.resolve("a.jar"))).isTrue();
+        assertThat(dir.resolve("a.jar")).hasBinaryContent(contents);
+        assertThat(Files.isSameFile(entry, dir.resolve("a.jar"))).isTrue();
+    }
+
+    @Test
+    void writerCanWriteViaStore() throws Exception {
+        var store = new ContentAddressableStore(tempDir.resolve("store"));
+        var outDir = tempDir.resolve("out").toFile();
+        var artifact = new Artifact("g", "a", "1.0");
+        var contents = "some jar".getBytes(UTF_8);
+        var resolved = new ResolvedArtifact(contents, artifact, new FileArtifactRetriever(tempDir), 0L);
+
+        try (var writer = new ArtifactFileWriter(outDir, ArtifactFileWriter.WriteMode.FLAT_DIR, store)) {
+            var result = writer.write(resolved, true).toCompletableFuture().get();
+            List<File> files = result.map(ok -> ok, err -> List.of());
+            assertThat(files).containsExactly(new File(outDir, "a-1.0.jar"));
+        }
+
+        assertThat(new File(outDir, "a-1.0.jar")).hasBinaryContent(contents);
+        assertThat(store.pathOf(resolved.getChecksum(ChecksumAlgorithm.SHA256)))
+                .hasBinaryContent(contents);
+    }
+}
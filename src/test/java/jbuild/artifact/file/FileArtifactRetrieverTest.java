@@ -0,0 +1,84 @@
+package jbuild.artifact.file;
+
+import jbuild.artifact.Artifact;
+import jbuild.artifact.ArtifactResolution;
+import jbuild.errors.FileRetrievalError;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileArtifactRetrieverTest {
+
+    private Path tempDir;
+    private Path repo;
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDir = Files.createTempDirectory(FileArtifactRetrieverTest.class.getName());
+        repo = Files.createDirectories(tempDir.resolve("repo"));
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void versionRangesOnlySelectVersionsContainingTheArtifactWithoutIndex() throws Exception {
+        addVersions();
+        verifyVersionRanges(new FileArtifactRetriever(repo, null));
+    }
+
+    @Test
+    void versionRangesOnlySelectVersionsContainingTheArtifactWithIndex() throws Exception {
+        addVersions();
+        verifyVersionRanges(new FileArtifactRetriever(repo,
+                new LocalRepositoryIndex(repo, tempDir.resolve("repo.index"))));
+    }
+
+    private void addVersions() throws IOException {
+        addVersion("1.0", "a-1.0.pom", "a-1.0.jar");
+        addVersion("1.5", "a-1.5.pom", "a-1.5.jar", "a-1.5-sources.jar");
+        addVersion("2.0", "a-2.0.pom");
+    }
+
+    private static void verifyVersionRanges(FileArtifactRetriever retriever) throws Exception {
+        assertThat(retrieveVersion(retriever, new Artifact("com.g", "a", "[1.0,)", "jar"))).isEqualTo("1.5");
+        assertThat(retrieveVersion(retriever, new Artifact("com.g", "a", "[1.0,)", "pom"))).isEqualTo("2.0");
+        assertThat(retrieveVersion(retriever, new Artifact("com.g", "a", "[1.0,)", "jar", "sources")))
+                .isEqualTo("1.5");
+        assertThat(retrieveVersion(retriever, new Artifact("com.g", "a", "[1.0,1.5)", "jar"))).isEqualTo("1.0");
+
+        var unsatisfiable = retriever.retrieve(new Artifact("com.g", "a", "[1.6,)", "jar"))
+                .toCompletableFuture().get(5, TimeUnit.SECONDS);
+        boolean failed = unsatisfiable.value.map(ok -> false, err -> true);
+        assertThat(failed).isTrue();
+    }
+
+    private static String retrieveVersion(FileArtifactRetriever retriever, Artifact artifact) throws Exception {
+        ArtifactResolution<FileRetrievalError> resolution = retriever.retrieve(artifact)
+                .toCompletableFuture().get(5, TimeUnit.SECONDS);
+        return resolution.value.map(resolved -> resolved.artifact, err -> {
+            throw new AssertionError("unexpected error", err.reason);
+        }).version;
+    }
+
+    private void addVersion(String version, String... files) throws IOException {
+        var dir = Files.createDirectories(repo.resolve("com/g/a").resolve(version));
+        for (var file : files) {
+            Files.writeString(dir.resolve(file), file);
+        }
+    }
+}
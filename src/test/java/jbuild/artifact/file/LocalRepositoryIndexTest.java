@@ -0,0 +1,152 @@
+package jbuild.artifact.file;
+
+import jbuild.artifact.Artifact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalRepositoryIndexTest {
+
+    private Path tempDir;
+    private Path repo;
+    private Path indexFile;
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDir = Files.createTempDirectory(LocalRepositoryIndexTest.class.getName());
+        repo = Files.createDirectories(tempDir.resolve("repo"));
+        indexFile = tempDir.resolve("index").resolve("repo.index");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void canIndexVersionsAndFiles() throws Exception {
+        addVersion("1.0", "a-1.0.pom", "a-1.0.jar");
+        addVersion("1.10", "a-1.10.pom");
+        addVersion("1.2", "a-1.2.pom", "a-1.2.jar", "a-1.2-sources.jar");
+        makeOld(repo.resolve("com/g/a"));
+
+        var jar = new Artifact("com.g", "a", "1.2", "jar");
+        var index = new LocalRepositoryIndex(repo, indexFile);
+
+        assertThat(index.versionsOf(jar)).containsExactly("1.0", "1.2", "1.10");
+        assertThat(index.versionsContaining(jar)).containsExactly("1.0", "1.2");
+        assertThat(index.versionsContaining(jar.pom())).containsExactly("1.0", "1.2", "1.10");
+        assertThat(index.versionsContaining(jar.withClassifier("sources"))).containsExactly("1.2");
+        assertThat(index.filesOf(jar)).containsExactlyInAnyOrder("a-1.2.pom", "a-1.2.jar", "a-1.2-sources.jar");
+        assertThat(index.versionsOf(new Artifact("com.g", "missing", "1.0"))).isEmpty();
+
+        assertThat(index.save()).isTrue();
+        assertThat(index.save()).isFalse();
+
+        var restored = new LocalRepositoryIndex(repo, indexFile);
+        assertThat(restored.versionsOf(jar)).containsExactly("1.0", "1.2", "1.10");
+        assertThat(restored.versionsContaining(jar)).containsExactly("1.0", "1.2");
+        assertThat(restored.save()).isFalse();
+    }
+
+    @Test
+    void entriesAreUpdatedWhenRepositoryChanges() throws Exception {
+        addVersion("1.0", "a-1.0.pom", "a-1.0.jar");
+        addVersion("2.0", "a-2.0.pom");
+        makeOld(repo.resolve("com/g/a"));
+
+        var jar = new Artifact("com.g", "a", "1.0", "jar");
+        var index = new LocalRepositoryIndex(repo, indexFile);
+        assertThat(index.versionsContaining(jar)).containsExactly("1.0");
+        index.save();
+
+        Files.writeString(repo.resolve("com/g/a/2.0/a-2.0.jar"), "jar");
+        Files.createDirectories(repo.resolve("com/g/a/3.0"));
+
+        var updated = new LocalRepositoryIndex(repo, indexFile);
+        assertThat(updated.versionsOf(jar)).containsExactly("1.0", "2.0", "3.0");
+        assertThat(updated.versionsContaining(jar)).containsExactly("1.0", "2.0");
+        assertThat(updated.save()).isTrue();
+    }
+
+    @Test
+    void invalidIndexFileIsIgnored() throws Exception {
+        addVersion("1.0", "a-1.0.pom");
+        Files.createDirectories(indexFile.getParent());
+        Files.writeString(indexFile, "not an index");
+
+        var index = new LocalRepositoryIndex(repo, indexFile);
+
+        assertThat(index.versionsOf(new Artifact("com.g", "a", ""))).containsExactly("1.0");
+        assertThat(index.save()).isTrue();
+    }
+
+    @Test
+    void indexFileWithCorruptedCountsIsIgnored() throws Exception {
+        addVersion("1.0", "a-1.0.pom");
+        makeOld(repo.resolve("com/g/a"));
+        Files.createDirectories(indexFile.getParent());
+
+        // entries, versions and files counts which could not possibly fit in the file
+        var corruptedCounts = new int[][]{
+                {Integer.MAX_VALUE, 1, 1}, {1, Integer.MAX_VALUE, 1}, {1, 1, Integer.MAX_VALUE}, {1, -1, 1}};
+        for (var counts : corruptedCounts) {
+            var bytes = new ByteArrayOutputStream();
+            try (var out = new DataOutputStream(bytes)) {
+                out.writeInt(0x4A42_5249);
+                out.writeInt(1);
+                out.writeInt(counts[0]);
+                writeString(out, "com.g");
+                writeString(out, "a");
+                out.writeLong(0L);
+                out.writeLong(0L);
+                out.writeInt(counts[1]);
+                writeString(out, "1.0");
+                out.writeBoolean(true);
+                out.writeLong(0L);
+                out.writeLong(0L);
+                out.writeInt(counts[2]);
+                writeString(out, "a-1.0.pom");
+            }
+            Files.write(indexFile, bytes.toByteArray());
+
+            var index = new LocalRepositoryIndex(repo, indexFile);
+
+            assertThat(index.versionsContaining(new Artifact("com.g", "a", "", "pom"))).containsExactly("1.0");
+            assertThat(index.save()).isTrue();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void addVersion(String version, String... files) throws IOException {
+        var dir = Files.createDirectories(repo.resolve("com/g/a").resolve(version));
+        for (var file : files) {
+            Files.writeString(dir.resolve(file), file);
+        }
+        makeOld(dir);
+    }
+
+    // directories modified too recently are never trusted by the index
+    private static void makeOld(Path dir) {
+        assertThat(dir.toFile().setLastModified(System.currentTimeMillis() - 60_000L)).isTrue();
+    }
+}
@@ -0,0 +1,240 @@
+package jbuild.artifact.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jbuild.artifact.Artifact;
+import jbuild.artifact.ResolvedArtifact;
+import jbuild.log.JBuildLog;
+import jbuild.util.ChecksumAlgorithm;
+import jbuild.util.RetryPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HttpArtifactRetrieverTest {
+
+    private static final String ETAG = "\"abc123\"";
+
+    private HttpServer server;
+    private Path tempDir;
+    private final List<String> rangeHeaders = new CopyOnWriteArrayList<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDir = Files.createTempDirectory(HttpArtifactRetrieverTest.class.getName());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        server.stop(0);
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void canResumeInterruptedDownloadOfLargeArtifact() throws Exception {
+        var contents = new byte[64 * 1024];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = (byte) i;
+        }
+        var half = contents.length / 2;
+
+        server.createContext("/g/a/1.0/a-1.0.jar", exchange -> {
+            requestCount.incrementAndGet();
+            var range = exchange.getRequestHeaders().getFirst("Range");
+            rangeHeaders.add(range == null ? "" : range);
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            if (range == null) {
+                // send only half of the body, then break the connection
+                exchange.sendResponseHeaders(200, contents.length);
+                exchange.getResponseBody().write(contents, 0, half);
+                exchange.getResponseBody().flush();
+                closeBrokenExchange(exchange);
+            } else {
+                var start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+                exchange.getResponseHeaders().add("Content-Range",
+                        "bytes " + start + "-" + (contents.length - 1) + "/" + contents.length);
+                exchange.sendResponseHeaders(206, contents.length - start);
+                exchange.getResponseBody().write(contents, start, contents.length - start);
+                exchange.close();
+            }
+        });
+
+        var resolved = retrieve(new Artifact("g", "a", "1.0"));
+
+        assertThat(requestCount.get()).isEqualTo(2);
+        assertThat(rangeHeaders).containsExactly("", "bytes=" + half + "-");
+        assertThat(resolved.getFile()).isPresent();
+
+        var target = tempDir.resolve("a-1.0.jar");
+        resolved.writeTo(target, true);
+
+        assertThat(Files.readAllBytes(target)).isEqualTo(contents);
+
+        // the downloaded file is deleted once consumed, and nothing is left in the partial downloads dir
+        try (var files = Files.list(tempDir.resolve("partial"))) {
+            assertThat(files.filter(f -> !f.getFileName().toString().endsWith(".lock"))).isEmpty();
+        }
+
+        // the checksum must still be available after the contents have been consumed
+        assertThat(resolved.getChecksum(ChecksumAlgorithm.SHA1))
+                .isEqualTo(ChecksumAlgorithm.SHA1.digest(contents));
+    }
+
+    @Test
+    void smallArtifactsAreKeptInMemory() throws Exception {
+        var contents = "small jar".getBytes();
+        server.createContext("/g/a/1.0/a-1.0.jar", exchange -> {
+            requestCount.incrementAndGet();
+            exchange.sendResponseHeaders(200, contents.length);
+            exchange.getResponseBody().write(contents);
+            exchange.close();
+        });
+
+        var resolved = retrieve(new Artifact("g", "a", "1.0"));
+
+        assertThat(requestCount.get()).isEqualTo(1);
+        assertThat(resolved.getFile()).isEmpty();
+        assertThat(resolved.consumeContentsToArray()).isEqualTo(contents);
+    }
+
+    @Test
+    void restartsDownloadIfServerIgnoresRange() throws Exception {
+        var contents = new byte[32 * 1024];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = (byte) (i * 7);
+        }
+
+        server.createContext("/g/a/1.0/a-1.0.jar", exchange -> {
+            var request = requestCount.incrementAndGet();
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            exchange.sendResponseHeaders(200, contents.length);
+            if (request == 1) {
+                exchange.getResponseBody().write(contents, 0, 1000);
+                exchange.getResponseBody().flush();
+                closeBrokenExchange(exchange);
+            } else {
+                exchange.getResponseBody().write(contents);
+                exchange.close();
+            }
+        });
+
+        var resolved = retrieve(new Artifact("g", "a", "1.0"));
+
+        assertThat(requestCount.get()).isEqualTo(2);
+        assertThat(resolved.consumeContentsToArray()).isEqualTo(contents);
+    }
+
+    @Test
+    void stopsSendingRequestsToFailingRepository() throws Exception {
+        server.createContext("/", exchange -> {
+            requestCount.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+
+        var retriever = createRetriever();
+
+        for (int i = 0; i < 5; i++) {
+            var resolution = retriever.retrieve(new Artifact("g", "a" + i, "1.0"))
+                    .toCompletableFuture().get();
+            boolean failed = resolution.value.map(ok -> false, err -> true);
+            assertThat(failed).isTrue();
+        }
+
+        // the circuit opens after 3 failures
+        assertThat(requestCount.get()).isEqualTo(3);
+    }
+
+    @Test
+    void retriedRequestsCountAsSingleFailureForCircuitBreaker() throws Exception {
+        var contents = "small jar".getBytes();
+        server.createContext("/", exchange -> {
+            var path = exchange.getRequestURI().getPath();
+            var request = requestCount.incrementAndGet();
+            exchange.sendResponseHeaders(200, contents.length);
+            // a-1.0.jar fails on its first two attempts, b-1.0.jar always fails
+            if (path.endsWith("b-1.0.jar") || request <= 2) {
+                exchange.getResponseBody().write(contents, 0, 2);
+                exchange.getResponseBody().flush();
+                closeBrokenExchange(exchange);
+            } else {
+                exchange.getResponseBody().write(contents);
+                exchange.close();
+            }
+        });
+
+        // the circuit would open after 2 failures, but each request is retried twice
+        var health = new RepositoryHealth(2, Duration.ofMinutes(1), Duration.ofSeconds(10));
+        var retriever = createRetriever(health);
+
+        var resolution = retriever.retrieve(new Artifact("g", "a", "1.0")).toCompletableFuture().get();
+
+        assertThat(requestCount.get()).isEqualTo(3);
+        var resolved = resolution.value.map(ok -> ok, err -> {
+            throw new AssertionError(err.getDescription());
+        });
+        assertThat(resolved.consumeContentsToArray()).isEqualTo(contents);
+        assertThat(health.isOpen()).isFalse();
+
+        // a request that fails on all attempts only counts as one failure
+        var failedResolution = retriever.retrieve(new Artifact("g", "b", "1.0")).toCompletableFuture().get();
+
+        boolean failed = failedResolution.value.map(ok -> false, err -> true);
+        assertThat(failed).isTrue();
+        assertThat(requestCount.get()).isEqualTo(6);
+        assertThat(health.isOpen()).isFalse();
+    }
+
+    private HttpArtifactRetriever createRetriever() {
+        return createRetriever(new RepositoryHealth(3, Duration.ofMinutes(1), Duration.ofSeconds(10)));
+    }
+
+    private HttpArtifactRetriever createRetriever(RepositoryHealth health) {
+        return new HttpArtifactRetriever(new JBuildLog(System.out, false),
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/"),
+                DefaultHttpClient.get(),
+                EnumSet.of(ChecksumAlgorithm.SHA1),
+                new RetryPolicy(2, Duration.ofMillis(10), Duration.ofMillis(20)),
+                new PartialDownloads(tempDir.resolve("partial"), 16 * 1024),
+                health,
+                true);
+    }
+
+    private ResolvedArtifact retrieve(Artifact artifact) throws Exception {
+        var retriever = createRetriever();
+        var resolution = retriever.retrieve(artifact).toCompletableFuture().get();
+        return resolution.value.map(ok -> ok, err -> {
+            throw new AssertionError(err.getDescription());
+        });
+    }
+
+    private static void closeBrokenExchange(HttpExchange exchange) {
+        try {
+            // closing the exchange before the whole body is sent breaks the connection
+            exchange.close();
+        } catch (Exception e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package jbuild.artifact.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RepositoryHealthTest {
+
+    @Test
+    void circuitOpensAfterConsecutiveFailures() {
+        var health = new RepositoryHealth(3, Duration.ofMinutes(1), Duration.ofSeconds(30));
+
+        assertThat(health.allowRequest()).isTrue();
+        assertThat(health.recordFailure()).isFalse();
+        assertThat(health.recordFailure()).isFalse();
+        health.recordSuccess();
+
+        // a success resets the failure count
+        assertThat(health.recordFailure()).isFalse();
+        assertThat(health.recordFailure()).isFalse();
+        assertThat(health.allowRequest()).isTrue();
+        assertThat(health.recordFailure()).isTrue();
+
+        assertThat(health.isOpen()).isTrue();
+        assertThat(health.allowRequest()).isFalse();
+    }
+
+    @Test
+    void singleProbeIsAllowedAfterCoolDown() throws InterruptedException {
+        var health = new RepositoryHealth(1, Duration.ofMillis(20), Duration.ofSeconds(30));
+
+        assertThat(health.recordFailure()).isTrue();
+        assertThat(health.allowRequest()).isFalse();
+
+        Thread.sleep(40);
+
+        assertThat(health.allowRequest()).isTrue();
+        assertThat(health.allowRequest()).isFalse();
+
+        // failed probe re-opens the circuit
+        assertThat(health.recordFailure()).isTrue();
+        assertThat(health.allowRequest()).isFalse();
+
+        Thread.sleep(40);
+
+        assertThat(health.allowRequest()).isTrue();
+        health.recordSuccess();
+        assertThat(health.isOpen()).isFalse();
+        assertThat(health.allowRequest()).isTrue();
+        assertThat(health.allowRequest()).isTrue();
+    }
+
+    @Test
+    void requestTimeoutAdaptsToLatency() {
+        var health = new RepositoryHealth(3, Duration.ofMinutes(1), Duration.ofSeconds(30));
+
+        // not enough samples yet
+        health.recordLatency(Duration.ofMillis(100));
+        assertThat(health.requestTimeout()).isEqualTo(Duration.ofSeconds(30));
+
+        for (int i = 0; i < 20; i++) {
+            health.recordLatency(Duration.ofSeconds(1));
+        }
+        assertThat(health.requestTimeout()).isEqualTo(Duration.ofSeconds(4));
+
+        for (int i = 0; i < 100; i++) {
+            health.recordLatency(Duration.ofMillis(10));
+        }
+        assertThat(health.requestTimeout()).isEqualTo(Duration.ofSeconds(2));
+
+        for (int i = 0; i < 100; i++) {
+            health.recordLatency(Duration.ofSeconds(20));
+        }
+        assertThat(health.requestTimeout()).isEqualTo(Duration.ofSeconds(30));
+    }
+}
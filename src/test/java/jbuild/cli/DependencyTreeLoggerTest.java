@@ -0,0 +1,74 @@
+package jbuild.cli;
+
+import jbuild.artifact.Artifact;
+import jbuild.artifact.file.FileArtifactRetriever;
+import jbuild.commands.DepsCommandExecutor;
+import jbuild.commands.FetchCommandExecutor;
+import jbuild.commands.MavenPomRetriever;
+import jbuild.commands.MavenPomRetriever.DefaultPomCreator;
+import jbuild.log.JBuildLog;
+import jbuild.maven.DependencyExclusions;
+import jbuild.maven.Scope;
+import jbuild.util.NonEmptyCollection;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DependencyTreeLoggerTest {
+
+    private static final String repoDir = System.getProperty("tests.repo.dir");
+
+    @Test
+    void canLogTreeWithCircularDependencies() throws Exception {
+        assertThat(logTree(new Artifact("com.athaydes", "a", "1.0"))).isEqualTo(lines(
+                "Dependencies of com.athaydes:a:1.0 (incl. transitive):",
+                "  - scope compile",
+                "    * com.athaydes:b:1.0 [compile]",
+                "        * com.athaydes:a:1.0 [compile]",
+                "            * com.athaydes:b:1.0 [compile] (-)",
+                "  2 compile dependencies listed"));
+    }
+
+    @Test
+    void canLogTreeWithCircularDependenciesThroughSharedNodes() throws Exception {
+        assertThat(logTree(new Artifact("com.athaydes", "x", "1.0"))).isEqualTo(lines(
+                "Dependencies of com.athaydes:x:1.0 (incl. transitive):",
+                "  - scope compile",
+                "    * com.athaydes:y:1.0 [compile]",
+                "        * com.athaydes:z:1.0 [compile]",
+                "            * com.athaydes:y:1.0 [compile] (-)",
+                "    * com.athaydes:z:1.0 [compile] (-)",
+                "  2 compile dependencies listed"));
+    }
+
+    private static String logTree(Artifact artifact) throws Exception {
+        var log = new JBuildLog(new PrintStream(new ByteArrayOutputStream()), false);
+        var fetcher = new FetchCommandExecutor<>(log,
+                NonEmptyCollection.of(new FileArtifactRetriever(Path.of(repoDir))));
+        var depsExecutor = new DepsCommandExecutor<>(log,
+                new MavenPomRetriever<>(log, fetcher, DefaultPomCreator.INSTANCE));
+
+        var tree = depsExecutor.fetchDependencyTree(Set.of(artifact), EnumSet.of(Scope.COMPILE), true, false)
+                .get(artifact.pom())
+                .toCompletableFuture().get(5, TimeUnit.SECONDS)
+                .orElseThrow();
+
+        var bytesOut = new ByteArrayOutputStream();
+        var options = new DepsOptions(Set.of(artifact.getCoordinates()), EnumSet.of(Scope.COMPILE),
+                DependencyExclusions.EMPTY, "", true, false, false, false);
+        new DependencyTreeLogger(new JBuildLog(new PrintStream(bytesOut), false), options).logTree(tree);
+        return bytesOut.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String lines(String... lines) {
+        return String.join(System.lineSeparator(), lines) + System.lineSeparator();
+    }
+}
@@ -54,6 +54,29 @@ public class OptionsTest {
                 "abc", List.of("def", "ghi", "jkl"), List.of("mno", "-p"), false, false, false);
     }
 
+    @Test
+    void canParseOfflineOption() {
+        assertThat(Options.parse(new String[]{"-o", "fetch"}).offline).isTrue();
+        assertThat(Options.parse(new String[]{"--offline", "fetch"}).offline).isTrue();
+        assertThat(Options.parse(new String[]{"fetch"}).offline).isFalse();
+    }
+
+    @Test
+    void canParseStatsOption() {
+        assertThat(Options.parse(new String[]{"--stats", "fetch"}).stats).isTrue();
+        assertThat(Options.parse(new String[]{"fetch", "--stats"}).stats).isFalse();
+        assertThat(Options.parse(new String[]{"fetch"}).stats).isFalse();
+    }
+
+    @Test
+    void canParseServeRepoHostOption() {
+        assertThat(ServeRepoOptions.parse(List.of(), false).host).isNull();
+        assertThat(ServeRepoOptions.parse(List.of("-H", "0.0.0.0"), false).host).isEqualTo("0.0.0.0");
+        assertThat(ServeRepoOptions.parse(List.of("--host", "example.org", "-p", "9000"), false))
+                .extracting(o -> o.host, o -> o.port)
+                .containsExactly("example.org", 9000);
+    }
+
     @Test
     void mustNotRecognizeUnknownOption() {
         assertThatThrownBy(() -> Options.parse(new String[]{"-f"}))
@@ -144,6 +167,18 @@ public class OptionsTest {
 
     }
 
+    @Test
+    void parseInstallOptionsLockFile() {
+        assertThat(InstallOptions.parse(
+                Options.parse(new String[]{"install"}).commandArgs, false).lockFile).isNull();
+        assertThat(InstallOptions.parse(
+                Options.parse(new String[]{"install", "-L", "jbuild.lock"}).commandArgs, false).lockFile)
+                .isEqualTo("jbuild.lock");
+        assertThat(InstallOptions.parse(
+                Options.parse(new String[]{"install", "--lock-file", "a/b.lock", "g:a:1"}).commandArgs, false).lockFile)
+                .isEqualTo("a/b.lock");
+    }
+
     @Test
     void installOptionsOutDirAndRepoDirAreMutuallyExclusive() {
         assertThatThrownBy(() -> InstallOptions.parse(
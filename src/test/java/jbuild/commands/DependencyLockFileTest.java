@@ -0,0 +1,121 @@
+package jbuild.commands;
+
+import jbuild.api.JBuildException;
+import jbuild.artifact.Artifact;
+import jbuild.artifact.file.ArtifactFileWriter;
+import jbuild.artifact.file.FileArtifactRetriever;
+import jbuild.log.JBuildLog;
+import jbuild.maven.DependencyExclusions;
+import jbuild.maven.Scope;
+import jbuild.util.NonEmptyCollection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DependencyLockFileTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDir = Files.createTempDirectory(DependencyLockFileTest.class.getName());
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void canWriteAndReadLockFile() throws Exception {
+        var lockFile = new DependencyLockFile("artifacts=[g:a:1.0:jar:]", List.of(
+                new DependencyLockFile.Entry(new Artifact("g", "b", "2.0", "jar", "tests"),
+                        DependencyLockFile.CHECKSUM_ALGORITHM.digest("b".getBytes(UTF_8)),
+                        "file-repository[/some dir/repo]"),
+                new DependencyLockFile.Entry(new Artifact("g", "a", "1.0"),
+                        DependencyLockFile.CHECKSUM_ALGORITHM.digest("a".getBytes(UTF_8)),
+                        "http-repository[https://repo.maven.apache.org/maven2/]")));
+
+        var file = tempDir.resolve("sub/jbuild.lock");
+        lockFile.write(file);
+
+        assertThat(DependencyLockFile.read(file)).hasValue(lockFile);
+        assertThat(lockFile.entries.get(0).artifact).isEqualTo(new Artifact("g", "a", "1.0"));
+    }
+
+    @Test
+    void missingLockFileIsEmpty() {
+        assertThat(DependencyLockFile.read(tempDir.resolve("jbuild.lock"))).isEmpty();
+    }
+
+    @Test
+    void invalidLockFileIsRejected() throws IOException {
+        var file = Files.write(tempDir.resolve("jbuild.lock"),
+                List.of("request foo", "g:a:1.0:jar: sha256:1234 repo"), UTF_8);
+
+        assertThatThrownBy(() -> DependencyLockFile.read(file))
+                .isInstanceOf(JBuildException.class)
+                .hasMessage("Invalid lock file " + file + " at line 2: Not a SHA256 string");
+    }
+
+    @Test
+    void installsFromLockFileVerifyingChecksums() throws Exception {
+        var repo = tempDir.resolve("repo");
+        var jar = repo.resolve("g/a/1.0/a-1.0.jar");
+        Files.createDirectories(jar.getParent());
+        Files.write(jar, "jar contents".getBytes(UTF_8));
+
+        var lockFile = tempDir.resolve("jbuild.lock");
+        var artifacts = Set.of(new Artifact("g", "a", "1.0"));
+
+        // first installation resolves the artifacts and creates the lock file
+        var result = install(repo, artifacts, lockFile);
+        assertThat(result).isEqualTo(1L);
+        var lock = DependencyLockFile.read(lockFile).orElseThrow();
+        assertThat(lock.entries).hasSize(1);
+        assertThat(lock.entries.get(0).artifact).isEqualTo(new Artifact("g", "a", "1.0"));
+        assertThat(lock.entries.get(0).repository).isEqualTo(new FileArtifactRetriever(repo).getDescription());
+
+        // second installation uses the lock file
+        assertThat(install(repo, artifacts, lockFile)).isEqualTo(1L);
+
+        // if the artifact changes, the installation fails
+        Files.write(jar, "modified contents".getBytes(UTF_8));
+        assertThat(install(repo, artifacts, lockFile)).isEqualTo(-1L);
+        assertThat(DependencyLockFile.read(lockFile)).hasValue(lock);
+    }
+
+    private long install(Path repo, Set<Artifact> artifacts, Path lockFile) throws Exception {
+        var writer = new ArtifactFileWriter(tempDir.resolve("out").toFile(), ArtifactFileWriter.WriteMode.FLAT_DIR);
+        var log = new JBuildLog(new PrintStream(new ByteArrayOutputStream()), false);
+        try {
+            var command = new InstallCommandExecutor(log,
+                    new FetchCommandExecutor<>(log, NonEmptyCollection.of(new FileArtifactRetriever(repo))),
+                    writer);
+            return command.installDependencyTree(artifacts, EnumSet.of(Scope.RUNTIME), false, false,
+                            DependencyExclusions.EMPTY, null, lockFile)
+                    .toCompletableFuture().get()
+                    .map(count -> count, errors -> -1L);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -5,7 +5,10 @@ import jbuild.artifact.file.FileArtifactRetriever;
 import jbuild.commands.MavenPomRetriever.DefaultPomCreator;
 import jbuild.errors.FileRetrievalError;
 import jbuild.log.JBuildLog;
+import jbuild.maven.DependencyExclusions;
 import jbuild.maven.DependencyTree;
+import jbuild.maven.MavenPom;
+import jbuild.maven.MavenUtils;
 import jbuild.maven.Scope;
 import jbuild.util.Either;
 import jbuild.util.NoOp;
@@ -13,6 +16,7 @@ import jbuild.util.NonEmptyCollection;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
@@ -20,9 +24,13 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -78,6 +86,190 @@ public class DepsCommandExecutorTest {
                         "com.athaydes:b:1.0 -> com.athaydes:a:1.0 -> com.athaydes:b:1.0" + System.lineSeparator());
     }
 
+    @Test
+    void sharesNodesOfDependenciesReachedThroughMultiplePaths() throws Exception {
+        var depsExecutor = createDepsCommand(new ByteArrayOutputStream());
+
+        var result = depsExecutor.fetchDependencyTree(
+                Set.of(new Artifact("com.athaydes", "c", "1.0")),
+                EnumSet.of(Scope.COMPILE), true, false);
+
+        var map = unwrap(awaitValues(result).toCompletableFuture().get(5, TimeUnit.SECONDS))
+                .map(ok -> ok, Assertions::fail);
+
+        var tree = map.get(new Artifact("com.athaydes", "c", "1.0", "pom"));
+        assert tree != null;
+
+        assertThat(tree.dependencies).hasSize(2);
+        var d = tree.dependencies.stream()
+                .filter(dep -> dep.root.artifact.artifactId.equals("d"))
+                .findFirst().orElseThrow();
+        var e = tree.dependencies.stream()
+                .filter(dep -> dep.root.artifact.artifactId.equals("e"))
+                .findFirst().orElseThrow();
+
+        assertThat(d.dependencies).hasSize(1);
+        assertThat(d.dependencies.get(0)).isSameAs(e);
+        assertThat(tree.toSet()).hasSize(3);
+    }
+
+    @Test
+    void doesNotShareNodesReachedWithDifferentExclusions() throws Exception {
+        // f -> g (excluding h), f -> i -> g -> h
+        var tree = fetchTree(new Artifact("com.athaydes", "f", "1.0"), EnumSet.of(Scope.COMPILE));
+
+        var g = child(tree, "g");
+        var i = child(tree, "i");
+
+        assertThat(g.dependencies).isEmpty();
+        assertThat(i.dependencies).hasSize(1);
+        var gFromI = child(i, "g");
+        assertThat(gFromI).isNotSameAs(g);
+        assertThat(gFromI.dependencies).hasSize(1);
+        assertThat(child(gFromI, "h").dependencies).isEmpty();
+    }
+
+    @Test
+    void doesNotShareNodesReachedWithDifferentScopes() throws Exception {
+        // s -> t -> u, s -> u (runtime), u -> v (runtime)
+        var tree = fetchTree(new Artifact("com.athaydes", "s", "1.0"), EnumSet.of(Scope.RUNTIME));
+
+        var t = child(tree, "t");
+        var u = child(tree, "u");
+
+        // the runtime dependency of u is only included when u itself is a runtime dependency
+        assertThat(u.dependencies).hasSize(1);
+        assertThat(child(u, "v").dependencies).isEmpty();
+        var uFromT = child(t, "u");
+        assertThat(uFromT).isNotSameAs(u);
+        assertThat(uFromT.dependencies).isEmpty();
+    }
+
+    @Test
+    void canHandleCircularDependenciesThroughSharedNodes() throws Exception {
+        var bytesOut = new ByteArrayOutputStream();
+        var depsExecutor = createDepsCommand(bytesOut);
+
+        // x -> y -> z -> y, x -> z
+        var result = depsExecutor.fetchDependencyTree(
+                Set.of(new Artifact("com.athaydes", "x", "1.0")),
+                EnumSet.of(Scope.COMPILE), true, false);
+
+        var map = unwrap(awaitValues(result).toCompletableFuture().get(5, TimeUnit.SECONDS))
+                .map(ok -> ok, Assertions::fail);
+
+        var tree = map.get(new Artifact("com.athaydes", "x", "1.0", "pom"));
+        assert tree != null;
+
+        // z is shared by both paths, and its link back to y is cut as it would close the cycle
+        var y = child(tree, "y");
+        var z = child(tree, "z");
+        assertThat(child(y, "z")).isSameAs(z);
+        assertThat(z.dependencies).hasSize(1);
+        assertThat(child(z, "y")).isNotSameAs(y);
+        assertThat(child(z, "y").dependencies).isEmpty();
+
+        assertThat(bytesOut.toString(StandardCharsets.UTF_8))
+                .isEqualTo("WARNING: Detected circular dependency chain - " +
+                        "com.athaydes:z:1.0 -> com.athaydes:y:1.0 -> ..." + System.lineSeparator());
+    }
+
+    @Test
+    void canLinkToEarlierNodesAndStillDetectCyclesThroughThem() throws Exception {
+        var bytesOut = new ByteArrayOutputStream();
+        var depsExecutor = createDepsCommand(bytesOut);
+
+        // j -> k -> m -> l, j -> l -> k
+        var result = depsExecutor.fetchDependencyTree(
+                Set.of(new Artifact("com.athaydes", "j", "1.0")),
+                EnumSet.of(Scope.COMPILE), true, false);
+
+        var map = unwrap(awaitValues(result).toCompletableFuture().get(5, TimeUnit.SECONDS))
+                .map(ok -> ok, Assertions::fail);
+
+        var tree = map.get(new Artifact("com.athaydes", "j", "1.0", "pom"));
+        assert tree != null;
+
+        // l links to k, which was reached first, but then m cannot link to l as that would close a cycle
+        var k = child(tree, "k");
+        var l = child(tree, "l");
+        assertThat(child(l, "k")).isSameAs(k);
+        var m = child(k, "m");
+        assertThat(child(m, "l")).isNotSameAs(l);
+        assertThat(child(m, "l").dependencies).isEmpty();
+
+        assertThat(bytesOut.toString(StandardCharsets.UTF_8))
+                .isEqualTo("WARNING: Detected circular dependency chain - " +
+                        "com.athaydes:k:1.0 -> com.athaydes:m:1.0 -> com.athaydes:l:1.0 -> ..." +
+                        System.lineSeparator());
+    }
+
+    @Test
+    void notifiesPomListenerOfEachPomBeforeTreesComplete() throws Exception {
+        var depsExecutor = createDepsCommand(new ByteArrayOutputStream());
+        var notified = new ConcurrentLinkedQueue<String>();
+
+        // c -> d -> e, c -> e
+        var result = depsExecutor.fetchDependencyTree(
+                Set.of(new Artifact("com.athaydes", "c", "1.0")), null,
+                EnumSet.of(Scope.COMPILE), true, false, DependencyExclusions.EMPTY,
+                pom -> notified.add(pom.getArtifact().artifactId));
+
+        var notifiedBeforeCompletion = result.get(new Artifact("com.athaydes", "c", "1.0", "pom"))
+                .thenApply(tree -> List.copyOf(notified))
+                .toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        // each POM is notified once, level by level, even if reached through several paths
+        assertThat(notifiedBeforeCompletion).hasSize(3);
+        assertThat(notifiedBeforeCompletion.get(0)).isEqualTo("c");
+        assertThat(notifiedBeforeCompletion.subList(1, 3)).containsExactlyInAnyOrder("d", "e");
+        assertThat(notified).containsExactlyElementsOf(notifiedBeforeCompletion);
+    }
+
+    @Test
+    void notifiesPomListenerWhenPomIsRequestedAgainByUndisputedNode() throws Exception {
+        var notified = new ConcurrentLinkedQueue<String>();
+        var fetched = new ConcurrentLinkedQueue<Artifact>();
+        var requests = new DepsCommandExecutor.PomRequests(pom -> notified.add(pom.getArtifact().artifactId));
+        var pom = MavenUtils.parsePom(new ByteArrayInputStream(("<project><groupId>com.athaydes</groupId>" +
+                "<artifactId>a</artifactId><version>1.0</version></project>").getBytes(StandardCharsets.UTF_8)));
+        var pomFuture = new CompletableFuture<Optional<MavenPom>>();
+        Function<Artifact, CompletionStage<Optional<MavenPom>>> fetcher = artifact -> {
+            fetched.add(artifact);
+            return pomFuture;
+        };
+        var artifact = pom.getArtifact().pom();
+
+        // a node that could lose the mediation requests the POM first
+        var disputed = requests.fetch(artifact, false, fetcher);
+        var undisputed = requests.fetch(artifact, true, fetcher);
+        var again = requests.fetch(artifact, true, fetcher);
+
+        pomFuture.complete(Optional.of(pom));
+
+        assertThat(disputed.toCompletableFuture().get(5, TimeUnit.SECONDS)).contains(pom);
+        assertThat(undisputed.toCompletableFuture().get(5, TimeUnit.SECONDS)).contains(pom);
+        assertThat(again.toCompletableFuture().get(5, TimeUnit.SECONDS)).contains(pom);
+        assertThat(fetched).containsExactly(artifact);
+        assertThat(notified).containsExactly("a");
+    }
+
+    private static DependencyTree fetchTree(Artifact artifact, EnumSet<Scope> scopes) throws Exception {
+        var depsExecutor = createDepsCommand(new ByteArrayOutputStream());
+        var result = depsExecutor.fetchDependencyTree(Set.of(artifact), scopes, true, false);
+        var map = unwrap(awaitValues(result).toCompletableFuture().get(5, TimeUnit.SECONDS))
+                .map(ok -> ok, Assertions::fail);
+        var tree = map.get(artifact.pom());
+        assert tree != null;
+        return tree;
+    }
+
+    private static DependencyTree child(DependencyTree tree, String artifactId) {
+        return tree.dependencies.stream()
+                .filter(dep -> dep.root.artifact.artifactId.equals(artifactId))
+                .findFirst().orElseThrow();
+    }
+
     private static DepsCommandExecutor<FileRetrievalError> createDepsCommand(OutputStream bytesOut) {
         var out = new PrintStream(bytesOut);
         var log = new JBuildLog(out, false);
@@ -0,0 +1,221 @@
+package jbuild.commands;
+
+import jbuild.artifact.Artifact;
+import jbuild.artifact.ArtifactResolution;
+import jbuild.artifact.file.ArtifactFileWriter;
+import jbuild.artifact.file.FileArtifactRetriever;
+import jbuild.errors.FileRetrievalError;
+import jbuild.log.JBuildLog;
+import jbuild.maven.DependencyExclusions;
+import jbuild.maven.Scope;
+import jbuild.util.NonEmptyCollection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static jbuild.util.ChecksumAlgorithm.SHA1;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InstallCommandExecutorTest {
+
+    private Path tempDir;
+    private Path repo;
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDir = Files.createTempDirectory(InstallCommandExecutorTest.class.getName());
+        repo = tempDir.resolve("repo");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void installsOnlyMediatedVersionsOfDependencyTree() throws Exception {
+        addArtifact("app", "1.0", "jar", dependency("lib", "1.0"), dependency("util", "1.0"));
+        addArtifact("lib", "1.0", "jar", dependency("common", "2.0"));
+        addArtifact("util", "1.0", "jar", dependency("helper", "1.0"));
+        addArtifact("helper", "1.0", "jar", dependency("common", "1.0"));
+        addArtifact("common", "1.0", "jar");
+        addArtifact("common", "2.0", "jar");
+
+        var out = tempDir.resolve("out");
+        var writer = new ArtifactFileWriter(out.toFile(), ArtifactFileWriter.WriteMode.FLAT_DIR);
+        var log = new JBuildLog(new PrintStream(new ByteArrayOutputStream()), false);
+        long count;
+        try {
+            var command = new InstallCommandExecutor(log,
+                    new FetchCommandExecutor<>(log, NonEmptyCollection.of(new FileArtifactRetriever(repo, null))),
+                    writer);
+            count = command.installDependencyTree(Set.of(new Artifact("g", "app", "1.0")),
+                            EnumSet.of(Scope.RUNTIME), false, true, DependencyExclusions.EMPTY, true)
+                    .toCompletableFuture().get()
+                    .map(ok -> ok, errors -> -1L);
+        } finally {
+            writer.close();
+        }
+
+        assertThat(count).isEqualTo(5L);
+        // POM checksums are written while resolving the tree, only jars are installed after version mediation
+        try (Stream<Path> files = Files.list(out)) {
+            assertThat(files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.contains(".jar"))
+                    .collect(Collectors.toSet()))
+                    .containsExactlyInAnyOrder(
+                            "app-1.0.jar", "app-1.0.jar.sha1",
+                            "lib-1.0.jar", "lib-1.0.jar.sha1",
+                            "util-1.0.jar", "util-1.0.jar.sha1",
+                            "helper-1.0.jar", "helper-1.0.jar.sha1",
+                            "common-2.0.jar", "common-2.0.jar.sha1");
+        }
+    }
+
+    @Test
+    void doesNotDownloadVersionsThatLoseMediation() throws Exception {
+        addArtifact("app", "1.0", "jar", dependency("lib", "1.0"), dependency("util", "1.0"));
+        addArtifact("lib", "1.0", "jar", dependency("common", "2.0"));
+        addArtifact("util", "1.0", "jar", dependency("helper", "1.0"));
+        addArtifact("helper", "1.0", "jar", dependency("common", "1.0"));
+        addArtifact("common", "1.0", "jar");
+        addArtifact("common", "2.0", "jar");
+
+        var retriever = new RecordingRetriever(repo);
+        var out = tempDir.resolve("out");
+        var writer = new ArtifactFileWriter(out.toFile(), ArtifactFileWriter.WriteMode.FLAT_DIR);
+        var log = new JBuildLog(new PrintStream(new ByteArrayOutputStream()), false);
+        long count;
+        try {
+            var command = new InstallCommandExecutor(log,
+                    new FetchCommandExecutor<>(log, NonEmptyCollection.of(retriever)),
+                    writer);
+            count = command.installDependencyTree(Set.of(new Artifact("g", "app", "1.0")),
+                            EnumSet.of(Scope.RUNTIME), false, true, DependencyExclusions.EMPTY, true)
+                    .toCompletableFuture().get()
+                    .map(ok -> ok, errors -> -1L);
+        } finally {
+            writer.close();
+        }
+
+        assertThat(count).isEqualTo(5L);
+
+        // the POM of the losing version is needed to resolve the tree, but nothing else of it is downloaded
+        assertThat(retriever.requested).contains("g:common:1.0:pom")
+                .doesNotContain("g:common:1.0:jar", "g:common:1.0:jar.sha1");
+
+        // the winning versions are downloaded exactly once
+        assertThat(retriever.requested.stream().filter(a -> a.equals("g:common:2.0:jar"))).hasSize(1);
+        assertThat(retriever.requested.stream().filter(a -> a.equals("g:helper:1.0:jar"))).hasSize(1);
+    }
+
+    @Test
+    void installsManagedVersionsWithTheirOwnPackagingAndDependencies() throws Exception {
+        addArtifactManaging(dependency("common", "2.0"), "app", "1.0", "jar", dependency("lib", "1.0"));
+        addArtifact("lib", "1.0", "jar", dependency("common", "1.0"));
+        addArtifact("common", "1.0", "jar", dependency("old-helper", "1.0"));
+        addArtifact("common", "2.0", "aar", dependency("helper", "1.0"));
+        addArtifact("old-helper", "1.0", "jar");
+        addArtifact("helper", "1.0", "jar");
+
+        var out = tempDir.resolve("out");
+        var writer = new ArtifactFileWriter(out.toFile(), ArtifactFileWriter.WriteMode.FLAT_DIR);
+        var log = new JBuildLog(new PrintStream(new ByteArrayOutputStream()), false);
+        long count;
+        try {
+            var command = new InstallCommandExecutor(log,
+                    new FetchCommandExecutor<>(log, NonEmptyCollection.of(new FileArtifactRetriever(repo, null))),
+                    writer);
+            count = command.installDependencyTree(Set.of(new Artifact("g", "app", "1.0")),
+                            EnumSet.of(Scope.RUNTIME), false, true, DependencyExclusions.EMPTY, true)
+                    .toCompletableFuture().get()
+                    .map(ok -> ok, errors -> -1L);
+        } finally {
+            writer.close();
+        }
+
+        // the managed version is installed with the extension of its own packaging, and with its own dependencies
+        assertThat(count).isEqualTo(4L);
+        try (Stream<Path> files = Files.list(out)) {
+            assertThat(files.map(file -> file.getFileName().toString())
+                    .filter(name -> !name.contains(".pom"))
+                    .collect(Collectors.toSet()))
+                    .containsExactlyInAnyOrder(
+                            "app-1.0.jar", "app-1.0.jar.sha1",
+                            "lib-1.0.jar", "lib-1.0.jar.sha1",
+                            "common-2.0.aar", "common-2.0.aar.sha1",
+                            "helper-1.0.jar", "helper-1.0.jar.sha1");
+        }
+    }
+
+    private void addArtifact(String artifactId, String version, String packaging, String... dependencies)
+            throws IOException {
+        addArtifactManaging("", artifactId, version, packaging, dependencies);
+    }
+
+    private void addArtifactManaging(String management, String artifactId, String version, String packaging,
+                                     String... dependencies) throws IOException {
+        var dir = Files.createDirectories(repo.resolve("g").resolve(artifactId).resolve(version));
+        var pom = "<project>" +
+                "<modelVersion>4.0.0</modelVersion>" +
+                "<groupId>g</groupId>" +
+                "<artifactId>" + artifactId + "</artifactId>" +
+                "<version>" + version + "</version>" +
+                "<packaging>" + packaging + "</packaging>" +
+                (management.isEmpty() ? "" : "<dependencyManagement><dependencies>" + management +
+                        "</dependencies></dependencyManagement>") +
+                "<dependencies>" + String.join("", dependencies) + "</dependencies>" +
+                "</project>";
+        writeWithChecksum(dir.resolve(artifactId + "-" + version + ".pom"), pom);
+        if (!packaging.equals("pom")) {
+            writeWithChecksum(dir.resolve(artifactId + "-" + version + "." + packaging), artifactId + " " + version);
+        }
+    }
+
+    private static void writeWithChecksum(Path file, String contents) throws IOException {
+        var bytes = contents.getBytes(UTF_8);
+        Files.write(file, bytes);
+        Files.writeString(file.resolveSibling(file.getFileName() + ".sha1"), SHA1.toHexString(SHA1.digest(bytes)));
+    }
+
+    private static final class RecordingRetriever extends FileArtifactRetriever {
+
+        final Queue<String> requested = new ConcurrentLinkedQueue<>();
+
+        RecordingRetriever(Path rootDir) {
+            super(rootDir, null);
+        }
+
+        @Override
+        public CompletionStage<ArtifactResolution<FileRetrievalError>> retrieve(Artifact artifact) {
+            requested.add(artifact.getCoordinates() + ':' + artifact.extension);
+            return super.retrieve(artifact);
+        }
+    }
+
+    private static String dependency(String artifactId, String version) {
+        return "<dependency>" +
+                "<groupId>g</groupId>" +
+                "<artifactId>" + artifactId + "</artifactId>" +
+                "<version>" + version + "</version>" +
+                "</dependency>";
+    }
+}
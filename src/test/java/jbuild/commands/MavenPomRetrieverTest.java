@@ -0,0 +1,186 @@
+package jbuild.commands;
+
+import jbuild.artifact.Artifact;
+import jbuild.artifact.ArtifactResolution;
+import jbuild.artifact.file.FileArtifactRetriever;
+import jbuild.errors.FileRetrievalError;
+import jbuild.log.JBuildLog;
+import jbuild.maven.EffectivePomCache;
+import jbuild.maven.MavenPom;
+import jbuild.util.NonEmptyCollection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static jbuild.util.ChecksumAlgorithm.SHA1;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MavenPomRetrieverTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDir = Files.createTempDirectory(MavenPomRetrieverTest.class.getName());
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void prefetchesParentAndImportedPomsOnlyOnce() throws Exception {
+        addPom("app", "<parent>" + coordinates("parent") + "</parent>" +
+                "<artifactId>app</artifactId>" +
+                "<dependencyManagement><dependencies><dependency>" + coordinates("bom") +
+                "<type>pom</type><scope>import</scope>" +
+                "</dependency></dependencies></dependencyManagement>" +
+                "<dependencies><dependency><groupId>g</groupId><artifactId>lib</artifactId></dependency></dependencies>");
+        addPom("parent", coordinates("parent") + "<packaging>pom</packaging>");
+        addPom("bom", coordinates("bom") + "<packaging>pom</packaging>" +
+                "<dependencyManagement><dependencies><dependency>" +
+                "<groupId>g</groupId><artifactId>lib</artifactId><version>2.0</version>" +
+                "</dependency></dependencies></dependencyManagement>");
+
+        // hold back the checksum of the app POM so that it cannot be parsed until the retriever is released
+        var retriever = new RemoteRetriever(tempDir, new Artifact("g", "app", "1.0", "pom.sha1"));
+        var log = new JBuildLog(new PrintStream(new ByteArrayOutputStream()), false);
+        var pomRetriever = new MavenPomRetriever<>(log,
+                new FetchCommandExecutor<>(log, NonEmptyCollection.of(retriever)),
+                MavenPomRetriever.DefaultPomCreator.INSTANCE, SHA1);
+
+        var pomCompletion = pomRetriever.fetchPom(new Artifact("g", "app", "1.0"));
+
+        // the parent and imported POMs are requested as soon as the app POM arrives
+        var deadline = System.currentTimeMillis() + 5_000L;
+        while (retriever.requestedPoms().size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertThat(pomCompletion.toCompletableFuture().isDone()).isFalse();
+        assertThat(retriever.requestedPoms()).hasSize(3);
+        assertThat(retriever.requestedPoms().get(0)).isEqualTo("g:app:1.0");
+        assertThat(retriever.requestedPoms().subList(1, 3)).containsExactlyInAnyOrder("g:parent:1.0", "g:bom:1.0");
+
+        retriever.release();
+
+        var pom = pomCompletion.toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertThat(pom.map(MavenPom::getDependencies).orElseThrow())
+                .extracting(dependency -> dependency.artifact.getCoordinates())
+                .containsExactly("g:lib:2.0");
+
+        // prefetched POMs are not requested again when the app POM is parsed
+        assertThat(retriever.requestedPoms())
+                .containsExactlyInAnyOrder("g:app:1.0", "g:parent:1.0", "g:bom:1.0");
+    }
+
+    @Test
+    void trustedEffectivePomsAreOnlyUsedForRemoteRepositories() throws Exception {
+        var cache = new EffectivePomCache(tempDir.resolve("effective-poms"), true);
+        var app = new Artifact("g", "app", "1.0");
+        addPom("app", coordinates("app") + dependencyOn("1.0"));
+        assertThat(dependenciesOf(app, new FileArtifactRetriever(tempDir, null), cache)).containsExactly("g:lib:1.0");
+
+        // the release is re-installed in the local repository, so its POM must be read again
+        addPom("app", coordinates("app") + dependencyOn("2.0"));
+        assertThat(dependenciesOf(app, new FileArtifactRetriever(tempDir, null), cache)).containsExactly("g:lib:2.0");
+
+        // the same repository seen as a remote one is trusted, so its POM is not even requested
+        addPom("app", coordinates("app") + dependencyOn("3.0"));
+        var remote = new RemoteRetriever(tempDir, null);
+        assertThat(dependenciesOf(app, remote, cache)).containsExactly("g:lib:2.0");
+        assertThat(remote.requestedPoms()).isEmpty();
+    }
+
+    private static List<String> dependenciesOf(Artifact artifact,
+                                               FileArtifactRetriever retriever,
+                                               EffectivePomCache cache) throws Exception {
+        var log = new JBuildLog(new PrintStream(new ByteArrayOutputStream()), false);
+        var pomRetriever = new MavenPomRetriever<>(log,
+                new FetchCommandExecutor<>(log, NonEmptyCollection.of(retriever)),
+                MavenPomRetriever.DefaultPomCreator.INSTANCE, null, cache);
+        var pom = pomRetriever.fetchPom(artifact).toCompletableFuture().get(5, TimeUnit.SECONDS);
+        return pom.orElseThrow().getDependencies().stream()
+                .map(dependency -> dependency.artifact.getCoordinates())
+                .collect(toList());
+    }
+
+    private static String dependencyOn(String libVersion) {
+        return "<dependencies><dependency><groupId>g</groupId><artifactId>lib</artifactId>" +
+                "<version>" + libVersion + "</version></dependency></dependencies>";
+    }
+
+    private void addPom(String artifactId, String contents) throws IOException {
+        var dir = Files.createDirectories(tempDir.resolve("g").resolve(artifactId).resolve("1.0"));
+        var pom = "<project><modelVersion>4.0.0</modelVersion>" + contents + "</project>";
+        var bytes = pom.getBytes(UTF_8);
+        var file = dir.resolve(artifactId + "-1.0.pom");
+        Files.write(file, bytes);
+        Files.writeString(file.resolveSibling(file.getFileName() + ".sha1"), SHA1.toHexString(SHA1.digest(bytes)));
+    }
+
+    private static String coordinates(String artifactId) {
+        return "<groupId>g</groupId><artifactId>" + artifactId + "</artifactId><version>1.0</version>";
+    }
+
+    /**
+     * Retriever that behaves like a remote one (so that POMs are prefetched), recording the requested POMs.
+     */
+    private static final class RemoteRetriever extends FileArtifactRetriever {
+
+        private final List<String> requestedPoms = new ArrayList<>();
+        private final Artifact heldBack;
+        private final CompletableFuture<Void> released = new CompletableFuture<>();
+
+        RemoteRetriever(Path rootDir, Artifact heldBack) {
+            super(rootDir, null);
+            this.heldBack = heldBack;
+        }
+
+        @Override
+        public boolean isLocalFileRetriever() {
+            return false;
+        }
+
+        @Override
+        public CompletionStage<ArtifactResolution<FileRetrievalError>> retrieve(Artifact artifact) {
+            if (artifact.extension.equals("pom")) {
+                synchronized (requestedPoms) {
+                    requestedPoms.add(artifact.getCoordinates());
+                }
+            }
+            if (artifact.equals(heldBack)) {
+                return released.thenCompose(ignore -> super.retrieve(artifact));
+            }
+            return super.retrieve(artifact);
+        }
+
+        List<String> requestedPoms() {
+            synchronized (requestedPoms) {
+                return new ArrayList<>(requestedPoms);
+            }
+        }
+
+        void release() {
+            released.complete(null);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package jbuild.commands;
+
+import com.sun.net.httpserver.HttpServer;
+import jbuild.artifact.file.ArtifactCache;
+import jbuild.artifact.file.ContentAddressableStore;
+import jbuild.artifact.file.FileArtifactRetriever;
+import jbuild.artifact.http.HttpArtifactRetriever;
+import jbuild.log.JBuildLog;
+import jbuild.util.NonEmptyCollection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ServeRepoCommandExecutorTest {
+
+    private Path tempDir;
+    private Path upstream;
+    private ServeRepoCommandExecutor command;
+    private ServeRepoCommandExecutor.RunningServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDir = Files.createTempDirectory(ServeRepoCommandExecutorTest.class.getName());
+        upstream = Files.createDirectories(tempDir.resolve("upstream"));
+        var log = new JBuildLog(new PrintStream(new ByteArrayOutputStream()), false);
+        var retrievers = NonEmptyCollection.of(new FileArtifactRetriever(upstream, null));
+        command = new ServeRepoCommandExecutor(log,
+                new FetchCommandExecutor<>(log, retrievers),
+                new VersionsCommandExecutor(log, retrievers),
+                new ArtifactCache(tempDir.resolve("cache"), 1024 * 1024));
+        server = command.serve(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4);
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        server.close();
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void canServeArtifactsFromUpstreamAndCache() throws Exception {
+        addUpstreamFile("com/example/lib/1.0/lib-1.0.jar", "jar contents");
+
+        var first = get("/com/example/lib/1.0/lib-1.0.jar");
+        assertThat(first.statusCode()).isEqualTo(200);
+        assertThat(first.body()).isEqualTo("jar contents");
+
+        // the cached copy is served even after the upstream file is gone
+        Files.delete(upstream.resolve("com/example/lib/1.0/lib-1.0.jar"));
+
+        var second = get("/com/example/lib/1.0/lib-1.0.jar");
+        assertThat(second.statusCode()).isEqualTo(200);
+        assertThat(second.body()).isEqualTo("jar contents");
+
+        assertThat(get("/com/example/lib/2.0/lib-2.0.jar").statusCode()).isEqualTo(404);
+        assertThat(get("/not-an-artifact").statusCode()).isEqualTo(404);
+
+        assertThat(get(ServeRepoCommandExecutor.METRICS_PATH).body())
+                .contains("upstream_fetches 2")
+                .contains("upstream_misses 1")
+                .contains("cache_hits 1")
+                .contains("cache_entries 1");
+    }
+
+    @Test
+    void concurrentRequestsAllGetTheArtifact() throws Exception {
+        addUpstreamFile("com/example/lib/1.0/lib-1.0.pom", "<project/>");
+
+        var responses = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+        for (int i = 0; i < 16; i++) {
+            responses.add(client.sendAsync(request("/com/example/lib/1.0/lib-1.0.pom"),
+                    HttpResponse.BodyHandlers.ofString()));
+        }
+
+        for (var response : responses) {
+            assertThat(response.get().statusCode()).isEqualTo(200);
+            assertThat(response.get().body()).isEqualTo("<project/>");
+        }
+
+        // concurrent requests are either coalesced or served from the cache, never fetched twice
+        assertThat(command.getMetrics()).contains("upstream_fetches 1");
+    }
+
+    @Test
+    void canServeMetadata() throws Exception {
+        addUpstreamFile("com/example/lib/1.0/lib-1.0.pom", "<project/>");
+        addUpstreamFile("com/example/lib/1.2/lib-1.2.pom", "<project/>");
+
+        var response = get("/com/example/lib/maven-metadata.xml");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body())
+                .contains("<groupId>com.example</groupId>")
+                .contains("<artifactId>lib</artifactId>")
+                .contains("<latest>1.2</latest>")
+                .contains("<version>1.0</version>");
+
+        assertThat(get("/com/example/missing/maven-metadata.xml").statusCode()).isEqualTo(404);
+    }
+
+    @Test
+    void canFetchEvictedArtifactsAndChangedMetadataAgainFromHttpUpstream() throws Exception {
+        var upstreamServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        upstreamServer.createContext("/", exchange -> {
+            var file = upstream.resolve(exchange.getRequestURI().getPath().substring(1));
+            try (exchange) {
+                if (Files.isRegularFile(file)) {
+                    var bytes = Files.readAllBytes(file);
+                    exchange.sendResponseHeaders(200, bytes.length);
+                    exchange.getResponseBody().write(bytes);
+                } else {
+                    exchange.sendResponseHeaders(404, -1);
+                }
+            }
+        });
+        upstreamServer.start();
+
+        var log = new JBuildLog(new PrintStream(new ByteArrayOutputStream()), false);
+        var retrievers = NonEmptyCollection.of(new HttpArtifactRetriever(log,
+                "http://127.0.0.1:" + upstreamServer.getAddress().getPort() + "/",
+                Set.of(ContentAddressableStore.CHECKSUM_ALGORITHM), false));
+        // only one of the jars fits in the cache
+        command = new ServeRepoCommandExecutor(log,
+                new FetchCommandExecutor<>(log, retrievers),
+                new VersionsCommandExecutor(log, retrievers),
+                new ArtifactCache(tempDir.resolve("small-cache"), 1000));
+        server.close();
+        server = command.serve(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4);
+
+        try {
+            var a = "a".repeat(600);
+            var b = "b".repeat(600);
+            addUpstreamFile("com/example/a/1.0/a-1.0.jar", a);
+            addUpstreamFile("com/example/b/1.0/b-1.0.jar", b);
+
+            for (var expected : List.of(a, b, a)) {
+                var response = get("/com/example/" + expected.charAt(0) + "/1.0/" + expected.charAt(0) + "-1.0.jar");
+                assertThat(response.statusCode()).isEqualTo(200);
+                assertThat(response.body()).isEqualTo(expected);
+            }
+
+            assertThat(command.getMetrics())
+                    .contains("upstream_fetches 3")
+                    .contains("cache_evictions 2")
+                    .contains("errors 0");
+
+            addUpstreamFile("com/example/a/maven-metadata.xml", metadata("1.0"));
+            assertThat(get("/com/example/a/maven-metadata.xml").body()).contains("<latest>1.0</latest>");
+
+            addUpstreamFile("com/example/a/maven-metadata.xml", metadata("2.0"));
+            assertThat(get("/com/example/a/maven-metadata.xml").body()).contains("<latest>2.0</latest>");
+        } finally {
+            upstreamServer.stop(0);
+        }
+    }
+
+    private static String metadata(String version) {
+        return "<metadata><groupId>com.example</groupId><artifactId>a</artifactId><versioning>" +
+                "<latest>" + version + "</latest><release>" + version + "</release>" +
+                "<versions><version>" + version + "</version></versions>" +
+                "</versioning></metadata>";
+    }
+
+    private void addUpstreamFile(String path, String contents) throws IOException {
+        var file = upstream.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, contents);
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(request(path), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest request(String path) {
+        var address = server.getAddress();
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + address.getPort() + path)).build();
+    }
+}
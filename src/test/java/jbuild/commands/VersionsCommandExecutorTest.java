@@ -0,0 +1,122 @@
+package jbuild.commands;
+
+import jbuild.artifact.Artifact;
+import jbuild.artifact.ArtifactMetadata;
+import jbuild.artifact.ArtifactResolution;
+import jbuild.artifact.ArtifactRetriever;
+import jbuild.errors.ArtifactRetrievalError;
+import jbuild.log.JBuildLog;
+import jbuild.util.Either;
+import jbuild.util.NonEmptyCollection;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Collectors;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VersionsCommandExecutorTest {
+
+    private final JBuildLog log = new JBuildLog(new PrintStream(new ByteArrayOutputStream()), false);
+
+    @Test
+    void limitsTheNumberOfConcurrentQueries() {
+        var retriever = new PendingRetriever();
+        var command = new VersionsCommandExecutor(log, NonEmptyCollection.of(retriever));
+        var artifacts = new LinkedHashSet<Artifact>();
+        for (int i = 0; i < 5; i++) {
+            artifacts.add(new Artifact("g", "a" + i, ""));
+        }
+
+        var results = command.getVersions(artifacts, 2);
+
+        assertThat(artifactIds(retriever.requested)).containsExactly("a0", "a1");
+
+        retriever.complete(1);
+        assertThat(artifactIds(retriever.requested)).containsExactly("a0", "a1", "a2");
+        assertThat(results.get(new Artifact("g", "a1", "")).toCompletableFuture()).isCompleted();
+        assertThat(results.get(new Artifact("g", "a0", "")).toCompletableFuture()).isNotDone();
+
+        retriever.complete(0);
+        retriever.complete(2);
+        assertThat(artifactIds(retriever.requested)).containsExactly("a0", "a1", "a2", "a3", "a4");
+
+        retriever.complete(3);
+        retriever.complete(4);
+        assertThat(results.values().stream().allMatch(r -> r.toCompletableFuture().isDone())).isTrue();
+        assertThat(results.get(new Artifact("g", "a4", "")).toCompletableFuture().join()
+                .map(ArtifactMetadata::getLatestVersion, errors -> "")).isEqualTo("1.0");
+    }
+
+    @Test
+    void canQueryManyArtifactsCompletingSynchronously() {
+        var retriever = new PendingRetriever() {
+            @Override
+            public CompletionStage<Either<? extends ArtifactMetadata, ArtifactRetrievalError>> retrieveMetadata(
+                    Artifact artifact) {
+                return completedFuture(Either.left(metadata(artifact)));
+            }
+        };
+        var command = new VersionsCommandExecutor(log, NonEmptyCollection.of(retriever));
+        var artifacts = new LinkedHashSet<Artifact>();
+        for (int i = 0; i < 20_000; i++) {
+            artifacts.add(new Artifact("g", "a" + i, ""));
+        }
+
+        var results = command.getVersions(artifacts, 4);
+
+        assertThat(results.keySet()).containsExactlyElementsOf(artifacts);
+        assertThat(results.values().stream().allMatch(r -> r.toCompletableFuture().isDone())).isTrue();
+    }
+
+    private static List<String> artifactIds(List<Artifact> artifacts) {
+        return artifacts.stream().map(a -> a.artifactId).collect(Collectors.toList());
+    }
+
+    private static ArtifactMetadata metadata(Artifact artifact) {
+        return ArtifactMetadata.of(artifact, null, "1.0", Set.of("1.0"));
+    }
+
+    private static class PendingRetriever implements ArtifactRetriever<ArtifactRetrievalError> {
+
+        final List<Artifact> requested = new ArrayList<>();
+        final List<CompletableFuture<Either<? extends ArtifactMetadata, ArtifactRetrievalError>>> pending =
+                new ArrayList<>();
+
+        void complete(int index) {
+            pending.get(index).complete(Either.left(metadata(requested.get(index))));
+        }
+
+        @Override
+        public String getDescription() {
+            return "pending";
+        }
+
+        @Override
+        public CompletionStage<ArtifactResolution<ArtifactRetrievalError>> retrieve(Artifact artifact) {
+            throw new UnsupportedOperationException("retrieve");
+        }
+
+        @Override
+        public CompletionStage<Either<? extends ArtifactMetadata, ArtifactRetrievalError>> retrieveMetadata(
+                Artifact artifact) {
+            var future = new CompletableFuture<Either<? extends ArtifactMetadata, ArtifactRetrievalError>>();
+            requested.add(artifact);
+            pending.add(future);
+            return future;
+        }
+
+        @Override
+        public boolean isLocalFileRetriever() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package jbuild.log;
+
+import jbuild.artifact.Artifact;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static jbuild.log.ResolutionProfiler.CATEGORY_FETCH;
+import static jbuild.log.ResolutionProfiler.CATEGORY_LEVEL;
+import static jbuild.log.ResolutionProfiler.CATEGORY_RESOLUTION;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResolutionProfilerTest {
+
+    @Test
+    void criticalPathFollowsWaitedForSpans() throws Exception {
+        var profiler = new ResolutionProfiler(true);
+        var root = profiler.start(CATEGORY_RESOLUTION, "root", null);
+        var level = profiler.start(CATEGORY_LEVEL, "depth 0", root);
+
+        var fast = profiler.startResolution(new Artifact("g", "fast", "1"));
+        var slow = profiler.startResolution(new Artifact("g", "slow", "1"));
+        var waitFast = profiler.startWait("g:fast:1", level, profiler.resolutionOf(new Artifact("g", "fast", "1").pom()));
+        var waitSlow = profiler.startWait("g:slow:1", level, profiler.resolutionOf(new Artifact("g", "slow", "1").pom()));
+        var fetch = profiler.start(CATEGORY_FETCH, "g:slow:1:pom", slow).arg("repository", "repo");
+
+        fast.end();
+        waitFast.end();
+        Thread.sleep(2);
+        fetch.end();
+        slow.end();
+        waitSlow.end();
+        level.end();
+        root.end();
+
+        assertThat(profiler.criticalPath()).containsExactly(root, level, waitSlow, slow, fetch);
+        assertThat(profiler.report(10))
+                .contains("fetch g:slow:1:pom")
+                .contains("g:slow:1:pom - ")
+                .contains("repo - ");
+    }
+
+    @Test
+    void canWriteChromeTrace() throws Exception {
+        var profiler = new ResolutionProfiler(true);
+        var root = profiler.start(CATEGORY_RESOLUTION, "root \"quoted\"", null);
+        profiler.start(CATEGORY_FETCH, "child", root).arg("repository", "repo").end();
+        root.end();
+
+        var file = Files.createTempFile(ResolutionProfilerTest.class.getName(), ".json");
+        try {
+            profiler.writeChromeTrace(file);
+            var json = Files.readString(file, UTF_8);
+
+            assertThat(json).startsWith("{\"traceEvents\":[")
+                    .contains("\"name\":\"root \\\"quoted\\\"\",\"cat\":\"resolution\",\"ph\":\"X\"")
+                    .contains("\"name\":\"child\",\"cat\":\"fetch\",\"ph\":\"X\"")
+                    .contains("\"parent\":1,\"repository\":\"repo\"");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void disabledProfilerDoesNotRecordAnything() {
+        var profiler = new ResolutionProfiler(false);
+        var span = profiler.startResolution(new Artifact("g", "a", "1"));
+        profiler.start(CATEGORY_FETCH, "a", span).arg("repository", "repo").end();
+        span.end();
+
+        assertThat(profiler.resolutionOf(new Artifact("g", "a", "1").pom())).isNull();
+        assertThat(profiler.getSpans()).isEmpty();
+        assertThat(profiler.criticalPath()).isEmpty();
+    }
+}
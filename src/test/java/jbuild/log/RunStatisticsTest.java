@@ -0,0 +1,98 @@
+package jbuild.log;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static jbuild.log.RunStatistics.HTTP_BYTES;
+import static jbuild.log.RunStatistics.HTTP_REQUESTS;
+import static jbuild.log.RunStatistics.POM_PARSE_MICROS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RunStatisticsTest {
+
+    @Test
+    void disabledStatisticsRecordNothing() {
+        var statistics = new RunStatistics(false);
+        statistics.increment(HTTP_REQUESTS);
+        statistics.record(POM_PARSE_MICROS, 10L);
+
+        assertThat(statistics.getCounter(HTTP_REQUESTS)).isZero();
+        assertThat(statistics.getCounters()).isEmpty();
+        assertThat(statistics.getHistograms()).isEmpty();
+    }
+
+    @Test
+    void canRecordCounters() {
+        var statistics = new RunStatistics(true);
+        statistics.increment(HTTP_REQUESTS);
+        statistics.increment(HTTP_REQUESTS);
+        statistics.add(HTTP_BYTES, 1024L);
+        statistics.add(HTTP_BYTES, 16L);
+
+        assertThat(statistics.getCounter(HTTP_REQUESTS)).isEqualTo(2L);
+        assertThat(statistics.getCounter(HTTP_BYTES)).isEqualTo(1040L);
+        assertThat(statistics.getCounter("other")).isZero();
+        assertThat(statistics.getCounters()).containsExactly(
+                Map.entry(HTTP_BYTES, 1040L),
+                Map.entry(HTTP_REQUESTS, 2L));
+    }
+
+    @Test
+    void canRecordHistograms() {
+        var statistics = new RunStatistics(true);
+        for (long value = 1; value <= 100; value++) {
+            statistics.record(POM_PARSE_MICROS, value);
+        }
+
+        var histogram = statistics.getHistogram(POM_PARSE_MICROS);
+
+        assertThat(histogram.getCount()).isEqualTo(100L);
+        assertThat(histogram.getSum()).isEqualTo(5050L);
+        assertThat(histogram.getMin()).isEqualTo(1L);
+        assertThat(histogram.getMax()).isEqualTo(100L);
+        assertThat(histogram.getMean()).isEqualTo(50L);
+
+        // percentiles are the upper bound of the power-of-two bucket they fall in
+        assertThat(histogram.getPercentile(0)).isEqualTo(1L);
+        assertThat(histogram.getPercentile(50)).isEqualTo(63L);
+        assertThat(histogram.getPercentile(90)).isEqualTo(100L);
+        assertThat(histogram.getPercentile(100)).isEqualTo(100L);
+    }
+
+    @Test
+    void canRecordZeroes() {
+        var statistics = new RunStatistics(true);
+        statistics.record(POM_PARSE_MICROS, 0L);
+
+        var histogram = statistics.getHistogram(POM_PARSE_MICROS);
+
+        assertThat(histogram.getCount()).isEqualTo(1L);
+        assertThat(histogram.getMin()).isZero();
+        assertThat(histogram.getMax()).isZero();
+        assertThat(histogram.getPercentile(99)).isZero();
+    }
+
+    @Test
+    void canWriteJson() throws Exception {
+        var statistics = new RunStatistics(true);
+        statistics.add(HTTP_REQUESTS, 3L);
+        statistics.record(POM_PARSE_MICROS, 4L);
+        statistics.record(POM_PARSE_MICROS, 8L);
+
+        var file = Files.createTempFile(RunStatisticsTest.class.getName(), ".json");
+        try {
+            statistics.writeJson(file);
+            var json = Files.readString(file, UTF_8);
+
+            assertThat(json).startsWith("{\"elapsedMillis\":")
+                    .contains(",\"counters\":{\"http.requests\":3},")
+                    .contains("\"histograms\":{\"pom.parseMicros\":{\"count\":2,\"sum\":12,\"min\":4," +
+                            "\"mean\":6,\"p50\":7,\"p90\":8,\"p99\":8,\"max\":8}}}");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package jbuild.maven;
+
+import jbuild.artifact.Artifact;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toSet;
+import static jbuild.maven.MavenHelper.artifact;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DependencyMediatorTest {
+
+    @Test
+    void nearestVersionWins() throws Exception {
+        var c2 = node("c", "2", node("x", "1"));
+        var tree = DependencyTree.resolved(artifact("g", "root", "1"), pom(""), List.of(
+                node("a", "1", node("c", "1")),
+                node("b", "1", node("d", "1", c2))));
+
+        var mediation = DependencyMediator.mediate(List.of(tree));
+
+        assertThat(coordinates(mediation)).containsExactlyInAnyOrder(
+                "g:root:1", "g:a:1", "g:b:1", "g:c:1", "g:d:1");
+        assertThat(mediation.conflicts).isEqualTo(Map.of(ArtifactKey.of("g", "c"), Set.of("1", "2")));
+    }
+
+    @Test
+    void highestVersionWinsAtSameDepth() throws Exception {
+        var tree = DependencyTree.resolved(artifact("g", "root", "1"), pom(""), List.of(
+                node("a", "1", node("c", "1.2")),
+                node("b", "1", node("c", "1.10"))));
+
+        var mediation = DependencyMediator.mediate(List.of(tree));
+
+        assertThat(coordinates(mediation)).containsExactlyInAnyOrder(
+                "g:root:1", "g:a:1", "g:b:1", "g:c:1.10");
+    }
+
+    @Test
+    void dependencyManagementOverridesTransitiveVersions() throws Exception {
+        var management = "<dependencyManagement><dependencies>" +
+                "<dependency><groupId>g</groupId><artifactId>c</artifactId><version>3</version></dependency>" +
+                "<dependency><groupId>g</groupId><artifactId>a</artifactId><version>5</version></dependency>" +
+                "</dependencies></dependencyManagement>";
+        var tree = DependencyTree.resolved(artifact("g", "root", "1"), pom(management), List.of(
+                node("a", "1", node("c", "1")),
+                node("b", "1", node("d", "1", node("c", "3")))));
+
+        var mediation = DependencyMediator.mediate(List.of(tree));
+
+        // direct dependencies are not affected by the root's dependencyManagement
+        assertThat(coordinates(mediation)).containsExactlyInAnyOrder(
+                "g:root:1", "g:a:1", "g:b:1", "g:c:3", "g:d:1");
+    }
+
+    @Test
+    void managedVersionMissingFromTreeIsSelected() throws Exception {
+        var management = "<dependencyManagement><dependencies>" +
+                "<dependency><groupId>g</groupId><artifactId>c</artifactId><version>3</version></dependency>" +
+                "</dependencies></dependencyManagement>";
+        var tree = DependencyTree.resolved(artifact("g", "root", "1"), pom(management), List.of(
+                node("a", "1", node("c", "1"))));
+
+        var mediation = DependencyMediator.mediate(List.of(tree));
+
+        assertThat(coordinates(mediation)).containsExactlyInAnyOrder("g:root:1", "g:a:1", "g:c:3");
+        assertThat(mediation.conflicts).isEqualTo(Map.of(ArtifactKey.of("g", "c"), Set.of("1", "3")));
+    }
+
+    @Test
+    void dependenciesOfManagedVersionsAreMediatedWhenTheirTreesAreGiven() throws Exception {
+        var management = "<dependencyManagement><dependencies>" +
+                "<dependency><groupId>g</groupId><artifactId>c</artifactId><version>3</version></dependency>" +
+                "</dependencies></dependencyManagement>";
+        var tree = DependencyTree.resolved(artifact("g", "root", "1"), pom(management), List.of(
+                node("a", "1", node("c", "1", node("x", "1"))),
+                node("b", "1", node("d", "1", node("y", "1")))));
+
+        var mediation = DependencyMediator.mediate(List.of(tree));
+
+        // without the managed version's tree, the dependencies of the version found in the tree are used
+        assertThat(coordinates(mediation)).containsExactlyInAnyOrder(
+                "g:root:1", "g:a:1", "g:b:1", "g:c:3", "g:d:1", "g:x:1", "g:y:1");
+        var c3 = new Artifact("g", "c", "3").pom();
+        assertThat(mediation.unresolvedManagedVersions).containsExactly(c3);
+
+        var c3Pom = pom("<packaging>aar</packaging>");
+        var managedTree = DependencyTree.resolved(c3, c3Pom, List.of(
+                node("w", "1", node("y", "2"))));
+
+        mediation = DependencyMediator.mediate(List.of(tree), Map.of(c3, managedTree));
+
+        // the dependencies of the managed version replace those of c:1, and y:1 is nearer than y:2
+        assertThat(coordinates(mediation)).containsExactlyInAnyOrder(
+                "g:root:1", "g:a:1", "g:b:1", "g:c:3", "g:d:1", "g:w:1", "g:y:1");
+        assertThat(mediation.unresolvedManagedVersions).isEmpty();
+        assertThat(mediation.dependencies.stream()
+                .filter(dep -> dep.artifact.artifactId.equals("c"))
+                .map(dep -> dep.pom))
+                .containsExactly(c3Pom);
+    }
+
+    private static DependencyTree node(String artifactId, String version, DependencyTree... children) {
+        return DependencyTree.resolved(new Artifact("g", artifactId, version), null, List.of(children));
+    }
+
+    private static MavenPom pom(String contents) throws Exception {
+        return MavenUtils.parsePom(new ByteArrayInputStream(("<project>" +
+                "<groupId>g</groupId><artifactId>root</artifactId><version>1</version>" +
+                contents + "</project>").getBytes(UTF_8)));
+    }
+
+    private static Set<String> coordinates(DependencyMediator.Mediation mediation) {
+        return mediation.dependencies.stream()
+                .map(dep -> dep.artifact.getCoordinates())
+                .collect(toSet());
+    }
+}
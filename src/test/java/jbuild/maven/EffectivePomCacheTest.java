@@ -0,0 +1,162 @@
+package jbuild.maven;
+
+import jbuild.artifact.Artifact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static jbuild.maven.MavenHelper.readPom;
+import static jbuild.util.ChecksumAlgorithm.SHA1;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EffectivePomCacheTest {
+
+    private static final String REPOSITORY = "https://repo.example.com";
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setup() throws IOException {
+        tempDir = Files.createTempDirectory(EffectivePomCacheTest.class.getName());
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void canStoreAndRestoreEffectivePom() throws Exception {
+        var pom = readPom("guava.pom.xml").withParent(readPom("guava-parent.pom.xml"));
+        var artifact = pom.getArtifact().pom();
+        var checksum = checksum("guava");
+        var contributors = contributors(artifact, checksum,
+                pom.getParentArtifact().orElseThrow().pom(), checksum("guava-parent"));
+
+        var cache = new EffectivePomCache(tempDir);
+        assertThat(cache.put(REPOSITORY, artifact, new EffectivePomCache.Entry(pom, contributors))).isTrue();
+
+        var entry = cache.get(REPOSITORY, artifact, checksum).orElseThrow();
+
+        assertThat(entry.getContributors()).containsOnlyKeys(contributors.keySet());
+        assertThat(entry.pom.getArtifact()).isEqualTo(pom.getArtifact());
+        assertThat(entry.pom.getParentArtifact()).isEqualTo(pom.getParentArtifact());
+        assertThat(entry.pom.getPackaging()).isEqualTo(pom.getPackaging());
+        assertThat(entry.pom.getProperties()).isEqualTo(pom.getProperties());
+        assertThat(entry.pom.getDependencies()).isEqualTo(pom.getDependencies());
+        assertThat(entry.pom.getDependencyManagement()).isEqualTo(pom.getDependencyManagement());
+        assertThat(entry.pom.getLicenses()).isEqualTo(pom.getLicenses());
+        assertThat(entry.pom.getParentPom().orElseThrow().getDependencyManagement())
+                .isEqualTo(pom.getParentPom().orElseThrow().getDependencyManagement());
+    }
+
+    @Test
+    void entryIsNotUsedIfPomChanges() throws Exception {
+        var pom = readPom("guava.pom.xml");
+        var artifact = pom.getArtifact().pom();
+        var cache = new EffectivePomCache(tempDir);
+        cache.put(REPOSITORY, artifact, new EffectivePomCache.Entry(pom, contributors(artifact, checksum("guava"))));
+
+        assertThat(cache.get(REPOSITORY, artifact, checksum("guava"))).isPresent();
+        assertThat(cache.get(REPOSITORY, artifact, checksum("changed guava"))).isEmpty();
+        assertThat(cache.get(REPOSITORY, new Artifact(artifact.groupId, artifact.artifactId, "1.0", "pom"),
+                checksum("guava"))).isEmpty();
+    }
+
+    @Test
+    void canGetEntryWithoutPomChecksum() throws Exception {
+        var pom = readPom("guava.pom.xml");
+        var artifact = pom.getArtifact().pom();
+        var cache = new EffectivePomCache(tempDir, true);
+        cache.put(REPOSITORY, artifact, new EffectivePomCache.Entry(pom, contributors(artifact, checksum("guava"))));
+
+        assertThat(cache.trustsReleases()).isTrue();
+        assertThat(cache.get(REPOSITORY, artifact).orElseThrow().pom.getArtifact()).isEqualTo(pom.getArtifact());
+        assertThat(cache.get(REPOSITORY, new Artifact(artifact.groupId, artifact.artifactId, "1.0", "pom"))).isEmpty();
+    }
+
+    @Test
+    void entriesAreNotSharedBetweenRepositories() throws Exception {
+        var pom = readPom("guava.pom.xml");
+        var artifact = pom.getArtifact().pom();
+        var cache = new EffectivePomCache(tempDir, true);
+        cache.put(REPOSITORY, artifact, new EffectivePomCache.Entry(pom, contributors(artifact, checksum("guava"))));
+
+        assertThat(cache.get(REPOSITORY, artifact, checksum("guava"))).isPresent();
+        assertThat(cache.get("https://other.example.com", artifact, checksum("guava"))).isEmpty();
+        assertThat(cache.get("https://other.example.com", artifact)).isEmpty();
+    }
+
+    @Test
+    void snapshotsAreNotCached() throws Exception {
+        var pom = readPom("guava.pom.xml");
+        var artifact = pom.getArtifact().pom();
+        var snapshotParent = new Artifact("g", "parent", "1.0-SNAPSHOT", "pom");
+        var cache = new EffectivePomCache(tempDir);
+
+        assertThat(cache.put(REPOSITORY, artifact, new EffectivePomCache.Entry(pom,
+                contributors(artifact, checksum("guava"), snapshotParent, checksum("parent"))))).isFalse();
+        assertThat(cache.get(REPOSITORY, artifact, checksum("guava"))).isEmpty();
+    }
+
+    @Test
+    void corruptedEntriesAreDeletedAndTreatedAsMissing() throws Exception {
+        var pom = readPom("guava.pom.xml");
+        var artifact = pom.getArtifact().pom();
+        var cache = new EffectivePomCache(tempDir, true);
+        var file = tempDir.resolve(SHA1.toHexString(SHA1.digest(REPOSITORY.getBytes(UTF_8))))
+                .resolve(artifact.groupId).resolve(artifact.artifactId)
+                .resolve(artifact.version + ".effective-pom");
+
+        cache.put(REPOSITORY, artifact, new EffectivePomCache.Entry(pom, contributors(artifact, checksum("guava"))));
+        var contents = Files.readAllBytes(file);
+
+        var truncated = Arrays.copyOf(contents, contents.length / 2);
+        var hugeCount = contents.clone();
+        ByteBuffer.wrap(hugeCount).putInt(8, Integer.MAX_VALUE);
+        var negativeLength = contents.clone();
+        ByteBuffer.wrap(negativeLength).putInt(12, -1);
+        var invalidScope = new String(contents, ISO_8859_1)
+                .replace("COMPILE", "UNKNOWN")
+                .getBytes(ISO_8859_1);
+
+        for (var corrupted : List.of(truncated, hugeCount, negativeLength, invalidScope)) {
+            Files.write(file, corrupted);
+
+            assertThat(cache.get(REPOSITORY, artifact)).isEmpty();
+            assertThat(file).doesNotExist();
+        }
+
+        // the entry can be written again
+        cache.put(REPOSITORY, artifact, new EffectivePomCache.Entry(pom, contributors(artifact, checksum("guava"))));
+        assertThat(cache.get(REPOSITORY, artifact)).isPresent();
+    }
+
+    private static byte[] checksum(String contents) {
+        return EffectivePomCache.CHECKSUM_ALGORITHM.digest(contents.getBytes(UTF_8));
+    }
+
+    private static Map<Artifact, byte[]> contributors(Object... artifactsAndChecksums) {
+        var result = new LinkedHashMap<Artifact, byte[]>();
+        for (int i = 0; i < artifactsAndChecksums.length; i += 2) {
+            result.put((Artifact) artifactsAndChecksums[i], (byte[]) artifactsAndChecksums[i + 1]);
+        }
+        return result;
+    }
+}
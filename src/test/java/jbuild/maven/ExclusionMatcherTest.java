@@ -0,0 +1,90 @@
+package jbuild.maven;
+
+import jbuild.artifact.Artifact;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExclusionMatcherTest {
+
+    @Test
+    void canMatchArtifactKeysAndWildcards() {
+        var patterns = MavenUtils.asPatterns(new LinkedHashSet<>(List.of(
+                ArtifactKey.of("a", "b"),
+                ArtifactKey.of("c", "*"),
+                ArtifactKey.of("*", "d")))).globalExclusions;
+
+        var matcher = ExclusionMatcher.of(patterns);
+
+        assertThat(matcher.matches(new Artifact("a", "b", "1"))).isTrue();
+        assertThat(matcher.matches(new Artifact("a", "c", "1"))).isFalse();
+        assertThat(matcher.matches(new Artifact("c", "x", "1"))).isTrue();
+        assertThat(matcher.matches(new Artifact("c", "y", "2"))).isTrue();
+        assertThat(matcher.matches(new Artifact("x", "d", "1"))).isTrue();
+        assertThat(matcher.matches(new Artifact("x", "e", "1"))).isFalse();
+
+        assertThat(patterns.stream().map(DependencyExclusions.PatternUsage::getUsages))
+                .containsExactly(1, 2, 1);
+    }
+
+    @Test
+    void onlyFirstMatchingPatternIsUsed() {
+        var patterns = new ArrayList<>(MavenUtils.asPatterns(
+                new LinkedHashSet<>(List.of(ArtifactKey.of("a", "b")))).globalExclusions);
+        patterns.add(0, new DependencyExclusions.PatternUsage(Pattern.compile("a:.*:2")));
+        patterns.add(new DependencyExclusions.PatternUsage(Pattern.compile("a:.*")));
+
+        var matcher = ExclusionMatcher.of(patterns);
+
+        assertThat(matcher.matches(new Artifact("a", "b", "1"))).isTrue();
+        assertThat(matcher.matches(new Artifact("a", "b", "2"))).isTrue();
+        assertThat(matcher.matches(new Artifact("a", "c", "1"))).isTrue();
+        assertThat(matcher.matches(new Artifact("b", "b", "1"))).isFalse();
+
+        assertThat(patterns.stream().map(DependencyExclusions.PatternUsage::getUsages))
+                .containsExactly(1, 1, 1);
+    }
+
+    @Test
+    void matchersAreCompiledOnceForEachExclusions() {
+        var exclusions = new DependencyExclusions(
+                Set.of(Pattern.compile("a:b:.*")),
+                Map.of("x:y:1", Set.of(Pattern.compile("c:d:.*")))
+        ).withUsage();
+
+        var globalMatcher = exclusions.matcherFor("other:artifact:1");
+        var matcher = exclusions.matcherFor("x:y:1");
+
+        assertThat(exclusions.matcherFor("another:artifact:1")).isSameAs(globalMatcher);
+        assertThat(exclusions.matcherFor("x:y:1")).isSameAs(matcher);
+
+        assertThat(globalMatcher.matches(new Artifact("a", "b", "1"))).isTrue();
+        assertThat(globalMatcher.matches(new Artifact("c", "d", "1"))).isFalse();
+        assertThat(matcher.matches(new Artifact("a", "b", "1"))).isTrue();
+        assertThat(matcher.matches(new Artifact("c", "d", "1"))).isTrue();
+
+        // a matcher built with further exclusions is compiled separately
+        var childExclusions = exclusions.withGlobalExclusions(MavenUtils.asPatterns(
+                Set.of(ArtifactKey.of("e", "f"))).globalExclusions);
+        var childMatcher = childExclusions.matcherFor("other:artifact:1");
+
+        assertThat(childMatcher).isNotSameAs(globalMatcher);
+        assertThat(childMatcher.matches(new Artifact("e", "f", "1"))).isTrue();
+        assertThat(globalMatcher.matches(new Artifact("e", "f", "1"))).isFalse();
+
+        // adding exclusions that are already present does not create new instances, so matchers are reused
+        var sameExclusions = childExclusions
+                .withGlobalExclusions(childExclusions.globalExclusions)
+                .withGlobalExclusions(MavenUtils.asPatterns(Set.of(ArtifactKey.of("e", "f"))).globalExclusions);
+
+        assertThat(sameExclusions).isSameAs(childExclusions);
+        assertThat(sameExclusions.matcherFor("other:artifact:1")).isSameAs(childMatcher);
+    }
+}
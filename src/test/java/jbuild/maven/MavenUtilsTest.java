@@ -3,11 +3,13 @@ package jbuild.maven;
 import jbuild.artifact.Artifact;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static jbuild.maven.DependencyType.TEST_JAR;
 import static jbuild.maven.MavenAssertions.artifactCoordinates;
 import static jbuild.maven.MavenAssertions.dependencies;
@@ -86,6 +88,70 @@ public class MavenUtilsTest {
                 .has(artifactCoordinates(new Artifact("com.jbuild", "with-exclusions", "1.1.1")));
     }
 
+    @Test
+    void ignoresDependenciesOutsideOfDependenciesSection() throws Exception {
+        var pom = MavenUtils.parsePom(new ByteArrayInputStream(("<?xml version=\"1.0\"?>\n" +
+                "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n" +
+                "  <groupId>g</groupId><artifactId>a</artifactId><version>1</version>\n" +
+                "  <build><plugins><plugin><dependencies><dependency>\n" +
+                "    <groupId>bad</groupId><artifactId>plugin-dep</artifactId><version>1</version>\n" +
+                "  </dependency></dependencies></plugin></plugins></build>\n" +
+                "  <dependencies><dependency>\n" +
+                "    <groupId>good</groupId><artifactId>dep</artifactId><version><![CDATA[2]]></version>\n" +
+                "  </dependency></dependencies>\n" +
+                "  <profiles><profile><dependencies><dependency>\n" +
+                "    <groupId>bad</groupId><artifactId>profile-dep</artifactId><version>1</version>\n" +
+                "  </dependency></dependencies></profile></profiles>\n" +
+                "</project>").getBytes(UTF_8)));
+
+        assertThat(pom)
+                .has(dependencies(dep("good", "dep", "2")))
+                .has(artifactCoordinates(new Artifact("g", "a", "1")));
+    }
+
+    @Test
+    void canScanReferencedPomsWithoutParsingWholePom() throws Exception {
+        var referencedPoms = MavenUtils.scanReferencedPoms(new ByteArrayInputStream(("<?xml version=\"1.0\"?>\n" +
+                "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n" +
+                "  <parent><groupId>p</groupId><artifactId>parent</artifactId><version>3</version></parent>\n" +
+                "  <artifactId>a</artifactId>\n" +
+                "  <properties><bom.version>2.1</bom.version></properties>\n" +
+                "  <dependencyManagement><dependencies>\n" +
+                "    <dependency><groupId>g</groupId><artifactId>bom1</artifactId><version>${bom.version}</version>\n" +
+                "      <type>pom</type><scope>import</scope></dependency>\n" +
+                "    <dependency><groupId>${project.groupId}</groupId><artifactId>bom2</artifactId>\n" +
+                "      <version>${project.version}</version><type>pom</type><scope>import</scope></dependency>\n" +
+                "    <dependency><groupId>g</groupId><artifactId>bom3</artifactId><version>${inherited}</version>\n" +
+                "      <type>pom</type><scope>import</scope></dependency>\n" +
+                "    <dependency><groupId>g</groupId><artifactId>managed</artifactId><version>1</version></dependency>\n" +
+                "  </dependencies></dependencyManagement>\n" +
+                "</project>").getBytes(UTF_8)));
+
+        assertThat(referencedPoms).containsExactly(
+                new Artifact("p", "parent", "3").pom(),
+                new Artifact("g", "bom1", "2.1").pom(),
+                new Artifact("p", "bom2", "3").pom());
+    }
+
+    @Test
+    void canParseMavenMetadata() throws Exception {
+        var metadata = MavenUtils.parseMavenMetadata(new ByteArrayInputStream(("<?xml version=\"1.0\"?>\n" +
+                "<metadata>\n" +
+                "  <groupId>g</groupId><artifactId>a</artifactId>\n" +
+                "  <versioning>\n" +
+                "    <latest>2.0</latest><release>1.1</release>\n" +
+                "    <versions><version>1.0</version><version>1.1</version><version>2.0</version></versions>\n" +
+                "    <lastUpdated>20210704123055</lastUpdated>\n" +
+                "  </versioning>\n" +
+                "</metadata>").getBytes(UTF_8)));
+
+        assertThat(metadata.getCoordinates()).isEqualTo(new Artifact("g", "a", ""));
+        assertThat(metadata.getLatestVersion()).isEqualTo("2.0");
+        assertThat(metadata.getReleaseVersion()).isEqualTo("1.1");
+        assertThat(metadata.getVersions()).containsExactlyInAnyOrder("1.0", "1.1", "2.0");
+        assertThat(metadata.getLastUpdated()).hasValue(Instant.parse("2021-07-04T12:30:55Z"));
+    }
+
     @Test
     void canParseChildPomWithParentPom() throws Exception {
         var pom = readPom("child.pom.xml");
@@ -0,0 +1,41 @@
+package jbuild.maven;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PropertyResolverTest {
+
+    @Test
+    void canResolvePropertiesAlongMemoizedChains() {
+        var resolver = new PropertyResolver(Map.of(
+                "a", "${b}",
+                "b", "${c}",
+                "c", "value",
+                "d", "${b}",
+                "e", "${missing}"));
+
+        assertThat(resolver.resolve("${a}")).isEqualTo("value");
+        assertThat(resolver.resolve("${b}")).isEqualTo("value");
+        assertThat(resolver.resolve("${d}")).isEqualTo("value");
+        assertThat(resolver.resolve("${e}")).isEqualTo("${missing}");
+        assertThat(resolver.resolve("${missing}")).isEqualTo("${missing}");
+        assertThat(resolver.resolve("c")).isEqualTo("c");
+    }
+
+    @Test
+    void canDetectInfiniteLoopOnEveryAttempt() {
+        var resolver = new PropertyResolver(Map.of("a", "${b}", "b", "${a}", "c", "ok"));
+
+        assertThat(resolver.resolve("${c}")).isEqualTo("ok");
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> resolver.resolve("${a}"))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("infinite loop detected resolving property: a -> b -> a");
+        }
+    }
+}
@@ -76,6 +76,22 @@ public class ArtifactTest {
                 .isEqualTo("abc-def-2.1.pom");
     }
 
+    @Test
+    void withChecksum() {
+        assertThat(new Artifact("g", "abc-def", "2.1")
+                .checksum(ChecksumAlgorithm.SHA256).toFileName())
+                .isEqualTo("abc-def-2.1.jar.sha256");
+        assertThat(new Artifact("g", "abc-def", "2.1", "pom")
+                .checksum(ChecksumAlgorithm.SHA512).checksum(ChecksumAlgorithm.SHA512).toFileName())
+                .isEqualTo("abc-def-2.1.pom.sha512");
+        assertThat(new Artifact("g", "abc-def", "2.1", "pom")
+                .checksum(ChecksumAlgorithm.SHA256).noChecksum().toFileName())
+                .isEqualTo("abc-def-2.1.pom");
+        assertThat(new Artifact("g", "abc-def", "2.1", "jar.sha256").getChecksumAlgorithm())
+                .hasValue(ChecksumAlgorithm.SHA256);
+        assertThat(new Artifact("g", "abc-def", "2.1", "jar").isChecksum()).isFalse();
+    }
+
     @Test
     void isSha1() {
         assertThat(new Artifact("g", "abc-def", "2.1").isSha1())
@@ -0,0 +1,85 @@
+package jbuild.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.util.EnumSet;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ChecksumAlgorithmTest {
+
+    private static final byte[] INPUT = "Hello JBuild!".getBytes(US_ASCII);
+
+    private static final String SHA1 = "0ff91fd0c7e507ddf891a1d44928a0c70acc3abe";
+    private static final String SHA256 = "811607f093aeef55c58a866a5ff829759ca7ec2bece8b0524606485f1aaab233";
+    private static final String SHA512 = "78f66957de63eaf5151422e3addd206f97f94034fc8ac2297b5d14e0ba89cc7e" +
+            "d97b0c20aa46b2e9fbcd01a173cb5099c568f7ffb1691c39574992d56931717a";
+
+    @Test
+    void canComputeDigests() {
+        assertThat(ChecksumAlgorithm.SHA1.toHexString(ChecksumAlgorithm.SHA1.digest(INPUT))).isEqualTo(SHA1);
+        assertThat(ChecksumAlgorithm.SHA256.toHexString(ChecksumAlgorithm.SHA256.digest(INPUT))).isEqualTo(SHA256);
+        assertThat(ChecksumAlgorithm.SHA512.toHexString(ChecksumAlgorithm.SHA512.digest(INPUT))).isEqualTo(SHA512);
+    }
+
+    @Test
+    void canParseChecksumFiles() {
+        assertThat(ChecksumAlgorithm.SHA256.parseChecksumFile(SHA256.getBytes(US_ASCII)))
+                .containsExactly(ChecksumAlgorithm.SHA256.digest(INPUT));
+        assertThat(ChecksumAlgorithm.SHA256.parseChecksumFile(
+                (SHA256.toUpperCase() + "  hello.txt\n").getBytes(US_ASCII)))
+                .containsExactly(ChecksumAlgorithm.SHA256.digest(INPUT));
+        assertThat(ChecksumAlgorithm.SHA512.parseChecksumFile(("\n" + SHA512 + "\n").getBytes(US_ASCII)))
+                .containsExactly(ChecksumAlgorithm.SHA512.digest(INPUT));
+
+        assertThatThrownBy(() -> ChecksumAlgorithm.SHA256.parseChecksumFile(SHA1.getBytes(US_ASCII)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ChecksumAlgorithm.SHA1.parseChecksumFile(
+                SHA1.replace('a', 'x').getBytes(US_ASCII)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void canParseAlgorithmNames() {
+        assertThat(ChecksumAlgorithm.parse("sha1")).hasValue(ChecksumAlgorithm.SHA1);
+        assertThat(ChecksumAlgorithm.parse("SHA-256")).hasValue(ChecksumAlgorithm.SHA256);
+        assertThat(ChecksumAlgorithm.parse("sha512")).hasValue(ChecksumAlgorithm.SHA512);
+        assertThat(ChecksumAlgorithm.parse("md5")).isEmpty();
+    }
+
+    @Test
+    void canComputeChecksumsIncrementally() throws Exception {
+        var computer = new ChecksumComputer(EnumSet.allOf(ChecksumAlgorithm.class));
+        var out = new ByteArrayOutputStream();
+        try (var stream = computer.wrap(out)) {
+            stream.write(INPUT, 0, 5);
+            stream.write(INPUT[5]);
+            stream.write(INPUT, 6, INPUT.length - 6);
+        }
+        var checksums = computer.finish();
+
+        assertThat(out.toByteArray()).isEqualTo(INPUT);
+        assertThat(checksums).isEqualTo(ChecksumComputer.compute(INPUT, EnumSet.allOf(ChecksumAlgorithm.class)));
+        assertThat(checksums.get(ChecksumAlgorithm.SHA256).map(ChecksumAlgorithm.SHA256::toHexString))
+                .hasValue(SHA256);
+        assertThatThrownBy(computer::finish).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void canComputeChecksumsOfFile() throws Exception {
+        var file = Files.createTempFile(ChecksumAlgorithmTest.class.getName(), ".txt");
+        try {
+            Files.write(file, INPUT);
+            var checksums = ChecksumComputer.compute(file, EnumSet.of(ChecksumAlgorithm.SHA1));
+            assertThat(checksums.getAlgorithms()).containsExactly(ChecksumAlgorithm.SHA1);
+            assertThat(checksums.get(ChecksumAlgorithm.SHA1).map(ChecksumAlgorithm.SHA1::toHexString))
+                    .hasValue(SHA1);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
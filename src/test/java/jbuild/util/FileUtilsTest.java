@@ -3,6 +3,7 @@ package jbuild.util;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
@@ -92,4 +93,31 @@ public class FileUtilsTest {
         assertThat(FileUtils.withoutExtension("hello.txt")).isEqualTo("hello");
         assertThat(FileUtils.withoutExtension("a.b/c.d/foo.jar")).isEqualTo("a.b/c.d/foo");
     }
+
+    @Test
+    void canWriteFileAtomically() throws Exception {
+        var dir = Files.createTempDirectory(FileUtilsTest.class.getSimpleName());
+        var target = dir.resolve("file.txt");
+        Files.writeString(target, "old");
+
+        FileUtils.writeAtomically(target, true, tempFile -> Files.writeString(tempFile, "new"));
+
+        assertThat(target).hasContent("new");
+        assertThat(dir.toFile().list()).containsExactly("file.txt");
+    }
+
+    @Test
+    void failedAtomicWriteDoesNotChangeTarget() throws Exception {
+        var dir = Files.createTempDirectory(FileUtilsTest.class.getSimpleName());
+        var target = dir.resolve("file.txt");
+        Files.writeString(target, "old");
+
+        assertThatThrownBy(() -> FileUtils.writeAtomically(target, false, tempFile -> {
+            Files.writeString(tempFile, "partial");
+            throw new IOException("disk full");
+        })).isInstanceOf(IOException.class).hasMessage("disk full");
+
+        assertThat(target).hasContent("old");
+        assertThat(dir.toFile().list()).containsExactly("file.txt");
+    }
 }
@@ -0,0 +1,32 @@
+package jbuild.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RetryPolicyTest {
+
+    @Test
+    void delayGrowsExponentiallyWithJitterUpToMaximum() {
+        var policy = new RetryPolicy(10, Duration.ofMillis(100), Duration.ofMillis(1000));
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(policy.delayBeforeRetry(1).toMillis()).isBetween(50L, 100L);
+            assertThat(policy.delayBeforeRetry(2).toMillis()).isBetween(100L, 200L);
+            assertThat(policy.delayBeforeRetry(3).toMillis()).isBetween(200L, 400L);
+            assertThat(policy.delayBeforeRetry(5).toMillis()).isBetween(500L, 1000L);
+            assertThat(policy.delayBeforeRetry(100).toMillis()).isBetween(500L, 1000L);
+        }
+    }
+
+    @Test
+    void cannotCreateInvalidPolicy() {
+        assertThatThrownBy(() -> new RetryPolicy(-1, Duration.ZERO, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RetryPolicy(1, Duration.ofSeconds(2), Duration.ofSeconds(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}